@@ -9,14 +9,19 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
+import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
 import android.os.Message;
+import android.os.MessageQueue;
 import android.os.PowerManager;
 import android.os.RemoteException;
 import android.os.ServiceManager;
 import android.os.IPowerManager;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.provider.Settings;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentActivity;
@@ -37,10 +42,13 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.view.ViewStub;
+import android.view.ViewTreeObserver;
 import android.widget.Button;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.readboy.wearlauncher.Location.LocationControllerImpl;
 import com.readboy.wearlauncher.SimBind.SimBindController;
 import com.readboy.wearlauncher.application.AppInfo;
 import com.readboy.wearlauncher.application.AppsLoader;
@@ -48,6 +56,8 @@ import com.readboy.wearlauncher.battery.BatteryController;
 import com.readboy.wearlauncher.dialog.ClassDisableDialog;
 import com.readboy.wearlauncher.dialog.InstructionsDialog;
 import com.readboy.wearlauncher.notification.NotificationActivity;
+import com.readboy.wearlauncher.utils.InputLatencyTracer;
+import com.readboy.wearlauncher.utils.PageFrameMonitor;
 import com.readboy.wearlauncher.utils.Utils;
 import com.readboy.wearlauncher.utils.WatchController;
 import com.readboy.wearlauncher.view.DaialParentLayout;
@@ -55,16 +65,24 @@ import com.readboy.wearlauncher.view.DialBaseLayout;
 import com.readboy.wearlauncher.view.GestureView;
 import com.readboy.wearlauncher.view.MyViewPager;
 import com.readboy.wearlauncher.view.NegativeScreen;
+import com.readboy.wearlauncher.view.PageContainer;
 import com.readboy.wearlauncher.view.WatchAppGridView;
 import com.readboy.wearlauncher.view.WatchDials;
+import com.readboy.wearlauncher.weather.WeatherStore;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 
+import me.dreamheart.autoscalinglayout.ASViewGroupUtil;
+import me.everything.android.ui.overscroll.IOverScrollDecor;
+import me.everything.android.ui.overscroll.IOverScrollState;
+import me.everything.android.ui.overscroll.IOverScrollStateListener;
 import me.everything.android.ui.overscroll.OverScrollDecoratorHelper;
 
 public class Launcher extends FragmentActivity implements BatteryController.BatteryStateChangeCallback,
@@ -78,6 +96,9 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
 
     private static final int LOADER_ID = 0x10;
 
+    private static final String TRACE_TIME_TO_DIAL = "launcher:timeToDial";
+    private static final String TRACE_TIME_TO_INTERACTIVE = "launcher:timeToInteractive";
+
     private GestureView mGestureView;
     DialBaseLayout mLowDialBaseLayout;
     View mSimBindLayout;
@@ -85,12 +106,20 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
     private MyViewPager mViewpager;
     private ViewPagerAdpater mViewPagerAdpater;
     private List<View> mViewList = new ArrayList<View>();
+    // 负一屏和应用列表延后 inflate，未 inflate 前为 null，只有外面的容器
+    private PageContainer mNegativeContainer;
+    private PageContainer mAppContainer;
     private NegativeScreen mNegativeView;
     private DaialParentLayout mDaialView;
     private WatchAppGridView mAppView;
     private WatchDials mWatchDials;
     int mTouchSlopSquare;
     int mViewPagerScrollState = ViewPager.SCROLL_STATE_IDLE;
+    private final PageFrameMonitor mFrameMonitor = new PageFrameMonitor();
+    private long mStartupTime;
+    private long mTimeToDial = -1;
+    private long mTimeToInteractive = -1;
+    private boolean mAppsLoaded;
     private int mWatchType;
     private Toast mToast;
 
@@ -114,6 +143,9 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mStartupTime = SystemClock.uptimeMillis();
+        Trace.asyncTraceBegin(Trace.TRACE_TAG_VIEW, TRACE_TIME_TO_DIAL, 0);
+        Trace.asyncTraceBegin(Trace.TRACE_TAG_VIEW, TRACE_TIME_TO_INTERACTIVE, 0);
         setContentView(R.layout.activity_launcher);
         //screen width:240、height:240,density:0.75,densityDpi:120
 
@@ -130,7 +162,7 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
         mBatteryController = new BatteryController(this);
         mBatteryController.addStateChangedCallback(this);
 
-        mWatchController = mApplication.getWatchController();
+        mWatchController = mApplication.acquireWatchController(this);
         mWatchController.addClassDisableChangedCallback(this);
 
         mSimBindController = new SimBindController(this);
@@ -138,28 +170,10 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
 
         mGestureView = (GestureView) findViewById(R.id.content_container);
         mGestureView.setGestureListener(this);
-        mLowDialBaseLayout = (DialBaseLayout) findViewById(R.id.low);
-        mLowDialBaseLayout.setOnTouchListener(new View.OnTouchListener() {
-            @Override
-            public boolean onTouch(View v, MotionEvent event) {
-                if (event.getAction() == MotionEvent.ACTION_DOWN) {
-                    if (mToast == null) {
-                        mToast = Toast.makeText(Launcher.this, R.string.notice_low_power_for_phone, Toast.LENGTH_SHORT);
-                        mToast.setGravity(Gravity.CENTER, 0, 0);
-                        TextView textView = (TextView) mToast.getView().findViewById(android.R.id.message);
-                        textView.setTextSize(TypedValue.COMPLEX_UNIT_SP, 22);
-                    }
-                    mToast.setText(R.string.notice_low_power_for_phone);
-                    mToast.show();
-                }
-                return true;
-            }
-        });
+        // 低电量表盘和 SIM 卡绑定界面是 ViewStub，用到时才 inflate
 
-        mSimBindLayout = findViewById(R.id.sim_bind);
-        mSimBindLayout.setVisibility(View.GONE);
-
-        mNegativeView = (NegativeScreen) mInflater.inflate(R.layout.negative_screen, null);
+        // 首帧只画表盘：负一屏和应用列表先放空容器，首帧之后空闲时或滑向它们时再填内容
+        mNegativeContainer = new PageContainer(this);
 
         mDaialView = (DaialParentLayout) mInflater.inflate(R.layout.watch_dial_layout, null);
         mDaialView.removeAllViews();
@@ -168,48 +182,59 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
         childDaialView.onResume();
         childDaialView.setButtonEnable();
         mDaialView.addView(childDaialView);
-        mAppView = (WatchAppGridView) mInflater.inflate(R.layout.watch_app_gridview, null);
-        mAppView.setOnClickItemListener(this);
+        mAppContainer = new PageContainer(this);
         mViewList.clear();
-        mViewList.add(mNegativeView);
+        mViewList.add(mNegativeContainer);
         mViewList.add(mDaialView);
-        mViewList.add(mAppView);
-        loadApps(false);
+        mViewList.add(mAppContainer);
         mViewpager = (MyViewPager) findViewById(R.id.viewpager);
         mViewpager.addOnPageChangeListener(new ViewPager.OnPageChangeListener() {
             @Override
             public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
-
+                // 空闲时还没来得及 inflate 就开始滑了，马上补上要露出来的那一页
+                if (position < 1) {
+                    ensureNegativeScreen();
+                } else if (positionOffset > 0) {
+                    ensureAppGrid();
+                }
             }
 
             @Override
             public void onPageSelected(int position) {
                 if (position == 1) {
-                    mAppView.moveToTop();
-                    mNegativeView.moveToTop();
+                    if (mAppView != null) {
+                        mAppView.moveToTop();
+                    }
+                    if (mNegativeView != null) {
+                        mNegativeView.moveToTop();
+                    }
                 }
                 if (bIsClassDisable && position == 2) {
                     mHandler.removeMessages(0x10);
                     mHandler.sendEmptyMessageDelayed(0x10, 1000 * 2);
                 }
 
-                // add by divhee start
-                if (mViewPagerAdpater != null) {
-                    mViewPagerAdpater.setNowPagerNumber(position);
-                }
-                // add by divhee end
+                mFrameMonitor.setPage(position);
             }
 
             @Override
             public void onPageScrollStateChanged(int state) {
                 mViewPagerScrollState = state;
+                mFrameMonitor.setPagerScrolling(state != ViewPager.SCROLL_STATE_IDLE);
             }
         });
         mViewPagerAdpater = new ViewPagerAdpater(mViewList);
         mViewpager.setAdapter(mViewPagerAdpater);
         mViewpager.setOffscreenPageLimit(3);
         mViewpager.setCurrentItem(1);
-        OverScrollDecoratorHelper.setUpOverScroll(mViewpager);
+        IOverScrollDecor overScrollDecor = OverScrollDecoratorHelper.setUpOverScroll(mViewpager);
+        overScrollDecor.setOverScrollStateListener(new IOverScrollStateListener() {
+            @Override
+            public void onOverScrollStateChange(IOverScrollDecor decor, int oldState, int newState) {
+                mViewpager.setOverScrolling(newState != IOverScrollState.STATE_IDLE);
+                mFrameMonitor.setOverScrolling(newState != IOverScrollState.STATE_IDLE);
+            }
+        });
         mWatchController.setScreenOffListener(this);
         //startPowerAnimService();
         //Utils.setFirstBoot(Launcher.this,true);
@@ -217,16 +242,127 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
             InstructionsDialog.showInstructionsDialog(Launcher.this);
         }
 
-        Settings.Global.putInt(getContentResolver(), Settings.Global.DEVICE_PROVISIONED, 1);
-        System.out.println("-----------  Provision USER_SETUP_COMPLETE");
-        Settings.Secure.putInt(getContentResolver(), Settings.Secure.USER_SETUP_COMPLETE, 1);
+        mGestureView.getViewTreeObserver().addOnPreDrawListener(mFirstDrawListener);
+
+        // 写 settings 要跨进程，不占用首帧前的主线程
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                Settings.Global.putInt(getContentResolver(), Settings.Global.DEVICE_PROVISIONED, 1);
+                Log.d(TAG, "Provision USER_SETUP_COMPLETE");
+                Settings.Secure.putInt(getContentResolver(), Settings.Secure.USER_SETUP_COMPLETE, 1);
+            }
+        });
+    }
+
+    private final ViewTreeObserver.OnPreDrawListener mFirstDrawListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            mGestureView.getViewTreeObserver().removeOnPreDrawListener(this);
+            // 消息在这一帧画完之后才执行
+            mGestureView.post(mDialDrawnRunnable);
+            return true;
+        }
+    };
+
+    private final Runnable mDialDrawnRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mTimeToDial = SystemClock.uptimeMillis() - mStartupTime;
+            Trace.asyncTraceEnd(Trace.TRACE_TAG_VIEW, TRACE_TIME_TO_DIAL, 0);
+            Log.i(TAG, "startup: dial drawn in " + mTimeToDial + "ms");
+            Looper.myQueue().addIdleHandler(mDeferredInflater);
+        }
+    };
+
+    /**
+     * 首帧之后利用主线程空闲分步 inflate 剩下的页面，每次空闲只做一页。
+     */
+    private final MessageQueue.IdleHandler mDeferredInflater = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            if (mAppView == null) {
+                ensureAppGrid();
+                return true;
+            }
+            ensureNegativeScreen();
+            return false;
+        }
+    };
+
+    private void ensureNegativeScreen() {
+        if (mNegativeView != null) {
+            return;
+        }
+        mNegativeView = (NegativeScreen) mInflater.inflate(R.layout.negative_screen, mNegativeContainer, false);
+        mNegativeContainer.addView(mNegativeView);
+        checkInteractive();
+    }
+
+    private void ensureAppGrid() {
+        if (mAppView != null) {
+            return;
+        }
+        mAppView = (WatchAppGridView) mInflater.inflate(R.layout.watch_app_gridview, mAppContainer, false);
+        mAppView.setOnClickItemListener(this);
+        mAppContainer.addView(mAppView);
+        loadApps(false);
+    }
+
+    /**
+     * 三个页面都有内容、应用列表也加载过一次之后才算启动完成。
+     */
+    private void checkInteractive() {
+        if (mTimeToInteractive >= 0 || mNegativeView == null || mAppView == null || !mAppsLoaded) {
+            return;
+        }
+        mTimeToInteractive = SystemClock.uptimeMillis() - mStartupTime;
+        Trace.asyncTraceEnd(Trace.TRACE_TAG_VIEW, TRACE_TIME_TO_INTERACTIVE, 0);
+        Log.i(TAG, "startup: interactive in " + mTimeToInteractive + "ms");
+    }
+
+    private DialBaseLayout ensureLowDialLayout() {
+        if (mLowDialBaseLayout != null) {
+            return mLowDialBaseLayout;
+        }
+        mLowDialBaseLayout = (DialBaseLayout) ((ViewStub) findViewById(R.id.low_stub)).inflate();
+        mLowDialBaseLayout.setOnTouchListener(new View.OnTouchListener() {
+            @Override
+            public boolean onTouch(View v, MotionEvent event) {
+                if (event.getAction() == MotionEvent.ACTION_DOWN) {
+                    if (mToast == null) {
+                        mToast = Toast.makeText(Launcher.this, R.string.notice_low_power_for_phone, Toast.LENGTH_SHORT);
+                        mToast.setGravity(Gravity.CENTER, 0, 0);
+                        TextView textView = (TextView) mToast.getView().findViewById(android.R.id.message);
+                        textView.setTextSize(TypedValue.COMPLEX_UNIT_SP, 22);
+                    }
+                    mToast.setText(R.string.notice_low_power_for_phone);
+                    mToast.show();
+                }
+                return true;
+            }
+        });
+        return mLowDialBaseLayout;
+    }
+
+    private View ensureSimBindLayout() {
+        if (mSimBindLayout == null) {
+            mSimBindLayout = ((ViewStub) findViewById(R.id.sim_bind_stub)).inflate();
+        }
+        return mSimBindLayout;
+    }
+
+    private boolean isSimBindShowing() {
+        return mSimBindLayout != null && mSimBindLayout.getVisibility() == View.VISIBLE;
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        Looper.myQueue().removeIdleHandler(mDeferredInflater);
         ClassDisableDialog.recycle();
         mWatchController.removeClassDisableChangedCallback(this);
+        mApplication.releaseWatchController(this);
         mBatteryController.unregisterReceiver();
         mBatteryController.removeStateChangedCallback(this);
         mSimBindController.unregisterReceiver();
@@ -239,25 +375,53 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
         bIsTouchable = false;
         closeDials(false);
         dialPasue();
+        mFrameMonitor.stop();
+        LauncherSettingsStore.getInstance(this).flush();
     }
 
     @Override
     protected void onResume() {
         super.onResume();
 
-        loadApps(true);
-
-        // add by divhee start
-        if (mViewpager != null && mViewpager.getAdapter() != null) {
-            mViewpager.getAdapter().notifyDataSetChanged();
+        // 应用列表还没 inflate 时由 ensureAppGrid 去加载
+        if (mAppView != null) {
+            loadApps(true);
         }
-        // add by divhee end
 
         bIsTouchable = true;
         LauncherApplication.setTouchEnable(true);
         //requestPermissions(sPermissions);
         forceUpdateDate();
         dialResume();
+        mFrameMonitor.setPage(mViewpager.getCurrentItem());
+        mFrameMonitor.start(getWindow().getDecorView(),
+                getWindowManager().getDefaultDisplay().getRefreshRate());
+    }
+
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.println("Launcher startup:");
+        writer.print("  timeToDialMs="); writer.println(mTimeToDial);
+        writer.print("  timeToInteractiveMs="); writer.println(mTimeToInteractive);
+        writer.print("  negativeInflated="); writer.print(mNegativeView != null);
+        writer.print(" appsInflated="); writer.print(mAppView != null);
+        writer.print(" appsLoaded="); writer.println(mAppsLoaded);
+        writer.println("Launcher pages:");
+        writer.print("  instantiated="); writer.print(mViewPagerAdpater.getInstantiateCount());
+        writer.print(" destroyed="); writer.println(mViewPagerAdpater.getDestroyCount());
+        mNegativeContainer.getLayoutPasses().dump(writer, "negative");
+        mDaialView.getLayoutPasses().dump(writer, "dial");
+        mAppContainer.getLayoutPasses().dump(writer, "apps");
+        mFrameMonitor.dump(writer);
+        InputLatencyTracer.getInstance().dump(writer);
+        LauncherSettingsStore.getInstance(this).dump(writer);
+        WeatherStore.getInstance(this).dump(writer);
+        final LocationControllerImpl location = mApplication.peekLocationControllerImpl();
+        if (location != null) {
+            location.dump(writer);
+        }
+        ASViewGroupUtil.dump(writer);
     }
 
     @Override
@@ -329,13 +493,14 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
 
     @Override
     public void onBatteryLevelChanged(int level, boolean pluggedIn, boolean charging) {
-        if (mGestureView == null || mLowDialBaseLayout == null) return;
+        if (mGestureView == null) return;
         if (mBatteryLevel == -1 || mBatteryLevel != level) {
             mBatteryLevel = level;
             ReadboyWearManager rwm = (ReadboyWearManager) Launcher.this.getSystemService(Context.RBW_SERVICE);
             PowerManager mPowerManager = (PowerManager) Launcher.this.getSystemService(Context.POWER_SERVICE);
             if (mBatteryLevel < lowPowerLevel) {//low powe
                 mGestureView.setVisibility(View.INVISIBLE);
+                ensureLowDialLayout();
                 mLowDialBaseLayout.setVisibility(View.VISIBLE);
                 mLowDialBaseLayout.addChangedCallback();
                 mLowDialBaseLayout.onResume();
@@ -349,7 +514,9 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
                 }
             } else {
                 mGestureView.setVisibility(View.VISIBLE);
-                mLowDialBaseLayout.setVisibility(View.GONE);
+                if (mLowDialBaseLayout != null) {
+                    mLowDialBaseLayout.setVisibility(View.GONE);
+                }
                 rwm.setLowPowerMode(false);
                 if (mPowerManager.isPowerSaveMode()) {
                     mPowerManager.setPowerSaveMode(false);
@@ -494,9 +661,10 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
     @Override
     public void onBindStart(String sim) {
         Log.d("cwj", "onBindStart");
-        if (mGestureView == null || mLowDialBaseLayout == null || mSimBindLayout == null) return;
+        if (mGestureView == null) return;
         if (sim == null) return;
         this.sim = sim;
+        ensureSimBindLayout();
         mSimBindLayout.setVisibility(View.VISIBLE);
         mSimBindLayout.setOnClickListener(mSimBindOnClickListener);
         if (!isHome(Launcher.this)) {
@@ -527,8 +695,9 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
     @Override
     public void onDriverStatusChanged(boolean enable, String reason) {
         Log.d("cwj", "onDriverStatusChanged enable=" + enable);
-        if (mSimBindLayout == null) return;
+        if (mGestureView == null) return;
         if (!enable) {
+            ensureSimBindLayout();
             mSimBindLayout.setVisibility(View.VISIBLE);
             mSimBindLayout.setOnClickListener(mSimBindOnClickListener);
             if (!isHome(Launcher.this)) {
@@ -556,7 +725,7 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
             btn_shutdown.setBackgroundResource(R.drawable.btn_sim_bind_shutdown_single);
             btn_bind.setVisibility(View.GONE);
             btn_bind.setOnClickListener(null);
-        } else {
+        } else if (mSimBindLayout != null) {
             mSimBindLayout.setVisibility(View.GONE);
         }
     }
@@ -569,7 +738,7 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
 
     @Override
     public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
-        if (mSimBindLayout.getVisibility() == View.VISIBLE) {
+        if (isSimBindShowing()) {
             return false;
         }
         if (WatchDials.getWatchDialsStatus() == WatchDials.ANIMATE_STATE_OPENING ||
@@ -618,7 +787,7 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
 
     @Override
     public boolean onSingleTapConfirmed(MotionEvent e) {
-        if (mSimBindLayout.getVisibility() == View.VISIBLE) {
+        if (isSimBindShowing()) {
             return false;
         }
         if (WatchDials.getWatchDialsStatus() == WatchDials.ANIMATE_STATE_OPENING ||
@@ -633,7 +802,7 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
 
     @Override
     public void onLongPress(MotionEvent e) {
-        if (mSimBindLayout.getVisibility() == View.VISIBLE) {
+        if (isSimBindShowing()) {
             return;
         }
         if (WatchDials.getWatchDialsStatus() == WatchDials.ANIMATE_STATE_OPENING ||
@@ -663,8 +832,10 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
 
     @Override
     public void onLoadFinished(Loader<ArrayList<AppInfo>> loader, ArrayList<AppInfo> appInfos) {
-        if (loader.getId() == LOADER_ID) {
+        if (loader.getId() == LOADER_ID && mAppView != null) {
             mAppView.refreshData(appInfos);
+            mAppsLoaded = true;
+            checkInteractive();
         }
     }
 
@@ -681,11 +852,14 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
         }
     }
 
-    class ViewPagerAdpater extends PagerAdapter {
+    /**
+     * 三个页面（负一屏、表盘、应用列表）各自是一个固定的容器，位置不变，
+     * 页面内容变化只在容器内部替换，不让 ViewPager 销毁重建页面。
+     */
+    static class ViewPagerAdpater extends PagerAdapter {
         public List<View> mViewList;
-        // add by divhee start
-        private int nowPagerNumber = -1;
-        // add by divhee end
+        private int mInstantiateCount;
+        private int mDestroyCount;
 
         public ViewPagerAdpater(List<View> viewList) {
             this.mViewList = viewList;
@@ -708,46 +882,32 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
 
         @Override
         public void destroyItem(ViewGroup container, int position, Object object) {
-            if (position >= 0 && position < mViewList.size()) {
-                container.removeView(mViewList.get(position));
-            }
+            mDestroyCount++;
+            container.removeView((View) object);
         }
 
         @Override
         public Object instantiateItem(ViewGroup container, int position) {
-            // TODO Auto-generated method stub
-            container.addView(mViewList.get(position));
-            // add by divhee start
-            mViewList.get(position).setTag(R.id.launcher_viewpager_pager_postion_id, position);
-            // add by divhee end
-            return mViewList.get(position);
+            mInstantiateCount++;
+            View view = mViewList.get(position);
+            container.addView(view);
+            return view;
         }
 
-        // add by divhee start
         @Override
         public int getItemPosition(Object object) {
-            if (object != null && object instanceof View) {
-                try {
-                    int objPagerIdx = (Integer) ((View) object).getTag(R.id.launcher_viewpager_pager_postion_id);
-                    if (nowPagerNumber == objPagerIdx) {
-                        return POSITION_NONE;
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-            return super.getItemPosition(object);
+            // 页面还在就保持原位，不在列表里的才需要销毁
+            int index = mViewList.indexOf(object);
+            return index >= 0 ? index : POSITION_NONE;
         }
 
-        public void setNowPagerNumber(int pagerNumber) {
-            nowPagerNumber = pagerNumber;
-            //Log.e("", "====divhee==setNowPagerNumber=="+nowPagerNumber);
+        public int getInstantiateCount() {
+            return mInstantiateCount;
         }
 
-        public int getNowPagerNumber() {
-            return nowPagerNumber;
+        public int getDestroyCount() {
+            return mDestroyCount;
         }
-        // add by divhee end
     }
 
     public Handler mHandler = new Handler() {
@@ -915,8 +1075,8 @@ public class Launcher extends FragmentActivity implements BatteryController.Batt
         childDaialView.addChangedCallback();
         childDaialView.onResume();
         childDaialView.setButtonEnable();
+        // 只替换表盘容器里的内容，requestLayout 只会让这一页重新 measure/layout
         mDaialView.addView(childDaialView);
-        mViewPagerAdpater.setData(mViewList);
         dialResume();
     }
 
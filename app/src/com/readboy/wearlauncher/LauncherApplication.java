@@ -24,6 +24,8 @@ import com.readboy.wearlauncher.Location.LocationControllerImpl;
 import com.readboy.wearlauncher.alarm.AlarmController;
 import com.readboy.wearlauncher.bluetooth.BluetoothController;
 import com.readboy.wearlauncher.net.NetworkController;
+import com.readboy.wearlauncher.utils.BlurEngine;
+import com.readboy.wearlauncher.utils.ControllerLifecycle;
 import com.readboy.wearlauncher.utils.WatchController;
 import com.readboy.wearlauncher.view.IconCache;
 
@@ -35,12 +37,42 @@ public class LauncherApplication extends Application {
     private static boolean bIsTouchEnable = true;
     private static long mSetTouchEnableTime = 0;
 
-	private NetworkController mNetworkController;
-	private BluetoothController mBluetoothController;
-	private AlarmController mAlarmController;
-    private LocationControllerImpl mLocationControllerImpl;
-
-    private WatchController mWatchController;
+    // 状态控制器按需创建，有订阅者时才注册广播/监听
+    private final ControllerLifecycle<NetworkController> mNetworkController =
+            new ControllerLifecycle<NetworkController>() {
+                @Override
+                protected NetworkController create() {
+                    return new NetworkController(LauncherApplication.this);
+                }
+            };
+    private final ControllerLifecycle<BluetoothController> mBluetoothController =
+            new ControllerLifecycle<BluetoothController>() {
+                @Override
+                protected BluetoothController create() {
+                    return new BluetoothController(LauncherApplication.this);
+                }
+            };
+    private final ControllerLifecycle<AlarmController> mAlarmController =
+            new ControllerLifecycle<AlarmController>() {
+                @Override
+                protected AlarmController create() {
+                    return new AlarmController(LauncherApplication.this);
+                }
+            };
+    private final ControllerLifecycle<LocationControllerImpl> mLocationControllerImpl =
+            new ControllerLifecycle<LocationControllerImpl>() {
+                @Override
+                protected LocationControllerImpl create() {
+                    return new LocationControllerImpl(LauncherApplication.this);
+                }
+            };
+    private final ControllerLifecycle<WatchController> mWatchController =
+            new ControllerLifecycle<WatchController>() {
+                @Override
+                protected WatchController create() {
+                    return new WatchController(LauncherApplication.this);
+                }
+            };
 
     static LauncherApplication mApplication;
 
@@ -50,15 +82,14 @@ public class LauncherApplication extends Application {
         mApplication = this;
 
         mIconCache = new IconCache(this);
+    }
 
-        mNetworkController = new NetworkController(this);
-        mBluetoothController = new BluetoothController(this);
-        mBluetoothController.resume();
-        mAlarmController = new AlarmController(this);
-        mAlarmController.resume();
-        mLocationControllerImpl = new LocationControllerImpl(this);
-
-        mWatchController = new WatchController(this);
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // 进程随时可能被杀，没落盘的设置马上写
+        LauncherSettingsStore.getInstance(this).flush();
+        BlurEngine.trimMemory(level);
     }
 
     /**
@@ -68,10 +99,11 @@ public class LauncherApplication extends Application {
     public void onTerminate() {
         super.onTerminate();
 
-        mNetworkController.unregisterReceiver();
-        mLocationControllerImpl.unregisterReceiver();
-        mBluetoothController.pause();
-        mAlarmController.pause();
+        mNetworkController.shutdown();
+        mLocationControllerImpl.shutdown();
+        mBluetoothController.shutdown();
+        mAlarmController.shutdown();
+        mWatchController.shutdown();
     }
 
     public static Application getApplication(){
@@ -91,22 +123,67 @@ public class LauncherApplication extends Application {
     }
     
     public NetworkController getNetworkController(){
-    	return mNetworkController;
+    	return mNetworkController.get();
+    }
+
+    public NetworkController acquireNetworkController(Object subscriber){
+        return mNetworkController.acquire(subscriber);
+    }
+
+    public void releaseNetworkController(Object subscriber){
+        mNetworkController.release(subscriber);
     }
 
     public WatchController getWatchController(){
-        return mWatchController;
+        return mWatchController.get();
+    }
+
+    public WatchController acquireWatchController(Object subscriber){
+        return mWatchController.acquire(subscriber);
+    }
+
+    public void releaseWatchController(Object subscriber){
+        mWatchController.release(subscriber);
     }
     
     public BluetoothController getBluetoothController(){
-    	return mBluetoothController;
+    	return mBluetoothController.get();
+    }
+
+    public BluetoothController acquireBluetoothController(Object subscriber){
+        return mBluetoothController.acquire(subscriber);
+    }
+
+    public void releaseBluetoothController(Object subscriber){
+        mBluetoothController.release(subscriber);
     }
     
     public AlarmController getAlarmController(){
-    	return mAlarmController;
+    	return mAlarmController.get();
+    }
+
+    public AlarmController acquireAlarmController(Object subscriber){
+        return mAlarmController.acquire(subscriber);
+    }
+
+    public void releaseAlarmController(Object subscriber){
+        mAlarmController.release(subscriber);
     }
 
     public LocationControllerImpl getLocationControllerImpl(){
-        return mLocationControllerImpl;
+        return mLocationControllerImpl.get();
+    }
+
+    /** The location controller if something already created it, otherwise null. */
+    public LocationControllerImpl peekLocationControllerImpl(){
+        return mLocationControllerImpl.peek();
+    }
+
+    public LocationControllerImpl acquireLocationControllerImpl(Object subscriber){
+        return mLocationControllerImpl.acquire(subscriber);
+    }
+
+    public void releaseLocationControllerImpl(Object subscriber){
+        mLocationControllerImpl.release(subscriber);
     }
 }
@@ -17,18 +17,30 @@
 package com.readboy.wearlauncher;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.support.annotation.VisibleForTesting;
 import android.text.TextUtils;
+import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.Log;
 
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 public class LauncherProvider extends ContentProvider {
     private static final String TAG = "Launcher.LauncherProvider";
@@ -36,7 +48,7 @@ public class LauncherProvider extends ContentProvider {
 
     private static final String DATABASE_NAME = "launcher.db";
 
-    private static final int DATABASE_VERSION = 12;
+    private static final int DATABASE_VERSION = 13;
 
     static final String AUTHORITY = "com.readboy.wearlauncher.settings";
 
@@ -46,8 +58,22 @@ public class LauncherProvider extends ContentProvider {
     static final String PARAMETER_NOTIFY = "notify";
 
 
+    /** Compiled INSERT/UPDATE statements kept per column set. */
+    private static final int STATEMENT_CACHE_SIZE = 16;
+
     private DatabaseHelper mOpenHelper;
 
+    // 写入串行执行：编译好的语句不能在多个线程上同时使用
+    private final Object mWriteLock = new Object();
+    private final ArrayMap<String, SQLiteStatement> mStatements = new ArrayMap<String, SQLiteStatement>();
+    // applyBatch 期间把通知攒到批结束时一起发
+    private final ThreadLocal<ArraySet<String>> mBatchNotify = new ThreadLocal<ArraySet<String>>();
+    private int mBatchCount;
+    private int mBatchOperationCount;
+    private int mNotifyCount;
+    // 提交的写事务数：applyBatch/bulkInsert 各算一次，单条写入各算一次
+    private int mTransactionCount;
+
     @Override
     public boolean onCreate() {
         mOpenHelper = new DatabaseHelper(getContext());
@@ -72,19 +98,103 @@ public class LauncherProvider extends ContentProvider {
         SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
         qb.setTables(args.table);
 
-        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        // WAL 模式下读不会被写阻塞
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
         Cursor result = qb.query(db, projection, args.where, args.args, null, null, sortOrder);
         result.setNotificationUri(getContext().getContentResolver(), uri);
 
         return result;
     }
 
-    private static long dbInsertAndCheck(DatabaseHelper helper,
-            SQLiteDatabase db, String table, String nullColumnHack, ContentValues values) {
+    private long dbInsertAndCheck(SQLiteDatabase db, String table, ContentValues values) {
 //        if (!values.containsKey(LauncherSettings.MainApp._ID)) {
 //            throw new RuntimeException("Error: attempting to add item without specifying an id");
 //        }
-        return db.insert(table, nullColumnHack, values);
+        if (values == null || values.size() == 0) {
+            return db.insert(table, null, values);
+        }
+        final String[] columns = sortedColumns(values);
+        try {
+            final SQLiteStatement statement = getStatement(db, false, table, columns);
+            bindValues(statement, values, columns);
+            return statement.executeInsert();
+        } catch (SQLException e) {
+            Log.e(TAG, "Error inserting " + values, e);
+            return -1;
+        }
+    }
+
+    private int dbUpdateId(SQLiteDatabase db, String table, long id, ContentValues values) {
+        final String[] columns = sortedColumns(values);
+        final SQLiteStatement statement = getStatement(db, true, table, columns);
+        bindValues(statement, values, columns);
+        statement.bindLong(columns.length + 1, id);
+        return statement.executeUpdateDelete();
+    }
+
+    private static String[] sortedColumns(ContentValues values) {
+        final String[] columns = values.keySet().toArray(new String[values.size()]);
+        Arrays.sort(columns);
+        return columns;
+    }
+
+    private SQLiteStatement getStatement(SQLiteDatabase db, boolean update, String table,
+            String[] columns) {
+        final String key = (update ? "U:" : "I:") + table + ":" + TextUtils.join(",", columns);
+        SQLiteStatement statement = mStatements.get(key);
+        if (statement != null) {
+            return statement;
+        }
+        final StringBuilder sql = new StringBuilder(128);
+        if (update) {
+            sql.append("UPDATE ").append(table).append(" SET ");
+            for (int i = 0; i < columns.length; i++) {
+                sql.append(i > 0 ? "," : "").append(columns[i]).append("=?");
+            }
+            sql.append(" WHERE _id=?");
+        } else {
+            sql.append("INSERT INTO ").append(table).append(" (");
+            sql.append(TextUtils.join(",", columns)).append(") VALUES (");
+            for (int i = 0; i < columns.length; i++) {
+                sql.append(i > 0 ? ",?" : "?");
+            }
+            sql.append(')');
+        }
+        statement = db.compileStatement(sql.toString());
+        if (mStatements.size() >= STATEMENT_CACHE_SIZE) {
+            closeStatements();
+        }
+        mStatements.put(key, statement);
+        return statement;
+    }
+
+    private void closeStatements() {
+        for (int i = 0; i < mStatements.size(); i++) {
+            mStatements.valueAt(i).close();
+        }
+        mStatements.clear();
+    }
+
+    private static void bindValues(SQLiteStatement statement, ContentValues values, String[] columns) {
+        statement.clearBindings();
+        for (int i = 0; i < columns.length; i++) {
+            final Object value = values.get(columns[i]);
+            final int index = i + 1;
+            if (value == null) {
+                statement.bindNull(index);
+            } else if (value instanceof Long || value instanceof Integer
+                    || value instanceof Short || value instanceof Byte) {
+                statement.bindLong(index, ((Number) value).longValue());
+            } else if (value instanceof Boolean) {
+                statement.bindLong(index, (Boolean) value ? 1 : 0);
+            } else if (value instanceof Float || value instanceof Double) {
+                statement.bindDouble(index, ((Number) value).doubleValue());
+            } else if (value instanceof byte[]) {
+                statement.bindBlob(index, (byte[]) value);
+            } else {
+                statement.bindString(index, value.toString());
+            }
+        }
     }
 
     private static void deleteId(SQLiteDatabase db, long id) {
@@ -97,8 +207,12 @@ public class LauncherProvider extends ContentProvider {
     public Uri insert(Uri uri, ContentValues initialValues) {
         SqlArguments args = new SqlArguments(uri);
 
-        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-        final long rowId = dbInsertAndCheck(mOpenHelper, db, args.table, null, initialValues);
+        final long rowId;
+        synchronized (mWriteLock) {
+            SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+            rowId = dbInsertAndCheck(db, args.table, initialValues);
+            countTransactionLocked();
+        }
         if (rowId <= 0) return null;
 
         uri = ContentUris.withAppendedId(uri, rowId);
@@ -111,30 +225,72 @@ public class LauncherProvider extends ContentProvider {
     public int bulkInsert(Uri uri, ContentValues[] values) {
         SqlArguments args = new SqlArguments(uri);
 
-        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-        db.beginTransaction();
-        try {
-            int numValues = values.length;
-            for (int i = 0; i < numValues; i++) {
-                if (dbInsertAndCheck(mOpenHelper, db, args.table, null, values[i]) < 0) {
-                    return 0;
+        synchronized (mWriteLock) {
+            SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                int numValues = values.length;
+                for (int i = 0; i < numValues; i++) {
+                    if (dbInsertAndCheck(db, args.table, values[i]) < 0) {
+                        return 0;
+                    }
                 }
+                db.setTransactionSuccessful();
+                mTransactionCount++;
+            } finally {
+                db.endTransaction();
             }
-            db.setTransactionSuccessful();
-        } finally {
-            db.endTransaction();
         }
 
         sendNotify(uri);
         return values.length;
     }
 
+    /**
+     * Runs all operations in one transaction and sends one change notification
+     * per table once it has committed. If any operation fails nothing is
+     * written and nothing is notified.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final ArraySet<String> notifyTables = new ArraySet<String>();
+        ContentProviderResult[] results;
+        mBatchNotify.set(notifyTables);
+        try {
+            synchronized (mWriteLock) {
+                SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+                db.beginTransaction();
+                try {
+                    results = super.applyBatch(operations);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                mBatchCount++;
+                mBatchOperationCount += operations.size();
+                mTransactionCount++;
+            }
+        } finally {
+            mBatchNotify.remove();
+        }
+
+        for (int i = 0; i < notifyTables.size(); i++) {
+            notifyChange(Uri.parse("content://" + AUTHORITY + "/" + notifyTables.valueAt(i)));
+        }
+        return results;
+    }
+
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
         SqlArguments args = new SqlArguments(uri, selection, selectionArgs);
 
-        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-        int count = db.delete(args.table, args.where, args.args);
+        final int count;
+        synchronized (mWriteLock) {
+            SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+            count = db.delete(args.table, args.where, args.args);
+            countTransactionLocked();
+        }
         if (count > 0) sendNotify(uri);
 
         return count;
@@ -144,8 +300,17 @@ public class LauncherProvider extends ContentProvider {
     public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
         SqlArguments args = new SqlArguments(uri, selection, selectionArgs);
 
-        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-        int count = db.update(args.table, values, args.where, args.args);
+        final int count;
+        synchronized (mWriteLock) {
+            SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+            if (args.id >= 0 && values != null && values.size() > 0) {
+                // 按 id 更新是最常见的写法（如调整顺序），走编译好的语句
+                count = dbUpdateId(db, args.table, args.id, values);
+            } else {
+                count = db.update(args.table, values, args.where, args.args);
+            }
+            countTransactionLocked();
+        }
         if (count > 0) sendNotify(uri);
 
         return count;
@@ -154,19 +319,64 @@ public class LauncherProvider extends ContentProvider {
     private void sendNotify(Uri uri) {
         String notify = uri.getQueryParameter(PARAMETER_NOTIFY);
         if (notify == null || "true".equals(notify)) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            final ArraySet<String> batch = mBatchNotify.get();
+            if (batch != null) {
+                batch.add(uri.getPathSegments().get(0));
+                return;
+            }
+            notifyChange(uri);
+        }
+    }
+
+    /** A single write outside applyBatch commits on its own. */
+    private void countTransactionLocked() {
+        if (mBatchNotify.get() == null) {
+            mTransactionCount++;
+        }
+    }
+
+    @VisibleForTesting
+    int getTransactionCount() {
+        synchronized (mWriteLock) {
+            return mTransactionCount;
+        }
+    }
+
+    private void notifyChange(Uri uri) {
+        synchronized (mWriteLock) {
+            mNotifyCount++;
+        }
+        getContext().getContentResolver().notifyChange(uri, null);
+    }
+
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        pw.println("LauncherProvider state:");
+        synchronized (mWriteLock) {
+            pw.print("  batches="); pw.print(mBatchCount);
+            pw.print(" operations="); pw.println(mBatchOperationCount);
+            pw.print("  transactions="); pw.print(mTransactionCount);
+            pw.print(" notifications="); pw.println(mNotifyCount);
+            pw.print("  compiledStatements="); pw.println(mStatements.size());
+        }
+        final MainAppModel model = MainAppModel.peekInstance();
+        if (model != null) {
+            model.dump(pw);
         }
     }
 
     public void deleteDatabase() {
         // Are you sure? (y/n)
-        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-        final File dbFile = new File(db.getPath());
-        mOpenHelper.close();
-        if (dbFile.exists()) {
-            SQLiteDatabase.deleteDatabase(dbFile);
+        synchronized (mWriteLock) {
+            final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+            final File dbFile = new File(db.getPath());
+            closeStatements();
+            mOpenHelper.close();
+            if (dbFile.exists()) {
+                SQLiteDatabase.deleteDatabase(dbFile);
+            }
+            mOpenHelper = new DatabaseHelper(getContext());
         }
-        mOpenHelper = new DatabaseHelper(getContext());
     }
 
     private static class DatabaseHelper extends SQLiteOpenHelper {
@@ -185,14 +395,26 @@ public class LauncherProvider extends ContentProvider {
             }
         }
 
+        @Override
+        public void onConfigure(SQLiteDatabase db) {
+            // 读写并发：查询不用等正在进行的写事务
+            db.enableWriteAheadLogging();
+        }
+
         @Override
         public void onCreate(SQLiteDatabase db) {
             if (LOGD) Log.d(TAG, "creating new launcher database");
 
             mMaxId = 1;
 
-            db.execSQL("CREATE TABLE mainapp (" +
-                    "_id INTEGER AUTO_INCREMENT PRIMARY KEY," +
+            createMainAppTable(db, TABLE_MAINAPP);
+            createIndexes(db);
+        }
+
+        // "INTEGER AUTO_INCREMENT" 不是 rowid 的别名，_id 一直是 NULL，按 id 读写都落空
+        private static void createMainAppTable(SQLiteDatabase db, String name) {
+            db.execSQL("CREATE TABLE " + name + " (" +
+                    "_id INTEGER PRIMARY KEY," +
                     "title TEXT," +
                     "intent TEXT," +
                     "itemType INTEGER," +
@@ -200,13 +422,32 @@ public class LauncherProvider extends ContentProvider {
                     "iconType INTEGER," +
                     "iconResource INTEGER," +
                     "icon BLOB," +
-                    "uri TEXT" +
+                    "uri TEXT," +
+                    "rank INTEGER NOT NULL DEFAULT 0" +
                     ");");
         }
+
+        // 按包名查找/删除（安装卸载时），按 rank 排序读出整张表
+        private static void createIndexes(SQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS mainapp_packageName ON mainapp (packageName);");
+            db.execSQL("CREATE INDEX IF NOT EXISTS mainapp_rank ON mainapp (rank);");
+        }
 //
         @Override
-        public void onUpgrade(SQLiteDatabase sqLiteDatabase, int i, int i1) {
-
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            if (oldVersion < 13) {
+                // 重建表：_id 改成真正的 rowid 别名，并加上 rank 列（SQLiteOpenHelper 已包在事务里）
+                // 旧 _id 多为 NULL，少数有值的可能和别的行的 rowid 相同，不能沿用；
+                // 由新表按插入顺序重新分配，rank 保留原来的 rowid 顺序
+                createMainAppTable(db, "mainapp_new");
+                db.execSQL("INSERT INTO mainapp_new (title, intent, itemType, packageName," +
+                        " iconType, iconResource, icon, uri, rank)" +
+                        " SELECT title, intent, itemType, packageName," +
+                        " iconType, iconResource, icon, uri, rowid FROM mainapp ORDER BY rowid;");
+                db.execSQL("DROP TABLE mainapp;");
+                db.execSQL("ALTER TABLE mainapp_new RENAME TO mainapp;");
+                createIndexes(db);
+            }
         }
         // Generates a new ID to use for an object in your database. This method should be only
         // called from the main UI thread. As an exception, we do call it when we call the
@@ -247,19 +488,23 @@ public class LauncherProvider extends ContentProvider {
         public final String table;
         public final String where;
         public final String[] args;
+        /** Row id for a single-row URI, -1 otherwise. */
+        public final long id;
 
         SqlArguments(Uri url, String where, String[] args) {
             if (url.getPathSegments().size() == 1) {
                 this.table = url.getPathSegments().get(0);
                 this.where = where;
                 this.args = args;
+                this.id = -1;
             } else if (url.getPathSegments().size() != 2) {
                 throw new IllegalArgumentException("Invalid URI: " + url);
             } else if (!TextUtils.isEmpty(where)) {
                 throw new UnsupportedOperationException("WHERE clause not supported: " + url);
             } else {
                 this.table = url.getPathSegments().get(0);
-                this.where = "_id=" + ContentUris.parseId(url);
+                this.id = ContentUris.parseId(url);
+                this.where = "_id=" + id;
                 this.args = null;
             }
         }
@@ -269,6 +514,7 @@ public class LauncherProvider extends ContentProvider {
                 table = url.getPathSegments().get(0);
                 where = null;
                 args = null;
+                id = -1;
             } else {
                 throw new IllegalArgumentException("Invalid URI: " + url);
             }
@@ -72,6 +72,12 @@ public  class LauncherSettings {
         static final String ICON = "icon";
 
         static final String PACKAGE_NAME = "packageName";
+
+        /**
+         * Position of the item in the app list, ascending.
+         * <P>Type: INTEGER</P>
+         */
+        static final String RANK = "rank";
     }
 
     /**
@@ -0,0 +1,314 @@
+package com.readboy.wearlauncher;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.support.annotation.VisibleForTesting;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Launcher 设置的内存缓存，读写都只访问内存，落盘在后台线程进行：
+ * <ul>
+ * <li>SharedPreferences（"settings"）首次访问时整体读入内存；</li>
+ * <li>写入先改内存再记为脏，{@link #WRITE_DELAY_MS} 内的多次写入合并成一次 commit；</li>
+ * <li>{@link #flush()} 让后台马上写，不等延时，在 onPause/onTrimMemory 时调用；</li>
+ * <li>Settings.System 里 launcher 用到的开关（如首次开机）同样缓存，写入在后台线程；
+ * 每个缓存的 key 注册 ContentObserver，别的进程改了就丢掉缓存，下次读时重新查询。</li>
+ * </ul>
+ * 可在任意线程调用。
+ */
+public final class LauncherSettingsStore {
+    private static final String TAG = "LauncherSettingsStore";
+
+    static final String SHARED_NAME = "settings";
+    /** 选表盘时来回切换几次只落一次盘 */
+    static final long WRITE_DELAY_MS = 1000;
+
+    private static LauncherSettingsStore sInstance;
+
+    public static synchronized LauncherSettingsStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new LauncherSettingsStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private final Context mContext;
+    private final Handler mWriteHandler;
+
+    // guarded by mLock
+    private final Object mLock = new Object();
+    private ArrayMap<String, Object> mValues;
+    private final ArrayMap<String, Object> mDirty = new ArrayMap<String, Object>();
+    private final ArrayMap<String, Integer> mSystemInts = new ArrayMap<String, Integer>();
+    private final ArrayMap<String, Integer> mDirtySystemInts = new ArrayMap<String, Integer>();
+    private final ArrayMap<String, ContentObserver> mSystemObservers =
+            new ArrayMap<String, ContentObserver>();
+    private boolean mWriteScheduled;
+    private int mPutCount;
+    private int mWriteCount;
+    private long mPutTotalNanos;
+    private long mPutMaxNanos;
+    private long mWriteTotalMs;
+    private long mWriteMaxMs;
+
+    private final Runnable mWriteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            write();
+        }
+    };
+
+    private LauncherSettingsStore(Context context) {
+        mContext = context;
+        HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mWriteHandler = new Handler(thread.getLooper());
+    }
+
+    private SharedPreferences prefs() {
+        return mContext.getSharedPreferences(SHARED_NAME, Context.MODE_PRIVATE);
+    }
+
+    private ArrayMap<String, Object> valuesLocked() {
+        if (mValues == null) {
+            mValues = new ArrayMap<String, Object>();
+            mValues.putAll(prefs().getAll());
+        }
+        return mValues;
+    }
+
+    public int getInt(String key, int defValue) {
+        synchronized (mLock) {
+            final Object value = valuesLocked().get(key);
+            return value instanceof Integer ? (Integer) value : defValue;
+        }
+    }
+
+    public long getLong(String key, long defValue) {
+        synchronized (mLock) {
+            final Object value = valuesLocked().get(key);
+            return value instanceof Long ? (Long) value : defValue;
+        }
+    }
+
+    public String getString(String key, String defValue) {
+        synchronized (mLock) {
+            final Object value = valuesLocked().get(key);
+            return value instanceof String ? (String) value : defValue;
+        }
+    }
+
+    public void putInt(String key, int value) {
+        put(key, value);
+    }
+
+    public void putLong(String key, long value) {
+        put(key, value);
+    }
+
+    /** A null value removes the key. */
+    public void putString(String key, String value) {
+        put(key, value);
+    }
+
+    private void put(String key, Object value) {
+        final long start = SystemClock.elapsedRealtimeNanos();
+        synchronized (mLock) {
+            final ArrayMap<String, Object> values = valuesLocked();
+            final boolean changed = value == null ? values.containsKey(key)
+                    : !value.equals(values.get(key));
+            if (changed) {
+                if (value == null) {
+                    values.remove(key);
+                } else {
+                    values.put(key, value);
+                }
+                mDirty.put(key, value);
+                scheduleWriteLocked(WRITE_DELAY_MS);
+            }
+            recordPutLocked(start);
+        }
+    }
+
+    /**
+     * Cached {@link Settings.System#getInt}; the first read of a key goes to the
+     * settings provider, later reads come from memory until the setting changes.
+     */
+    public int getSystemInt(String name, int defValue) {
+        synchronized (mLock) {
+            Integer value = mSystemInts.get(name);
+            if (value == null) {
+                // 先注册再读，读和注册之间的修改也不会漏掉
+                observeSystemIntLocked(name);
+                value = Settings.System.getInt(mContext.getContentResolver(), name, defValue);
+                mSystemInts.put(name, value);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Update the cached value and write it to Settings.System on the background
+     * thread.
+     */
+    public void putSystemInt(String name, int value) {
+        final long start = SystemClock.elapsedRealtimeNanos();
+        synchronized (mLock) {
+            observeSystemIntLocked(name);
+            final Integer old = mSystemInts.get(name);
+            if (old == null || old != value) {
+                mSystemInts.put(name, value);
+                mDirtySystemInts.put(name, value);
+                // 别的进程可能在等这个值，不做延时合并
+                scheduleWriteLocked(0);
+            }
+            recordPutLocked(start);
+        }
+    }
+
+    private void observeSystemIntLocked(final String name) {
+        if (mSystemObservers.containsKey(name)) {
+            return;
+        }
+        final ContentObserver observer = new ContentObserver(mWriteHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                synchronized (mLock) {
+                    // 自己还没写出去的值以内存为准，其余的下次读时重新查询
+                    if (!mDirtySystemInts.containsKey(name)) {
+                        mSystemInts.remove(name);
+                    }
+                }
+            }
+        };
+        mSystemObservers.put(name, observer);
+        mContext.getContentResolver().registerContentObserver(
+                Settings.System.getUriFor(name), false, observer);
+    }
+
+    /**
+     * Write pending changes now instead of waiting for the coalescing delay.
+     * Does not block the caller.
+     */
+    public void flush() {
+        synchronized (mLock) {
+            if (!mDirty.isEmpty() || !mDirtySystemInts.isEmpty()) {
+                scheduleWriteLocked(0);
+            }
+        }
+    }
+
+    private void scheduleWriteLocked(long delay) {
+        if (mWriteScheduled) {
+            if (delay > 0) {
+                return;
+            }
+            mWriteHandler.removeCallbacks(mWriteRunnable);
+        }
+        mWriteScheduled = true;
+        mWriteHandler.postDelayed(mWriteRunnable, delay);
+    }
+
+    private void recordPutLocked(long start) {
+        final long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+        mPutCount++;
+        mPutTotalNanos += elapsed;
+        mPutMaxNanos = Math.max(mPutMaxNanos, elapsed);
+    }
+
+    private void write() {
+        final ArrayMap<String, Object> dirty;
+        final ArrayMap<String, Integer> dirtySystem;
+        synchronized (mLock) {
+            mWriteScheduled = false;
+            dirty = new ArrayMap<String, Object>(mDirty);
+            dirtySystem = new ArrayMap<String, Integer>(mDirtySystemInts);
+            mDirty.clear();
+            mDirtySystemInts.clear();
+        }
+        if (dirty.isEmpty() && dirtySystem.isEmpty()) {
+            return;
+        }
+
+        final long start = SystemClock.uptimeMillis();
+        if (!dirty.isEmpty()) {
+            final SharedPreferences.Editor editor = prefs().edit();
+            for (Map.Entry<String, Object> entry : dirty.entrySet()) {
+                final Object value = entry.getValue();
+                if (value == null) {
+                    editor.remove(entry.getKey());
+                } else if (value instanceof Integer) {
+                    editor.putInt(entry.getKey(), (Integer) value);
+                } else if (value instanceof Long) {
+                    editor.putLong(entry.getKey(), (Long) value);
+                } else if (value instanceof String) {
+                    editor.putString(entry.getKey(), (String) value);
+                }
+            }
+            if (!editor.commit()) {
+                Log.w(TAG, "commit failed, keys=" + dirty.keySet());
+            }
+        }
+        final ContentResolver resolver = mContext.getContentResolver();
+        for (int i = 0; i < dirtySystem.size(); i++) {
+            Settings.System.putInt(resolver, dirtySystem.keyAt(i), dirtySystem.valueAt(i));
+        }
+        final long elapsed = SystemClock.uptimeMillis() - start;
+        synchronized (mLock) {
+            mWriteCount++;
+            mWriteTotalMs += elapsed;
+            mWriteMaxMs = Math.max(mWriteMaxMs, elapsed);
+        }
+    }
+
+    @VisibleForTesting
+    int getWriteCount() {
+        synchronized (mLock) {
+            return mWriteCount;
+        }
+    }
+
+    /**
+     * Block until the write thread has run everything that is due now. A write
+     * still waiting out {@link #WRITE_DELAY_MS} is not waited for.
+     */
+    @VisibleForTesting
+    void awaitWriteThread() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mWriteHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        latch.await();
+    }
+
+    public void dump(PrintWriter pw) {
+        pw.println("LauncherSettingsStore state:");
+        synchronized (mLock) {
+            pw.print("  cached="); pw.print(mValues == null ? 0 : mValues.size());
+            pw.print(" system="); pw.println(mSystemInts.size());
+            pw.print("  dirty="); pw.print(mDirty.size() + mDirtySystemInts.size());
+            pw.print(" writeScheduled="); pw.println(mWriteScheduled);
+            pw.print("  puts="); pw.print(mPutCount);
+            pw.print(" avgUs="); pw.print(mPutCount == 0 ? 0 : mPutTotalNanos / mPutCount / 1000);
+            pw.print(" maxUs="); pw.println(mPutMaxNanos / 1000);
+            pw.print("  writes="); pw.print(mWriteCount);
+            pw.print(" avgMs="); pw.print(mWriteCount == 0 ? 0 : mWriteTotalMs / mWriteCount);
+            pw.print(" maxMs="); pw.println(mWriteMaxMs);
+        }
+    }
+}
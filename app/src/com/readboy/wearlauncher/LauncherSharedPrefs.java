@@ -1,7 +1,6 @@
 package com.readboy.wearlauncher;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 
 /**
  * Created by GuanJiaYin on 16/11/21.
@@ -9,7 +8,6 @@ import android.content.SharedPreferences;
 
 public class LauncherSharedPrefs {
     private static final String TAG = "Launcher.LauncherSharedPrefs";
-    private static String SHARED_NAME = "settings";
     private static final String WATCHTYPE = "watchtype";
 
     public static int getWatchType(Context context){
@@ -20,42 +18,29 @@ public class LauncherSharedPrefs {
         putInt(context,WATCHTYPE,watchtype);
     }
 
+    // 读写都走内存缓存，落盘由 LauncherSettingsStore 在后台线程合并完成
+
     public static long getLong(Context context, String string) {
-        SharedPreferences preferences = context.getSharedPreferences(SHARED_NAME, 0);
-        long value = preferences.getLong(string, 0);
-        return value;
+        return LauncherSettingsStore.getInstance(context).getLong(string, 0);
     }
 
     public static void putLong(Context context, String string, long value) {
-        SharedPreferences preferences = context.getSharedPreferences(SHARED_NAME, 0);
-        SharedPreferences.Editor editor = preferences.edit();
-        editor.putLong(string, value);
-        editor.commit();
+        LauncherSettingsStore.getInstance(context).putLong(string, value);
     }
 
     public static int getInt(Context context, String string) {
-        SharedPreferences preferences = context.getSharedPreferences(SHARED_NAME, Context.MODE_PRIVATE);
-        int value = preferences.getInt(string, 0);
-        return value;
+        return LauncherSettingsStore.getInstance(context).getInt(string, 0);
     }
 
     public static void putInt(Context context, String string, int value) {
-        SharedPreferences preferences = context.getSharedPreferences(SHARED_NAME, Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = preferences.edit();
-        editor.putInt(string, value);
-        editor.commit();
+        LauncherSettingsStore.getInstance(context).putInt(string, value);
     }
 
     public static String getString(Context context, String string) {
-        SharedPreferences preferences = context.getSharedPreferences(SHARED_NAME, Context.MODE_PRIVATE);
-        String value = preferences.getString(string, null);
-        return value;
+        return LauncherSettingsStore.getInstance(context).getString(string, null);
     }
 
     public static void putString(Context context, String string, String value) {
-        SharedPreferences preferences = context.getSharedPreferences(SHARED_NAME, Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = preferences.edit();
-        editor.putString(string, value);
-        editor.commit();
+        LauncherSettingsStore.getInstance(context).putString(string, value);
     }
 }
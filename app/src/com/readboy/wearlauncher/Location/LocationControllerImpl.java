@@ -8,18 +8,23 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.location.LocationManager;
+import android.os.AsyncTask;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.provider.Settings;
+import android.util.ArraySet;
 import android.util.Log;
 import android.view.View;
 import android.widget.ImageView;
 
 import com.readboy.wearlauncher.R;
+import com.readboy.wearlauncher.utils.ControllerLifecycle;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -27,19 +32,35 @@ import java.util.List;
 /**
  * Created by Administrator on 2017/6/21.
  */
-public class LocationControllerImpl extends BroadcastReceiver implements LocationController {
+public class LocationControllerImpl extends BroadcastReceiver implements LocationController,
+        ControllerLifecycle.Controller {
 
     public static final String HIGH_POWER_REQUEST_CHANGE_ACTION = "android.location.HIGH_POWER_REQUEST_CHANGE";
     private static final String TAG = "LocationControllerImpl";
+    /** 一次定位请求开始/结束时系统会连发好几次广播，合并成一次查询 */
+    private static final long REFRESH_DELAY_MS = 200;
 
     private Context mContext;
     private AppOpsManager mAppOpsManager;
     private boolean mAreActiveLocationRequests;
+    private boolean mResumed;
+
+    // 当前正在做高功耗定位的包，只在主线程改动
+    private final ArraySet<String> mHighPowerRequesters = new ArraySet<String>();
+    // 每次 resume/pause 加一，过期的查询结果直接丢弃
+    private int mGeneration;
+    private boolean mScanRunning;
+    private boolean mScanPending;
+    private int mBroadcastCount;
+    private int mScanCount;
+    private int mIconRefreshCount;
+    private long mLastScanMs;
 
     private ArrayList<ImageView> mIconViews = new ArrayList<ImageView>();
     private ArrayList<LocationSettingsChangeCallback> mSettingsChangeCallbacks =
             new ArrayList<LocationSettingsChangeCallback>();
     private final H mHandler = new H();
+    private final IntentFilter mIntentFilter;
 
     private static final int[] mHighPowerRequestAppOpArray
             = new int[] {AppOpsManager.OP_MONITOR_HIGH_POWER_LOCATION};
@@ -47,18 +68,30 @@ public class LocationControllerImpl extends BroadcastReceiver implements Locatio
     public LocationControllerImpl(Context context) {
         mContext = context;
 
-        // Register to listen for changes in location settings.
-        IntentFilter filter = new IntentFilter();
-        filter.addAction(HIGH_POWER_REQUEST_CHANGE_ACTION);
-        filter.addAction(LocationManager.MODE_CHANGED_ACTION);
-        context.registerReceiver(this,filter);
+        mIntentFilter = new IntentFilter();
+        mIntentFilter.addAction(HIGH_POWER_REQUEST_CHANGE_ACTION);
+        mIntentFilter.addAction(LocationManager.MODE_CHANGED_ACTION);
         mAppOpsManager = (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE);
-        // Examine the current location state and initialize the status view.
-        updateActiveLocationRequests();
+    }
+
+    @Override
+    public void resume() {
+        // Register to listen for changes in location settings.
+        mResumed = true;
+        mGeneration++;
+        mContext.registerReceiver(this, mIntentFilter);
+        // Show the last known state now; the scan corrects it if anything changed
+        // while we were not listening.
         refreshViews();
+        scheduleScan(0);
     }
 
-    public void unregisterReceiver() {
+    @Override
+    public void pause() {
+        mResumed = false;
+        mGeneration++;
+        mHandler.removeMessages(H.MSG_SCAN_HIGH_POWER_REQUESTS);
+        mScanPending = false;
         mContext.unregisterReceiver(this);
     }
 
@@ -119,9 +152,11 @@ public class LocationControllerImpl extends BroadcastReceiver implements Locatio
     }
 
     /**
-     * Returns true if there currently exist active high power location requests.
+     * Returns the packages that currently have active high power location requests.
+     * Binder call into AppOps, do not call on the main thread.
      */
-    private boolean areActiveHighPowerLocationRequests() {
+    private ArraySet<String> queryHighPowerRequesters() {
+        final ArraySet<String> result = new ArraySet<String>();
         List<AppOpsManager.PackageOps> packages
                 = mAppOpsManager.getPackagesForOps(mHighPowerRequestAppOpArray);
         // AppOpsManager can return null when there is no requested data.
@@ -138,7 +173,8 @@ public class LocationControllerImpl extends BroadcastReceiver implements Locatio
                         // of the mHighPowerRequestAppOpArray filter, but checking defensively.
                         if (opEntry.getOp() == AppOpsManager.OP_MONITOR_HIGH_POWER_LOCATION) {
                             if (opEntry.isRunning()) {
-                                return true;
+                                result.add(packageOp.getPackageName());
+                                break;
                             }
                         }
                     }
@@ -146,7 +182,7 @@ public class LocationControllerImpl extends BroadcastReceiver implements Locatio
             }
         }
 
-        return false;
+        return result;
     }
 
     // Updates the status view based on the current state of location requests.
@@ -173,20 +209,96 @@ public class LocationControllerImpl extends BroadcastReceiver implements Locatio
         }
     }
 
-    // Reads the active location requests and updates the status view if necessary.
-    private void updateActiveLocationRequests() {
+    private void scheduleScan(long delay) {
+        if (!mHandler.hasMessages(H.MSG_SCAN_HIGH_POWER_REQUESTS)) {
+            mHandler.sendEmptyMessageDelayed(H.MSG_SCAN_HIGH_POWER_REQUESTS, delay);
+        }
+    }
+
+    // Reads the active location requests off the main thread; at most one scan in flight.
+    private void startScan() {
+        if (!mResumed) {
+            return;
+        }
+        if (mScanRunning) {
+            mScanPending = true;
+            return;
+        }
+        mScanRunning = true;
+        mScanCount++;
+        final int generation = mGeneration;
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long start = SystemClock.uptimeMillis();
+                ArraySet<String> requesters;
+                try {
+                    requesters = queryHighPowerRequesters();
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "query high power requests failed", e);
+                    requesters = null;
+                }
+                final ArraySet<String> result = requesters;
+                final long elapsed = SystemClock.uptimeMillis() - start;
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mScanRunning = false;
+                        mLastScanMs = elapsed;
+                        if (result != null && generation == mGeneration) {
+                            applyHighPowerRequesters(result);
+                        }
+                        if (mScanPending) {
+                            mScanPending = false;
+                            scheduleScan(REFRESH_DELAY_MS);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    // Removes requesters that stopped and adds the new ones, leaving the rest of
+    // the set alone; the status view is refreshed only when the indicator flips.
+    private void applyHighPowerRequesters(ArraySet<String> current) {
+        boolean changed = false;
+        for (int i = mHighPowerRequesters.size() - 1; i >= 0; i--) {
+            if (!current.contains(mHighPowerRequesters.valueAt(i))) {
+                mHighPowerRequesters.removeAt(i);
+                changed = true;
+            }
+        }
+        for (int i = current.size() - 1; i >= 0; i--) {
+            changed |= mHighPowerRequesters.add(current.valueAt(i));
+        }
+        if (!changed) {
+            return;
+        }
         boolean hadActiveLocationRequests = mAreActiveLocationRequests;
-        mAreActiveLocationRequests = areActiveHighPowerLocationRequests();
+        mAreActiveLocationRequests = !mHighPowerRequesters.isEmpty();
         if (mAreActiveLocationRequests != hadActiveLocationRequests) {
+            mIconRefreshCount++;
             refreshViews();
         }
     }
 
+    public void dump(PrintWriter pw) {
+        pw.println("LocationController state:");
+        pw.print("  resumed="); pw.print(mResumed);
+        pw.print(" active="); pw.println(mAreActiveLocationRequests);
+        pw.print("  requesters="); pw.println(mHighPowerRequesters);
+        pw.print("  broadcasts="); pw.print(mBroadcastCount);
+        pw.print(" scans="); pw.print(mScanCount);
+        pw.print(" iconRefreshes="); pw.print(mIconRefreshCount);
+        pw.print(" lastScanMs="); pw.println(mLastScanMs);
+    }
+
     @Override
     public void onReceive(Context context, Intent intent) {
         final String action = intent.getAction();
         if (HIGH_POWER_REQUEST_CHANGE_ACTION.equals(action)) {
-            updateActiveLocationRequests();
+            mBroadcastCount++;
+            scheduleScan(REFRESH_DELAY_MS);
         } else if (LocationManager.MODE_CHANGED_ACTION.equals(action)) {
             mHandler.sendEmptyMessage(H.MSG_LOCATION_SETTINGS_CHANGED);
         }
@@ -194,6 +306,7 @@ public class LocationControllerImpl extends BroadcastReceiver implements Locatio
 
     private final class H extends Handler {
         private static final int MSG_LOCATION_SETTINGS_CHANGED = 1;
+        private static final int MSG_SCAN_HIGH_POWER_REQUESTS = 2;
 
         @Override
         public void handleMessage(Message msg) {
@@ -201,6 +314,9 @@ public class LocationControllerImpl extends BroadcastReceiver implements Locatio
                 case MSG_LOCATION_SETTINGS_CHANGED:
 //                    locationSettingsChanged();
                     break;
+                case MSG_SCAN_HIGH_POWER_REQUESTS:
+                    startScan();
+                    break;
             }
         }
 
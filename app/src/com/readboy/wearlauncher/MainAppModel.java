@@ -0,0 +1,581 @@
+package com.readboy.wearlauncher;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * mainapp 表在进程内的镜像，按 rank 排序存放在并列的数组里，读取不走 Cursor。
+ * <p>
+ * 写入通过本类进行：先写数据库（不带通知的 URI），成功后更新内存，再追加到变更日志，
+ * 最后自己发一次 notifyChange 给其它进程的观察者。其它来源的改动（如其它进程直接写 provider）
+ * 由 ContentObserver 发现，整体重新加载，并在日志里记一条 {@link #CHANGE_RESET}。
+ * <p>
+ * 变更日志是有界的环形缓冲区，每条记录有递增的序号。UI 层记下自己读到的序号，
+ * 收到 {@link Listener#onMainAppChanged()} 后用 {@link #readChanges} 取增量；
+ * 落后太多（记录已被覆盖）时返回 -1，应按快照整体刷新。
+ * 读写可在任意线程，load 和写入会访问数据库，不要在主线程调用；回调在主线程。
+ * 写入和重新加载在 mWriteLock 上串行：否则重新加载的查询可能已经包含刚写入的行，
+ * 写入随后再把它追加到内存里一次。
+ */
+public final class MainAppModel {
+    private static final String TAG = "MainAppModel";
+
+    public static final int CHANGE_INSERTED = 1;
+    public static final int CHANGE_UPDATED = 2;
+    public static final int CHANGE_DELETED = 3;
+    /** Rows changed outside this model; reload everything. Id is -1. */
+    public static final int CHANGE_RESET = 4;
+
+    static final int LOG_CAPACITY = 128;
+    private static final int INITIAL_CAPACITY = 32;
+
+    private static final String[] PROJECTION = {
+            LauncherSettings.MainApp._ID,
+            LauncherSettings.MainApp.TITLE,
+            LauncherSettings.MainApp.INTENT,
+            LauncherSettings.MainApp.ITEM_TYPE,
+            LauncherSettings.MainApp.PACKAGE_NAME,
+            LauncherSettings.MainApp.ICON_TYPE,
+            LauncherSettings.MainApp.ICON_RESOURCE,
+            LauncherSettings.MainApp.RANK,
+    };
+    private static final Uri TABLE_URI = Uri.parse("content://" + LauncherProvider.AUTHORITY
+            + "/" + LauncherProvider.TABLE_MAINAPP);
+
+    public interface Listener {
+        /** New entries were appended to the change log. Called on the main thread. */
+        void onMainAppChanged();
+    }
+
+    private static MainAppModel sInstance;
+
+    public static synchronized MainAppModel getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new MainAppModel(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /** The instance if something already created it, for dump. */
+    static synchronized MainAppModel peekInstance() {
+        return sInstance;
+    }
+
+    private final ContentResolver mResolver;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ArrayList<Listener> mListeners = new ArrayList<Listener>();
+
+    // 数据库写入/重新加载与对应的内存更新作为一个整体串行，先取 mWriteLock 再取 mLock
+    private final Object mWriteLock = new Object();
+    // guarded by mLock
+    private final Object mLock = new Object();
+    private boolean mLoaded;
+    private int mSize;
+    private long[] mIds = new long[INITIAL_CAPACITY];
+    private int[] mRanks = new int[INITIAL_CAPACITY];
+    private int[] mItemTypes = new int[INITIAL_CAPACITY];
+    private int[] mIconTypes = new int[INITIAL_CAPACITY];
+    private int[] mIconResources = new int[INITIAL_CAPACITY];
+    private String[] mTitles = new String[INITIAL_CAPACITY];
+    private String[] mIntents = new String[INITIAL_CAPACITY];
+    private String[] mPackageNames = new String[INITIAL_CAPACITY];
+
+    private final int[] mLogTypes = new int[LOG_CAPACITY];
+    private final long[] mLogIds = new long[LOG_CAPACITY];
+    // 下一条记录的序号；序号 s 存在 s % LOG_CAPACITY
+    private long mLogSeq;
+    private boolean mNotifyPosted;
+    private boolean mReloadPending;
+    private int mReloadCount;
+
+    private final ContentObserver mObserver;
+
+    private final Runnable mReloadRunnable = new Runnable() {
+        @Override
+        public void run() {
+            reload();
+        }
+    };
+
+    private final Runnable mNotifyRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (mLock) {
+                mNotifyPosted = false;
+            }
+            for (int i = mListeners.size() - 1; i >= 0; i--) {
+                mListeners.get(i).onMainAppChanged();
+            }
+        }
+    };
+
+    @VisibleForTesting
+    MainAppModel(Context context) {
+        mResolver = context.getContentResolver();
+        mObserver = new ContentObserver(mMainHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                // 自己发出的通知不会送到这里，只有别处的改动
+                reloadAsync();
+            }
+        };
+        mResolver.registerContentObserver(TABLE_URI, true, mObserver);
+    }
+
+    /** Stop following provider changes; only for instances made by tests. */
+    @VisibleForTesting
+    void release() {
+        mResolver.unregisterContentObserver(mObserver);
+    }
+
+    /** Main thread only. */
+    public void addListener(Listener listener) {
+        if (!mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    /** Main thread only. */
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Load the table if it has not been loaded yet. Queries the provider; do not
+     * call on the main thread.
+     */
+    public void ensureLoaded() {
+        synchronized (mWriteLock) {
+            synchronized (mLock) {
+                if (mLoaded) {
+                    return;
+                }
+            }
+            reloadLocked();
+        }
+    }
+
+    private void reloadAsync() {
+        synchronized (mLock) {
+            // 一次重新加载能覆盖它开始前的所有改动
+            if (mReloadPending || !mLoaded) {
+                return;
+            }
+            mReloadPending = true;
+        }
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(mReloadRunnable);
+    }
+
+    private void reload() {
+        synchronized (mWriteLock) {
+            reloadLocked();
+        }
+    }
+
+    private void reloadLocked() {
+        final Cursor c = mResolver.query(LauncherSettings.MainApp.CONTENT_URI, PROJECTION, null, null,
+                LauncherSettings.MainApp.RANK + "," + LauncherSettings.MainApp._ID);
+        if (c == null) {
+            Log.w(TAG, "query failed");
+            synchronized (mLock) {
+                mReloadPending = false;
+            }
+            return;
+        }
+        try {
+            synchronized (mLock) {
+                final boolean wasLoaded = mLoaded;
+                mReloadPending = false;
+                mSize = 0;
+                ensureCapacityLocked(c.getCount());
+                while (c.moveToNext()) {
+                    final int i = mSize++;
+                    mIds[i] = c.getLong(0);
+                    mTitles[i] = c.getString(1);
+                    mIntents[i] = c.getString(2);
+                    mItemTypes[i] = c.getInt(3);
+                    mPackageNames[i] = c.getString(4);
+                    mIconTypes[i] = c.getInt(5);
+                    mIconResources[i] = c.getInt(6);
+                    mRanks[i] = c.getInt(7);
+                }
+                mLoaded = true;
+                mReloadCount++;
+                if (wasLoaded) {
+                    appendLocked(CHANGE_RESET, -1);
+                }
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    // ---- reads ----
+
+    public int size() {
+        synchronized (mLock) {
+            return mSize;
+        }
+    }
+
+    /** Index of the row with {@code id}, or -1. Linear; the table holds a few dozen rows. */
+    public int indexOfId(long id) {
+        synchronized (mLock) {
+            return indexOfIdLocked(id);
+        }
+    }
+
+    public long getId(int index) {
+        synchronized (mLock) {
+            return mIds[index];
+        }
+    }
+
+    public String getTitle(int index) {
+        synchronized (mLock) {
+            return mTitles[index];
+        }
+    }
+
+    public String getIntent(int index) {
+        synchronized (mLock) {
+            return mIntents[index];
+        }
+    }
+
+    public String getPackageName(int index) {
+        synchronized (mLock) {
+            return mPackageNames[index];
+        }
+    }
+
+    public int getItemType(int index) {
+        synchronized (mLock) {
+            return mItemTypes[index];
+        }
+    }
+
+    public int getIconType(int index) {
+        synchronized (mLock) {
+            return mIconTypes[index];
+        }
+    }
+
+    public int getIconResource(int index) {
+        synchronized (mLock) {
+            return mIconResources[index];
+        }
+    }
+
+    public int getRank(int index) {
+        synchronized (mLock) {
+            return mRanks[index];
+        }
+    }
+
+    // ---- writes ----
+
+    /**
+     * Insert a row and mirror it in memory.
+     *
+     * @return the new row id, or -1 if the insert failed
+     */
+    public long insert(ContentValues values) {
+        synchronized (mWriteLock) {
+            ensureLoaded();
+            final Uri uri = mResolver.insert(LauncherSettings.MainApp.CONTENT_URI_NO_NOTIFICATION, values);
+            if (uri == null) {
+                return -1;
+            }
+            final long id = ContentUris.parseId(uri);
+            synchronized (mLock) {
+                ensureCapacityLocked(mSize + 1);
+                final int i = mSize++;
+                mIds[i] = id;
+                mTitles[i] = null;
+                mIntents[i] = null;
+                mPackageNames[i] = null;
+                mItemTypes[i] = 0;
+                mIconTypes[i] = 0;
+                mIconResources[i] = 0;
+                mRanks[i] = 0;
+                applyValuesLocked(i, values);
+                sortLocked();
+                appendLocked(CHANGE_INSERTED, id);
+            }
+            notifyOthers();
+            return id;
+        }
+    }
+
+    public boolean update(long id, ContentValues values) {
+        synchronized (mWriteLock) {
+            ensureLoaded();
+            if (mResolver.update(LauncherSettings.MainApp.getContentUri(id, false), values, null, null) <= 0) {
+                return false;
+            }
+            synchronized (mLock) {
+                final int i = indexOfIdLocked(id);
+                if (i >= 0) {
+                    applyValuesLocked(i, values);
+                    if (values.containsKey(LauncherSettings.MainApp.RANK)) {
+                        sortLocked();
+                    }
+                    appendLocked(CHANGE_UPDATED, id);
+                }
+            }
+            notifyOthers();
+            return true;
+        }
+    }
+
+    public boolean delete(long id) {
+        synchronized (mWriteLock) {
+            ensureLoaded();
+            if (mResolver.delete(LauncherSettings.MainApp.getContentUri(id, false), null, null) <= 0) {
+                return false;
+            }
+            synchronized (mLock) {
+                final int i = indexOfIdLocked(id);
+                if (i >= 0) {
+                    removeLocked(i);
+                    appendLocked(CHANGE_DELETED, id);
+                }
+            }
+            notifyOthers();
+            return true;
+        }
+    }
+
+    /**
+     * Give {@code ids} ranks 0..n-1 in this order, in one provider transaction.
+     * Only rows whose rank actually changes are written and logged.
+     */
+    public boolean setOrder(long[] ids) {
+        synchronized (mWriteLock) {
+            return setOrderLocked(ids);
+        }
+    }
+
+    private boolean setOrderLocked(long[] ids) {
+        ensureLoaded();
+        final ArrayList<ContentProviderOperation> ops = new ArrayList<ContentProviderOperation>();
+        synchronized (mLock) {
+            for (int rank = 0; rank < ids.length; rank++) {
+                final int i = indexOfIdLocked(ids[rank]);
+                if (i >= 0 && mRanks[i] != rank) {
+                    ops.add(ContentProviderOperation.newUpdate(LauncherSettings.MainApp.getContentUri(ids[rank], false))
+                            .withValue(LauncherSettings.MainApp.RANK, rank).build());
+                }
+            }
+        }
+        if (ops.isEmpty()) {
+            return true;
+        }
+        try {
+            mResolver.applyBatch(LauncherProvider.AUTHORITY, ops);
+        } catch (RemoteException e) {
+            Log.e(TAG, "setOrder failed", e);
+            return false;
+        } catch (OperationApplicationException e) {
+            Log.e(TAG, "setOrder failed", e);
+            return false;
+        }
+        synchronized (mLock) {
+            for (int rank = 0; rank < ids.length; rank++) {
+                final int i = indexOfIdLocked(ids[rank]);
+                if (i >= 0 && mRanks[i] != rank) {
+                    mRanks[i] = rank;
+                    appendLocked(CHANGE_UPDATED, ids[rank]);
+                }
+            }
+            sortLocked();
+        }
+        notifyOthers();
+        return true;
+    }
+
+    private void notifyOthers() {
+        // 带上自己的 observer，通知不会回到自己这里
+        mResolver.notifyChange(TABLE_URI, mObserver);
+    }
+
+    // ---- change log ----
+
+    /** Sequence number the next change will get; start reading from here. */
+    public long getChangeSeq() {
+        synchronized (mLock) {
+            return mLogSeq;
+        }
+    }
+
+    /**
+     * Copy changes with sequence numbers {@code >= sinceSeq} into the arrays,
+     * oldest first, at most {@code types.length}. The next call should pass
+     * {@code sinceSeq + returned count}.
+     *
+     * @return number of changes copied, or -1 if some were already overwritten
+     *         and the caller has to refresh from the current rows
+     */
+    public int readChanges(long sinceSeq, int[] types, long[] ids) {
+        synchronized (mLock) {
+            if (sinceSeq < mLogSeq - LOG_CAPACITY || sinceSeq > mLogSeq) {
+                return -1;
+            }
+            final int count = (int) Math.min(mLogSeq - sinceSeq, Math.min(types.length, ids.length));
+            for (int n = 0; n < count; n++) {
+                final int slot = (int) ((sinceSeq + n) % LOG_CAPACITY);
+                types[n] = mLogTypes[slot];
+                ids[n] = mLogIds[slot];
+            }
+            return count;
+        }
+    }
+
+    private void appendLocked(int type, long id) {
+        final int slot = (int) (mLogSeq % LOG_CAPACITY);
+        mLogTypes[slot] = type;
+        mLogIds[slot] = id;
+        mLogSeq++;
+        if (!mNotifyPosted) {
+            mNotifyPosted = true;
+            mMainHandler.post(mNotifyRunnable);
+        }
+    }
+
+    // ---- array helpers ----
+
+    private int indexOfIdLocked(long id) {
+        for (int i = 0; i < mSize; i++) {
+            if (mIds[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void applyValuesLocked(int i, ContentValues values) {
+        if (values.containsKey(LauncherSettings.MainApp.TITLE)) {
+            mTitles[i] = values.getAsString(LauncherSettings.MainApp.TITLE);
+        }
+        if (values.containsKey(LauncherSettings.MainApp.INTENT)) {
+            mIntents[i] = values.getAsString(LauncherSettings.MainApp.INTENT);
+        }
+        if (values.containsKey(LauncherSettings.MainApp.PACKAGE_NAME)) {
+            mPackageNames[i] = values.getAsString(LauncherSettings.MainApp.PACKAGE_NAME);
+        }
+        mItemTypes[i] = intValue(values, LauncherSettings.MainApp.ITEM_TYPE, mItemTypes[i]);
+        mIconTypes[i] = intValue(values, LauncherSettings.MainApp.ICON_TYPE, mIconTypes[i]);
+        mIconResources[i] = intValue(values, LauncherSettings.MainApp.ICON_RESOURCE, mIconResources[i]);
+        mRanks[i] = intValue(values, LauncherSettings.MainApp.RANK, mRanks[i]);
+    }
+
+    private static int intValue(ContentValues values, String key, int defValue) {
+        final Integer value = values.getAsInteger(key);
+        return value != null ? value : defValue;
+    }
+
+    private void ensureCapacityLocked(int capacity) {
+        if (capacity <= mIds.length) {
+            return;
+        }
+        final int n = Math.max(capacity, mIds.length * 2);
+        mIds = Arrays.copyOf(mIds, n);
+        mRanks = Arrays.copyOf(mRanks, n);
+        mItemTypes = Arrays.copyOf(mItemTypes, n);
+        mIconTypes = Arrays.copyOf(mIconTypes, n);
+        mIconResources = Arrays.copyOf(mIconResources, n);
+        mTitles = Arrays.copyOf(mTitles, n);
+        mIntents = Arrays.copyOf(mIntents, n);
+        mPackageNames = Arrays.copyOf(mPackageNames, n);
+    }
+
+    private void removeLocked(int i) {
+        final int tail = mSize - i - 1;
+        System.arraycopy(mIds, i + 1, mIds, i, tail);
+        System.arraycopy(mRanks, i + 1, mRanks, i, tail);
+        System.arraycopy(mItemTypes, i + 1, mItemTypes, i, tail);
+        System.arraycopy(mIconTypes, i + 1, mIconTypes, i, tail);
+        System.arraycopy(mIconResources, i + 1, mIconResources, i, tail);
+        System.arraycopy(mTitles, i + 1, mTitles, i, tail);
+        System.arraycopy(mIntents, i + 1, mIntents, i, tail);
+        System.arraycopy(mPackageNames, i + 1, mPackageNames, i, tail);
+        mSize--;
+        mTitles[mSize] = null;
+        mIntents[mSize] = null;
+        mPackageNames[mSize] = null;
+    }
+
+    /** Insertion sort by (rank, id); rows are almost always already in order. */
+    private void sortLocked() {
+        for (int i = 1; i < mSize; i++) {
+            int j = i;
+            while (j > 0 && compareLocked(j - 1, j) > 0) {
+                swapLocked(j - 1, j);
+                j--;
+            }
+        }
+    }
+
+    private int compareLocked(int a, int b) {
+        if (mRanks[a] != mRanks[b]) {
+            return mRanks[a] < mRanks[b] ? -1 : 1;
+        }
+        return mIds[a] < mIds[b] ? -1 : (mIds[a] == mIds[b] ? 0 : 1);
+    }
+
+    private void swapLocked(int a, int b) {
+        final long id = mIds[a];
+        mIds[a] = mIds[b];
+        mIds[b] = id;
+        int v = mRanks[a];
+        mRanks[a] = mRanks[b];
+        mRanks[b] = v;
+        v = mItemTypes[a];
+        mItemTypes[a] = mItemTypes[b];
+        mItemTypes[b] = v;
+        v = mIconTypes[a];
+        mIconTypes[a] = mIconTypes[b];
+        mIconTypes[b] = v;
+        v = mIconResources[a];
+        mIconResources[a] = mIconResources[b];
+        mIconResources[b] = v;
+        String s = mTitles[a];
+        mTitles[a] = mTitles[b];
+        mTitles[b] = s;
+        s = mIntents[a];
+        mIntents[a] = mIntents[b];
+        mIntents[b] = s;
+        s = mPackageNames[a];
+        mPackageNames[a] = mPackageNames[b];
+        mPackageNames[b] = s;
+    }
+
+    public void dump(PrintWriter pw) {
+        pw.println("MainAppModel state:");
+        synchronized (mLock) {
+            pw.print("  mLoaded="); pw.print(mLoaded);
+            pw.print(" rows="); pw.print(mSize);
+            pw.print(" reloads="); pw.println(mReloadCount);
+            pw.print("  changeSeq="); pw.println(mLogSeq);
+            pw.print("  listeners="); pw.println(mListeners.size());
+        }
+    }
+}
@@ -6,6 +6,7 @@ import android.graphics.Rect;
 import android.support.v4.view.GravityCompat;
 import android.support.v4.view.ViewCompat;
 import android.support.v4.widget.ViewDragHelper;
+import android.util.ArrayMap;
 import android.util.AttributeSet;
 import android.view.GestureDetector;
 import android.view.Gravity;
@@ -37,6 +38,8 @@ public class SwipeLayout extends FrameLayout {
     private static final int DRAG_TOP = 4;
     private static final int DRAG_BOTTOM = 8;
     private static final DragEdge DefaultDragEdge = DragEdge.Right;
+    // DragEdge.values() clones the array on every call
+    private static final DragEdge[] EDGES = DragEdge.values();
 
     private int mTouchSlop;
 
@@ -51,9 +54,14 @@ public class SwipeLayout extends FrameLayout {
 
     private List<SwipeListener> mSwipeListeners = new ArrayList<>();
     private List<SwipeDenier> mSwipeDeniers = new ArrayList<>();
-    private Map<View, ArrayList<OnRevealListener>> mRevealListeners = new HashMap<>();
+    private ArrayMap<View, ArrayList<OnRevealListener>> mRevealListeners = new ArrayMap<>();
     private Map<View, Boolean> mShowEntirely = new HashMap<>();
-    private Map<View, Rect> mViewBoundCache = new HashMap<>();//save all children's bound, restore in onLayout
+    private ArrayMap<View, Rect> mViewBoundCache = new ArrayMap<>();//save all children's bound, restore in onLayout
+
+    // 拖动和布局路径上复用的 Rect，每个 MotionEvent/onLayout 都会走到，不能临时 new
+    private final Rect mSurfaceArea = new Rect();
+    private final Rect mBottomArea = new Rect();
+    private final Rect mRelativeRect = new Rect();
 
     private DoubleClickListener mDoubleClickListener;
 
@@ -316,7 +324,7 @@ public class SwipeLayout extends FrameLayout {
 
         @Override
         public boolean tryCaptureView(View child, int pointerId) {
-            boolean result = child == getSurfaceView() || getBottomViews().contains(child);
+            boolean result = child == getSurfaceView() || isBottomView(child);
             if (result) {
                 isCloseBeforeDrag = getOpenStatus() == Status.Close;
             }
@@ -339,8 +347,8 @@ public class SwipeLayout extends FrameLayout {
         public void onViewReleased(View releasedChild, float xvel, float yvel) {
             super.onViewReleased(releasedChild, xvel, yvel);
             processHandRelease(xvel, yvel, isCloseBeforeDrag);
-            for (SwipeListener l : mSwipeListeners) {
-                l.onHandRelease(SwipeLayout.this, xvel, yvel);
+            for (int i = 0; i < mSwipeListeners.size(); i++) {
+                mSwipeListeners.get(i).onHandRelease(SwipeLayout.this, xvel, yvel);
             }
 
             invalidate();
@@ -365,13 +373,13 @@ public class SwipeLayout extends FrameLayout {
                     }
                 }
 
-            } else if (getBottomViews().contains(changedView)) {
+            } else if (isBottomView(changedView)) {
 
                 if (mShowMode == ShowMode.PullOut) {
                     surfaceView.offsetLeftAndRight(dx);
                     surfaceView.offsetTopAndBottom(dy);
                 } else {
-                    Rect rect = computeBottomLayDown(mCurrentDragEdge);
+                    Rect rect = computeBottomLayDown(mCurrentDragEdge, mBottomArea);
                     if (currentBottomView != null) {
                         currentBottomView.layout(rect.left, rect.top, rect.right, rect.bottom);
                     }
@@ -411,18 +419,23 @@ public class SwipeLayout extends FrameLayout {
             return;
         }
 
-        View[] views = new View[]{getSurfaceView(), currentBottomView};
-        for (View child : views) {
-            Rect rect = mViewBoundCache.get(child);
-            if (rect == null) {
-                rect = new Rect();
-                mViewBoundCache.put(child, rect);
-            }
-            rect.left = child.getLeft();
-            rect.top = child.getTop();
-            rect.right = child.getRight();
-            rect.bottom = child.getBottom();
+        captureBound(getSurfaceView());
+        captureBound(currentBottomView);
+    }
+
+    private void captureBound(View child) {
+        if (child == null) {
+            return;
         }
+        Rect rect = mViewBoundCache.get(child);
+        if (rect == null) {
+            rect = new Rect();
+            mViewBoundCache.put(child, rect);
+        }
+        rect.left = child.getLeft();
+        rect.top = child.getTop();
+        rect.right = child.getRight();
+        rect.bottom = child.getBottom();
     }
 
     /**
@@ -500,9 +513,13 @@ public class SwipeLayout extends FrameLayout {
         return false;
     }
 
+    /**
+     * The returned Rect is reused by the next call; copy it if it must be kept.
+     */
     protected Rect getRelativePosition(View child) {
         View t = child;
-        Rect r = new Rect(t.getLeft(), t.getTop(), 0, 0);
+        Rect r = mRelativeRect;
+        r.set(t.getLeft(), t.getTop(), 0, 0);
         while (t.getParent() != null && t != getRootView()) {
             t = (View) t.getParent();
             if (t == this) break;
@@ -538,7 +555,8 @@ public class SwipeLayout extends FrameLayout {
 
         if (!mSwipeListeners.isEmpty()) {
             mEventCounter++;
-            for (SwipeListener l : mSwipeListeners) {
+            for (int i = 0; i < mSwipeListeners.size(); i++) {
+                SwipeListener l = mSwipeListeners.get(i);
                 if (mEventCounter == 1) {
                     if (open) {
                         l.onStartOpen(this);
@@ -550,8 +568,8 @@ public class SwipeLayout extends FrameLayout {
             }
 
             if (status == Status.Close) {
-                for (SwipeListener l : mSwipeListeners) {
-                    l.onClose(SwipeLayout.this);
+                for (int i = 0; i < mSwipeListeners.size(); i++) {
+                    mSwipeListeners.get(i).onClose(SwipeLayout.this);
                 }
                 mEventCounter = 0;
             }
@@ -561,8 +579,8 @@ public class SwipeLayout extends FrameLayout {
                 if (currentBottomView != null) {
                     currentBottomView.setEnabled(true);
                 }
-                for (SwipeListener l : mSwipeListeners) {
-                    l.onOpen(SwipeLayout.this);
+                for (int i = 0; i < mSwipeListeners.size(); i++) {
+                    mSwipeListeners.get(i).onOpen(SwipeLayout.this);
                 }
                 mEventCounter = 0;
             }
@@ -574,10 +592,10 @@ public class SwipeLayout extends FrameLayout {
      */
     private void safeBottomView() {
         Status status = getOpenStatus();
-        List<View> bottoms = getBottomViews();
 
         if (status == Status.Close) {
-            for (View bottom : bottoms) {
+            for (DragEdge edge : EDGES) {
+                View bottom = mDragEdges.get(edge);
                 if (bottom != null && bottom.getVisibility() != INVISIBLE) {
                     bottom.setVisibility(INVISIBLE);
                 }
@@ -593,8 +611,9 @@ public class SwipeLayout extends FrameLayout {
     protected void dispatchRevealEvent(final int surfaceLeft, final int surfaceTop, final int surfaceRight,
                                        final int surfaceBottom) {
         if (mRevealListeners.isEmpty()) return;
-        for (Map.Entry<View, ArrayList<OnRevealListener>> entry : mRevealListeners.entrySet()) {
-            View child = entry.getKey();
+        for (int index = 0; index < mRevealListeners.size(); index++) {
+            View child = mRevealListeners.keyAt(index);
+            ArrayList<OnRevealListener> listeners = mRevealListeners.valueAt(index);
             Rect rect = getRelativePosition(child);
             if (isViewShowing(child, rect, mCurrentDragEdge, surfaceLeft, surfaceTop,
                     surfaceRight, surfaceBottom)) {
@@ -641,8 +660,8 @@ public class SwipeLayout extends FrameLayout {
                     }
                 }
 
-                for (OnRevealListener l : entry.getValue()) {
-                    l.onReveal(child, mCurrentDragEdge, Math.abs(fraction), distance);
+                for (int i = 0; i < listeners.size(); i++) {
+                    listeners.get(i).onReveal(child, mCurrentDragEdge, Math.abs(fraction), distance);
                     if (Math.abs(fraction) == 1) {
                         mShowEntirely.put(child, true);
                     }
@@ -652,12 +671,12 @@ public class SwipeLayout extends FrameLayout {
             if (isViewTotallyFirstShowed(child, rect, mCurrentDragEdge, surfaceLeft, surfaceTop,
                     surfaceRight, surfaceBottom)) {
                 mShowEntirely.put(child, true);
-                for (OnRevealListener l : entry.getValue()) {
+                for (int i = 0; i < listeners.size(); i++) {
                     if (mCurrentDragEdge == DragEdge.Left
                             || mCurrentDragEdge == DragEdge.Right)
-                        l.onReveal(child, mCurrentDragEdge, 1, child.getWidth());
+                        listeners.get(i).onReveal(child, mCurrentDragEdge, 1, child.getWidth());
                     else
-                        l.onReveal(child, mCurrentDragEdge, 1, child.getHeight());
+                        listeners.get(i).onReveal(child, mCurrentDragEdge, 1, child.getHeight());
                 }
             }
 
@@ -795,7 +814,7 @@ public class SwipeLayout extends FrameLayout {
     void layoutPullOut() {
         View surfaceView = getSurfaceView();
         Rect surfaceRect = mViewBoundCache.get(surfaceView);
-        if (surfaceRect == null) surfaceRect = computeSurfaceLayoutArea(false);
+        if (surfaceRect == null) surfaceRect = computeSurfaceLayoutArea(false, mSurfaceArea);
         if (surfaceView != null) {
             surfaceView.layout(surfaceRect.left, surfaceRect.top, surfaceRect.right, surfaceRect.bottom);
             bringChildToFront(surfaceView);
@@ -803,7 +822,7 @@ public class SwipeLayout extends FrameLayout {
         View currentBottomView = getCurrentBottomView();
         Rect bottomViewRect = mViewBoundCache.get(currentBottomView);
         if (bottomViewRect == null)
-            bottomViewRect = computeBottomLayoutAreaViaSurface(ShowMode.PullOut, surfaceRect);
+            bottomViewRect = computeBottomLayoutAreaViaSurface(ShowMode.PullOut, surfaceRect, mBottomArea);
         if (currentBottomView != null) {
             currentBottomView.layout(bottomViewRect.left, bottomViewRect.top, bottomViewRect.right, bottomViewRect.bottom);
         }
@@ -812,7 +831,7 @@ public class SwipeLayout extends FrameLayout {
     void layoutLayDown() {
         View surfaceView = getSurfaceView();
         Rect surfaceRect = mViewBoundCache.get(surfaceView);
-        if (surfaceRect == null) surfaceRect = computeSurfaceLayoutArea(false);
+        if (surfaceRect == null) surfaceRect = computeSurfaceLayoutArea(false, mSurfaceArea);
         if (surfaceView != null) {
             surfaceView.layout(surfaceRect.left, surfaceRect.top, surfaceRect.right, surfaceRect.bottom);
             bringChildToFront(surfaceView);
@@ -820,7 +839,7 @@ public class SwipeLayout extends FrameLayout {
         View currentBottomView = getCurrentBottomView();
         Rect bottomViewRect = mViewBoundCache.get(currentBottomView);
         if (bottomViewRect == null)
-            bottomViewRect = computeBottomLayoutAreaViaSurface(ShowMode.LayDown, surfaceRect);
+            bottomViewRect = computeBottomLayoutAreaViaSurface(ShowMode.LayDown, surfaceRect, mBottomArea);
         if (currentBottomView != null) {
             currentBottomView.layout(bottomViewRect.left, bottomViewRect.top, bottomViewRect.right, bottomViewRect.bottom);
         }
@@ -909,7 +928,8 @@ public class SwipeLayout extends FrameLayout {
         if (mClickToClose && getOpenStatus() == Status.Open && isTouchOnSurface(ev)) {
             return true;
         }
-        for (SwipeDenier denier : mSwipeDeniers) {
+        for (int i = 0; i < mSwipeDeniers.size(); i++) {
+            SwipeDenier denier = mSwipeDeniers.get(i);
             if (denier != null && denier.shouldDenySwipe(ev)) {
                 return false;
             }
@@ -1272,11 +1292,16 @@ public class SwipeLayout extends FrameLayout {
      * return null if there is no bottom view
      */
     public View getCurrentBottomView() {
-        List<View> bottoms = getBottomViews();
-        if (mCurrentDragEdge.ordinal() < bottoms.size()) {
-            return bottoms.get(mCurrentDragEdge.ordinal());
+        return mDragEdges.get(mCurrentDragEdge);
+    }
+
+    private boolean isBottomView(View child) {
+        for (DragEdge edge : EDGES) {
+            if (mDragEdges.get(edge) == child) {
+                return true;
+            }
         }
-        return null;
+        return false;
     }
 
     /**
@@ -1386,7 +1411,7 @@ public class SwipeLayout extends FrameLayout {
             return;
         }
         int dx, dy;
-        Rect rect = computeSurfaceLayoutArea(true);
+        Rect rect = computeSurfaceLayoutArea(true, mSurfaceArea);
         if (smooth) {
             mDragHelper.smoothSlideViewTo(surface, rect.left, rect.top);
         } else {
@@ -1394,7 +1419,7 @@ public class SwipeLayout extends FrameLayout {
             dy = rect.top - surface.getTop();
             surface.layout(rect.left, rect.top, rect.right, rect.bottom);
             if (getShowMode() == ShowMode.PullOut) {
-                Rect bRect = computeBottomLayoutAreaViaSurface(ShowMode.PullOut, rect);
+                Rect bRect = computeBottomLayoutAreaViaSurface(ShowMode.PullOut, rect, mBottomArea);
                 if (bottom != null) {
                     bottom.layout(bRect.left, bRect.top, bRect.right, bRect.bottom);
                 }
@@ -1450,7 +1475,7 @@ public class SwipeLayout extends FrameLayout {
         if (smooth)
             mDragHelper.smoothSlideViewTo(getSurfaceView(), getPaddingLeft(), getPaddingTop());
         else {
-            Rect rect = computeSurfaceLayoutArea(false);
+            Rect rect = computeSurfaceLayoutArea(false, mSurfaceArea);
             dx = rect.left - surface.getLeft();
             dy = rect.top - surface.getTop();
             surface.layout(rect.left, rect.top, rect.right, rect.bottom);
@@ -1479,8 +1504,9 @@ public class SwipeLayout extends FrameLayout {
      * a helper function to compute the Rect area that surface will hold in.
      *
      * @param open open status or close status.
+     * @param out  receives the area, returned for convenience.
      */
-    private Rect computeSurfaceLayoutArea(boolean open) {
+    private Rect computeSurfaceLayoutArea(boolean open, Rect out) {
         int l = getPaddingLeft(), t = getPaddingTop();
         if (open) {
             if (mCurrentDragEdge == DragEdge.Left)
@@ -1491,10 +1517,11 @@ public class SwipeLayout extends FrameLayout {
                 t = getPaddingTop() + mDragDistance;
             else t = getPaddingTop() - mDragDistance;
         }
-        return new Rect(l, t, l + getMeasuredWidth(), t + getMeasuredHeight());
+        out.set(l, t, l + getMeasuredWidth(), t + getMeasuredHeight());
+        return out;
     }
 
-    private Rect computeBottomLayoutAreaViaSurface(ShowMode mode, Rect surfaceArea) {
+    private Rect computeBottomLayoutAreaViaSurface(ShowMode mode, Rect surfaceArea, Rect out) {
         Rect rect = surfaceArea;
         View bottomView = getCurrentBottomView();
 
@@ -1525,11 +1552,11 @@ public class SwipeLayout extends FrameLayout {
             else bt = bb - mDragDistance;
 
         }
-        return new Rect(bl, bt, br, bb);
-
+        out.set(bl, bt, br, bb);
+        return out;
     }
 
-    private Rect computeBottomLayDown(DragEdge dragEdge) {
+    private Rect computeBottomLayDown(DragEdge dragEdge, Rect out) {
         int bl = getPaddingLeft(), bt = getPaddingTop();
         int br, bb;
         if (dragEdge == DragEdge.Right) {
@@ -1544,7 +1571,8 @@ public class SwipeLayout extends FrameLayout {
             br = bl + getMeasuredWidth();
             bb = bt + mDragDistance;
         }
-        return new Rect(bl, bt, br, bb);
+        out.set(bl, bt, br, bb);
+        return out;
     }
 
     public void setOnDoubleClickListener(DoubleClickListener doubleClickListener) {
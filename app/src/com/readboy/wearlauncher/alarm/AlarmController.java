@@ -10,10 +10,11 @@ import android.view.View;
 import android.widget.ImageView;
 
 import com.readboy.wearlauncher.R;
+import com.readboy.wearlauncher.utils.ControllerLifecycle;
 
 import java.util.ArrayList;
 
-public class AlarmController {
+public class AlarmController implements ControllerLifecycle.Controller {
 	private static final String TAG = "AlarmController";
 	
 	private final Context mContext;
@@ -34,6 +35,7 @@ public class AlarmController {
 	    }  
 	};  
 	
+	@Override
 	public void resume(){
 		mContext.getContentResolver().registerContentObserver( 
 				Settings.System.getUriFor(Settings.System.NEXT_ALARM_FORMATTED),  
@@ -42,6 +44,7 @@ public class AlarmController {
 		handleStateChanged();
 	}
 	
+	@Override
 	public void pause(){
 		mContext.getContentResolver().unregisterContentObserver(mAlarmObserver);
 	}
@@ -4,8 +4,11 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Matrix;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
 import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
 import android.os.Handler;
 import android.util.AttributeSet;
 import android.widget.ImageView;
@@ -25,22 +28,41 @@ public class BatteryLevelImageView extends ImageView implements BatteryControlle
 	private static final int ANIM_DURATION = 500;
 	private static final int FULL = 96;
 	private Handler mHandler = new Handler();
+	private final BatteryLevelDrawable mDrawable;
+
+	// 电池图的几张源图所有实例共用，只解码一次
+	private static Bitmap sEmpty;
+	private static Bitmap sFull;
+	private static Bitmap sLow;
+	private static Bitmap sChargingFull;
 
 	public BatteryLevelImageView(Context context, AttributeSet attrs) {
 		super(context, attrs);
 		// TODO Auto-generated constructor stub
 		mContext = context;
+		loadSources(context);
+		mDrawable = new BatteryLevelDrawable();
+		setImageDrawable(mDrawable);
+	}
+
+	private static synchronized void loadSources(Context context) {
+		if (sEmpty == null) {
+			sEmpty = BitmapFactory.decodeResource(context.getResources(), R.drawable.battery_nor_empty);
+			sFull = BitmapFactory.decodeResource(context.getResources(), R.drawable.battery_nor_full);
+			sLow = BitmapFactory.decodeResource(context.getResources(), R.drawable.battery_nor_low);
+			sChargingFull = BitmapFactory.decodeResource(context.getResources(), R.drawable.battery_charging_full);
+		}
 	}
 
 	private final Runnable mInvalidate = new Runnable() {
 		@Override
 		public void run() {
 			final int level = updateChargingAnimLevel();
-			setBackgroundResource(0);
+			// 只改电量和填充图，drawable 自己判断要不要重画，不解码也不分配
 			if(mPluggedIn&&mCharging){
-				setImageBitmap(createBatteryChargingImage(level));
+				mDrawable.setBatteryLevel(level, sChargingFull);
 			}else {
-				setImageBitmap(createBatteryImage(level));
+				mDrawable.setBatteryLevel(level, level < 20 ? sLow : sFull);
 			}
 		}
 	};
@@ -85,45 +107,72 @@ public class BatteryLevelImageView extends ImageView implements BatteryControlle
 		return curLevel;
 	}
 
-	private Bitmap createBatteryChargingImage(int level){
-		Bitmap  empty = BitmapFactory.decodeResource(this.getContext().getResources(), R.drawable.battery_nor_empty);
-		int width = empty.getWidth();
-		int high = empty.getHeight();
-		Bitmap bitmap = Bitmap.createBitmap(empty.getWidth(), empty.getHeight(),empty.getConfig());
-		Canvas canvas = new Canvas(bitmap);
-		canvas.drawBitmap(empty, new Matrix(), null);
-		int left = 0;
-		int top = 0;
-		int right = (width*22/30) * level / 100 + width*3/30;
-		int bottom = high;
-		Rect rect = new Rect(left,top,right,bottom);
-		Bitmap  full = BitmapFactory.decodeResource(this.getContext().getResources(), R.drawable.battery_charging_full);
-		canvas.drawBitmap(full, rect, rect, null);
-
-		return bitmap;
-	}
+	/**
+	 * 空电池图上叠一段按电量裁剪的填充图。裁剪宽度算法和原来生成位图时一样：
+	 * 电池主体占宽度的 3/30 ~ 25/30。
+	 */
+	private static final class BatteryLevelDrawable extends Drawable {
+		private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+		private int mLevel = -1;
+		private Bitmap mFill;
+
+		void setBatteryLevel(int level, Bitmap fill) {
+			if (level == mLevel && fill == mFill) {
+				return;
+			}
+			mLevel = level;
+			mFill = fill;
+			invalidateSelf();
+		}
 
-	private Bitmap createBatteryImage(int level){
-		Bitmap  empty = BitmapFactory.decodeResource(this.getContext().getResources(), R.drawable.battery_nor_empty);
-		int width = empty.getWidth();
-		int high = empty.getHeight();
-		Bitmap bitmap = Bitmap.createBitmap(empty.getWidth(), empty.getHeight(),empty.getConfig());
-		Canvas canvas = new Canvas(bitmap);
-		canvas.drawBitmap(empty, new Matrix(), null);
-		int left = 0;
-		int top = 0;
-		int right = (width*22/30) * level / 100 + width*3/30;
-		int bottom = high;
-		Rect rect = new Rect(left,top,right,bottom);
-		if(level < 20){
-			Bitmap  low = BitmapFactory.decodeResource(this.getContext().getResources(), R.drawable.battery_nor_low);
-			canvas.drawBitmap(low, rect, rect, null);
-		}else {
-			Bitmap  full = BitmapFactory.decodeResource(this.getContext().getResources(), R.drawable.battery_nor_full);
-			canvas.drawBitmap(full, rect, rect, null);
+		@Override
+		public void draw(Canvas canvas) {
+			if (sEmpty == null) {
+				return;
+			}
+			final Rect bounds = getBounds();
+			final int width = sEmpty.getWidth();
+			final int height = sEmpty.getHeight();
+			final int saveCount = canvas.save();
+			canvas.translate(bounds.left, bounds.top);
+			if (bounds.width() != width || bounds.height() != height) {
+				canvas.scale((float) bounds.width() / width, (float) bounds.height() / height);
+			}
+			canvas.drawBitmap(sEmpty, 0, 0, mPaint);
+			if (mFill != null && mLevel >= 0) {
+				final int right = (width*22/30) * mLevel / 100 + width*3/30;
+				canvas.clipRect(0, 0, right, height);
+				canvas.drawBitmap(mFill, 0, 0, mPaint);
+			}
+			canvas.restoreToCount(saveCount);
 		}
 
-		return bitmap;
+		@Override
+		public int getIntrinsicWidth() {
+			return sEmpty != null ? sEmpty.getWidth() : -1;
+		}
+
+		@Override
+		public int getIntrinsicHeight() {
+			return sEmpty != null ? sEmpty.getHeight() : -1;
+		}
+
+		@Override
+		public void setAlpha(int alpha) {
+			mPaint.setAlpha(alpha);
+			invalidateSelf();
+		}
+
+		@Override
+		public void setColorFilter(ColorFilter colorFilter) {
+			mPaint.setColorFilter(colorFilter);
+			invalidateSelf();
+		}
+
+		@Override
+		public int getOpacity() {
+			return PixelFormat.TRANSLUCENT;
+		}
 	}
 
 	@Override
@@ -146,6 +195,8 @@ public class BatteryLevelImageView extends ImageView implements BatteryControlle
     @Override
     public void onDetachedFromWindow() {
         super.onDetachedFromWindow();
+        // 不在窗口上时不跑充电动画
+        mHandler.removeCallbacks(mInvalidate);
         if (mBatteryController != null) {
             mBatteryController.removeStateChangedCallback(this);
 			mBatteryController.unregisterReceiver();
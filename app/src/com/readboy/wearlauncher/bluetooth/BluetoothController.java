@@ -28,6 +28,7 @@ import android.widget.ImageView;
 import android.widget.Toast;
 
 import com.readboy.wearlauncher.R;
+import com.readboy.wearlauncher.utils.ControllerLifecycle;
 import com.readboy.wearlauncher.utils.Utils;
 
 import java.util.ArrayList;
@@ -37,7 +38,7 @@ import java.util.ArrayList;
  * preference. It turns on/off Bluetooth and ensures the summary of the
  * preference reflects the current state.
  */
-public final class BluetoothController {
+public final class BluetoothController implements ControllerLifecycle.Controller {
     private final Context mContext;
     private boolean mValidListener;
     private final LocalBluetoothAdapter mLocalAdapter;
@@ -86,6 +87,7 @@ public final class BluetoothController {
         mIntentFilter = new IntentFilter(BluetoothAdapter.ACTION_STATE_CHANGED);
     }
 
+    @Override
     public void resume() {
         if (mLocalAdapter == null) {
             return;
@@ -98,6 +100,7 @@ public final class BluetoothController {
         mValidListener = true;
     }
 
+    @Override
     public void pause() {
         if (mLocalAdapter == null) {
             return;
@@ -13,6 +13,8 @@ import android.net.wifi.WifiManager;
 import android.os.Handler;
 import android.os.Message;
 import android.os.Messenger;
+import android.os.SystemClock;
+import android.support.annotation.VisibleForTesting;
 import android.provider.Settings;
 import android.telephony.PhoneStateListener;
 import android.telephony.ServiceState;
@@ -22,11 +24,15 @@ import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyManager;
 import android.text.TextUtils;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.View;
 import android.widget.TextView;
 
 import com.readboy.wearlauncher.R;
+import com.readboy.wearlauncher.utils.ControllerLifecycle;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
@@ -38,7 +44,7 @@ import android.os.SystemProperties;
 import android.telephony.SubscriptionManager;
 import android.app.readboy.ReadboyWearManager;
 
-public class NetworkController extends BroadcastReceiver {
+public class NetworkController extends BroadcastReceiver implements ControllerLifecycle.Controller {
     // debug
     static final String TAG = "NetworkController";
     static final boolean DEBUG = true;
@@ -47,7 +53,6 @@ public class NetworkController extends BroadcastReceiver {
     private static final int FLIGHT_MODE_ICON = R.drawable.stat_sys_signal_flightmode;
 
     // telephony
-    boolean mHspaDataDistinguishable;
     final TelephonyManager mPhone;
     boolean mDataConnected;
     IccCardConstants.State mSimState = IccCardConstants.State.READY;
@@ -57,7 +62,6 @@ public class NetworkController extends BroadcastReceiver {
     int mDataActivity = TelephonyManager.DATA_ACTIVITY_NONE;
     ServiceState mServiceState;
     SignalStrength mSignalStrength;
-    int[] mDataIconList = TelephonyIcons.DATA_G[0];
     String mNetworkName;
     String mSimName;
     String mNetworkNameDefault;
@@ -70,12 +74,10 @@ public class NetworkController extends BroadcastReceiver {
     int mQSDataTypeIconId;
     int mAirplaneIconId;
     int mNoSimIconId;
-    int mLastSimIconId;
     boolean mDataActive;
     int mLastSignalLevel;
     boolean mNoSim;
     boolean mShowPhoneRSSIForData = false;
-    boolean mShowAtLeastThreeGees = false;
     boolean mAlwaysShowCdmaRssi = false;
 
     String mContentDescriptionPhoneSignal;
@@ -87,14 +89,15 @@ public class NetworkController extends BroadcastReceiver {
     // wifi
     final WifiManager mWifiManager;
     AsyncChannel mWifiChannel;
+    final Handler mWifiHandler;
     boolean mWifiEnabled, mWifiConnected;
     int mWifiRssi, mWifiLevel;
+    int mWifiRawLevel;
     String mWifiSsid;
     int mWifiIconId = 0;
     int mQSWifiIconId = 0;
     int mWifiActivity = /*WifiManager.DATA_ACTIVITY_NONE*/0x00;
     int mVolteStatusIcon = 0;
-    int mLastVolteStatusIcon = 0;
     // bluetooth
     private boolean mBluetoothTethered = false;
     private int mBluetoothTetherIconId = 0;// R.drawable.stat_sys_tether_bluetooth;
@@ -118,10 +121,8 @@ public class NetworkController extends BroadcastReceiver {
     private static final int INET_CONDITION_THRESHOLD = 50;
 
     private boolean mAirplaneMode = false;
-    private boolean mLastAirplaneMode = true;
 
     private Locale mLocale = null;
-    private Locale mLastLocale = null;
 
     // our ui
     Context mContext;
@@ -132,13 +133,11 @@ public class NetworkController extends BroadcastReceiver {
     ArrayList<SignalCluster> mSignalClusters = new ArrayList<SignalCluster>();
     ArrayList<NetworkSignalChangedCallback> mSignalsChangedCallbacks =
             new ArrayList<NetworkSignalChangedCallback>();
-    int mLastPhoneSignalIconId = -1;
-    int mLastDataDirectionIconId = -1;
-    int mLastWifiIconId = -1;
-    int mLastWimaxIconId = -1;
-    int mLastCombinedSignalIconId = -1;
-    int mLastDataTypeIconId = -1;
-    String mLastCombinedLabel = "";
+    // the state most recently pushed to the ui; null forces a full dispatch
+    NetworkState mLastState;
+    boolean mRefreshPending;
+    int mRefreshCount;
+    int mViewMutationCount;
 
     private boolean mHasMobileDataFeature;
     boolean mDataAndWifiStacked = false;
@@ -147,13 +146,43 @@ public class NetworkController extends BroadcastReceiver {
     int mImsRegState = -1;
     boolean mIsImsOverWfc;
     private Config mConfig;
+    private NetworkIconTable mIconTable;
+
+    // 弱信号下 modem 上报的格数会来回跳，显示前先做迟滞过滤
+    private SignalLevelFilter mMobileLevelFilter;
+    private SignalLevelFilter mWifiLevelFilter;
+    private final Handler mSignalHandler = new Handler();
+    private final Runnable mSignalSettleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            final int lastMobileLevel = mLastSignalLevel;
+            final int lastWifiLevel = mWifiLevel;
+            if (mMobileLevelFilter.pendingLevel() >= 0) {
+                updateTelephonySignalStrength();
+            }
+            if (mWifiLevelFilter.pendingLevel() >= 0) {
+                mWifiLevel = mWifiLevelFilter.offer(mWifiRawLevel, uptimeMillis());
+                updateWifiIcons();
+            }
+            scheduleSignalSettle();
+            if (lastMobileLevel != mLastSignalLevel || lastWifiLevel != mWifiLevel) {
+                refreshViews();
+            }
+        }
+    };
 
     private int mFictitiousMobileSignalIconId = 0;
-    private int mLastFictitiousMobileSignalIconId = 0;
     private long mScreenOnTime = 0L;
     private int mDelayTime = 10 * 1000;
 
     private ReadboyWearManager mRBManager;
+    private final IntentFilter mIntentFilter;
+
+    /** 设为 true 时把收到的事件录制到 getExternalFilesDir 下，供 tests/src 的 NetworkTraceReplayer 重放 */
+    static final String TRACE_PROPERTY = "debug.wearlauncher.nettrace";
+    private NetworkTraceRecorder mRecorder;
+    /** 重放轨迹时的虚拟时钟，-1 表示使用真实时间；只有测试会设置 */
+    private long mReplayClock = -1;
 
     public interface SignalCluster {
         void setWifiIndicators(boolean visible, int strengthIcon,
@@ -178,19 +207,24 @@ public class NetworkController extends BroadcastReceiver {
     }
 
     /**
-     * Construct this controller object and register for updates.
+     * Construct this controller object. Call {@link #resume()} to register for updates.
      */
     public NetworkController(Context context) {
         mContext = context;
         final Resources res = context.getResources();
         mConfig = Config.readConfig(context);
+        mIconTable = new NetworkIconTable(context, mConfig.showAtLeast3G,
+                mConfig.hspaDataDistinguishable, mConfig.show4gForLte);
+        mMobileLevelFilter = new SignalLevelFilter(mConfig.signalHoldMs,
+                mConfig.signalMinIntervalMs, mConfig.signalJumpLevels);
+        mWifiLevelFilter = new SignalLevelFilter(mConfig.signalHoldMs,
+                mConfig.signalMinIntervalMs, mConfig.signalJumpLevels);
         ConnectivityManager cm = (ConnectivityManager)mContext.getSystemService(
                 Context.CONNECTIVITY_SERVICE);
         mRBManager = (ReadboyWearManager)mContext.getSystemService(Context.RBW_SERVICE);
         mHasMobileDataFeature = cm.isNetworkSupported(ConnectivityManager.TYPE_MOBILE);
 
         mShowPhoneRSSIForData = res.getBoolean(R.bool.config_showPhoneRSSIForData);
-        mShowAtLeastThreeGees = res.getBoolean(R.bool.config_showMin3G);
         mAlwaysShowCdmaRssi = res.getBoolean(R.bool.config_alwaysUseCdmaRssi);
 
         // set up the default wifi icon, used when no radios have ever appeared
@@ -199,27 +233,15 @@ public class NetworkController extends BroadcastReceiver {
 
         // telephony
         mPhone = (TelephonyManager)context.getSystemService(Context.TELEPHONY_SERVICE);
-        mPhone.listen(mPhoneStateListener,
-                          PhoneStateListener.LISTEN_SERVICE_STATE
-                        | PhoneStateListener.LISTEN_SIGNAL_STRENGTHS
-                        | PhoneStateListener.LISTEN_CALL_STATE
-                        | PhoneStateListener.LISTEN_DATA_CONNECTION_STATE
-                        | PhoneStateListener.LISTEN_DATA_ACTIVITY);
-        mHspaDataDistinguishable = mContext.getResources().getBoolean(
-                R.bool.config_hspa_data_distinguishable);
         mNetworkNameSeparator = mContext.getString(R.string.status_bar_network_name_separator);
         mNetworkNameDefault = mContext.getString(R.string.lockscreen_carrier_default);
         mNetworkName = mNetworkNameDefault;
 
         // wifi
         mWifiManager = (WifiManager) context.getSystemService(Context.WIFI_SERVICE);
-        Handler handler = new WifiHandler();
+        mWifiHandler = new WifiHandler();
         mWifiChannel = new AsyncChannel();
-        Messenger wifiMessenger = mWifiManager.getWifiServiceMessenger();
-        if (wifiMessenger != null) {
-            mWifiChannel.connect(mContext, handler, wifiMessenger);
-        }
-        
+
     	// broadcasts
         IntentFilter filter = new IntentFilter();
         filter.addAction(WifiManager.RSSI_CHANGED_ACTION);
@@ -243,17 +265,112 @@ public class NetworkController extends BroadcastReceiver {
 
         filter.addAction(Intent.ACTION_SCREEN_ON);
         filter.addAction(Intent.ACTION_SCREEN_OFF);
+        mIntentFilter = filter;
+
+        mLocale = mContext.getResources().getConfiguration().locale;
+    }
+
+    /**
+     * Register for updates. The icons keep the state seen before the last
+     * {@link #pause()} until the sticky broadcasts and the initial
+     * PhoneStateListener callbacks bring it up to date.
+     */
+    @Override
+    public void resume() {
+        mPhone.listen(mPhoneStateListener,
+                          PhoneStateListener.LISTEN_SERVICE_STATE
+                        | PhoneStateListener.LISTEN_SIGNAL_STRENGTHS
+                        | PhoneStateListener.LISTEN_CALL_STATE
+                        | PhoneStateListener.LISTEN_DATA_CONNECTION_STATE
+                        | PhoneStateListener.LISTEN_DATA_ACTIVITY);
 
-        context.registerReceiver(this, filter);
+        Messenger wifiMessenger = mWifiManager.getWifiServiceMessenger();
+        if (wifiMessenger != null) {
+            mWifiChannel.connect(mContext, mWifiHandler, wifiMessenger);
+        }
+
+        mContext.registerReceiver(this, mIntentFilter);
 
         // AIRPLANE_MODE_CHANGED is sent at boot; we've probably already missed it
         updateAirplaneMode();
+        // push the cached state so re-attached views are not blank
+        refreshViews();
 
-        mLastLocale = mContext.getResources().getConfiguration().locale;
+        if (SystemProperties.getBoolean(TRACE_PROPERTY, false)) {
+            startRecording(new File(mContext.getExternalFilesDir(null),
+                    "nettrace-" + System.currentTimeMillis() + ".txt"));
+        }
     }
 
-    public void unregisterReceiver() {
+    @Override
+    public void pause() {
         mContext.unregisterReceiver(this);
+        mPhone.listen(mPhoneStateListener, PhoneStateListener.LISTEN_NONE);
+        mWifiChannel.disconnect();
+        mHandler.removeMessages(0x110);
+        mSignalHandler.removeCallbacks(mSignalSettleRunnable);
+        if (mRefreshPending) {
+            Choreographer.getInstance().removeFrameCallback(mRefreshFrameCallback);
+            mRefreshPending = false;
+        }
+        stopRecording();
+    }
+
+    // ===== Trace record / replay ==================================================
+
+    void startRecording(File file) {
+        stopRecording();
+        try {
+            mRecorder = new NetworkTraceRecorder(file);
+        } catch (IOException e) {
+            Log.w(TAG, "cannot record to " + file, e);
+        }
+    }
+
+    void stopRecording() {
+        if (mRecorder != null) {
+            mRecorder.close();
+            mRecorder = null;
+        }
+    }
+
+    @VisibleForTesting
+    void beginReplay(long startTime) {
+        mReplayClock = startTime;
+        mSignalHandler.removeCallbacks(mSignalSettleRunnable);
+    }
+
+    /**
+     * Move the replay clock to {@code time}, running every hysteresis re-check
+     * that falls due on the way.
+     */
+    @VisibleForTesting
+    void advanceReplayClock(long time) {
+        long delay;
+        while ((delay = nextSettleDelay(mReplayClock)) >= 0 && mReplayClock + delay <= time) {
+            mReplayClock += delay;
+            mSignalSettleRunnable.run();
+        }
+        mReplayClock = time;
+    }
+
+    /**
+     * Run a scheduled refresh now instead of on the next frame.
+     */
+    @VisibleForTesting
+    void flushRefresh() {
+        if (mRefreshPending) {
+            Choreographer.getInstance().removeFrameCallback(mRefreshFrameCallback);
+            mRefreshPending = false;
+            refreshViewsNow();
+        }
+    }
+
+    @VisibleForTesting
+    void endReplay() {
+        mReplayClock = -1;
+        mMobileLevelFilter.reset();
+        mWifiLevelFilter.reset();
     }
 
     public boolean hasMobileDataFeature() {
@@ -296,84 +413,64 @@ public class NetworkController extends BroadcastReceiver {
     }
 
     public void refreshSignalCluster(SignalCluster cluster) {
-        cluster.setWifiIndicators(
-                // only show wifi in the cluster if connected or if wifi-only
-                mWifiEnabled && (mWifiConnected || !mHasMobileDataFeature),
-                mWifiIconId,
-                mContentDescriptionWifi);
-        cluster.setVolteStatusIcon(mVolteStatusIcon);
-        int dataTypeIconId = mDataTypeIconId;
-		int phoneSignalIconId = mPhoneSignalIconId;
-		int dataSignalIconId = mDataSignalIconId;
-        if(mNoSimIconId == 0 && mFictitiousMobileSignalIconId != 0/* && Math.abs(System.currentTimeMillis() - mScreenOnTime) <= mDelayTime*/){
-            dataTypeIconId = mFictitiousMobileSignalIconId;
-			if(phoneSignalIconId == R.drawable.stat_sys_signal_null) {
-				phoneSignalIconId = R.drawable.stat_sys_signal_4;
-			}
-			
-			if(dataSignalIconId == R.drawable.stat_sys_signal_null) {
-				dataSignalIconId = R.drawable.stat_sys_signal_4;
-			}
-        }
-        Log.i(TAG,String.format("dataTypeIconId=%d,mDataTypeIconId=%d,mFictitiousMobileSignalIconId=%d",
-                dataTypeIconId,mDataTypeIconId,mFictitiousMobileSignalIconId));
-        if (mIsWimaxEnabled && mWimaxConnected) {
-            // wimax is special
-            cluster.setMobileDataIndicators(
-                    true,
-                    mAlwaysShowCdmaRssi ? phoneSignalIconId : mWimaxIconId,
-                    dataTypeIconId,
-                    mContentDescriptionWimax,
-                    mContentDescriptionDataType,mNoSimIconId);
-        } else {
-            // normal mobile data
-            cluster.setMobileDataIndicators(
-                    mHasMobileDataFeature,
-                    mShowPhoneRSSIForData ? phoneSignalIconId : dataSignalIconId,
-                    dataTypeIconId,
-                    mContentDescriptionPhoneSignal,
-                    mContentDescriptionDataType,mNoSimIconId);
-        }
-        cluster.setIsAirplaneMode(mAirplaneMode, mAirplaneIconId);
+        applySignalCluster(cluster, getState(), null);
     }
 
     void notifySignalsChangedCallbacks(NetworkSignalChangedCallback cb) {
-        // only show wifi in the cluster if connected or if wifi-only
-        boolean wifiEnabled = mWifiEnabled && (mWifiConnected || !mHasMobileDataFeature);
-        String wifiDesc = wifiEnabled ?
-                mWifiSsid : null;
-        boolean wifiIn = wifiEnabled && mWifiSsid != null
-                && (mWifiActivity == WifiManager.DATA_ACTIVITY_INOUT
-                || mWifiActivity == WifiManager.DATA_ACTIVITY_IN);
-        boolean wifiOut = wifiEnabled && mWifiSsid != null
-                && (mWifiActivity == WifiManager.DATA_ACTIVITY_INOUT
-                || mWifiActivity == WifiManager.DATA_ACTIVITY_OUT);
-        cb.onWifiSignalChanged(wifiEnabled, mQSWifiIconId, wifiIn, wifiOut,
-                mContentDescriptionWifi, wifiDesc);
+        applySignalsChangedCallback(cb, getState(), null);
+    }
 
-        boolean mobileIn = mDataConnected && (mDataActivity == TelephonyManager.DATA_ACTIVITY_INOUT
-                || mDataActivity == TelephonyManager.DATA_ACTIVITY_IN);
-        boolean mobileOut = mDataConnected && (mDataActivity == TelephonyManager.DATA_ACTIVITY_INOUT
-                || mDataActivity == TelephonyManager.DATA_ACTIVITY_OUT);
-        int networkType = NetworkTypeUtils.getNetworkTypeIcon(mServiceState,mConfig,hasService());
-        if (isEmergencyOnly()) {
-            cb.onMobileDataSignalChanged(false, mQSPhoneSignalIconId,
-                    mContentDescriptionPhoneSignal, networkType,mQSDataTypeIconId, mobileIn, mobileOut,
-                    mContentDescriptionDataType, null);
-        } else {
-            if (mIsWimaxEnabled && mWimaxConnected) {
-                // Wimax is special
-                cb.onMobileDataSignalChanged(true, mQSPhoneSignalIconId,
-                        mContentDescriptionPhoneSignal,networkType, mQSDataTypeIconId, mobileIn, mobileOut,
-                        mContentDescriptionDataType, mSimName/*mNetworkName*/);
-            } else {
-                // Normal mobile data
-                cb.onMobileDataSignalChanged(mHasMobileDataFeature, mQSPhoneSignalIconId,
-                        mContentDescriptionPhoneSignal,networkType, mQSDataTypeIconId, mobileIn, mobileOut,
-                        mContentDescriptionDataType, mSimName/*mNetworkName*/);
-            }
+    private NetworkState getState() {
+        if (mRefreshPending) {
+            // 撤掉已经排好的帧回调，同一帧里不再刷第二次
+            flushRefresh();
+        } else if (mLastState == null) {
+            refreshViewsNow();
+        }
+        return mLastState;
+    }
+
+    /**
+     * Push to the cluster only the indicator groups that differ from {@code last}.
+     */
+    private void applySignalCluster(SignalCluster cluster, NetworkState state, NetworkState last) {
+        if (!state.sameWifiIndicators(last)) {
+            cluster.setWifiIndicators(state.wifiVisible, state.wifiIconId, state.wifiDescription);
+            mViewMutationCount++;
+        }
+        if (!state.sameVolteIndicator(last)) {
+            cluster.setVolteStatusIcon(state.volteIconId);
+            mViewMutationCount++;
+        }
+        if (!state.sameMobileIndicators(last)) {
+            cluster.setMobileDataIndicators(state.mobileVisible, state.mobileIconId,
+                    state.mobileTypeIconId, state.mobileDescription,
+                    state.mobileTypeDescription, state.noSimIconId);
+            mViewMutationCount++;
+        }
+        if (!state.sameAirplaneIndicator(last)) {
+            cluster.setIsAirplaneMode(state.airplaneMode, state.airplaneIconId);
+            mViewMutationCount++;
+        }
+    }
+
+    private void applySignalsChangedCallback(NetworkSignalChangedCallback cb,
+            NetworkState state, NetworkState last) {
+        if (!state.sameWifiSignal(last)) {
+            cb.onWifiSignalChanged(state.qsWifiEnabled, state.qsWifiIconId, state.wifiIn,
+                    state.wifiOut, state.wifiDescription, state.wifiSsid);
+            mViewMutationCount++;
+        }
+        if (!state.sameMobileSignal(last)) {
+            cb.onMobileDataSignalChanged(state.qsMobileEnabled, state.qsPhoneSignalIconId,
+                    state.phoneSignalDescription, state.networkType, state.qsDataTypeIconId,
+                    state.mobileIn, state.mobileOut, state.dataTypeDescription, state.mobileName);
+            mViewMutationCount++;
+        }
+        if (last == null || state.airplaneMode != last.airplaneMode) {
+            cb.onAirplaneModeChanged(state.airplaneMode);
+            mViewMutationCount++;
         }
-        cb.onAirplaneModeChanged(mAirplaneMode);
     }
 
     public void setStackedMode(boolean stacked) {
@@ -383,8 +480,16 @@ public class NetworkController extends BroadcastReceiver {
     @Override
     public void onReceive(Context context, Intent intent) {
         final String action = intent.getAction();
-        if (action.equals(WifiManager.RSSI_CHANGED_ACTION)
-                || action.equals(WifiManager.WIFI_STATE_CHANGED_ACTION)
+        if (mRecorder != null) {
+            mRecorder.recordIntent(intent);
+        }
+        if (action.equals(WifiManager.RSSI_CHANGED_ACTION)) {
+            final int lastLevel = mWifiLevel;
+            updateWifiState(intent);
+            if (lastLevel != mWifiLevel) {
+                refreshViews();
+            }
+        } else if (action.equals(WifiManager.WIFI_STATE_CHANGED_ACTION)
                 || action.equals(WifiManager.NETWORK_STATE_CHANGED_ACTION)) {
             updateWifiState(intent);
             refreshViews();
@@ -409,6 +514,9 @@ public class NetworkController extends BroadcastReceiver {
             refreshViews();
         } else if (action.equals(Intent.ACTION_AIRPLANE_MODE_CHANGED)) {
             refreshLocale();
+            // 飞行模式切换不做迟滞，下一次上报直接显示
+            mMobileLevelFilter.reset();
+            mWifiLevelFilter.reset();
             updateAirplaneMode();
             updateSimIcon();
             refreshViews();
@@ -450,14 +558,30 @@ public class NetworkController extends BroadcastReceiver {
     PhoneStateListener mPhoneStateListener = new PhoneStateListener() {
         @Override
         public void onSignalStrengthsChanged(SignalStrength signalStrength) {
+            if (mRecorder != null) {
+                mRecorder.recordSignalStrength(signalStrength);
+            }
             mSignalStrength = signalStrength;
+            final int lastLevel = mLastSignalLevel;
+            final int lastIconId = mPhoneSignalIconId;
             updateTelephonySignalStrength();
-            refreshViews();
+            // 格数被过滤掉时图标不变，不必刷新
+            if (lastLevel != mLastSignalLevel || lastIconId != mPhoneSignalIconId) {
+                refreshViews();
+            }
         }
 
         @Override
         public void onServiceStateChanged(ServiceState state) {
+            if (mRecorder != null) {
+                mRecorder.recordServiceState(state);
+            }
+            final boolean wasEmergencyOnly = isEmergencyOnly();
             mServiceState = state;
+            if (wasEmergencyOnly != isEmergencyOnly()) {
+                // 进出紧急呼叫状态时立即显示真实格数
+                mMobileLevelFilter.reset();
+            }
             mDataNetType =
                     NetworkTypeUtils.getDataNetTypeFromServiceState(mDataNetType, mServiceState);
             getVolteStatusIcon();
@@ -472,6 +596,9 @@ public class NetworkController extends BroadcastReceiver {
             if (DEBUG) {
                 Log.d(TAG, "onCallStateChanged state=" + state);
             }
+            if (mRecorder != null) {
+                mRecorder.recordCallState(state);
+            }
             // In cdma, if a voice call is made, RSSI should switch to 1x.
             if (isCdma()) {
                 updateTelephonySignalStrength();
@@ -485,6 +612,9 @@ public class NetworkController extends BroadcastReceiver {
                 Log.d(TAG, "onDataConnectionStateChanged: state=" + state
                         + " type=" + networkType);
             }
+            if (mRecorder != null) {
+                mRecorder.recordDataConnection(state, networkType);
+            }
             mDataState = state;
             mDataNetType = networkType;
             mDataNetType =
@@ -500,6 +630,9 @@ public class NetworkController extends BroadcastReceiver {
             if (DEBUG) {
                 Log.d(TAG, "onDataActivity: direction=" + direction);
             }
+            if (mRecorder != null) {
+                mRecorder.recordDataActivity(direction);
+            }
             mDataActivity = direction;
             updateDataIcon();
             refreshViews();
@@ -566,7 +699,14 @@ public class NetworkController extends BroadcastReceiver {
     }
 
     private void refreshLocale() {
-        mLocale = mContext.getResources().getConfiguration().locale;
+        Locale locale = mContext.getResources().getConfiguration().locale;
+        if (locale != null && !locale.equals(mLocale)) {
+            mLocale = locale;
+            // the cached descriptions were resolved in the old locale
+            mIconTable = new NetworkIconTable(mContext, mConfig.showAtLeast3G,
+                    mConfig.hspaDataDistinguishable, mConfig.show4gForLte);
+            mLastState = null;
+        }
     }
 
    
@@ -576,6 +716,7 @@ public class NetworkController extends BroadcastReceiver {
             mPhoneSignalIconId = R.drawable.stat_sys_signal_null;
             mQSPhoneSignalIconId = R.drawable.ic_qs_signal_no_signal;
             mDataSignalIconId = R.drawable.stat_sys_signal_null;
+            mMobileLevelFilter.reset();
         } else {
             if (mSignalStrength == null) {
                 if (CHATTY) Log.d(TAG, "updateTelephonySignalStrength: mSignalStrength == null");
@@ -584,47 +725,70 @@ public class NetworkController extends BroadcastReceiver {
                 mDataSignalIconId = R.drawable.stat_sys_signal_null;
                 mContentDescriptionPhoneSignal = mContext.getString(
                         AccessibilityContentDescriptions.PHONE_SIGNAL_STRENGTH[0]);
+                mMobileLevelFilter.reset();
             } else {
-                int iconLevel = 0;
-                int[] iconList;
+                final int level;
                 if (isCdma() && mAlwaysShowCdmaRssi) {
-                    mLastSignalLevel = iconLevel = mSignalStrength.getCdmaLevel();
+                    level = mSignalStrength.getCdmaLevel();
                 } else {
-                    mLastSignalLevel = iconLevel = mSignalStrength.getLevel();
+                    level = mSignalStrength.getLevel();
                 }
-                //mLastSignalLevel = iconLevel = mSignalStrength.getLevel();
-                if (isCdma()) {
-                    if (isCdmaEri()) {
-                        iconList = TelephonyIcons.TELEPHONY_SIGNAL_STRENGTH_ROAMING[mInetCondition];
-                    } else {
-                        iconList = TelephonyIcons.TELEPHONY_SIGNAL_STRENGTH[mInetCondition];
-                    }
-                } else {
-                    // Though mPhone is a Manager, this call is not an IPC
-                    if (mPhone.isNetworkRoaming()) {
-                        iconList = TelephonyIcons.TELEPHONY_SIGNAL_STRENGTH_ROAMING[mInetCondition];
-                    } else {
-                        iconList = TelephonyIcons.TELEPHONY_SIGNAL_STRENGTH[mInetCondition];
-                    }
-                }
-                {//add by lzx
-                    iconList = TelephonyIcons.SIGNAL_STRENGTH[mInetCondition];
-                    iconLevel = iconLevel < iconList.length ? iconLevel : iconList.length - 1;
-                }
-                mPhoneSignalIconId = iconList[iconLevel];
-                mQSPhoneSignalIconId =
-                        TelephonyIcons.QS_TELEPHONY_SIGNAL_STRENGTH[mInetCondition][iconLevel];
-                mContentDescriptionPhoneSignal = mContext.getString(
-                        AccessibilityContentDescriptions.PHONE_SIGNAL_STRENGTH[iconLevel]);
-                mDataSignalIconId = TelephonyIcons.DATA_SIGNAL_STRENGTH[mInetCondition][iconLevel];
+                mLastSignalLevel = mMobileLevelFilter.offer(level, uptimeMillis());
+                scheduleSignalSettle();
+                final int key = iconKey(false);
+                mPhoneSignalIconId = mIconTable.phoneSignalIcon(key);
+                mQSPhoneSignalIconId = mIconTable.qsPhoneSignalIcon(key);
+                mContentDescriptionPhoneSignal = mIconTable.phoneSignalDescription(key);
+                mDataSignalIconId = mIconTable.dataSignalIcon(key);
             }
         }
     }
 
+    /**
+     * Re-check the hysteresis filters once the earliest pending level is due.
+     */
+    private void scheduleSignalSettle() {
+        mSignalHandler.removeCallbacks(mSignalSettleRunnable);
+        if (mReplayClock >= 0) {
+            // 重放时由 advanceReplayClock 按虚拟时间驱动
+            return;
+        }
+        final long delay = nextSettleDelay(uptimeMillis());
+        if (delay >= 0) {
+            mSignalHandler.postDelayed(mSignalSettleRunnable, delay);
+        }
+    }
+
+    private long nextSettleDelay(long now) {
+        final long mobileDelay = mMobileLevelFilter.pendingDelay(now);
+        final long wifiDelay = mWifiLevelFilter.pendingDelay(now);
+        return mobileDelay < 0 ? wifiDelay
+                : wifiDelay < 0 ? mobileDelay : Math.min(mobileDelay, wifiDelay);
+    }
+
+    private long uptimeMillis() {
+        return mReplayClock >= 0 ? mReplayClock : SystemClock.uptimeMillis();
+    }
+
+    /**
+     * Pack the current telephony state into a {@link NetworkIconTable} key.
+     */
+    private int iconKey(boolean airplane) {
+        return NetworkIconTable.pack(mDataNetType, mLastSignalLevel, mInetCondition,
+                mDataActivity, isRoaming(), airplane);
+    }
+
+    private boolean isRoaming() {
+        if (isCdma()) {
+            return isCdmaEri();
+        }
+        // Though mPhone is a Manager, this call is not an IPC
+        return mPhone.isNetworkRoaming();
+    }
+
     private final void updateDataNetType() {
         if (mIsWimaxEnabled && mWimaxConnected) {
             // wimax is a special 4g network not handled by telephony
-            mDataIconList = TelephonyIcons.DATA_4G[mInetCondition];
             mDataTypeIconId = R.drawable.stat_sys_data_fully_connected_4g;
             mQSDataTypeIconId = TelephonyIcons.QS_DATA_4G[mInetCondition];
             mContentDescriptionDataType = mContext.getString(
@@ -632,144 +796,15 @@ public class NetworkController extends BroadcastReceiver {
         } else if (!hasService() || mDataState != TelephonyManager.DATA_CONNECTED) {
             mDataTypeIconId = 0;
         } else {
-            switch (mDataNetType) {
-                case TelephonyManager.NETWORK_TYPE_UNKNOWN:
-                    if (!mShowAtLeastThreeGees) {
-                        mDataIconList = TelephonyIcons.DATA_G[mInetCondition];
-                        mDataTypeIconId = 0;
-                        mQSDataTypeIconId = 0;
-                        mContentDescriptionDataType = mContext.getString(
-                                R.string.accessibility_data_connection_gprs);
-                        break;
-                    } else {
-                        // fall through
-                    }
-                case TelephonyManager.NETWORK_TYPE_EDGE:
-                    if (!mShowAtLeastThreeGees) {
-                        mDataIconList = TelephonyIcons.DATA_E[mInetCondition];
-                        mDataTypeIconId = R.drawable.stat_sys_data_fully_connected_e;
-                        mQSDataTypeIconId = TelephonyIcons.QS_DATA_E[mInetCondition];
-                        mContentDescriptionDataType = mContext.getString(
-                                R.string.accessibility_data_connection_edge);
-                        break;
-                    } else {
-                        // fall through
-                    }
-                case TelephonyManager.NETWORK_TYPE_UMTS:
-                    mDataIconList = TelephonyIcons.DATA_3G[mInetCondition];
-                    mDataTypeIconId = R.drawable.stat_sys_data_fully_connected_3g;
-                    mQSDataTypeIconId = TelephonyIcons.QS_DATA_3G[mInetCondition];
-                    mContentDescriptionDataType = mContext.getString(
-                            R.string.accessibility_data_connection_3g);
-                    break;
-                case TelephonyManager.NETWORK_TYPE_HSDPA:
-                case TelephonyManager.NETWORK_TYPE_HSUPA:
-                case TelephonyManager.NETWORK_TYPE_HSPA:
-                //case TelephonyManager.NETWORK_TYPE_HSPAP:
-                    if (mHspaDataDistinguishable) {
-                        mDataIconList = TelephonyIcons.DATA_H[mInetCondition];
-                        mDataTypeIconId = R.drawable.stat_sys_data_fully_connected_h;
-                        mQSDataTypeIconId = TelephonyIcons.QS_DATA_H[mInetCondition];
-                        mContentDescriptionDataType = mContext.getString(
-                                R.string.accessibility_data_connection_3_5g);
-                    } else {
-                        mDataIconList = TelephonyIcons.DATA_3G[mInetCondition];
-                        mDataTypeIconId = R.drawable.stat_sys_data_fully_connected_3g;
-                        mQSDataTypeIconId = TelephonyIcons.QS_DATA_3G[mInetCondition];
-                        mContentDescriptionDataType = mContext.getString(
-                                R.string.accessibility_data_connection_3g);
-                    }
-                    break;
-                case TelephonyManager.NETWORK_TYPE_HSPAP:
-                    if (mHspaDataDistinguishable) {
-                        mDataIconList = TelephonyIcons.DATA_HP[mInetCondition];
-                        mDataTypeIconId = R.drawable.stat_sys_data_fully_connected_hp;
-                        mQSDataTypeIconId = TelephonyIcons.QS_DATA_HP[mInetCondition];
-                        mContentDescriptionDataType = mContext.getString(
-                                R.string.accessibility_data_connection_3_5g);
-                    } else {
-                        mDataIconList = TelephonyIcons.DATA_3G[mInetCondition];
-                        mDataTypeIconId = R.drawable.stat_sys_data_fully_connected_3g;
-                        mQSDataTypeIconId = TelephonyIcons.QS_DATA_3G[mInetCondition];
-                        mContentDescriptionDataType = mContext.getString(
-                                R.string.accessibility_data_connection_3g);
-                    }
-                    break;
-                case TelephonyManager.NETWORK_TYPE_CDMA:
-                    if (!mShowAtLeastThreeGees) {
-                        // display 1xRTT for IS95A/B
-                        mDataIconList = TelephonyIcons.DATA_1X[mInetCondition];
-                        mDataTypeIconId = R.drawable.stat_sys_data_fully_connected_1x;
-                        mQSDataTypeIconId = TelephonyIcons.QS_DATA_1X[mInetCondition];
-                        mContentDescriptionDataType = mContext.getString(
-                                R.string.accessibility_data_connection_cdma);
-                        break;
-                    } else {
-                        // fall through
-                    }
-                case TelephonyManager.NETWORK_TYPE_1xRTT:
-                    if (!mShowAtLeastThreeGees) {
-                        mDataIconList = TelephonyIcons.DATA_1X[mInetCondition];
-                        mDataTypeIconId = R.drawable.stat_sys_data_fully_connected_1x;
-                        mQSDataTypeIconId = TelephonyIcons.QS_DATA_1X[mInetCondition];
-                        mContentDescriptionDataType = mContext.getString(
-                                R.string.accessibility_data_connection_cdma);
-                        break;
-                    } else {
-                        // fall through
-                    }
-                case TelephonyManager.NETWORK_TYPE_EVDO_0: //fall through
-                case TelephonyManager.NETWORK_TYPE_EVDO_A:
-                case TelephonyManager.NETWORK_TYPE_EVDO_B:
-                case TelephonyManager.NETWORK_TYPE_EHRPD:
-                    mDataIconList = TelephonyIcons.DATA_3G[mInetCondition];
-                    mDataTypeIconId = R.drawable.stat_sys_data_fully_connected_3g;
-                    mQSDataTypeIconId = TelephonyIcons.QS_DATA_3G[mInetCondition];
-                    mContentDescriptionDataType = mContext.getString(
-                            R.string.accessibility_data_connection_3g);
-                    break;
-                case TelephonyManager.NETWORK_TYPE_LTE:
-                    boolean show4GforLTE = mContext.getResources().getBoolean(R.bool.config_show4GForLTE);
-                    if (show4GforLTE) {
-                        mDataIconList = TelephonyIcons.DATA_4G[mInetCondition];
-                        mDataTypeIconId = R.drawable.stat_sys_data_fully_connected_4g;
-                        mQSDataTypeIconId = TelephonyIcons.QS_DATA_4G[mInetCondition];
-                        mContentDescriptionDataType = mContext.getString(
-                                R.string.accessibility_data_connection_4g);
-                    } else {
-                        mDataIconList = TelephonyIcons.DATA_LTE[mInetCondition];
-                        mDataTypeIconId = R.drawable.stat_sys_data_fully_connected_lte;
-                        mQSDataTypeIconId = TelephonyIcons.QS_DATA_LTE[mInetCondition];
-                        mContentDescriptionDataType = mContext.getString(
-                                R.string.accessibility_data_connection_lte);
-                    }
-                    break;
-                default:
-                    if (!mShowAtLeastThreeGees) {
-                        mDataIconList = TelephonyIcons.DATA_G[mInetCondition];
-                        mDataTypeIconId = R.drawable.stat_sys_data_fully_connected_g;
-                        mQSDataTypeIconId = TelephonyIcons.QS_DATA_G[mInetCondition];
-                        mContentDescriptionDataType = mContext.getString(
-                                R.string.accessibility_data_connection_gprs);
-                    } else {
-                        mDataIconList = TelephonyIcons.DATA_3G[mInetCondition];
-                        mDataTypeIconId = R.drawable.stat_sys_data_fully_connected_3g;
-                        mQSDataTypeIconId = TelephonyIcons.QS_DATA_3G[mInetCondition];
-                        mContentDescriptionDataType = mContext.getString(
-                                R.string.accessibility_data_connection_3g);
-                    }
-                    break;
-            }
+            final int key = iconKey(false);
+            mDataTypeIconId = mIconTable.dataTypeIcon(key);
+            mQSDataTypeIconId = mIconTable.qsDataTypeIcon(key);
+            mContentDescriptionDataType = mIconTable.dataTypeDescription(key);
         }
 
-        if (isCdma()) {
-            if (isCdmaEri()) {
-                mDataTypeIconId = R.drawable.stat_sys_data_fully_connected_roam;
-                mQSDataTypeIconId = TelephonyIcons.QS_DATA_R[mInetCondition];
-            }
-        } else if (mPhone.isNetworkRoaming()) {
-                mDataTypeIconId = R.drawable.stat_sys_data_fully_connected_roam;
-                mQSDataTypeIconId = TelephonyIcons.QS_DATA_R[mInetCondition];
+        if (isRoaming()) {
+            mDataTypeIconId = R.drawable.stat_sys_data_fully_connected_roam;
+            mQSDataTypeIconId = TelephonyIcons.QS_DATA_R[mInetCondition];
         }
     }
 
@@ -806,21 +841,7 @@ public class NetworkController extends BroadcastReceiver {
                     mSimState == IccCardConstants.State.UNKNOWN) {
             	mNoSim = false;
                 if (hasService() && mDataState == TelephonyManager.DATA_CONNECTED) {
-                    switch (mDataActivity) {
-                        case TelephonyManager.DATA_ACTIVITY_IN:
-                            iconId = mDataIconList[1];
-                            break;
-                        case TelephonyManager.DATA_ACTIVITY_OUT:
-                            iconId = mDataIconList[2];
-                            break;
-                        case TelephonyManager.DATA_ACTIVITY_INOUT:
-                            iconId = mDataIconList[3];
-                            break;
-                        default:
-                            iconId = mDataIconList[0];
-                            break;
-                    }
-                    mDataDirectionIconId = iconId;
+                    iconId = mIconTable.dataActivityIcon(iconKey(false));
                 } else {
                     iconId = 0;
                     visible = false;
@@ -833,21 +854,7 @@ public class NetworkController extends BroadcastReceiver {
         } else {
             // CDMA case, mDataActivity can be also DATA_ACTIVITY_DORMANT
             if (hasService() && mDataState == TelephonyManager.DATA_CONNECTED) {
-                switch (mDataActivity) {
-                    case TelephonyManager.DATA_ACTIVITY_IN:
-                        iconId = mDataIconList[1];
-                        break;
-                    case TelephonyManager.DATA_ACTIVITY_OUT:
-                        iconId = mDataIconList[2];
-                        break;
-                    case TelephonyManager.DATA_ACTIVITY_INOUT:
-                        iconId = mDataIconList[3];
-                        break;
-                    case TelephonyManager.DATA_ACTIVITY_DORMANT:
-                    default:
-                        iconId = mDataIconList[0];
-                        break;
-                }
+                iconId = mIconTable.dataActivityIcon(iconKey(false));
             } else {
                 iconId = 0;
                 visible = false;
@@ -1014,6 +1021,9 @@ public class NetworkController extends BroadcastReceiver {
                     }
                     break;
                 case WifiManager.DATA_ACTIVITY_NOTIFICATION:
+                    if (mRecorder != null) {
+                        mRecorder.recordWifiActivity(msg.arg1);
+                    }
                     if (msg.arg1 != mWifiActivity) {
                         mWifiActivity = msg.arg1;
                         refreshViews();
@@ -1051,32 +1061,25 @@ public class NetworkController extends BroadcastReceiver {
                 }
             } else if (!mWifiConnected) {
                 mWifiSsid = null;
+                mWifiLevelFilter.reset();
             }
         } else if (action.equals(WifiManager.RSSI_CHANGED_ACTION)) {
             mWifiRssi = intent.getIntExtra(WifiManager.EXTRA_NEW_RSSI, -200);
-            mWifiLevel = WifiManager.calculateSignalLevel(
+            mWifiRawLevel = WifiManager.calculateSignalLevel(
                     mWifiRssi, WifiIcons.WIFI_LEVEL_COUNT);
+            mWifiLevel = mWifiLevelFilter.offer(mWifiRawLevel, uptimeMillis());
+            scheduleSignalSettle();
         }
 
         updateWifiIcons();
     }
 
     private void updateWifiIcons() {
-        if (mWifiConnected) {
-            mWifiIconId = WifiIcons.WIFI_SIGNAL_STRENGTH[mInetCondition][mWifiLevel];
-            mQSWifiIconId = WifiIcons.QS_WIFI_SIGNAL_STRENGTH[mInetCondition][mWifiLevel];
-            mContentDescriptionWifi = mContext.getString(
-                    AccessibilityContentDescriptions.WIFI_CONNECTION_STRENGTH[mWifiLevel]);
-        } else {
-            if (mDataAndWifiStacked) {
-                mWifiIconId = 0;
-                mQSWifiIconId = 0;
-            } else {
-                mWifiIconId = mWifiEnabled ? R.drawable.stat_sys_wifi_signal_null : 0;
-                mQSWifiIconId = mWifiEnabled ? R.drawable.ic_qs_wifi_no_network : 0;
-            }
-            mContentDescriptionWifi = mContext.getString(R.string.accessibility_no_wifi);
-        }
+        final int key = NetworkIconTable.packWifi(mWifiLevel, mInetCondition, mWifiEnabled,
+                mWifiConnected, mDataAndWifiStacked);
+        mWifiIconId = mIconTable.wifiIcon(key);
+        mQSWifiIconId = mIconTable.qsWifiIcon(key);
+        mContentDescriptionWifi = mIconTable.wifiDescription(key);
     }
 
     private String huntForSsid(WifiInfo info) {
@@ -1192,6 +1195,11 @@ public class NetworkController extends BroadcastReceiver {
         public boolean alwaysShowCdmaRssi = false;
         public boolean show4gForLte = false;
         public boolean hspaDataDistinguishable;
+        /** 新格数需保持的时间，超过 signalJumpLevels 格的跳变不受限 */
+        public long signalHoldMs = 2000;
+        /** 同一指示器两次变化的最小间隔 */
+        public long signalMinIntervalMs = 1000;
+        public int signalJumpLevels = 2;
 
         static Config readConfig(Context context) {
             Config config = new Config();
@@ -1203,20 +1211,134 @@ public class NetworkController extends BroadcastReceiver {
             config.show4gForLte = res.getBoolean(R.bool.config_show4GForLTE);
             config.hspaDataDistinguishable =
                     res.getBoolean(R.bool.config_hspa_data_distinguishable);
+            config.signalHoldMs = res.getInteger(R.integer.config_signalLevelHoldMs);
+            config.signalMinIntervalMs =
+                    res.getInteger(R.integer.config_signalLevelMinIntervalMs);
+            config.signalJumpLevels = res.getInteger(R.integer.config_signalLevelJump);
             return config;
         }
     }
 
     // ===== Update the views =======================================================
 
+    /**
+     * Schedule a refresh. Any number of state changes arriving before the next
+     * frame are collapsed into a single {@link #refreshViewsNow()}.
+     */
     void refreshViews() {
+        if (!mRefreshPending) {
+            mRefreshPending = true;
+            Choreographer.getInstance().postFrameCallback(mRefreshFrameCallback);
+        }
+    }
+
+    private final Choreographer.FrameCallback mRefreshFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mRefreshPending = false;
+            refreshViewsNow();
+        }
+    };
+
+    @VisibleForTesting
+    int getRefreshCount() {
+        return mRefreshCount;
+    }
+
+    @VisibleForTesting
+    int getViewMutationCount() {
+        return mViewMutationCount;
+    }
+
+    void refreshViewsNow() {
+        mRefreshCount++;
+        NetworkState state = buildState();
+        NetworkState last = mLastState;
+        mLastState = state;
+
+        // update QS
+        for (NetworkSignalChangedCallback cb : mSignalsChangedCallbacks) {
+            applySignalsChangedCallback(cb, state, last);
+        }
+
+        for (SignalCluster cluster : mSignalClusters) {
+            applySignalCluster(cluster, state, last);
+        }
+
+        int N;
+        // the combinedLabel in the notification panel
+        if (last == null || !TextUtils.equals(last.combinedLabel, state.combinedLabel)) {
+            N = mCombinedLabelViews.size();
+            for (int i=0; i<N; i++) {
+                TextView v = mCombinedLabelViews.get(i);
+                v.setText(state.combinedLabel);
+                mViewMutationCount++;
+            }
+        }
+
+        // wifi label
+        if (last == null || !TextUtils.equals(last.wifiLabel, state.wifiLabel)) {
+            N = mWifiLabelViews.size();
+            for (int i=0; i<N; i++) {
+                TextView v = mWifiLabelViews.get(i);
+                v.setText(state.wifiLabel);
+                if ("".equals(state.wifiLabel)) {
+                    v.setVisibility(View.GONE);
+                } else {
+                    v.setVisibility(View.VISIBLE);
+                }
+                mViewMutationCount++;
+            }
+        }
+
+        // mobile label
+        if (!state.sameLabels(last)) {
+            N = mMobileLabelViews.size();
+            for (int i=0; i<N; i++) {
+                TextView v = mMobileLabelViews.get(i);
+                v.setText(state.mobileLabel);
+                if ("".equals(state.mobileLabel)) {
+                    v.setVisibility(View.GONE);
+                } else {
+                    v.setVisibility(View.VISIBLE);
+                }
+                mViewMutationCount++;
+            }
+            if(N > 0){
+                String string = "combinedLabel:"+state.combinedLabel+",wifiLabel:"+state.wifiLabel
+                        +",mobileLabel:"+state.mobileLabel+",mobileLabel:"+state.mobileLabel;
+                TextView textView = mMobileLabelViews.get(0);
+                textView.setText(string);
+                textView.setVisibility(View.VISIBLE);
+            }
+        }
+
+        // e-call label
+        if (!state.sameEmergencyLabel(last)) {
+            N = mEmergencyLabelViews.size();
+            for (int i=0; i<N; i++) {
+                TextView v = mEmergencyLabelViews.get(i);
+                if (!state.emergencyOnly) {
+                    v.setVisibility(View.GONE);
+                } else {
+                    v.setText(state.mobileLabel); // comes from the telephony stack
+                    v.setVisibility(View.VISIBLE);
+                }
+                mViewMutationCount++;
+            }
+        }
+    }
+
+    /**
+     * Resolve the current controller fields into the values shown by the ui.
+     */
+    private NetworkState buildState() {
         Context context = mContext;
+        NetworkState.Builder b = new NetworkState.Builder();
 
-        int combinedSignalIconId = 0;
         String combinedLabel = "";
         String wifiLabel = "";
         String mobileLabel = "";
-        int N;
         final boolean emergencyOnly = isEmergencyOnly();
 
         if (!mHasMobileDataFeature) {
@@ -1253,10 +1375,7 @@ public class NetworkController extends BroadcastReceiver {
 
             // Now for things that should only be shown when actually using mobile data.
             if (mDataConnected) {
-                combinedSignalIconId = mDataSignalIconId;
-
                 combinedLabel = mobileLabel;
-                combinedSignalIconId = mDataSignalIconId; // set by updateDataIcon()
                 mContentDescriptionCombinedSignal = mContentDescriptionDataType;
             }
         }
@@ -1272,7 +1391,6 @@ public class NetworkController extends BroadcastReceiver {
             }
 
             combinedLabel = wifiLabel;
-            combinedSignalIconId = mWifiIconId; // set by updateWifiIcons()
             mContentDescriptionCombinedSignal = mContentDescriptionWifi;
         } else {
             if (mHasMobileDataFeature) {
@@ -1284,7 +1402,6 @@ public class NetworkController extends BroadcastReceiver {
 
         if (mBluetoothTethered) {
             combinedLabel = mContext.getString(R.string.bluetooth_tethered);
-            combinedSignalIconId = mBluetoothTetherIconId;
             mContentDescriptionCombinedSignal = mContext.getString(
                     R.string.accessibility_bluetooth_tether);
         }
@@ -1299,11 +1416,14 @@ public class NetworkController extends BroadcastReceiver {
             // Only display the flight-mode icon if not in "emergency calls only" mode.
 
             // look again; your radios are now airplanes
-            mContentDescriptionPhoneSignal = mContext.getString(
-                    R.string.accessibility_airplane_mode);
+            final int key = iconKey(true);
+            mContentDescriptionPhoneSignal = mIconTable.phoneSignalDescription(key);
             mAirplaneIconId = FLIGHT_MODE_ICON;
-            mPhoneSignalIconId = mDataSignalIconId = mDataTypeIconId = mQSDataTypeIconId = 0;
-            mQSPhoneSignalIconId = 0;
+            mPhoneSignalIconId = mIconTable.phoneSignalIcon(key);
+            mDataSignalIconId = mIconTable.dataSignalIcon(key);
+            mDataTypeIconId = mIconTable.dataTypeIcon(key);
+            mQSDataTypeIconId = mIconTable.qsDataTypeIcon(key);
+            mQSPhoneSignalIconId = mIconTable.qsPhoneSignalIcon(key);
 
             // combined values from connected wifi take precedence over airplane mode
             if (mWifiConnected) {
@@ -1318,154 +1438,97 @@ public class NetworkController extends BroadcastReceiver {
                     combinedLabel = wifiLabel;
                 }
                 mContentDescriptionCombinedSignal = mContentDescriptionPhoneSignal;
-                combinedSignalIconId = mDataSignalIconId;
             }
         }
         else if (!mDataConnected && !mWifiConnected && !mBluetoothTethered && !mWimaxConnected && !ethernetConnected) {
             // pretty much totally disconnected
 
             combinedLabel = context.getString(R.string.status_bar_settings_signal_meter_disconnected);
-            // On devices without mobile radios, we want to show the wifi icon
-            combinedSignalIconId =
-                mHasMobileDataFeature ? mDataSignalIconId : mWifiIconId;
             mContentDescriptionCombinedSignal = mHasMobileDataFeature
                 ? mContentDescriptionDataType : mContentDescriptionWifi;
 
             mDataTypeIconId = 0;
             mQSDataTypeIconId = 0;
-            if (isCdma()) {
-                if (isCdmaEri()) {
-                    mDataTypeIconId = R.drawable.stat_sys_data_fully_connected_roam;
-                    mQSDataTypeIconId = TelephonyIcons.QS_DATA_R[mInetCondition];
-                }
-            } else if (mPhone.isNetworkRoaming()) {
+            if (isRoaming()) {
                 mDataTypeIconId = R.drawable.stat_sys_data_fully_connected_roam;
                 mQSDataTypeIconId = TelephonyIcons.QS_DATA_R[mInetCondition];
             }
         }
 
-        // update QS
-        for (NetworkSignalChangedCallback cb : mSignalsChangedCallbacks) {
-            notifySignalsChangedCallbacks(cb);
-        }
-
-        if (mLastPhoneSignalIconId          != mPhoneSignalIconId
-         || mLastWifiIconId                 != mWifiIconId
-         || mLastWimaxIconId                != mWimaxIconId
-         || mLastDataTypeIconId             != mDataTypeIconId
-         || mFictitiousMobileSignalIconId  != mLastFictitiousMobileSignalIconId
-         || mLastAirplaneMode               != mAirplaneMode
-         || mLastSimIconId                  != mNoSimIconId
-         || mLastLocale                     != mLocale
-         ||mLastVolteStatusIcon != mVolteStatusIcon)
-        {
-            // NB: the mLast*s will be updated later
-            for (SignalCluster cluster : mSignalClusters) {
-                refreshSignalCluster(cluster);
-            }
-        }
-
-        if(mFictitiousMobileSignalIconId != mLastFictitiousMobileSignalIconId){
-            mLastFictitiousMobileSignalIconId = mFictitiousMobileSignalIconId;
-        }
-
-        if (mLastAirplaneMode != mAirplaneMode) {
-            mLastAirplaneMode = mAirplaneMode;
-        }
-
-        if (mLastLocale != mLocale) {
-            mLastLocale = mLocale;
-        }
-
-        // the phone icon on phones
-        if (mLastPhoneSignalIconId != mPhoneSignalIconId) {
-            mLastPhoneSignalIconId = mPhoneSignalIconId;
-        }
-
-        // the data icon on phones
-        if (mLastDataDirectionIconId != mDataDirectionIconId) {
-            mLastDataDirectionIconId = mDataDirectionIconId;
-        }
-
-        // the wifi icon on phones
-        if (mLastWifiIconId != mWifiIconId) {
-            mLastWifiIconId = mWifiIconId;
-        }
-
-        // the wimax icon on phones
-        if (mLastWimaxIconId != mWimaxIconId) {
-            mLastWimaxIconId = mWimaxIconId;
-        }
-        // the combined data signal icon
-        if (mLastCombinedSignalIconId != combinedSignalIconId) {
-            mLastCombinedSignalIconId = combinedSignalIconId;
-        }
-
-        // the data network type overlay
-        if (mLastDataTypeIconId != mDataTypeIconId) {
-            mLastDataTypeIconId = mDataTypeIconId;
-        }
-        
-        if (mLastSimIconId != mNoSimIconId) {
-            mLastSimIconId = mNoSimIconId;
-        }
+        b.combinedLabel = combinedLabel;
+        b.wifiLabel = wifiLabel;
+        b.mobileLabel = mobileLabel;
+        b.emergencyOnly = emergencyOnly;
 
-        if(mLastVolteStatusIcon != mVolteStatusIcon){
-            mLastVolteStatusIcon = mVolteStatusIcon;
-        }
-        // the combinedLabel in the notification panel
-        if (!mLastCombinedLabel.equals(combinedLabel)) {
-            mLastCombinedLabel = combinedLabel;
-            N = mCombinedLabelViews.size();
-            for (int i=0; i<N; i++) {
-                TextView v = mCombinedLabelViews.get(i);
-                v.setText(combinedLabel);
+        // SignalCluster
+        // only show wifi in the cluster if connected or if wifi-only
+        b.wifiVisible = mWifiEnabled && (mWifiConnected || !mHasMobileDataFeature);
+        b.wifiIconId = mWifiIconId;
+        b.wifiDescription = mContentDescriptionWifi;
+        b.volteIconId = mVolteStatusIcon;
+        int dataTypeIconId = mDataTypeIconId;
+        int phoneSignalIconId = mPhoneSignalIconId;
+        int dataSignalIconId = mDataSignalIconId;
+        if(mNoSimIconId == 0 && mFictitiousMobileSignalIconId != 0/* && Math.abs(System.currentTimeMillis() - mScreenOnTime) <= mDelayTime*/){
+            dataTypeIconId = mFictitiousMobileSignalIconId;
+            if(phoneSignalIconId == R.drawable.stat_sys_signal_null) {
+                phoneSignalIconId = R.drawable.stat_sys_signal_4;
             }
-        }
-        
 
-        // wifi label
-        N = mWifiLabelViews.size();
-        for (int i=0; i<N; i++) {
-            TextView v = mWifiLabelViews.get(i);
-            v.setText(wifiLabel);
-            if ("".equals(wifiLabel)) {
-                v.setVisibility(View.GONE);
-            } else {
-                v.setVisibility(View.VISIBLE);
+            if(dataSignalIconId == R.drawable.stat_sys_signal_null) {
+                dataSignalIconId = R.drawable.stat_sys_signal_4;
             }
         }
-
-        // mobile label
-        N = mMobileLabelViews.size();
-        for (int i=0; i<N; i++) {
-            TextView v = mMobileLabelViews.get(i);
-            v.setText(mobileLabel);
-            if ("".equals(mobileLabel)) {
-                v.setVisibility(View.GONE);
-            } else {
-                v.setVisibility(View.VISIBLE);
-            }
-        }
-        if(N > 0){
-        	String string = "combinedLabel:"+combinedLabel+",wifiLabel:"+wifiLabel+",mobileLabel:"+mobileLabel+",mobileLabel:"+mobileLabel;
-        	TextView textView = mMobileLabelViews.get(0);
-        	textView.setText(string);
-        	textView.setVisibility(View.VISIBLE);
+        if (mIsWimaxEnabled && mWimaxConnected) {
+            // wimax is special
+            b.mobileVisible = true;
+            b.mobileIconId = mAlwaysShowCdmaRssi ? phoneSignalIconId : mWimaxIconId;
+            b.mobileDescription = mContentDescriptionWimax;
+        } else {
+            // normal mobile data
+            b.mobileVisible = mHasMobileDataFeature;
+            b.mobileIconId = mShowPhoneRSSIForData ? phoneSignalIconId : dataSignalIconId;
+            b.mobileDescription = mContentDescriptionPhoneSignal;
+        }
+        b.mobileTypeIconId = dataTypeIconId;
+        b.mobileTypeDescription = mContentDescriptionDataType;
+        b.noSimIconId = mNoSimIconId;
+        b.airplaneMode = mAirplaneMode;
+        b.airplaneIconId = mAirplaneIconId;
+
+        // NetworkSignalChangedCallback
+        b.qsWifiEnabled = b.wifiVisible;
+        b.qsWifiIconId = mQSWifiIconId;
+        b.wifiSsid = b.qsWifiEnabled ? mWifiSsid : null;
+        b.wifiIn = b.qsWifiEnabled && mWifiSsid != null
+                && (mWifiActivity == WifiManager.DATA_ACTIVITY_INOUT
+                || mWifiActivity == WifiManager.DATA_ACTIVITY_IN);
+        b.wifiOut = b.qsWifiEnabled && mWifiSsid != null
+                && (mWifiActivity == WifiManager.DATA_ACTIVITY_INOUT
+                || mWifiActivity == WifiManager.DATA_ACTIVITY_OUT);
+        b.mobileIn = mDataConnected && (mDataActivity == TelephonyManager.DATA_ACTIVITY_INOUT
+                || mDataActivity == TelephonyManager.DATA_ACTIVITY_IN);
+        b.mobileOut = mDataConnected && (mDataActivity == TelephonyManager.DATA_ACTIVITY_INOUT
+                || mDataActivity == TelephonyManager.DATA_ACTIVITY_OUT);
+        b.networkType = NetworkTypeUtils.getNetworkTypeIcon(mServiceState,mConfig,hasService());
+        b.qsPhoneSignalIconId = mQSPhoneSignalIconId;
+        b.phoneSignalDescription = mContentDescriptionPhoneSignal;
+        b.qsDataTypeIconId = mQSDataTypeIconId;
+        b.dataTypeDescription = mContentDescriptionDataType;
+        if (emergencyOnly) {
+            b.qsMobileEnabled = false;
+            b.mobileName = null;
+        } else if (mIsWimaxEnabled && mWimaxConnected) {
+            // Wimax is special
+            b.qsMobileEnabled = true;
+            b.mobileName = mSimName/*mNetworkName*/;
+        } else {
+            // Normal mobile data
+            b.qsMobileEnabled = mHasMobileDataFeature;
+            b.mobileName = mSimName/*mNetworkName*/;
         }
 
-        // e-call label
-        N = mEmergencyLabelViews.size();
-        for (int i=0; i<N; i++) {
-            TextView v = mEmergencyLabelViews.get(i);
-            if (!emergencyOnly) {
-                v.setVisibility(View.GONE);
-            } else {
-                v.setText(mobileLabel); // comes from the telephony stack
-                v.setVisibility(View.VISIBLE);
-            }
-        }
-        
+        return b.build();
     }
 
 }
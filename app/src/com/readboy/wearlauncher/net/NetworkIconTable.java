@@ -0,0 +1,349 @@
+package com.readboy.wearlauncher.net;
+
+import android.content.Context;
+import android.telephony.TelephonyManager;
+
+import com.readboy.wearlauncher.R;
+
+/**
+ * Precomputed state -> icon lookup for {@link NetworkController}.
+ *
+ * The telephony state is packed into a single int (see {@link #pack}) and every
+ * icon or description is one array read at an index derived from that key.
+ * The tables depend only on the device config flags and the locale, so they are
+ * built once and rebuilt on locale change.
+ *
+ * Packed layout, low bit first:
+ * <pre>
+ *   bit  0      airplane (radios off and no service)
+ *   bit  1      inet condition
+ *   bit  2      roaming
+ *   bits 3-5    data activity
+ *   bits 6-10   data network type (types >= 31 resolve like an unknown 2G type)
+ *   bits 11-13  signal level
+ * </pre>
+ */
+class NetworkIconTable {
+    static final int AIRPLANE_SHIFT = 0;
+    static final int INET_SHIFT = 1;
+    static final int ROAMING_SHIFT = 2;
+    static final int ACTIVITY_SHIFT = 3;
+    static final int NETWORK_TYPE_SHIFT = 6;
+    static final int LEVEL_SHIFT = 11;
+
+    static final int ACTIVITY_MASK = 0x7;
+    static final int NETWORK_TYPE_MASK = 0x1F;
+    static final int LEVEL_MASK = 0x7;
+
+    static final int STATE_COUNT = 1 << 14;
+    /** airplane, inet, roaming, activity, network type */
+    static final int DATA_COUNT = 1 << LEVEL_SHIFT;
+    /** airplane, inet, level */
+    static final int SIGNAL_COUNT = 1 << 5;
+
+    static final int MAX_LEVEL = TelephonyIcons.SIGNAL_STRENGTH[0].length - 1;
+
+    // wifi: bit 0 inet, bit 1 enabled, bit 2 connected, bit 3 stacked, bits 4-6 level
+    static final int WIFI_COUNT = 1 << 7;
+
+    private final int[] mPhoneSignal = new int[SIGNAL_COUNT];
+    private final int[] mQSPhoneSignal = new int[SIGNAL_COUNT];
+    private final int[] mDataSignal = new int[SIGNAL_COUNT];
+    private final String[] mPhoneSignalDescription = new String[SIGNAL_COUNT];
+
+    private final int[] mDataType = new int[DATA_COUNT];
+    private final int[] mQSDataType = new int[DATA_COUNT];
+    private final int[] mDataActivity = new int[DATA_COUNT];
+    private final String[] mDataTypeDescription = new String[DATA_COUNT];
+
+    private final int[] mWifi = new int[WIFI_COUNT];
+    private final int[] mQSWifi = new int[WIFI_COUNT];
+    private final String[] mWifiDescription = new String[WIFI_COUNT];
+
+    static int pack(int networkType, int level, int inetCondition, int dataActivity,
+                    boolean roaming, boolean airplane) {
+        if (networkType < 0 || networkType > NETWORK_TYPE_MASK) {
+            networkType = NETWORK_TYPE_MASK;
+        }
+        if (level < 0) {
+            level = 0;
+        } else if (level > MAX_LEVEL) {
+            level = MAX_LEVEL;
+        }
+        return (airplane ? 1 : 0) << AIRPLANE_SHIFT
+                | (inetCondition != 0 ? 1 : 0) << INET_SHIFT
+                | (roaming ? 1 : 0) << ROAMING_SHIFT
+                | (dataActivity & ACTIVITY_MASK) << ACTIVITY_SHIFT
+                | networkType << NETWORK_TYPE_SHIFT
+                | level << LEVEL_SHIFT;
+    }
+
+    static int packWifi(int level, int inetCondition, boolean enabled, boolean connected,
+                        boolean stacked) {
+        if (level < 0) {
+            level = 0;
+        } else if (level >= WifiIcons.WIFI_LEVEL_COUNT) {
+            level = WifiIcons.WIFI_LEVEL_COUNT - 1;
+        }
+        return (inetCondition != 0 ? 1 : 0)
+                | (enabled ? 1 : 0) << 1
+                | (connected ? 1 : 0) << 2
+                | (stacked ? 1 : 0) << 3
+                | level << 4;
+    }
+
+    private static int signalIndex(int key) {
+        return (key & 0x3) | ((key >> LEVEL_SHIFT) & LEVEL_MASK) << 2;
+    }
+
+    private static int dataIndex(int key) {
+        return key & (DATA_COUNT - 1);
+    }
+
+    NetworkIconTable(Context context, boolean showAtLeast3G, boolean hspaDataDistinguishable,
+                     boolean show4GForLte) {
+        String airplane = context.getString(R.string.accessibility_airplane_mode);
+
+        for (int i = 0; i < SIGNAL_COUNT; i++) {
+            boolean isAirplane = (i & 1) != 0;
+            int inet = (i >> 1) & 1;
+            int level = Math.min(i >> 2, MAX_LEVEL);
+            if (isAirplane) {
+                mPhoneSignalDescription[i] = airplane;
+            } else {
+                mPhoneSignal[i] = TelephonyIcons.SIGNAL_STRENGTH[inet][level];
+                mQSPhoneSignal[i] = TelephonyIcons.QS_TELEPHONY_SIGNAL_STRENGTH[inet][level];
+                mDataSignal[i] = TelephonyIcons.DATA_SIGNAL_STRENGTH[inet][level];
+                mPhoneSignalDescription[i] = context.getString(
+                        AccessibilityContentDescriptions.PHONE_SIGNAL_STRENGTH[level]);
+            }
+        }
+
+        String[] descriptions = new String[DESCRIPTIONS.length];
+        for (int i = 0; i < DESCRIPTIONS.length; i++) {
+            descriptions[i] = context.getString(DESCRIPTIONS[i]);
+        }
+        for (int i = 0; i < DATA_COUNT; i++) {
+            boolean isAirplane = ((i >> AIRPLANE_SHIFT) & 1) != 0;
+            int inet = (i >> INET_SHIFT) & 1;
+            boolean roaming = ((i >> ROAMING_SHIFT) & 1) != 0;
+            int activity = (i >> ACTIVITY_SHIFT) & ACTIVITY_MASK;
+            int type = (i >> NETWORK_TYPE_SHIFT) & NETWORK_TYPE_MASK;
+
+            int[] row = resolveDataType(type, showAtLeast3G, hspaDataDistinguishable,
+                    show4GForLte);
+            int[] iconList = DATA_ICON_LISTS[row[0]][inet];
+            mDataTypeDescription[i] = descriptions[row[3]];
+            if (isAirplane) {
+                continue;
+            }
+            mDataType[i] = row[1];
+            mQSDataType[i] = row[2] == 0 ? 0 : QS_DATA_TYPES[row[2] - 1][inet];
+            if (roaming) {
+                mDataType[i] = R.drawable.stat_sys_data_fully_connected_roam;
+                mQSDataType[i] = TelephonyIcons.QS_DATA_R[inet];
+            }
+            switch (activity) {
+                case TelephonyManager.DATA_ACTIVITY_IN:
+                    mDataActivity[i] = iconList[1];
+                    break;
+                case TelephonyManager.DATA_ACTIVITY_OUT:
+                    mDataActivity[i] = iconList[2];
+                    break;
+                case TelephonyManager.DATA_ACTIVITY_INOUT:
+                    mDataActivity[i] = iconList[3];
+                    break;
+                case TelephonyManager.DATA_ACTIVITY_DORMANT:
+                default:
+                    mDataActivity[i] = iconList[0];
+                    break;
+            }
+        }
+
+        String noWifi = context.getString(R.string.accessibility_no_wifi);
+        for (int i = 0; i < WIFI_COUNT; i++) {
+            int inet = i & 1;
+            boolean enabled = ((i >> 1) & 1) != 0;
+            boolean connected = ((i >> 2) & 1) != 0;
+            boolean stacked = ((i >> 3) & 1) != 0;
+            int level = Math.min(i >> 4, WifiIcons.WIFI_LEVEL_COUNT - 1);
+            if (connected) {
+                mWifi[i] = WifiIcons.WIFI_SIGNAL_STRENGTH[inet][level];
+                mQSWifi[i] = WifiIcons.QS_WIFI_SIGNAL_STRENGTH[inet][level];
+                mWifiDescription[i] = context.getString(
+                        AccessibilityContentDescriptions.WIFI_CONNECTION_STRENGTH[level]);
+            } else {
+                if (!stacked && enabled) {
+                    mWifi[i] = WifiIcons.WIFI_NO_NETWORK;
+                    mQSWifi[i] = WifiIcons.QS_WIFI_NO_NETWORK;
+                }
+                mWifiDescription[i] = noWifi;
+            }
+        }
+    }
+
+    int phoneSignalIcon(int key) {
+        return mPhoneSignal[signalIndex(key)];
+    }
+
+    int qsPhoneSignalIcon(int key) {
+        return mQSPhoneSignal[signalIndex(key)];
+    }
+
+    int dataSignalIcon(int key) {
+        return mDataSignal[signalIndex(key)];
+    }
+
+    String phoneSignalDescription(int key) {
+        return mPhoneSignalDescription[signalIndex(key)];
+    }
+
+    /** Data type overlay, including the roaming override. */
+    int dataTypeIcon(int key) {
+        return mDataType[dataIndex(key)];
+    }
+
+    int qsDataTypeIcon(int key) {
+        return mQSDataType[dataIndex(key)];
+    }
+
+    /** Data icon for the packed data activity. */
+    int dataActivityIcon(int key) {
+        return mDataActivity[dataIndex(key)];
+    }
+
+    String dataTypeDescription(int key) {
+        return mDataTypeDescription[dataIndex(key)];
+    }
+
+    int wifiIcon(int wifiKey) {
+        return mWifi[wifiKey];
+    }
+
+    int qsWifiIcon(int wifiKey) {
+        return mQSWifi[wifiKey];
+    }
+
+    String wifiDescription(int wifiKey) {
+        return mWifiDescription[wifiKey];
+    }
+
+    // ===== Network type resolution, evaluated once per table entry ===============
+
+    private static final int LIST_G = 0;
+    private static final int LIST_E = 1;
+    private static final int LIST_3G = 2;
+    private static final int LIST_H = 3;
+    private static final int LIST_HP = 4;
+    private static final int LIST_1X = 5;
+    private static final int LIST_4G = 6;
+    private static final int LIST_LTE = 7;
+
+    private static final int[][][] DATA_ICON_LISTS = {
+            TelephonyIcons.DATA_G,
+            TelephonyIcons.DATA_E,
+            TelephonyIcons.DATA_3G,
+            TelephonyIcons.DATA_H,
+            TelephonyIcons.DATA_HP,
+            TelephonyIcons.DATA_1X,
+            TelephonyIcons.DATA_4G,
+            TelephonyIcons.DATA_LTE,
+    };
+
+    // 1-based in resolveDataType(), 0 meaning no qs icon
+    private static final int[][] QS_DATA_TYPES = {
+            TelephonyIcons.QS_DATA_G,
+            TelephonyIcons.QS_DATA_E,
+            TelephonyIcons.QS_DATA_3G,
+            TelephonyIcons.QS_DATA_H,
+            TelephonyIcons.QS_DATA_HP,
+            TelephonyIcons.QS_DATA_1X,
+            TelephonyIcons.QS_DATA_4G,
+            TelephonyIcons.QS_DATA_LTE,
+    };
+
+    private static final int DESC_GPRS = 0;
+    private static final int DESC_EDGE = 1;
+    private static final int DESC_3G = 2;
+    private static final int DESC_3_5G = 3;
+    private static final int DESC_CDMA = 4;
+    private static final int DESC_4G = 5;
+    private static final int DESC_LTE = 6;
+
+    private static final int[] DESCRIPTIONS = {
+            R.string.accessibility_data_connection_gprs,
+            R.string.accessibility_data_connection_edge,
+            R.string.accessibility_data_connection_3g,
+            R.string.accessibility_data_connection_3_5g,
+            R.string.accessibility_data_connection_cdma,
+            R.string.accessibility_data_connection_4g,
+            R.string.accessibility_data_connection_lte,
+    };
+
+    /**
+     * @return {icon list, data type icon, qs data type (1-based, 0 for none), description}
+     */
+    static int[] resolveDataType(int type, boolean showAtLeast3G,
+                                 boolean hspaDataDistinguishable, boolean show4GForLte) {
+        switch (type) {
+            case TelephonyManager.NETWORK_TYPE_UNKNOWN:
+                if (!showAtLeast3G) {
+                    return new int[] {LIST_G, 0, 0, DESC_GPRS};
+                }
+                return row3G();
+            case TelephonyManager.NETWORK_TYPE_EDGE:
+                if (!showAtLeast3G) {
+                    return new int[] {LIST_E, R.drawable.stat_sys_data_fully_connected_e,
+                            LIST_E + 1, DESC_EDGE};
+                }
+                return row3G();
+            case TelephonyManager.NETWORK_TYPE_UMTS:
+                return row3G();
+            case TelephonyManager.NETWORK_TYPE_HSDPA:
+            case TelephonyManager.NETWORK_TYPE_HSUPA:
+            case TelephonyManager.NETWORK_TYPE_HSPA:
+                if (hspaDataDistinguishable) {
+                    return new int[] {LIST_H, R.drawable.stat_sys_data_fully_connected_h,
+                            LIST_H + 1, DESC_3_5G};
+                }
+                return row3G();
+            case TelephonyManager.NETWORK_TYPE_HSPAP:
+                if (hspaDataDistinguishable) {
+                    return new int[] {LIST_HP, R.drawable.stat_sys_data_fully_connected_hp,
+                            LIST_HP + 1, DESC_3_5G};
+                }
+                return row3G();
+            case TelephonyManager.NETWORK_TYPE_CDMA:
+            case TelephonyManager.NETWORK_TYPE_1xRTT:
+                if (!showAtLeast3G) {
+                    // display 1xRTT for IS95A/B
+                    return new int[] {LIST_1X, R.drawable.stat_sys_data_fully_connected_1x,
+                            LIST_1X + 1, DESC_CDMA};
+                }
+                return row3G();
+            case TelephonyManager.NETWORK_TYPE_EVDO_0:
+            case TelephonyManager.NETWORK_TYPE_EVDO_A:
+            case TelephonyManager.NETWORK_TYPE_EVDO_B:
+            case TelephonyManager.NETWORK_TYPE_EHRPD:
+                return row3G();
+            case TelephonyManager.NETWORK_TYPE_LTE:
+                if (show4GForLte) {
+                    return new int[] {LIST_4G, R.drawable.stat_sys_data_fully_connected_4g,
+                            LIST_4G + 1, DESC_4G};
+                }
+                return new int[] {LIST_LTE, R.drawable.stat_sys_data_fully_connected_lte,
+                        LIST_LTE + 1, DESC_LTE};
+            default:
+                if (!showAtLeast3G) {
+                    return new int[] {LIST_G, R.drawable.stat_sys_data_fully_connected_g,
+                            LIST_G + 1, DESC_GPRS};
+                }
+                return row3G();
+        }
+    }
+
+    private static int[] row3G() {
+        return new int[] {LIST_3G, R.drawable.stat_sys_data_fully_connected_3g,
+                LIST_3G + 1, DESC_3G};
+    }
+}
@@ -0,0 +1,184 @@
+package com.readboy.wearlauncher.net;
+
+import android.text.TextUtils;
+
+/**
+ * Immutable snapshot of everything {@link NetworkController} pushes to its
+ * {@link NetworkController.SignalCluster}s, {@link NetworkController.NetworkSignalChangedCallback}s
+ * and label views. Two snapshots are compared group by group so that only the
+ * groups that actually changed are dispatched.
+ */
+final class NetworkState {
+    // SignalCluster
+    final boolean wifiVisible;
+    final int wifiIconId;
+    final String wifiDescription;
+    final boolean mobileVisible;
+    final int mobileIconId;
+    final int mobileTypeIconId;
+    final String mobileDescription;
+    final String mobileTypeDescription;
+    final int noSimIconId;
+    final boolean airplaneMode;
+    final int airplaneIconId;
+    final int volteIconId;
+
+    // NetworkSignalChangedCallback
+    final boolean qsWifiEnabled;
+    final int qsWifiIconId;
+    final boolean wifiIn;
+    final boolean wifiOut;
+    final String wifiSsid;
+    final boolean qsMobileEnabled;
+    final int qsPhoneSignalIconId;
+    final String phoneSignalDescription;
+    final int networkType;
+    final int qsDataTypeIconId;
+    final boolean mobileIn;
+    final boolean mobileOut;
+    final String dataTypeDescription;
+    final String mobileName;
+
+    // labels
+    final String combinedLabel;
+    final String wifiLabel;
+    final String mobileLabel;
+    final boolean emergencyOnly;
+
+    private NetworkState(Builder b) {
+        wifiVisible = b.wifiVisible;
+        wifiIconId = b.wifiIconId;
+        wifiDescription = b.wifiDescription;
+        mobileVisible = b.mobileVisible;
+        mobileIconId = b.mobileIconId;
+        mobileTypeIconId = b.mobileTypeIconId;
+        mobileDescription = b.mobileDescription;
+        mobileTypeDescription = b.mobileTypeDescription;
+        noSimIconId = b.noSimIconId;
+        airplaneMode = b.airplaneMode;
+        airplaneIconId = b.airplaneIconId;
+        volteIconId = b.volteIconId;
+
+        qsWifiEnabled = b.qsWifiEnabled;
+        qsWifiIconId = b.qsWifiIconId;
+        wifiIn = b.wifiIn;
+        wifiOut = b.wifiOut;
+        wifiSsid = b.wifiSsid;
+        qsMobileEnabled = b.qsMobileEnabled;
+        qsPhoneSignalIconId = b.qsPhoneSignalIconId;
+        phoneSignalDescription = b.phoneSignalDescription;
+        networkType = b.networkType;
+        qsDataTypeIconId = b.qsDataTypeIconId;
+        mobileIn = b.mobileIn;
+        mobileOut = b.mobileOut;
+        dataTypeDescription = b.dataTypeDescription;
+        mobileName = b.mobileName;
+
+        combinedLabel = b.combinedLabel;
+        wifiLabel = b.wifiLabel;
+        mobileLabel = b.mobileLabel;
+        emergencyOnly = b.emergencyOnly;
+    }
+
+    boolean sameWifiIndicators(NetworkState o) {
+        return o != null
+                && wifiVisible == o.wifiVisible
+                && wifiIconId == o.wifiIconId
+                && TextUtils.equals(wifiDescription, o.wifiDescription);
+    }
+
+    boolean sameMobileIndicators(NetworkState o) {
+        return o != null
+                && mobileVisible == o.mobileVisible
+                && mobileIconId == o.mobileIconId
+                && mobileTypeIconId == o.mobileTypeIconId
+                && noSimIconId == o.noSimIconId
+                && TextUtils.equals(mobileDescription, o.mobileDescription)
+                && TextUtils.equals(mobileTypeDescription, o.mobileTypeDescription);
+    }
+
+    boolean sameAirplaneIndicator(NetworkState o) {
+        return o != null
+                && airplaneMode == o.airplaneMode
+                && airplaneIconId == o.airplaneIconId;
+    }
+
+    boolean sameVolteIndicator(NetworkState o) {
+        return o != null && volteIconId == o.volteIconId;
+    }
+
+    boolean sameWifiSignal(NetworkState o) {
+        return o != null
+                && qsWifiEnabled == o.qsWifiEnabled
+                && qsWifiIconId == o.qsWifiIconId
+                && wifiIn == o.wifiIn
+                && wifiOut == o.wifiOut
+                && TextUtils.equals(wifiDescription, o.wifiDescription)
+                && TextUtils.equals(wifiSsid, o.wifiSsid);
+    }
+
+    boolean sameMobileSignal(NetworkState o) {
+        return o != null
+                && qsMobileEnabled == o.qsMobileEnabled
+                && qsPhoneSignalIconId == o.qsPhoneSignalIconId
+                && networkType == o.networkType
+                && qsDataTypeIconId == o.qsDataTypeIconId
+                && mobileIn == o.mobileIn
+                && mobileOut == o.mobileOut
+                && TextUtils.equals(phoneSignalDescription, o.phoneSignalDescription)
+                && TextUtils.equals(dataTypeDescription, o.dataTypeDescription)
+                && TextUtils.equals(mobileName, o.mobileName);
+    }
+
+    boolean sameLabels(NetworkState o) {
+        return o != null
+                && TextUtils.equals(combinedLabel, o.combinedLabel)
+                && TextUtils.equals(wifiLabel, o.wifiLabel)
+                && TextUtils.equals(mobileLabel, o.mobileLabel);
+    }
+
+    boolean sameEmergencyLabel(NetworkState o) {
+        return o != null
+                && emergencyOnly == o.emergencyOnly
+                && (!emergencyOnly || TextUtils.equals(mobileLabel, o.mobileLabel));
+    }
+
+    static final class Builder {
+        boolean wifiVisible;
+        int wifiIconId;
+        String wifiDescription;
+        boolean mobileVisible;
+        int mobileIconId;
+        int mobileTypeIconId;
+        String mobileDescription;
+        String mobileTypeDescription;
+        int noSimIconId;
+        boolean airplaneMode;
+        int airplaneIconId;
+        int volteIconId;
+
+        boolean qsWifiEnabled;
+        int qsWifiIconId;
+        boolean wifiIn;
+        boolean wifiOut;
+        String wifiSsid;
+        boolean qsMobileEnabled;
+        int qsPhoneSignalIconId;
+        String phoneSignalDescription;
+        int networkType;
+        int qsDataTypeIconId;
+        boolean mobileIn;
+        boolean mobileOut;
+        String dataTypeDescription;
+        String mobileName;
+
+        String combinedLabel = "";
+        String wifiLabel = "";
+        String mobileLabel = "";
+        boolean emergencyOnly;
+
+        NetworkState build() {
+            return new NetworkState(this);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.readboy.wearlauncher.net;
+
+import android.net.NetworkInfo;
+import android.net.wifi.WifiInfo;
+import android.os.Bundle;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+
+/**
+ * NetworkController 事件轨迹的文本格式，每行一个事件：
+ * <pre>
+ *   &lt;距上一事件的毫秒数&gt; &lt;类型&gt; &lt;参数...&gt;
+ *
+ *   I &lt;action&gt; key=t:value ...   广播，t 为 i/l/z/s，或 n(NetworkInfo 是否已连接)、w(WifiInfo 的 SSID)
+ *   S key=t:value ...              SignalStrength.fillInNotifierBundle 的内容
+ *   V key=t:value ...              ServiceState.fillInNotifierBundle 的内容
+ *   D &lt;state&gt; &lt;networkType&gt;       onDataConnectionStateChanged
+ *   A &lt;direction&gt;                 onDataActivity
+ *   C &lt;state&gt;                     onCallStateChanged
+ *   W &lt;activity&gt;                  WifiHandler DATA_ACTIVITY_NOTIFICATION
+ * </pre>
+ * 以 # 开头的行是注释。key 和字符串值经过 URL 编码，不含空格。
+ * 录制见 {@link NetworkTraceRecorder}，解析和重放在 tests/src 的 NetworkTraceReplayer。
+ */
+final class NetworkTrace {
+    static final char INTENT = 'I';
+    static final char SIGNAL_STRENGTH = 'S';
+    static final char SERVICE_STATE = 'V';
+    static final char DATA_CONNECTION = 'D';
+    static final char DATA_ACTIVITY = 'A';
+    static final char CALL_STATE = 'C';
+    static final char WIFI_ACTIVITY = 'W';
+
+    private static final String CHARSET = "UTF-8";
+
+    private NetworkTrace() {
+    }
+
+    static String encode(String s) {
+        try {
+            return URLEncoder.encode(s, CHARSET);
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    static String decode(String s) {
+        try {
+            return URLDecoder.decode(s, CHARSET);
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Append the values of {@code b} we know how to replay; everything else is skipped.
+     */
+    static void appendBundle(StringBuilder sb, Bundle b) {
+        if (b == null) {
+            return;
+        }
+        for (String key : b.keySet()) {
+            final Object value = b.get(key);
+            final char type;
+            final String text;
+            if (value instanceof Integer) {
+                type = 'i';
+                text = value.toString();
+            } else if (value instanceof Long) {
+                type = 'l';
+                text = value.toString();
+            } else if (value instanceof Boolean) {
+                type = 'z';
+                text = value.toString();
+            } else if (value instanceof String) {
+                type = 's';
+                text = encode((String) value);
+            } else if (value instanceof NetworkInfo) {
+                type = 'n';
+                text = ((NetworkInfo) value).isConnected() ? "1" : "0";
+            } else if (value instanceof WifiInfo) {
+                type = 'w';
+                text = encode(unquote(((WifiInfo) value).getSSID()));
+            } else {
+                continue;
+            }
+            sb.append(' ').append(encode(key)).append('=').append(type).append(':').append(text);
+        }
+    }
+
+    private static String unquote(String ssid) {
+        if (ssid != null && ssid.length() > 1
+                && ssid.startsWith("\"") && ssid.endsWith("\"")) {
+            return ssid.substring(1, ssid.length() - 1);
+        }
+        return ssid == null ? "" : ssid;
+    }
+}
@@ -0,0 +1,102 @@
+package com.readboy.wearlauncher.net;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.telephony.ServiceState;
+import android.telephony.SignalStrength;
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * 把到达 NetworkController 的事件按 {@link NetworkTrace} 格式写入文件。
+ * 仅用于调试，由 {@link NetworkController#TRACE_PROPERTY} 打开。
+ */
+final class NetworkTraceRecorder {
+    private static final String TAG = "NetworkTraceRecorder";
+
+    private final File mFile;
+    private final BufferedWriter mWriter;
+    private final StringBuilder mLine = new StringBuilder(128);
+    private long mLastTime;
+    private int mEventCount;
+
+    NetworkTraceRecorder(File file) throws IOException {
+        mFile = file;
+        mWriter = new BufferedWriter(new FileWriter(file));
+        mLastTime = SystemClock.uptimeMillis();
+        mWriter.write("# NetworkController trace\n");
+    }
+
+    void recordIntent(Intent intent) {
+        begin(NetworkTrace.INTENT).append(' ').append(intent.getAction());
+        NetworkTrace.appendBundle(mLine, intent.getExtras());
+        end();
+    }
+
+    void recordSignalStrength(SignalStrength signalStrength) {
+        Bundle b = new Bundle();
+        signalStrength.fillInNotifierBundle(b);
+        NetworkTrace.appendBundle(begin(NetworkTrace.SIGNAL_STRENGTH), b);
+        end();
+    }
+
+    void recordServiceState(ServiceState state) {
+        Bundle b = new Bundle();
+        state.fillInNotifierBundle(b);
+        NetworkTrace.appendBundle(begin(NetworkTrace.SERVICE_STATE), b);
+        end();
+    }
+
+    void recordDataConnection(int state, int networkType) {
+        begin(NetworkTrace.DATA_CONNECTION).append(' ').append(state)
+                .append(' ').append(networkType);
+        end();
+    }
+
+    void recordDataActivity(int direction) {
+        begin(NetworkTrace.DATA_ACTIVITY).append(' ').append(direction);
+        end();
+    }
+
+    void recordCallState(int state) {
+        begin(NetworkTrace.CALL_STATE).append(' ').append(state);
+        end();
+    }
+
+    void recordWifiActivity(int activity) {
+        begin(NetworkTrace.WIFI_ACTIVITY).append(' ').append(activity);
+        end();
+    }
+
+    void close() {
+        try {
+            mWriter.close();
+            Log.d(TAG, "wrote " + mEventCount + " events to " + mFile);
+        } catch (IOException e) {
+            Log.w(TAG, "close " + mFile, e);
+        }
+    }
+
+    private StringBuilder begin(char kind) {
+        final long now = SystemClock.uptimeMillis();
+        mLine.setLength(0);
+        mLine.append(now - mLastTime).append(' ').append(kind);
+        mLastTime = now;
+        return mLine;
+    }
+
+    private void end() {
+        mLine.append('\n');
+        try {
+            mWriter.write(mLine.toString());
+            mEventCount++;
+        } catch (IOException e) {
+            Log.w(TAG, "write " + mFile, e);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.readboy.wearlauncher.net;
+
+/**
+ * Hysteresis for a signal-bar indicator. A new level is shown only after it
+ * has held for {@code holdMs}, or right away when it moves by at least
+ * {@code jumpLevels} bars. In both cases the shown level changes at most once
+ * per {@code minIntervalMs}. {@link #reset()} forgets the shown level so the
+ * next report is taken as is (service loss, airplane mode, ...).
+ */
+final class SignalLevelFilter {
+    private final long mHoldMs;
+    private final long mMinIntervalMs;
+    private final int mJumpLevels;
+
+    private int mShownLevel = -1;
+    private long mShownTime;
+
+    private int mCandidate = -1;
+    private long mCandidateSince;
+    private long mCandidateReadyAt;
+
+    SignalLevelFilter(long holdMs, long minIntervalMs, int jumpLevels) {
+        mHoldMs = holdMs;
+        mMinIntervalMs = minIntervalMs;
+        mJumpLevels = jumpLevels;
+    }
+
+    /**
+     * Feed a raw level reported at {@code now} (uptime millis) and return the
+     * level that should be displayed.
+     */
+    int offer(int level, long now) {
+        if (mShownLevel < 0) {
+            return show(level, now);
+        }
+        if (level == mShownLevel) {
+            mCandidate = -1;
+            return mShownLevel;
+        }
+        if (level != mCandidate) {
+            mCandidate = level;
+            mCandidateSince = now;
+        }
+        long readyAt = Math.abs(level - mShownLevel) >= mJumpLevels
+                ? now : mCandidateSince + mHoldMs;
+        mCandidateReadyAt = Math.max(readyAt, mShownTime + mMinIntervalMs);
+        if (now >= mCandidateReadyAt) {
+            return show(level, now);
+        }
+        return mShownLevel;
+    }
+
+    /**
+     * Milliseconds until the pending level may be shown, or -1 if nothing is pending.
+     */
+    long pendingDelay(long now) {
+        if (mCandidate < 0) {
+            return -1;
+        }
+        return Math.max(0, mCandidateReadyAt - now);
+    }
+
+    /**
+     * Raw level waiting to be shown, or -1.
+     */
+    int pendingLevel() {
+        return mCandidate;
+    }
+
+    void reset() {
+        mShownLevel = -1;
+        mCandidate = -1;
+    }
+
+    private int show(int level, long now) {
+        mShownLevel = level;
+        mShownTime = now;
+        mCandidate = -1;
+        return level;
+    }
+}
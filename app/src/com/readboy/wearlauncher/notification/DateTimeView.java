@@ -12,9 +12,13 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.res.Configuration;
 import android.database.ContentObserver;
+import android.content.res.Resources;
 import android.os.Handler;
+import android.os.SystemClock;
+import android.text.TextUtils;
 import android.text.format.Time;
 import android.util.AttributeSet;
+import android.util.LongSparseArray;
 import android.view.accessibility.AccessibilityNodeInfo;
 import android.widget.TextView;
 
@@ -24,6 +28,7 @@ import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Locale;
 import java.util.TimeZone;
 /**
  * Created by Administrator on 2017/6/19.
@@ -41,6 +46,9 @@ public class DateTimeView extends TextView {
 
     private long mUpdateTimeMillis;
     private static final ThreadLocal<ReceiverInfo> sReceiverInfo = new ThreadLocal<ReceiverInfo>();
+    // (plurals id, count) -> 格式化好的文字，语言变化时清空；只在主线程使用
+    private static final LongSparseArray<String> sFormatCache = new LongSparseArray<String>();
+    private static Locale sFormatLocale;
     private String mNowText;
     private boolean mShowRelativeTime;
 
@@ -100,6 +108,14 @@ public class DateTimeView extends TextView {
         if (mTime == null || getVisibility() == GONE) {
             return;
         }
+        updateText();
+        final ReceiverInfo ri = sReceiverInfo.get();
+        if (ri != null) {
+            ri.scheduleUpdateAt(mUpdateTimeMillis);
+        }
+    }
+
+    private void updateText() {
         if (mShowRelativeTime) {
             updateRelativeTime();
             return;
@@ -188,33 +204,30 @@ public class DateTimeView extends TextView {
         boolean past = (now >= mTimeMillis);
         String result;
         if (duration < MINUTE_IN_MILLIS) {
-            setText(mNowText);
+            setTextIfChanged(mNowText);
             mUpdateTimeMillis = mTimeMillis + MINUTE_IN_MILLIS + 1;
             return;
         } else if (duration < HOUR_IN_MILLIS) {
             count = (int)(duration / MINUTE_IN_MILLIS);
-            result = String.format(getContext().getResources().getQuantityString(past
+            result = formatCount(past
                             ? R.plurals.duration_minutes_shortest
                             : R.plurals.duration_minutes_shortest_future,
-                    count),
                     count);
             millisIncrease = MINUTE_IN_MILLIS;
         } else if (duration < DAY_IN_MILLIS) {
             count = (int)(duration / HOUR_IN_MILLIS);
-            result = String.format(getContext().getResources().getQuantityString(past
+            result = formatCount(past
                             ? R.plurals.duration_hours_shortest
                             : R.plurals.duration_hours_shortest_future,
-                    count),
                     count);
             millisIncrease = HOUR_IN_MILLIS;
         } else if (duration < YEAR_IN_MILLIS) {
             // In weird cases it can become 0 because of daylight savings
             TimeZone timeZone = TimeZone.getDefault();
             count = Math.max(Math.abs(dayDistance(timeZone, mTimeMillis, now)), 1);
-            result = String.format(getContext().getResources().getQuantityString(past
+            result = formatCount(past
                             ? R.plurals.duration_days_shortest
                             : R.plurals.duration_days_shortest_future,
-                    count),
                     count);
             if (past || count != 1) {
                 mUpdateTimeMillis = computeNextMidnight(timeZone);
@@ -225,10 +238,9 @@ public class DateTimeView extends TextView {
 
         } else {
             count = (int)(duration / YEAR_IN_MILLIS);
-            result = String.format(getContext().getResources().getQuantityString(past
+            result = formatCount(past
                             ? R.plurals.duration_years_shortest
                             : R.plurals.duration_years_shortest_future,
-                    count),
                     count);
             millisIncrease = YEAR_IN_MILLIS;
         }
@@ -239,7 +251,14 @@ public class DateTimeView extends TextView {
                 mUpdateTimeMillis = mTimeMillis - millisIncrease * count + 1;
             }
         }
-        setText(result);
+        setTextIfChanged(result);
+    }
+
+    private void setTextIfChanged(String text) {
+        // 同一档位内文字不变，避免无谓的重新布局
+        if (!TextUtils.equals(getText(), text)) {
+            setText(text);
+        }
     }
 
     /**
@@ -279,6 +298,25 @@ public class DateTimeView extends TextView {
                 - getJulianDay(startTime, timeZone.getOffset(startTime) / 1000);
     }
 
+    /**
+     * Quantity string for {@code count}, formatted once per locale.
+     */
+    private String formatCount(int pluralsId, int count) {
+        final Resources res = getContext().getResources();
+        final Locale locale = res.getConfiguration().locale;
+        if (!locale.equals(sFormatLocale)) {
+            sFormatCache.clear();
+            sFormatLocale = locale;
+        }
+        final long key = ((long) pluralsId << 32) | (count & 0xffffffffL);
+        String result = sFormatCache.get(key);
+        if (result == null) {
+            result = String.format(res.getQuantityString(pluralsId, count), count);
+            sFormatCache.put(key, result);
+        }
+        return result;
+    }
+
     private DateFormat getTimeFormat() {
         return android.text.format.DateFormat.getTimeFormat(getContext());
     }
@@ -301,34 +339,30 @@ public class DateTimeView extends TextView {
                 result = mNowText;
             } else if (duration < HOUR_IN_MILLIS) {
                 count = (int)(duration / MINUTE_IN_MILLIS);
-                result = String.format(getContext().getResources().getQuantityString(past
+                result = formatCount(past
                                 ? R.plurals.duration_minutes_relative
                                 : R.plurals.duration_minutes_relative_future,
-                        count),
                         count);
             } else if (duration < DAY_IN_MILLIS) {
                 count = (int)(duration / HOUR_IN_MILLIS);
-                result = String.format(getContext().getResources().getQuantityString(past
+                result = formatCount(past
                                 ? R.plurals.duration_hours_relative
                                 : R.plurals.duration_hours_relative_future,
-                        count),
                         count);
             } else if (duration < YEAR_IN_MILLIS) {
                 // In weird cases it can become 0 because of daylight savings
                 TimeZone timeZone = TimeZone.getDefault();
                 count = Math.max(Math.abs(dayDistance(timeZone, mTimeMillis, now)), 1);
-                result = String.format(getContext().getResources().getQuantityString(past
+                result = formatCount(past
                                 ? R.plurals.duration_days_relative
                                 : R.plurals.duration_days_relative_future,
-                        count),
                         count);
 
             } else {
                 count = (int)(duration / YEAR_IN_MILLIS);
-                result = String.format(getContext().getResources().getQuantityString(past
+                result = formatCount(past
                                 ? R.plurals.duration_years_relative
                                 : R.plurals.duration_years_relative_future,
-                        count),
                         count);
             }
             info.setText(result);
@@ -342,18 +376,29 @@ public class DateTimeView extends TextView {
             public void onReceive(Context context, Intent intent) {
                 String action = intent.getAction();
                 if (Intent.ACTION_TIME_TICK.equals(action)) {
-                    if (System.currentTimeMillis() < getSoonestUpdateTime()) {
-                        // The update() function takes a few milliseconds to run because of
-                        // all of the time conversions it needs to do, so we can't do that
-                        // every minute.
-                        return;
-                    }
+                    // 定时回调在深睡时不走，TIME_TICK 兜底
+                    updateDue();
+                    return;
+                }
+                if (Intent.ACTION_CONFIGURATION_CHANGED.equals(action)) {
+                    sFormatCache.clear();
                 }
                 // ACTION_TIME_CHANGED can also signal a change of 12/24 hr. format.
                 updateAll();
             }
         };
 
+        private final Handler mHandler = new Handler();
+        /** wall-clock time the pending mUpdateRunnable is for, Long.MAX_VALUE if none */
+        private long mScheduledAt = Long.MAX_VALUE;
+        private final Runnable mUpdateRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mScheduledAt = Long.MAX_VALUE;
+                updateDue();
+            }
+        };
+
         private final ContentObserver mObserver = new ContentObserver(new Handler()) {
             @Override
             public void onChange(boolean selfChange) {
@@ -373,6 +418,8 @@ public class DateTimeView extends TextView {
             mAttachedViews.remove(v);
             if (mAttachedViews.isEmpty()) {
                 unregister(getApplicationContextIfAvailable(v.getContext()));
+                mHandler.removeCallbacks(mUpdateRunnable);
+                mScheduledAt = Long.MAX_VALUE;
             }
         }
 
@@ -381,6 +428,43 @@ public class DateTimeView extends TextView {
             for (int i = 0; i < count; i++) {
                 mAttachedViews.get(i).clearFormatAndUpdate();
             }
+            reschedule();
+        }
+
+        /**
+         * One pass over the attached views, refreshing only those whose next
+         * relative-time boundary has passed.
+         */
+        void updateDue() {
+            final long now = System.currentTimeMillis();
+            final int count = mAttachedViews.size();
+            for (int i = 0; i < count; i++) {
+                final DateTimeView v = mAttachedViews.get(i);
+                if (v.mUpdateTimeMillis != 0 && v.mUpdateTimeMillis <= now
+                        && v.mTime != null && v.getVisibility() != GONE) {
+                    v.updateText();
+                }
+            }
+            reschedule();
+        }
+
+        /**
+         * Make sure a pass runs no later than {@code time}. Called after each view update.
+         */
+        void scheduleUpdateAt(long time) {
+            if (time == 0 || time >= mScheduledAt || mAttachedViews.isEmpty()) {
+                return;
+            }
+            mScheduledAt = time;
+            mHandler.removeCallbacks(mUpdateRunnable);
+            final long delay = Math.max(0, time - System.currentTimeMillis());
+            mHandler.postAtTime(mUpdateRunnable, SystemClock.uptimeMillis() + delay);
+        }
+
+        private void reschedule() {
+            mHandler.removeCallbacks(mUpdateRunnable);
+            mScheduledAt = Long.MAX_VALUE;
+            scheduleUpdateAt(getSoonestUpdateTime());
         }
 
         long getSoonestUpdateTime() {
@@ -388,7 +472,8 @@ public class DateTimeView extends TextView {
             final int count = mAttachedViews.size();
             for (int i = 0; i < count; i++) {
                 final long time = mAttachedViews.get(i).mUpdateTimeMillis;
-                if (time < result) {
+                // 0 表示不需要更新
+                if (time != 0 && time < result) {
                     result = time;
                 }
             }
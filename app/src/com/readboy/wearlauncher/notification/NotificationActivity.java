@@ -3,16 +3,13 @@ package com.readboy.wearlauncher.notification;
 import android.app.Activity;
 import android.app.Notification;
 import android.app.PendingIntent;
-import android.content.BroadcastReceiver;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.graphics.Rect;
 import android.graphics.drawable.AnimationDrawable;
-import android.graphics.drawable.Drawable;
-import android.graphics.drawable.Icon;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.RemoteException;
@@ -24,6 +21,7 @@ import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.text.TextUtils;
 import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
@@ -38,17 +36,15 @@ import com.readboy.recyclerview.swipe.SwipeMenuRecyclerView;
 import com.readboy.recyclerview.swipe.touch.OnItemMoveListener;
 import com.readboy.recyclerview.swipe.touch.OnItemMovementListener;
 import com.readboy.wearlauncher.R;
+import com.readboy.wearlauncher.utils.InputLatencyTracer;
 import com.readboy.wearlauncher.utils.Utils;
 import com.readboy.wearlauncher.view.SwipeDismissLayout;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-
-import static com.readboy.wearlauncher.notification.NotificationMonitor.COMMAND_POSTED;
-import static com.readboy.wearlauncher.notification.NotificationMonitor.COMMAND_REMOVED;
-import static com.readboy.wearlauncher.notification.NotificationMonitor.EXTRA_COMMAND;
-import static com.readboy.wearlauncher.notification.NotificationMonitor.EXTRA_NOTIFICATION;
+import java.util.List;
 
 /**
  * Created by oubin on 2017/7/12.
@@ -57,7 +53,22 @@ import static com.readboy.wearlauncher.notification.NotificationMonitor.EXTRA_NO
 public class NotificationActivity extends Activity {
 
     private static final String TAG = "NotificationActivity";
-    private NotificationReceiver mReceiver = new NotificationReceiver();
+    private final NotificationBus.Listener mBusListener = new NotificationBus.Listener() {
+        @Override
+        public void onNotificationPosted(StatusBarNotification sbn) {
+            putNotification(sbn);
+        }
+
+        @Override
+        public void onNotificationsRemoved(List<StatusBarNotification> removed) {
+            removeNotifications(removed);
+        }
+
+        @Override
+        public void onNotificationsResync() {
+            loadLiveData();
+        }
+    };
 
     private static final String ENABLED_NOTIFICATION_LISTENERS
             = Settings.Secure.ENABLED_NOTIFICATION_LISTENERS;
@@ -76,8 +87,9 @@ public class NotificationActivity extends Activity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_notification);
         assignView();
+        // 先订阅再加载，两者之间到达的增删由订阅补上
+        NotificationBus.getInstance().addListener(mBusListener);
         initData();
-        registerReceiver();
     }
 
     private void assignView() {
@@ -96,6 +108,13 @@ public class NotificationActivity extends Activity {
 
         findViewById(R.id.btn_left).setOnTouchListener(openFactoryModeOps);
         findViewById(R.id.btn_right).setOnTouchListener(openFactoryModeOps);
+        // 长按标题清空所有可清除的通知
+        findViewById(R.id.title).setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                return clearNotifications();
+            }
+        });
     }
 
 /// add by cwj for open factory mode @{
@@ -164,24 +183,64 @@ public class NotificationActivity extends Activity {
     }
 /// @}
 
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        // SwipeMenuRecyclerView 来自外部库，在 Activity 这一层统计列表的延迟；
+        // SwipeDismissLayout 拖动时已经记过的事件不会重复记
+        final boolean handled = super.dispatchTouchEvent(ev);
+        if (handled) {
+            InputLatencyTracer.getInstance().record(InputLatencyTracer.SURFACE_NOTIFICATION_LIST,
+                    mRecyclerView, ev);
+        }
+        return handled;
+    }
+
     private void initData() {
-        Log.e(TAG, "initData: NotificationMonitor" + NotificationMonitor.getNotificationMonitor());
-        if (NotificationMonitor.getNotificationMonitor() != null) {
-            StatusBarNotification[] datas
-                    = NotificationMonitor.getNotificationMonitor().getActiveNotifications();
-            if (datas.length > 0) {
-                mAdapter.updateData(datas);
-                mAdapter.notifyDataSetChanged();
-            } else {
-                showNoMsgView();
+        mBarService = IStatusBarService.Stub.asInterface(
+                ServiceManager.getService(Context.STATUS_BAR_SERVICE));
+
+        // 快照在后台读，读到时实时通知还没来就先画快照，之后再取实时通知对齐
+        final Context context = getApplicationContext();
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<NotificationSnapshot.Entry> snapshot = NotificationSnapshot.read(context);
+                mRecyclerView.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onSnapshotLoaded(snapshot);
+                    }
+                });
             }
-        } else {
-            Log.e(TAG, "initData: NotificationMonitor == null");
-            showNoMsgView();
+        });
+        mRecyclerView.post(new Runnable() {
+            @Override
+            public void run() {
+                loadLiveData();
+            }
+        });
+    }
+
+    private void onSnapshotLoaded(List<NotificationSnapshot.Entry> snapshot) {
+        if (isDestroyed() || mAdapter.isLive()) {
+            return;
         }
+        mAdapter.setSnapshot(snapshot);
+        if (!snapshot.isEmpty()) {
+            hideNoMsgView();
+        }
+    }
 
-        mBarService = IStatusBarService.Stub.asInterface(
-                ServiceManager.getService(Context.STATUS_BAR_SERVICE));
+    private void loadLiveData() {
+        NotificationMonitor monitor = NotificationMonitor.getNotificationMonitor();
+        Log.e(TAG, "loadLiveData: NotificationMonitor" + monitor);
+        StatusBarNotification[] datas = monitor != null ? monitor.getActiveNotifications() : null;
+        if (datas != null) {
+            mAdapter.updateData(datas);
+        } else if (mAdapter.getItemCount() == 0) {
+            // 服务连上后会通过 NotificationBus 触发 resync
+            showNoMsgView();
+        }
     }
 
     @Override
@@ -196,7 +255,7 @@ public class NotificationActivity extends Activity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        unregisterReceiver(mReceiver);
+        NotificationBus.getInstance().removeListener(mBusListener);
     }
 
     @Override
@@ -250,7 +309,9 @@ public class NotificationActivity extends Activity {
         @Override
         public int onSwipeFlags(RecyclerView recyclerView, RecyclerView.ViewHolder targetViewHolder) {
             NotificationViewHolder viewHolder = (NotificationViewHolder) targetViewHolder;
-            if (filterNotification(viewHolder.mStatusBarNotification)) {
+            // 快照中的条目没有实时通知，不能删除
+            if (viewHolder.mStatusBarNotification == null
+                    || filterNotification(viewHolder.mStatusBarNotification)) {
                 return OnItemMovementListener.INVALID;
             }
             return OnItemMovementListener.LEFT | OnItemMovementListener.RIGHT; // 可以右滑，左滑动删除。
@@ -305,6 +366,34 @@ public class NotificationActivity extends Activity {
         Log.e(TAG, "cancelNotification: key = " + sbn.getKey());
     }
 
+    /**
+     * 一次取消列表中全部可清除的通知：一条命令带上全部 key，删除回调合成一批，
+     * 列表只做一次区间删除。服务没连上时退回逐条取消。
+     */
+    private boolean clearNotifications() {
+        List<StatusBarNotification> sbns = mAdapter.getClearableNotifications();
+        if (sbns.isEmpty()) {
+            return false;
+        }
+        if (NotificationMonitor.getNotificationMonitor() != null) {
+            String[] keys = new String[sbns.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = sbns.get(i).getKey();
+            }
+            Intent intent = new Intent(NotificationMonitor.ACTION_NLS_CONTROL);
+            intent.setPackage(getPackageName());
+            intent.putExtra(NotificationMonitor.EXTRA_COMMAND, "cancel");
+            intent.putExtra(NotificationMonitor.EXTRA_KEYS, keys);
+            sendBroadcast(intent);
+        } else {
+            for (StatusBarNotification sbn : sbns) {
+                cancelNotification(sbn);
+            }
+        }
+        Log.e(TAG, "clearNotifications: count = " + sbns.size());
+        return true;
+    }
+
     private void clickNotification(StatusBarNotification sbn) {
         if (sbn != null) {
             try {
@@ -316,13 +405,6 @@ public class NotificationActivity extends Activity {
         }
     }
 
-    private void registerReceiver() {
-        Log.e(TAG, "registerReceiver: ");
-        IntentFilter filter = new IntentFilter();
-        filter.addAction(NotificationMonitor.ACTION_NLS_UPDATE);
-        registerReceiver(mReceiver, filter);
-    }
-
     //是否要过滤掉，禁止侧滑
     private boolean filterNotification(StatusBarNotification notification) {
         int flags = notification.getNotification().flags;
@@ -357,33 +439,6 @@ public class NotificationActivity extends Activity {
         return false;
     }
 
-    class NotificationReceiver extends BroadcastReceiver {
-
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            Log.e(TAG, "onReceive: action = " + intent.getAction());
-            if (TextUtils.equals(intent.getAction(), NotificationMonitor.ACTION_NLS_UPDATE)) {
-                String command = intent.getStringExtra(EXTRA_COMMAND);
-                Log.e(TAG, "onReceive: command = " + command);
-                StatusBarNotification notification = intent.getParcelableExtra(EXTRA_NOTIFICATION);
-                if (notification == null) {
-                    Log.e(TAG, "onReceive: statusBarNotification is null by intent extra");
-                    return;
-                }
-                switch (command) {
-                    case COMMAND_POSTED:
-                        putNotification(notification);
-                        break;
-                    case COMMAND_REMOVED:
-                        removeNotification(notification);
-                        break;
-                    default:
-                        Log.e(TAG, "onReceive: command not support, command = " + command);
-                }
-            }
-        }
-    }
-
     private void putNotification(StatusBarNotification notification) {
         mAdapter.putItem(notification);
         if (mAdapter.getItemCount() == 1) {
@@ -391,8 +446,8 @@ public class NotificationActivity extends Activity {
         }
     }
 
-    private void removeNotification(StatusBarNotification notification) {
-        mAdapter.removeItem(notification);
+    private void removeNotifications(List<StatusBarNotification> notifications) {
+        mAdapter.removeItems(notifications);
         if (mAdapter.getItemCount() == 0) {
 //            showNoMsgView();
             finish();
@@ -419,10 +474,21 @@ public class NotificationActivity extends Activity {
         private static final int ITEM_TYPE_NORMAL = 0;
         private static final int ITEM_TYPE_PROGRESS = 1;
 
-        //过滤前
-        private ArrayMap<String, StatusBarNotification> mNotificationsMap = new ArrayMap<>();
-        //过滤后，界面显示的内容
+        //界面显示的通知，按 mComparator 有序
         private ArrayList<StatusBarNotification> mNotificationList = new ArrayList<>();
+        //key -> mNotificationList 中的通知，用于二分查找定位
+        private ArrayMap<String, StatusBarNotification> mNotificationsMap = new ArrayMap<>();
+        //拿到实时数据前显示的快照
+        private List<NotificationSnapshot.Entry> mSnapshot = Collections.emptyList();
+        private boolean mLive;
+        //mNotificationList 中通知的估算内存，增删时累加，见 trimRetained()
+        private int mRetainedBytes;
+        //key -> 加入时估算的大小，删除时直接减掉，不再重新估算
+        private final ArrayMap<String, Integer> mRetainedSizes = new ArrayMap<>();
+        //已经换成轻量副本（或试过但不能再小）的通知
+        private final ArraySet<String> mLightKeys = new ArraySet<>();
+        //还没换成轻量副本的通知数，为 0 时超限也不必遍历
+        private int mUntrimmedCount;
 
         private final LayoutInflater mInflater;
 
@@ -443,26 +509,46 @@ public class NotificationActivity extends Activity {
 
         @Override
         public void onBindViewHolder(NotificationViewHolder holder, int position) {
-            holder.bindNotification(mNotificationList.get(position));
+            if (!mLive) {
+                holder.bindSnapshot(mSnapshot.get(position));
+                return;
+            }
+            StatusBarNotification sbn = mNotificationList.get(position);
+            holder.bindNotification(sbn);
+            NotificationBus.getInstance().markBound(sbn.getKey());
+        }
+
+        @Override
+        public void onViewRecycled(NotificationViewHolder holder) {
+            super.onViewRecycled(holder);
+            NotificationIconLoader.getInstance(NotificationActivity.this).cancel(holder.mIcon);
         }
 
         @Override
         public int getItemCount() {
+            if (!mLive) {
+                return mSnapshot.size();
+            }
             return mNotificationList == null ? 0 : mNotificationList.size();
         }
 
         @Override
         public long getItemId(int position) {
+            if (!mLive) {
+                return mSnapshot.get(position).key.hashCode();
+            }
             return mNotificationList.get(position).getId();
         }
 
         @Override
         public int getItemViewType(int position) {
+            if (!mLive) {
+                return mSnapshot.get(position).hasProgress() ? ITEM_TYPE_PROGRESS : ITEM_TYPE_NORMAL;
+            }
             StatusBarNotification statusBarNotification = mNotificationList.get(position);
             Notification notification = statusBarNotification.getNotification();
             int progress = notification.extras.getInt(Notification.EXTRA_PROGRESS, -1);
             int maxProgress = notification.extras.getInt(Notification.EXTRA_PROGRESS_MAX, -1);
-            Log.e(TAG, "getItemViewType: progress = " + progress + ", maxProgress = " + maxProgress);
             if (progress >= 0 && maxProgress > 0) {
                 return ITEM_TYPE_PROGRESS;
             } else {
@@ -470,18 +556,34 @@ public class NotificationActivity extends Activity {
             }
         }
 
+        boolean isLive() {
+            return mLive;
+        }
+
+        void setSnapshot(List<NotificationSnapshot.Entry> snapshot) {
+            mSnapshot = snapshot;
+            notifyDataSetChanged();
+        }
+
         void updateData(StatusBarNotification[] datas) {
+            mLive = true;
+            mSnapshot = Collections.emptyList();
             mNotificationsMap.clear();
+            mNotificationList.clear();
+            mRetainedSizes.clear();
+            mLightKeys.clear();
+            mRetainedBytes = 0;
+            mUntrimmedCount = 0;
             for (StatusBarNotification data : datas) {
-                String type = data.getNotification().extras.getString("extra_type", "");
-                Log.e(TAG, "updateData: key = " + data.getKey());
-                Log.e(TAG, "updateData: type = " + type + ", packagesName = " + data.getPackageName());
                 if (!shouldFilterOut(data)) {
                     mNotificationsMap.put(data.getKey(), data);
+                    mNotificationList.add(data);
+                    retain(data);
                 }
             }
-            Log.e(TAG, "updateData: size = " + mNotificationsMap.size());
-            filterAndSort();
+            Log.e(TAG, "updateData: size = " + mNotificationList.size());
+            Collections.sort(mNotificationList, mComparator);
+            trimRetained();
             if (mNotificationList.size() > 0) {
                 hideNoMsgView();
             } else {
@@ -491,59 +593,188 @@ public class NotificationActivity extends Activity {
             notifyDataSetChanged();
         }
 
+        /**
+         * 一批删除：先定位全部位置，再从后往前按连续区间删除并通知，
+         * 清空 100 条只触发一次布局和一组区间删除动画。
+         */
+        void removeItems(List<StatusBarNotification> notifications) {
+            if (!mLive) {
+                return;
+            }
+            if (notifications.size() == 1) {
+                removeItem(notifications.get(0));
+                return;
+            }
+            int[] positions = new int[notifications.size()];
+            int count = 0;
+            boolean outOfSync = false;
+            // 列表还没动，二分查找的位置都有效
+            for (int i = 0, n = notifications.size(); i < n; i++) {
+                StatusBarNotification sbn = mNotificationsMap.remove(notifications.get(i).getKey());
+                if (sbn == null) {
+                    continue;
+                }
+                release(sbn.getKey());
+                int pointer = indexOf(sbn);
+                if (pointer < 0) {
+                    outOfSync = true;
+                } else {
+                    positions[count++] = pointer;
+                }
+            }
+            if (outOfSync) {
+                Log.e(TAG, "removeItems: list out of sync");
+                rebuildList();
+                return;
+            }
+            Arrays.sort(positions, 0, count);
+            int end = count - 1;
+            while (end >= 0) {
+                int start = end;
+                while (start > 0 && positions[start - 1] == positions[start] - 1) {
+                    start--;
+                }
+                int from = positions[start];
+                int length = end - start + 1;
+                mNotificationList.subList(from, from + length).clear();
+                notifyItemRangeRemoved(from, length);
+                end = start - 1;
+            }
+        }
+
         void removeItem(StatusBarNotification notification) {
+            if (!mLive) {
+                // 实时数据加载时会包含这次变化
+                return;
+            }
             StatusBarNotification sbn = mNotificationsMap.remove(notification.getKey());
             if (sbn == null) {
                 Log.e(TAG, "removeItem: notification not exit in mNotificationMap");
                 return;
             }
-
-            //region find position in List
-            int pointer = -1;
-            int size = mNotificationList.size();
-            for (int i = 0; i < size; i++) {
-                if (notification.getKey().equals(mNotificationList.get(i).getKey())) {
-                    Log.e(TAG, "removeItem: equals");
-                    pointer = i;
-                    break;
-                }
-                if (notification.getKey().contentEquals(mNotificationList.get(i).getKey())) {
-                    Log.e(TAG, "removeItem: content equals");
-                    pointer = i;
-                    break;
-                }
-            }
+            release(sbn.getKey());
+            int pointer = indexOf(sbn);
             if (pointer >= 0) {
                 mNotificationList.remove(pointer);
                 notifyItemRemoved(pointer);
-                Log.e(TAG, "removeItem: notifyItemRemoved");
             } else {
-                notifyDataSetChanged();
-                Log.e(TAG, "removeItem: notifyDataSetChanged, " +
-                        "notification null exit, key = " + notification.getKey());
+                Log.e(TAG, "removeItem: list out of sync, key = " + notification.getKey());
+                rebuildList();
             }
-            //endregion
         }
 
+        /**
+         * 增加或更新一条通知，O(log n) 定位，只通知变动的位置。
+         */
         void putItem(StatusBarNotification notification) {
-            mNotificationsMap.put(notification.getKey(), notification);
-            filterAndSort();
-            notifyDataSetChanged();
+            if (!mLive) {
+                return;
+            }
+            final String key = notification.getKey();
+            if (shouldFilterOut(notification)) {
+                // 更新后不再显示
+                if (mNotificationsMap.containsKey(key)) {
+                    removeItem(notification);
+                }
+                return;
+            }
+
+            StatusBarNotification old = mNotificationsMap.put(key, notification);
+            release(key);
+            retain(notification);
+            if (old == null) {
+                int position = insertionPoint(notification);
+                mNotificationList.add(position, notification);
+                notifyItemInserted(position);
+                trimRetained();
+                return;
+            }
+
+            int from = indexOf(old);
+            if (from < 0) {
+                Log.e(TAG, "putItem: list out of sync, key = " + key);
+                rebuildList();
+                return;
+            }
+            mNotificationList.remove(from);
+            int to = insertionPoint(notification);
+            mNotificationList.add(to, notification);
+            if (from != to) {
+                notifyItemMoved(from, to);
+            }
+            notifyItemChanged(to);
+            trimRetained();
         }
 
-        private void filterAndSort() {
-            mNotificationList.clear();
-            final int N = mNotificationsMap.size();
-            for (int i = 0; i < N; i++) {
-                StatusBarNotification sbn = mNotificationsMap.valueAt(i);
-                if (shouldFilterOut(sbn)) {
+        private void retain(StatusBarNotification sbn) {
+            int size = NotificationCoalescer.estimateSize(sbn);
+            mRetainedSizes.put(sbn.getKey(), size);
+            mRetainedBytes += size;
+            mUntrimmedCount++;
+        }
+
+        private void release(String key) {
+            Integer size = mRetainedSizes.remove(key);
+            if (size == null) {
+                return;
+            }
+            mRetainedBytes -= size;
+            if (!mLightKeys.remove(key)) {
+                mUntrimmedCount--;
+            }
+        }
+
+        /**
+         * 留住的通知超过 {@link NotificationCoalescer#MEMORY_CAP_BYTES} 时，从最旧的开始
+         * 换成去掉大图等 Parcelable extras 的轻量副本。列表只用到标题、正文、小图标、
+         * 进度和 contentIntent，这些都保留，所以不需要重新绑定。
+         * 每条通知最多处理一次；没有可处理的通知时直接返回，不遍历列表。
+         */
+        private void trimRetained() {
+            if (mRetainedBytes <= NotificationCoalescer.MEMORY_CAP_BYTES || mUntrimmedCount == 0) {
+                return;
+            }
+            int trimmed = 0;
+            // 列表新的在前
+            for (int i = mNotificationList.size() - 1; i >= 0 && mUntrimmedCount > 0
+                    && mRetainedBytes > NotificationCoalescer.MEMORY_CAP_BYTES; i--) {
+                StatusBarNotification sbn = mNotificationList.get(i);
+                String key = sbn.getKey();
+                if (!mLightKeys.add(key)) {
                     continue;
                 }
-
-                mNotificationList.add(sbn);
+                mUntrimmedCount--;
+                int size = mRetainedSizes.get(key);
+                StatusBarNotification light = sbn.cloneLight();
+                int lightSize = NotificationCoalescer.estimateSize(light);
+                if (lightSize >= size) {
+                    continue;
+                }
+                // key 和 when 不变，排序位置也不变
+                mNotificationList.set(i, light);
+                mNotificationsMap.put(key, light);
+                mRetainedSizes.put(key, lightSize);
+                mRetainedBytes += lightSize - size;
+                trimmed++;
             }
+            Log.w(TAG, "trimRetained: trimmed = " + trimmed + ", bytes = " + mRetainedBytes);
+        }
+
+        private int indexOf(StatusBarNotification sbn) {
+            int index = Collections.binarySearch(mNotificationList, sbn, mComparator);
+            return index >= 0 && mNotificationList.get(index) == sbn ? index : -1;
+        }
+
+        private int insertionPoint(StatusBarNotification sbn) {
+            int index = Collections.binarySearch(mNotificationList, sbn, mComparator);
+            return index >= 0 ? index : -index - 1;
+        }
 
+        private void rebuildList() {
+            mNotificationList.clear();
+            mNotificationList.addAll(mNotificationsMap.values());
             Collections.sort(mNotificationList, mComparator);
+            notifyDataSetChanged();
         }
 
         /**
@@ -552,12 +783,20 @@ public class NotificationActivity extends Activity {
          * @return true if notification should filter, otherwise.
          */
         private boolean shouldFilterOut(StatusBarNotification notification) {
-            String type = notification.getNotification().extras.getString("extra_type", "");
-            Log.e(TAG, "shouldFilterOut: key = " + notification.getKey() + ", type = " + type);
-            if ("readboy".equalsIgnoreCase(type)) {
-                return false;
+            return !NotificationMonitor.isDisplayed(notification);
+        }
+
+        List<StatusBarNotification> getClearableNotifications() {
+            if (!mLive) {
+                return Collections.emptyList();
             }
-            return true;
+            ArrayList<StatusBarNotification> result = new ArrayList<>(mNotificationList.size());
+            for (StatusBarNotification sbn : mNotificationList) {
+                if (!filterNotification(sbn)) {
+                    result.add(sbn);
+                }
+            }
+            return result;
         }
 
         StatusBarNotification getStatusBarNotification(int position) {
@@ -574,7 +813,13 @@ public class NotificationActivity extends Activity {
 
             @Override
             public int compare(StatusBarNotification na, StatusBarNotification nb) {
-                return (int) (nb.getNotification().when - na.getNotification().when);
+                // 新的在前；when 相同时按 key 排，保证顺序唯一，二分查找才能定位
+                long wa = na.getNotification().when;
+                long wb = nb.getNotification().when;
+                if (wa != wb) {
+                    return wa < wb ? 1 : -1;
+                }
+                return na.getKey().compareTo(nb.getKey());
             }
         };
     }
@@ -638,18 +883,23 @@ public class NotificationActivity extends Activity {
             long time = notification.when;
             mTitle.setText(title);
             mText.setText(content);
-            Icon smallIcon = notification.getSmallIcon();
-            if (smallIcon != null) {
-                Drawable drawable = smallIcon.loadDrawable(
-                        statusBarNotification.getPackageContext(NotificationActivity.this));
-                mIcon.setImageDrawable(drawable);
-            } else {
-                mIcon.setImageResource(R.drawable.app_icon_default);
-            }
+            NotificationIconLoader.getInstance(NotificationActivity.this)
+                    .bind(mIcon, statusBarNotification);
             if (showWhen && time != 0) {
                 mTimeView.setTime(time);
             }
         }
+
+        void bindSnapshot(NotificationSnapshot.Entry entry) {
+            mStatusBarNotification = null;
+            mTitle.setText(entry.title);
+            mText.setText(entry.text);
+            NotificationIconLoader.getInstance(NotificationActivity.this)
+                    .bind(mIcon, entry.iconPackage, entry.iconResId);
+            if (entry.showWhen && entry.when != 0) {
+                mTimeView.setTime(entry.when);
+            }
+        }
     }
 
     class NotificationProgressViewHolder extends NotificationViewHolder {
@@ -664,6 +914,14 @@ public class NotificationActivity extends Activity {
 
         }
 
+        @Override
+        void bindSnapshot(NotificationSnapshot.Entry entry) {
+            super.bindSnapshot(entry);
+            mProgressBar.setMax(entry.progressMax);
+            mProgressBar.setProgress(entry.progress);
+            mProgressTv.setText(String.valueOf(entry.progress * 100 / entry.progressMax + "%"));
+        }
+
         @Override
         void bindNotification(StatusBarNotification statusBarNotification) {
             super.bindNotification(statusBarNotification);
@@ -0,0 +1,281 @@
+package com.readboy.wearlauncher.notification;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.service.notification.StatusBarNotification;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 进程内的通知通道：NotificationMonitor 把通知增删写入有界环形缓冲区，
+ * 在主线程按顺序分发给订阅者，不再经 sendBroadcast 绕 system_server 一圈。
+ * 缓冲区满时丢弃最旧的事件，并让订阅者整体重新加载一次。
+ * 一批删除只占一个槽位，订阅者也一次性收到。
+ */
+final class NotificationBus {
+    private static final String TAG = "NotificationBus";
+
+    static final int CAPACITY = 64;
+
+    interface Listener {
+        void onNotificationPosted(StatusBarNotification sbn);
+
+        /** One or more notifications removed together, e.g. by clear all. */
+        void onNotificationsRemoved(List<StatusBarNotification> removed);
+
+        /**
+         * Events were dropped; reload everything from getActiveNotifications().
+         */
+        void onNotificationsResync();
+    }
+
+    private static final NotificationBus sInstance = new NotificationBus();
+
+    static NotificationBus getInstance() {
+        return sInstance;
+    }
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ArrayList<Listener> mListeners = new ArrayList<Listener>();
+    private volatile boolean mHasListeners;
+
+    // ring buffer, guarded by mLock
+    private final Object mLock = new Object();
+    private final StatusBarNotification[] mRing = new StatusBarNotification[CAPACITY];
+    private final boolean[] mRingRemoved = new boolean[CAPACITY];
+    @SuppressWarnings("unchecked")
+    private final List<StatusBarNotification>[] mRingBatch = new List[CAPACITY];
+    private final long[] mRingTime = new long[CAPACITY];
+    private int mHead;
+    private int mSize;
+    private boolean mOverflow;
+    private boolean mDrainPosted;
+    private int mDroppedCount;
+
+    // latency, main thread only
+    private final ArrayMap<String, Long> mAwaitingBind = new ArrayMap<String, Long>();
+    private int mDeliveredCount;
+    private long mDeliveredTotalMs;
+    private long mDeliveredMaxMs;
+    private int mRemovalBatchCount;
+    private int mRemovalBatchMax;
+    private int mBoundCount;
+    private long mBoundTotalMs;
+    private long mBoundMaxMs;
+
+    private final Runnable mDrainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private NotificationBus() {
+    }
+
+    /** Main thread only. */
+    void addListener(Listener listener) {
+        if (!mListeners.contains(listener)) {
+            mListeners.add(listener);
+            mHasListeners = true;
+        }
+    }
+
+    /** Main thread only. */
+    void removeListener(Listener listener) {
+        mListeners.remove(listener);
+        if (mListeners.isEmpty()) {
+            mHasListeners = false;
+            mAwaitingBind.clear();
+            synchronized (mLock) {
+                clearLocked();
+            }
+        }
+    }
+
+    /**
+     * Queue a posted/removed notification for in-process listeners. Safe to call
+     * from any thread.
+     *
+     * @return false if nobody in this process is listening
+     */
+    boolean offer(StatusBarNotification sbn, boolean removed) {
+        if (!mHasListeners) {
+            return false;
+        }
+        synchronized (mLock) {
+            final int tail = enqueueLocked();
+            mRing[tail] = sbn;
+            mRingBatch[tail] = null;
+            mRingRemoved[tail] = removed;
+        }
+        return true;
+    }
+
+    /**
+     * Queue a batch of removals as a single event. The list is handed to
+     * listeners as is and must not be modified afterwards.
+     *
+     * @return false if nobody in this process is listening
+     */
+    boolean offerRemoved(List<StatusBarNotification> removed) {
+        if (!mHasListeners) {
+            return false;
+        }
+        synchronized (mLock) {
+            final int tail = enqueueLocked();
+            mRing[tail] = null;
+            mRingBatch[tail] = removed;
+            mRingRemoved[tail] = true;
+        }
+        return true;
+    }
+
+    private int enqueueLocked() {
+        if (mSize == CAPACITY) {
+            mRing[mHead] = null;
+            mRingBatch[mHead] = null;
+            mHead = (mHead + 1) % CAPACITY;
+            mSize--;
+            mOverflow = true;
+            mDroppedCount++;
+        }
+        final int tail = (mHead + mSize) % CAPACITY;
+        mRingTime[tail] = SystemClock.uptimeMillis();
+        mSize++;
+        if (!mDrainPosted) {
+            mDrainPosted = true;
+            mHandler.post(mDrainRunnable);
+        }
+        return tail;
+    }
+
+    /**
+     * Ask listeners to reload everything, e.g. once the listener service has
+     * (re)connected. Safe to call from any thread.
+     */
+    void requestResync() {
+        if (!mHasListeners) {
+            return;
+        }
+        synchronized (mLock) {
+            mOverflow = true;
+            if (!mDrainPosted) {
+                mDrainPosted = true;
+                mHandler.post(mDrainRunnable);
+            }
+        }
+    }
+
+    private void drain() {
+        boolean resync;
+        synchronized (mLock) {
+            mDrainPosted = false;
+            resync = mOverflow;
+            if (resync) {
+                clearLocked();
+            }
+        }
+        if (resync) {
+            Log.w(TAG, "resync, dropped=" + mDroppedCount);
+            mAwaitingBind.clear();
+            for (int i = mListeners.size() - 1; i >= 0; i--) {
+                mListeners.get(i).onNotificationsResync();
+            }
+            return;
+        }
+
+        while (true) {
+            final StatusBarNotification sbn;
+            List<StatusBarNotification> batch;
+            final boolean removed;
+            final long postedAt;
+            synchronized (mLock) {
+                if (mSize == 0 || mOverflow) {
+                    // an overflow while delivering is picked up by the drain it posted
+                    break;
+                }
+                sbn = mRing[mHead];
+                batch = mRingBatch[mHead];
+                removed = mRingRemoved[mHead];
+                postedAt = mRingTime[mHead];
+                mRing[mHead] = null;
+                mRingBatch[mHead] = null;
+                mHead = (mHead + 1) % CAPACITY;
+                mSize--;
+            }
+            final long latency = SystemClock.uptimeMillis() - postedAt;
+            mDeliveredCount++;
+            mDeliveredTotalMs += latency;
+            mDeliveredMaxMs = Math.max(mDeliveredMaxMs, latency);
+            if (removed) {
+                if (batch == null) {
+                    batch = Collections.singletonList(sbn);
+                } else {
+                    mRemovalBatchCount++;
+                    mRemovalBatchMax = Math.max(mRemovalBatchMax, batch.size());
+                }
+                for (int i = 0, n = batch.size(); i < n; i++) {
+                    mAwaitingBind.remove(batch.get(i).getKey());
+                }
+                for (int i = mListeners.size() - 1; i >= 0; i--) {
+                    mListeners.get(i).onNotificationsRemoved(batch);
+                }
+            } else {
+                mAwaitingBind.put(sbn.getKey(), postedAt);
+                for (int i = mListeners.size() - 1; i >= 0; i--) {
+                    mListeners.get(i).onNotificationPosted(sbn);
+                }
+            }
+        }
+    }
+
+    /**
+     * Called when the view for {@code key} has been bound; closes the
+     * posted-to-bound latency measurement of its last update.
+     */
+    void markBound(String key) {
+        final int index = mAwaitingBind.indexOfKey(key);
+        if (index < 0) {
+            return;
+        }
+        final long latency = SystemClock.uptimeMillis() - mAwaitingBind.valueAt(index);
+        mAwaitingBind.removeAt(index);
+        mBoundCount++;
+        mBoundTotalMs += latency;
+        mBoundMaxMs = Math.max(mBoundMaxMs, latency);
+    }
+
+    private void clearLocked() {
+        for (int i = 0; i < CAPACITY; i++) {
+            mRing[i] = null;
+            mRingBatch[i] = null;
+        }
+        mHead = 0;
+        mSize = 0;
+        mOverflow = false;
+    }
+
+    void dump(PrintWriter pw) {
+        pw.println("NotificationBus state:");
+        pw.print("  listeners="); pw.println(mListeners.size());
+        synchronized (mLock) {
+            pw.print("  queued="); pw.println(mSize);
+            pw.print("  dropped="); pw.println(mDroppedCount);
+        }
+        pw.print("  delivered="); pw.print(mDeliveredCount);
+        pw.print(" avgMs="); pw.print(mDeliveredCount == 0 ? 0 : mDeliveredTotalMs / mDeliveredCount);
+        pw.print(" maxMs="); pw.println(mDeliveredMaxMs);
+        pw.print("  removalBatches="); pw.print(mRemovalBatchCount);
+        pw.print(" maxSize="); pw.println(mRemovalBatchMax);
+        pw.print("  postedToBound="); pw.print(mBoundCount);
+        pw.print(" avgMs="); pw.print(mBoundCount == 0 ? 0 : mBoundTotalMs / mBoundCount);
+        pw.print(" maxMs="); pw.println(mBoundMaxMs);
+    }
+}
@@ -0,0 +1,312 @@
+package com.readboy.wearlauncher.notification;
+
+import android.app.Notification;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Icon;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcelable;
+import android.os.SystemClock;
+import android.service.notification.StatusBarNotification;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.view.Choreographer;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * NotificationMonitor 与下游之间的合并层：
+ * <ul>
+ * <li>同一 key 在一帧内的多次更新只投递最后一次；</li>
+ * <li>进度通知每个 key 最多每 {@link #PROGRESS_INTERVAL_MS} 投递一次，进度完成不受限；</li>
+ * <li>待投递通知估算的内存超过 {@link #MEMORY_CAP_BYTES} 时从最早的开始丢弃，
+ *     之后让下游整体重新加载一次。界面列表留住的通知也按同一上限裁剪，
+ *     见 NotificationActivity。</li>
+ * <li>批量删除（{@link #expectRemoved}）时先扣住已到的删除，等整批到齐或超时后一起投递，
+ *     下游只需一次删除事务。</li>
+ * </ul>
+ * offer 可在任意线程调用，投递在主线程的帧回调里进行。
+ */
+final class NotificationCoalescer {
+    /** 进度条在手表屏幕上每秒变化 5 次以上已看不出差别 */
+    static final long PROGRESS_INTERVAL_MS = 200;
+    /** 待投递的通知、界面留住的通知各自的估算内存上限 */
+    static final int MEMORY_CAP_BYTES = 2 * 1024 * 1024;
+    /** 批量删除最多等这么久，有的 key 可能根本删不掉（不可清除或已经不在了） */
+    static final long REMOVAL_BATCH_TIMEOUT_MS = 500;
+    /** StatusBarNotification/Notification/extras 本身的大致开销 */
+    private static final int BASE_SIZE = 1024;
+
+    interface Sink {
+        void deliver(StatusBarNotification sbn);
+
+        /** All removals ready in one frame, in arrival order. */
+        void deliverRemoved(List<StatusBarNotification> removed);
+
+        /** Some updates were evicted; downstream has to reload everything. */
+        void resync();
+    }
+
+    private static final class Pending {
+        StatusBarNotification sbn;
+        boolean removed;
+        long readyAt;
+        int size;
+    }
+
+    private final Sink mSink;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // guarded by mLock
+    private final Object mLock = new Object();
+    // 按首次到达的顺序，淘汰时从最早的开始
+    private final LinkedHashMap<String, Pending> mPending = new LinkedHashMap<String, Pending>();
+    private final ArrayMap<String, Long> mLastProgressAt = new ArrayMap<String, Long>();
+    private int mPendingBytes;
+    private final ArraySet<String> mExpectedRemovals = new ArraySet<String>();
+    private long mExpectDeadline;
+    private boolean mNeedResync;
+    private boolean mScheduled;
+    private long mScheduledAt;
+    private int mReceivedCount;
+    private int mCoalescedCount;
+    private int mEvictedCount;
+    private int mDeliveredCount;
+    private int mRemovalBatchCount;
+
+    // main thread only
+    private final ArrayList<Pending> mBatch = new ArrayList<Pending>();
+    private final ArrayList<StatusBarNotification> mRemovedBatch = new ArrayList<StatusBarNotification>();
+
+    private final Runnable mScheduleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            final long at;
+            synchronized (mLock) {
+                at = mScheduledAt;
+            }
+            final Choreographer choreographer = Choreographer.getInstance();
+            choreographer.removeFrameCallback(mFrameCallback);
+            choreographer.postFrameCallbackDelayed(mFrameCallback,
+                    Math.max(0, at - SystemClock.uptimeMillis()));
+        }
+    };
+
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            flush();
+        }
+    };
+
+    NotificationCoalescer(Sink sink) {
+        mSink = sink;
+    }
+
+    void offer(StatusBarNotification sbn, boolean removed) {
+        final String key = sbn.getKey();
+        final long now = SystemClock.uptimeMillis();
+        synchronized (mLock) {
+            mReceivedCount++;
+            Pending p = mPending.get(key);
+            if (p != null) {
+                mCoalescedCount++;
+                mPendingBytes -= p.size;
+            } else {
+                p = new Pending();
+                mPending.put(key, p);
+            }
+            p.sbn = sbn;
+            p.removed = removed;
+            p.size = removed ? 0 : estimateSize(sbn);
+            p.readyAt = now;
+            if (removed) {
+                holdRemovalLocked(p, key, now);
+            } else if (isProgressUpdate(sbn)) {
+                final Long last = mLastProgressAt.get(key);
+                if (last != null) {
+                    p.readyAt = Math.max(now, last + PROGRESS_INTERVAL_MS);
+                }
+            }
+            mPendingBytes += p.size;
+            evictLocked();
+            scheduleLocked(now);
+        }
+    }
+
+    /**
+     * The caller is about to cancel {@code keys} in one go; hold their removals
+     * until the last one arrives (or {@link #REMOVAL_BATCH_TIMEOUT_MS} passes)
+     * so downstream sees a single batch.
+     */
+    void expectRemoved(String[] keys) {
+        if (keys == null || keys.length == 0) {
+            return;
+        }
+        synchronized (mLock) {
+            for (String key : keys) {
+                mExpectedRemovals.add(key);
+            }
+            mExpectDeadline = SystemClock.uptimeMillis() + REMOVAL_BATCH_TIMEOUT_MS;
+        }
+    }
+
+    private void holdRemovalLocked(Pending p, String key, long now) {
+        if (now >= mExpectDeadline) {
+            mExpectedRemovals.clear();
+        }
+        if (!mExpectedRemovals.remove(key)) {
+            return;
+        }
+        if (!mExpectedRemovals.isEmpty()) {
+            p.readyAt = mExpectDeadline;
+            return;
+        }
+        // 整批到齐，之前扣住的一起放行
+        for (Pending other : mPending.values()) {
+            if (other.removed) {
+                other.readyAt = Math.min(other.readyAt, now);
+            }
+        }
+    }
+
+    private void evictLocked() {
+        final Iterator<Pending> it = mPending.values().iterator();
+        while (mPendingBytes > MEMORY_CAP_BYTES && it.hasNext()) {
+            final Pending p = it.next();
+            if (p.removed) {
+                continue;
+            }
+            it.remove();
+            mPendingBytes -= p.size;
+            mEvictedCount++;
+            mNeedResync = true;
+        }
+    }
+
+    private void scheduleLocked(long now) {
+        if (mPending.isEmpty() && !mNeedResync) {
+            return;
+        }
+        long readyAt = mNeedResync ? now : Long.MAX_VALUE;
+        for (Pending p : mPending.values()) {
+            readyAt = Math.min(readyAt, p.readyAt);
+        }
+        // 已经安排了不晚于此的一帧
+        if (mScheduled && mScheduledAt <= readyAt) {
+            return;
+        }
+        mScheduled = true;
+        mScheduledAt = readyAt;
+        mMainHandler.post(mScheduleRunnable);
+    }
+
+    private void flush() {
+        final boolean resync;
+        final long now = SystemClock.uptimeMillis();
+        synchronized (mLock) {
+            mScheduled = false;
+            resync = mNeedResync;
+            mNeedResync = false;
+            final Iterator<Pending> it = mPending.values().iterator();
+            while (it.hasNext()) {
+                final Pending p = it.next();
+                if (p.readyAt > now) {
+                    continue;
+                }
+                it.remove();
+                mPendingBytes -= p.size;
+                final String key = p.sbn.getKey();
+                if (p.removed) {
+                    mLastProgressAt.remove(key);
+                } else if (isProgressUpdate(p.sbn)) {
+                    mLastProgressAt.put(key, now);
+                }
+                mBatch.add(p);
+            }
+            if (now >= mExpectDeadline) {
+                mExpectedRemovals.clear();
+            }
+            mDeliveredCount += mBatch.size();
+            scheduleLocked(now);
+        }
+
+        if (resync) {
+            mSink.resync();
+        }
+        // 删除合成一批先投递，不同 key 之间的先后无关紧要
+        for (int i = 0, n = mBatch.size(); i < n; i++) {
+            final Pending p = mBatch.get(i);
+            if (p.removed) {
+                mRemovedBatch.add(p.sbn);
+            }
+        }
+        if (!mRemovedBatch.isEmpty()) {
+            mRemovalBatchCount++;
+            mSink.deliverRemoved(new ArrayList<StatusBarNotification>(mRemovedBatch));
+            mRemovedBatch.clear();
+        }
+        for (int i = 0, n = mBatch.size(); i < n; i++) {
+            final Pending p = mBatch.get(i);
+            if (!p.removed) {
+                mSink.deliver(p.sbn);
+            }
+        }
+        mBatch.clear();
+    }
+
+    /**
+     * An in-flight progress update; the final one (progress == max) is not limited.
+     */
+    private static boolean isProgressUpdate(StatusBarNotification sbn) {
+        final Notification n = sbn.getNotification();
+        final int progress = n.extras.getInt(Notification.EXTRA_PROGRESS, -1);
+        final int max = n.extras.getInt(Notification.EXTRA_PROGRESS_MAX, -1);
+        return progress >= 0 && max > 0 && progress < max;
+    }
+
+    static int estimateSize(StatusBarNotification sbn) {
+        final Notification n = sbn.getNotification();
+        int size = BASE_SIZE;
+        size += bitmapSize(n.extras.getParcelable(Notification.EXTRA_PICTURE));
+        size += bitmapSize(n.extras.getParcelable(Notification.EXTRA_LARGE_ICON));
+        size += bitmapSize(n.extras.getParcelable(Notification.EXTRA_LARGE_ICON_BIG));
+        size += textSize(n.extras.getCharSequence(Notification.EXTRA_TITLE));
+        size += textSize(n.extras.getCharSequence(Notification.EXTRA_TEXT));
+        size += textSize(n.extras.getCharSequence(Notification.EXTRA_BIG_TEXT));
+        return size;
+    }
+
+    private static int bitmapSize(Parcelable p) {
+        if (p instanceof Bitmap) {
+            return ((Bitmap) p).getAllocationByteCount();
+        }
+        if (p instanceof Icon && ((Icon) p).getType() == Icon.TYPE_BITMAP) {
+            return ((Icon) p).getBitmap().getAllocationByteCount();
+        }
+        return 0;
+    }
+
+    private static int textSize(CharSequence text) {
+        return text == null ? 0 : text.length() * 2;
+    }
+
+    void dump(PrintWriter pw) {
+        pw.println("NotificationCoalescer state:");
+        synchronized (mLock) {
+            pw.print("  pending="); pw.print(mPending.size());
+            pw.print(" bytes="); pw.println(mPendingBytes);
+            pw.print("  received="); pw.println(mReceivedCount);
+            pw.print("  delivered="); pw.print(mDeliveredCount);
+            pw.print(" removalBatches="); pw.println(mRemovalBatchCount);
+            pw.print("  expectedRemovals="); pw.println(mExpectedRemovals.size());
+            pw.print("  dropped="); pw.print(mCoalescedCount + mEvictedCount);
+            pw.print(" (coalesced="); pw.print(mCoalescedCount);
+            pw.print(" evicted="); pw.print(mEvictedCount); pw.println(")");
+        }
+    }
+}
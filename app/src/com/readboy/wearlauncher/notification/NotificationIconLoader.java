@@ -0,0 +1,176 @@
+package com.readboy.wearlauncher.notification;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.Icon;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.service.notification.StatusBarNotification;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import com.readboy.wearlauncher.R;
+
+/**
+ * 通知小图标的异步加载：在后台线程创建包 Context 并解码，资源图标的结果按
+ * (包名, 资源 id) 放入有界 LRU，bitmap/uri 图标没有稳定的标识，每次都重新加载。
+ * 绑定时先显示占位图，加载完成后若 View 仍对应同一请求再替换；View 被回收时调用
+ * {@link #cancel(ImageView)}。
+ */
+final class NotificationIconLoader {
+    private static final String TAG = "NotificationIconLoader";
+
+    private static final int CACHE_SIZE = 32;
+
+    private static NotificationIconLoader sInstance;
+
+    static NotificationIconLoader getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new NotificationIconLoader(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private final Context mContext;
+    private final Handler mWorker;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // Drawable 不能在多个 View 间共享，缓存 ConstantState，取出时 newDrawable
+    private final LruCache<String, Drawable.ConstantState> mCache =
+            new LruCache<String, Drawable.ConstantState>(CACHE_SIZE);
+
+    private NotificationIconLoader(Context context) {
+        mContext = context;
+        HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mWorker = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Bind the small icon of {@code sbn} to {@code view}. Main thread only.
+     */
+    void bind(ImageView view, StatusBarNotification sbn) {
+        cancel(view);
+        final Icon icon = sbn.getNotification().getSmallIcon();
+        if (icon == null) {
+            view.setImageResource(R.drawable.app_icon_default);
+            return;
+        }
+        final String key = cacheKey(icon);
+        final Drawable.ConstantState cached = key != null ? mCache.get(key) : null;
+        if (cached != null) {
+            view.setImageDrawable(cached.newDrawable(mContext.getResources()));
+            return;
+        }
+        view.setImageResource(R.drawable.app_icon_default);
+        Request request = new Request(view, sbn, icon, key);
+        view.setTag(R.id.notification_icon_request, request);
+        mWorker.post(request);
+    }
+
+    /**
+     * Bind an icon remembered by a {@link NotificationSnapshot.Entry}. Main thread only.
+     */
+    void bind(ImageView view, String iconPackage, int iconResId) {
+        cancel(view);
+        if (iconPackage == null || iconResId == 0) {
+            view.setImageResource(R.drawable.app_icon_default);
+            return;
+        }
+        final String key = resourceKey(iconPackage, iconResId);
+        final Drawable.ConstantState cached = mCache.get(key);
+        if (cached != null) {
+            view.setImageDrawable(cached.newDrawable(mContext.getResources()));
+            return;
+        }
+        view.setImageResource(R.drawable.app_icon_default);
+        Request request = new Request(view, null, null, key);
+        request.mPackage = iconPackage;
+        request.mResId = iconResId;
+        view.setTag(R.id.notification_icon_request, request);
+        mWorker.post(request);
+    }
+
+    /**
+     * Drop the pending load for {@code view}, if any. Main thread only.
+     */
+    void cancel(ImageView view) {
+        Request request = (Request) view.getTag(R.id.notification_icon_request);
+        if (request != null) {
+            request.mCancelled = true;
+            mWorker.removeCallbacks(request);
+            view.setTag(R.id.notification_icon_request, null);
+        }
+    }
+
+    /**
+     * Cache key for {@code icon}, or null if it must not be cached.
+     */
+    private static String cacheKey(Icon icon) {
+        if (icon.getType() == Icon.TYPE_RESOURCE) {
+            return resourceKey(icon.getResPackage(), icon.getResId());
+        }
+        // bitmap/uri 图标每次更新都是新对象，内容可能变了，按对象缓存既命中不了又可能撞上别的图标
+        return null;
+    }
+
+    private static String resourceKey(String pkg, int resId) {
+        return pkg + ":" + resId;
+    }
+
+    private final class Request implements Runnable {
+        final ImageView mView;
+        final StatusBarNotification mSbn;
+        final Icon mIcon;
+        final String mKey;
+        String mPackage;
+        int mResId;
+        volatile boolean mCancelled;
+
+        Request(ImageView view, StatusBarNotification sbn, Icon icon, String key) {
+            mView = view;
+            mSbn = sbn;
+            mIcon = icon;
+            mKey = key;
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled) {
+                return;
+            }
+            Drawable drawable = null;
+            try {
+                if (mIcon != null) {
+                    drawable = mIcon.loadDrawable(mSbn.getPackageContext(mContext));
+                } else {
+                    drawable = mContext.createPackageContext(mPackage, 0).getDrawable(mResId);
+                }
+            } catch (PackageManager.NameNotFoundException | RuntimeException e) {
+                Log.w(TAG, "load icon " + (mIcon != null ? mIcon : mKey), e);
+            }
+            final Drawable result = drawable;
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(result);
+                }
+            });
+        }
+
+        private void deliver(Drawable drawable) {
+            if (mKey != null && drawable != null && drawable.getConstantState() != null) {
+                mCache.put(mKey, drawable.getConstantState());
+            }
+            if (!mCancelled && mView.getTag(R.id.notification_icon_request) == this) {
+                mView.setTag(R.id.notification_icon_request, null);
+                if (drawable != null) {
+                    mView.setImageDrawable(drawable);
+                }
+            }
+        }
+    }
+}
@@ -5,24 +5,83 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Process;
 import android.service.notification.NotificationListenerService;
 import android.service.notification.StatusBarNotification;
 import android.text.TextUtils;
+import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.Log;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
 public class NotificationMonitor extends NotificationListenerService {
     private static final String TAG = "NotificationMonitor";
     private static final String TAG_PRE = "[NotificationMonitor] ";
 
     public static final String EXTRA_COMMAND = "command";
     public static final String EXTRA_NOTIFICATION = "notification";
+    public static final String EXTRA_KEY = "key";
+    /** String[]，与 "cancel" 命令一起使用，一次取消多条通知 */
+    public static final String EXTRA_KEYS = "keys";
+    /** 与 "register"/"unregister" 命令一起使用，要接收 ACTION_NLS_UPDATE 的包名 */
+    public static final String EXTRA_PACKAGE = "package";
     public static final String COMMAND_REMOVED = "removed";
     public static final String COMMAND_POSTED = "posted";
 
     public static final String ACTION_NLS_CONTROL = "com.readboy.notificationlistener.NLSCONTROL";
     public static final String ACTION_NLS_UPDATE = "com.readboy.notificationlistener.UPDATE";
     private NotificationMonitorReceiver mReceiver = new NotificationMonitorReceiver();
+    // 通过 "register" 命令登记过的包，ACTION_NLS_UPDATE 只定向发给它们
+    private final ArraySet<String> mUpdatePackages = new ArraySet<>();
+
+    // 界面显示的通知的快照，变化后延迟写盘，供 NotificationActivity 秒开
+    private static final long SNAPSHOT_WRITE_DELAY_MS = 500;
+    private final ArrayMap<String, NotificationSnapshot.Entry> mSnapshot = new ArrayMap<>();
+    // 同一通知的频繁更新先在这里合并，再分发给界面/快照/广播
+    private final NotificationCoalescer mCoalescer = new NotificationCoalescer(
+            new NotificationCoalescer.Sink() {
+                @Override
+                public void deliver(StatusBarNotification sbn) {
+                    NotificationBus.getInstance().offer(sbn, false);
+                    updateSnapshot(sbn, false);
+                    sendUpdate(COMMAND_POSTED, sbn);
+                }
+
+                @Override
+                public void deliverRemoved(List<StatusBarNotification> removed) {
+                    NotificationBus.getInstance().offerRemoved(removed);
+                    for (int i = 0, n = removed.size(); i < n; i++) {
+                        StatusBarNotification sbn = removed.get(i);
+                        updateSnapshot(sbn, true);
+                        sendUpdate(COMMAND_REMOVED, sbn);
+                    }
+                }
+
+                @Override
+                public void resync() {
+                    NotificationBus.getInstance().requestResync();
+                }
+            });
+    private HandlerThread mSnapshotThread;
+    private Handler mSnapshotHandler;
+    private final Runnable mWriteSnapshot = new Runnable() {
+        @Override
+        public void run() {
+            ArrayList<NotificationSnapshot.Entry> entries;
+            synchronized (mSnapshot) {
+                entries = new ArrayList<>(mSnapshot.values());
+            }
+            NotificationSnapshot.sort(entries);
+            NotificationSnapshot.write(NotificationMonitor.this, entries);
+        }
+    };
 
     public static NotificationMonitor INSTANCE;
 
@@ -39,13 +98,30 @@ public class NotificationMonitor extends NotificationListenerService {
                 action = intent.getAction();
                 if (action.equals(ACTION_NLS_CONTROL)) {
                     String command = intent.getStringExtra("command");
+                    String[] keys = intent.getStringArrayExtra(EXTRA_KEYS);
 
-                    if (TextUtils.equals(command, "cancel") && !TextUtils.isEmpty(intent.getStringExtra("key"))) {
-                        String key = intent.getStringExtra("key");
+                    if (TextUtils.equals(command, "cancel") && keys != null) {
+                        Log.e(TAG, "onReceive: cancel " + keys.length + " notifications");
+                        cancelBatch(keys);
+                    } else if (TextUtils.equals(command, "cancel") && !TextUtils.isEmpty(intent.getStringExtra(EXTRA_KEY))) {
+                        String key = intent.getStringExtra(EXTRA_KEY);
                         Log.e(TAG, "onReceive: cancel notification key = " + key);
                         cancelNotification(key);
                     } else if (TextUtils.equals(command, "clearall")) {
-                        NotificationMonitor.this.cancelAllNotifications();
+                        clearAll();
+                    } else if (TextUtils.equals(command, "register")
+                            && !TextUtils.isEmpty(intent.getStringExtra(EXTRA_PACKAGE))) {
+                        String pkg = intent.getStringExtra(EXTRA_PACKAGE);
+                        Log.e(TAG, "onReceive: register update receiver " + pkg);
+                        synchronized (mUpdatePackages) {
+                            mUpdatePackages.add(pkg);
+                        }
+                    } else if (TextUtils.equals(command, "unregister")) {
+                        String pkg = intent.getStringExtra(EXTRA_PACKAGE);
+                        Log.e(TAG, "onReceive: unregister update receiver " + pkg);
+                        synchronized (mUpdatePackages) {
+                            mUpdatePackages.remove(pkg);
+                        }
                     } else if (TextUtils.equals(command, "list")) {
 //                        for (StatusBarNotification sbn : NotificationMonitor.this.getActiveNotifications()) {
 //                            Intent intent1 = new  Intent(ACTION_NLS_UPDATE);
@@ -67,12 +143,19 @@ public class NotificationMonitor extends NotificationListenerService {
         IntentFilter filter = new IntentFilter();
         filter.addAction(ACTION_NLS_CONTROL);
         registerReceiver(mReceiver, filter);
+        mSnapshotThread = new HandlerThread("NotificationSnapshot", Process.THREAD_PRIORITY_BACKGROUND);
+        mSnapshotThread.start();
+        mSnapshotHandler = new Handler(mSnapshotThread.getLooper());
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
         unregisterReceiver(mReceiver);
+        // 把快照写完再退出
+        mSnapshotHandler.removeCallbacks(mWriteSnapshot);
+        mSnapshotHandler.post(mWriteSnapshot);
+        mSnapshotThread.quitSafely();
     }
 
     @Override
@@ -85,6 +168,21 @@ public class NotificationMonitor extends NotificationListenerService {
     public void onListenerConnected() {
         super.onListenerConnected();
         Log.e(TAG, "onListenerConnected...");
+
+        StatusBarNotification[] active = getActiveNotifications();
+        synchronized (mSnapshot) {
+            mSnapshot.clear();
+            if (active != null) {
+                for (StatusBarNotification sbn : active) {
+                    if (isDisplayed(sbn)) {
+                        mSnapshot.put(sbn.getKey(), NotificationSnapshot.fromNotification(sbn));
+                    }
+                }
+            }
+        }
+        scheduleSnapshotWrite();
+        // 界面可能在服务连上之前就打开了，只显示着快照
+        NotificationBus.getInstance().requestResync();
     }
 
     @Override
@@ -96,10 +194,7 @@ public class NotificationMonitor extends NotificationListenerService {
     @Override
     public void onNotificationPosted(StatusBarNotification sbn) {
         logNLS("onNotificationPosted: key = " + sbn.getKey());
-        Intent intent1 = new Intent(ACTION_NLS_UPDATE);
-        intent1.putExtra(EXTRA_COMMAND, COMMAND_POSTED);
-        intent1.putExtra(EXTRA_NOTIFICATION, sbn);
-        sendBroadcast(intent1);
+        mCoalescer.offer(sbn, false);
     }
 
     @Override
@@ -111,10 +206,80 @@ public class NotificationMonitor extends NotificationListenerService {
     @Override
     public void onNotificationRemoved(StatusBarNotification sbn) {
         logNLS("onNotificationRemoved: key = " + sbn.getKey());
-        Intent intent1 = new Intent(ACTION_NLS_UPDATE);
-        intent1.putExtra(EXTRA_COMMAND, COMMAND_REMOVED);
-        intent1.putExtra(EXTRA_NOTIFICATION, sbn);
-        sendBroadcast(intent1);
+        mCoalescer.offer(sbn, true);
+    }
+
+    /**
+     * 通知栏界面只显示读书郎自己的通知
+     */
+    static boolean isDisplayed(StatusBarNotification sbn) {
+        String type = sbn.getNotification().extras.getString("extra_type", "");
+        return "readboy".equalsIgnoreCase(type);
+    }
+
+    private void updateSnapshot(StatusBarNotification sbn, boolean removed) {
+        synchronized (mSnapshot) {
+            if (removed || !isDisplayed(sbn)) {
+                if (mSnapshot.remove(sbn.getKey()) == null) {
+                    return;
+                }
+            } else {
+                mSnapshot.put(sbn.getKey(), NotificationSnapshot.fromNotification(sbn));
+            }
+        }
+        scheduleSnapshotWrite();
+    }
+
+    private void scheduleSnapshotWrite() {
+        mSnapshotHandler.removeCallbacks(mWriteSnapshot);
+        mSnapshotHandler.postDelayed(mWriteSnapshot, SNAPSHOT_WRITE_DELAY_MS);
+    }
+
+    /**
+     * 一次 binder 调用取消多条通知，它们的删除回调合成一批分发，
+     * 界面只做一次删除动画和一次布局。
+     */
+    private void cancelBatch(String[] keys) {
+        if (keys == null || keys.length == 0) {
+            return;
+        }
+        mCoalescer.expectRemoved(keys);
+        cancelNotifications(keys);
+    }
+
+    private void clearAll() {
+        StatusBarNotification[] active = getActiveNotifications();
+        if (active != null) {
+            ArrayList<String> keys = new ArrayList<>(active.length);
+            for (StatusBarNotification sbn : active) {
+                if (sbn.isClearable()) {
+                    keys.add(sbn.getKey());
+                }
+            }
+            mCoalescer.expectRemoved(keys.toArray(new String[keys.size()]));
+        }
+        cancelAllNotifications();
+    }
+
+    /**
+     * 本进程的界面走 NotificationBus。其他应用要先发 "register" 命令登记包名，
+     * 才会收到定向的 ACTION_NLS_UPDATE；没有登记者时不打包也不发广播。
+     */
+    private void sendUpdate(String command, StatusBarNotification sbn) {
+        String[] packages;
+        synchronized (mUpdatePackages) {
+            if (mUpdatePackages.isEmpty()) {
+                return;
+            }
+            packages = mUpdatePackages.toArray(new String[mUpdatePackages.size()]);
+        }
+        for (String pkg : packages) {
+            Intent intent1 = new Intent(ACTION_NLS_UPDATE);
+            intent1.setPackage(pkg);
+            intent1.putExtra(EXTRA_COMMAND, command);
+            intent1.putExtra(EXTRA_NOTIFICATION, sbn);
+            sendBroadcast(intent1);
+        }
     }
 
     @Override
@@ -123,6 +288,16 @@ public class NotificationMonitor extends NotificationListenerService {
         Log.e(TAG, "onNotificationRemoved: key = " + sbn.getKey());
     }
 
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        super.dump(fd, pw, args);
+        mCoalescer.dump(pw);
+        synchronized (mUpdatePackages) {
+            pw.println("  update receivers=" + mUpdatePackages);
+        }
+        NotificationBus.getInstance().dump(pw);
+    }
+
     private static void logNLS(Object object) {
         Log.e(TAG, TAG_PRE + object.toString());
     }
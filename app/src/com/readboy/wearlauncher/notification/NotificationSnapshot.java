@@ -0,0 +1,171 @@
+package com.readboy.wearlauncher.notification;
+
+import android.app.Notification;
+import android.content.Context;
+import android.graphics.drawable.Icon;
+import android.service.notification.StatusBarNotification;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 通知列表的精简快照（标题、内容、时间、图标、进度），由 NotificationMonitor 写入，
+ * NotificationActivity 打开时在后台读取，实时数据到来之前先用它画出列表。
+ * 文件带版本号，版本不符时当作没有快照。
+ */
+final class NotificationSnapshot {
+    private static final String TAG = "NotificationSnapshot";
+
+    private static final String FILE_NAME = "notification_snapshot";
+    private static final int VERSION = 1;
+
+    static final class Entry {
+        String key;
+        String title;
+        String text;
+        long when;
+        boolean showWhen;
+        String iconPackage;
+        int iconResId;
+        int progress;
+        int progressMax;
+
+        boolean hasProgress() {
+            return progress >= 0 && progressMax > 0;
+        }
+    }
+
+    /** Newest first, ties broken by key; same order as the adapter. */
+    static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            if (a.when != b.when) {
+                return a.when < b.when ? 1 : -1;
+            }
+            return a.key.compareTo(b.key);
+        }
+    };
+
+    private NotificationSnapshot() {
+    }
+
+    static Entry fromNotification(StatusBarNotification sbn) {
+        final Notification n = sbn.getNotification();
+        final Entry e = new Entry();
+        e.key = sbn.getKey();
+        e.title = n.extras.getString(Notification.EXTRA_TITLE);
+        String text = n.extras.getString(Notification.EXTRA_TEXT);
+        if (text == null || text.length() == 0) {
+            text = n.extras.getString(Notification.EXTRA_BIG_TEXT);
+        }
+        e.text = text;
+        e.when = n.when;
+        e.showWhen = n.extras.getBoolean(Notification.EXTRA_SHOW_WHEN, false);
+        final Icon icon = n.getSmallIcon();
+        if (icon != null && icon.getType() == Icon.TYPE_RESOURCE) {
+            e.iconPackage = icon.getResPackage();
+            e.iconResId = icon.getResId();
+        }
+        e.progress = n.extras.getInt(Notification.EXTRA_PROGRESS, -1);
+        e.progressMax = n.extras.getInt(Notification.EXTRA_PROGRESS_MAX, -1);
+        return e;
+    }
+
+    static List<Entry> read(Context context) {
+        final AtomicFile file = new AtomicFile(context.getFileStreamPath(FILE_NAME));
+        final ArrayList<Entry> entries = new ArrayList<Entry>();
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(file.openRead());
+            if (in.readInt() != VERSION) {
+                return entries;
+            }
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final Entry e = new Entry();
+                e.key = in.readUTF();
+                e.title = readString(in);
+                e.text = readString(in);
+                e.when = in.readLong();
+                e.showWhen = in.readBoolean();
+                e.iconPackage = readString(in);
+                e.iconResId = in.readInt();
+                e.progress = in.readInt();
+                e.progressMax = in.readInt();
+                entries.add(e);
+            }
+        } catch (FileNotFoundException e) {
+            // no snapshot yet
+        } catch (IOException e) {
+            Log.w(TAG, "read snapshot", e);
+            entries.clear();
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Write {@code entries}, which must already be in {@link #ORDER}. Blocking;
+     * call it off the main thread.
+     */
+    static void write(Context context, List<Entry> entries) {
+        final AtomicFile file = new AtomicFile(context.getFileStreamPath(FILE_NAME));
+        FileOutputStream fos = null;
+        try {
+            fos = file.startWrite();
+            final DataOutputStream out = new DataOutputStream(fos);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Entry e : entries) {
+                out.writeUTF(e.key);
+                writeString(out, e.title);
+                writeString(out, e.text);
+                out.writeLong(e.when);
+                out.writeBoolean(e.showWhen);
+                writeString(out, e.iconPackage);
+                out.writeInt(e.iconResId);
+                out.writeInt(e.progress);
+                out.writeInt(e.progressMax);
+            }
+            out.flush();
+            file.finishWrite(fos);
+        } catch (IOException e) {
+            Log.w(TAG, "write snapshot", e);
+            if (fos != null) {
+                file.failWrite(fos);
+            }
+        }
+    }
+
+    static void sort(List<Entry> entries) {
+        Collections.sort(entries, ORDER);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            // writeUTF 上限 64K，通知正文截断即可
+            out.writeUTF(s.length() > 1024 ? s.substring(0, 1024) : s);
+        }
+    }
+}
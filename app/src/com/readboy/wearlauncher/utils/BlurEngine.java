@@ -0,0 +1,207 @@
+package com.readboy.wearlauncher.utils;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.renderscript.Allocation;
+import android.renderscript.Element;
+import android.renderscript.RSRuntimeException;
+import android.renderscript.RenderScript;
+import android.renderscript.ScriptIntrinsicBlur;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.PrintWriter;
+
+/**
+ * 背景模糊的共享实现：
+ * <ul>
+ * <li>整个进程只用一个 RenderScript 上下文和一个 ScriptIntrinsicBlur，
+ *     输入/输出 Allocation 按 {@link #WIDTH}x{@link #HEIGHT} 的工作尺寸只建一次；</li>
+ * <li>结果按（源 bitmap 身份 + generationId + 半径）缓存，同一张图反复切换不再重算；</li>
+ * <li>RenderScript 不可用时走纯 Java 的 {@link StackBlur}，结果相近。</li>
+ * </ul>
+ * 返回的 bitmap 可能被缓存复用，调用方不要修改或 recycle。
+ * 可在任意线程调用，同一时刻只做一次模糊。
+ */
+public final class BlurEngine {
+    private static final String TAG = "BlurEngine";
+
+    static final int WIDTH = 100;
+    static final int HEIGHT = 100;
+    /** RenderScript 模糊半径的上限 */
+    static final int MAX_RADIUS = 25;
+    private static final int CACHE_ENTRIES = 4;
+
+    private static BlurEngine sInstance;
+
+    public static synchronized BlurEngine getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new BlurEngine(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private final Context mContext;
+    private final LruCache<String, Bitmap> mCache = new LruCache<String, Bitmap>(CACHE_ENTRIES);
+
+    // 以下只在 synchronized 方法里访问
+    private final Bitmap mInput = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+    private final Canvas mCanvas = new Canvas(mInput);
+    private final Rect mDst = new Rect(0, 0, WIDTH, HEIGHT);
+    private RenderScript mRs;
+    private ScriptIntrinsicBlur mScript;
+    private Allocation mInAllocation;
+    private Allocation mOutAllocation;
+    private boolean mRsUnavailable;
+
+    // stack blur 的工作缓冲区
+    private final int[] mPixels = new int[WIDTH * HEIGHT];
+    private final StackBlur.Buffers mBlurBuffers = new StackBlur.Buffers(WIDTH, HEIGHT, MAX_RADIUS);
+
+    private int mBlurCount;
+    private int mCacheHits;
+
+    private BlurEngine(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Blur {@code source} scaled down to the working size. Results are cached.
+     */
+    public Bitmap blur(Bitmap source, int radius) {
+        radius = Math.max(1, Math.min(MAX_RADIUS, radius));
+        final String key = System.identityHashCode(source) + ":" + source.getGenerationId()
+                + ":" + source.getWidth() + "x" + source.getHeight() + ":" + radius;
+        Bitmap result = mCache.get(key);
+        if (result != null) {
+            synchronized (this) {
+                mCacheHits++;
+            }
+            return result;
+        }
+        result = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        synchronized (this) {
+            mBlurCount++;
+            scaleInto(source);
+            if (!blurRenderScript(radius, result)) {
+                blurJava(radius, result);
+            }
+        }
+        mCache.put(key, result);
+        return result;
+    }
+
+    private void scaleInto(Bitmap source) {
+        // 与 createScaledBitmap(..., false) 一样不做过滤，反正马上要模糊
+        mInput.eraseColor(Color.TRANSPARENT);
+        mCanvas.drawBitmap(source, null, mDst, null);
+    }
+
+    private boolean blurRenderScript(int radius, Bitmap out) {
+        if (!ensureRenderScript()) {
+            return false;
+        }
+        try {
+            mInAllocation.copyFrom(mInput);
+            mScript.setRadius(radius);
+            mScript.setInput(mInAllocation);
+            mScript.forEach(mOutAllocation);
+            mOutAllocation.copyTo(out);
+            return true;
+        } catch (RSRuntimeException e) {
+            Log.w(TAG, "RenderScript blur failed, falling back to Java", e);
+            destroyRenderScript();
+            mRsUnavailable = true;
+            return false;
+        }
+    }
+
+    private boolean ensureRenderScript() {
+        if (mRs != null) {
+            return true;
+        }
+        if (mRsUnavailable) {
+            return false;
+        }
+        try {
+            mRs = RenderScript.create(mContext);
+            mScript = ScriptIntrinsicBlur.create(mRs, Element.U8_4(mRs));
+            mInAllocation = Allocation.createFromBitmap(mRs, mInput);
+            mOutAllocation = Allocation.createTyped(mRs, mInAllocation.getType());
+            return true;
+        } catch (RSRuntimeException e) {
+            Log.w(TAG, "RenderScript unavailable", e);
+            destroyRenderScript();
+            mRsUnavailable = true;
+            return false;
+        }
+    }
+
+    private void destroyRenderScript() {
+        if (mInAllocation != null) {
+            mInAllocation.destroy();
+            mInAllocation = null;
+        }
+        if (mOutAllocation != null) {
+            mOutAllocation.destroy();
+            mOutAllocation = null;
+        }
+        if (mScript != null) {
+            mScript.destroy();
+            mScript = null;
+        }
+        if (mRs != null) {
+            mRs.destroy();
+            mRs = null;
+        }
+    }
+
+    private void blurJava(int radius, Bitmap out) {
+        mInput.getPixels(mPixels, 0, WIDTH, 0, 0, WIDTH, HEIGHT);
+        StackBlur.blur(mPixels, WIDTH, HEIGHT, radius, mBlurBuffers);
+        out.setPixels(mPixels, 0, WIDTH, 0, 0, WIDTH, HEIGHT);
+    }
+
+    /**
+     * Drop cached results; in the background also release the RenderScript
+     * context, it is recreated on the next blur. No-op if nothing was blurred yet.
+     */
+    public static void trimMemory(int level) {
+        final BlurEngine engine;
+        synchronized (BlurEngine.class) {
+            engine = sInstance;
+        }
+        if (engine == null) {
+            return;
+        }
+        engine.mCache.evictAll();
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            synchronized (engine) {
+                engine.destroyRenderScript();
+            }
+        }
+    }
+
+    @VisibleForTesting
+    synchronized int getBlurCount() {
+        return mBlurCount;
+    }
+
+    @VisibleForTesting
+    synchronized int getCacheHits() {
+        return mCacheHits;
+    }
+
+    public synchronized void dump(PrintWriter pw) {
+        pw.println("BlurEngine state:");
+        pw.print("  blurs="); pw.print(mBlurCount);
+        pw.print(" cacheHits="); pw.println(mCacheHits);
+        pw.print("  renderScript="); pw.print(mRs != null);
+        pw.print(" unavailable="); pw.println(mRsUnavailable);
+    }
+}
@@ -0,0 +1,95 @@
+package com.readboy.wearlauncher.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.HashSet;
+
+/**
+ * 状态控制器的引用计数生命周期：第一个订阅者到来时创建并 resume，
+ * 最后一个订阅者离开后延迟 pause。pause 后控制器对象及其缓存状态保留，
+ * 再次订阅时先用缓存状态刷新界面，再重新注册监听。
+ */
+public abstract class ControllerLifecycle<T extends ControllerLifecycle.Controller> {
+    private static final String TAG = "ControllerLifecycle";
+
+    /** 停止前的等待时间，避免页面来回切换时反复注册/注销 */
+    private static final long STOP_DELAY_MS = 3 * 1000;
+
+    public interface Controller {
+        void resume();
+        void pause();
+    }
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final HashSet<Object> mSubscribers = new HashSet<Object>();
+    private T mController;
+    private boolean mResumed;
+
+    private final Runnable mStopRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mResumed && mSubscribers.isEmpty()) {
+                Log.d(TAG, "pause " + mController.getClass().getSimpleName());
+                mController.pause();
+                mResumed = false;
+            }
+        }
+    };
+
+    protected abstract T create();
+
+    /**
+     * Returns the controller, creating it if needed. Does not start it.
+     */
+    public T get() {
+        if (mController == null) {
+            mController = create();
+        }
+        return mController;
+    }
+
+    /**
+     * Returns the controller if it was already created, otherwise null. For dump.
+     */
+    public T peek() {
+        return mController;
+    }
+
+    public T acquire(Object subscriber) {
+        T controller = get();
+        if (mSubscribers.add(subscriber)) {
+            mHandler.removeCallbacks(mStopRunnable);
+            if (!mResumed) {
+                Log.d(TAG, "resume " + controller.getClass().getSimpleName());
+                mResumed = true;
+                controller.resume();
+            }
+        }
+        return controller;
+    }
+
+    public void release(Object subscriber) {
+        if (mSubscribers.remove(subscriber) && mSubscribers.isEmpty()) {
+            mHandler.removeCallbacks(mStopRunnable);
+            mHandler.postDelayed(mStopRunnable, STOP_DELAY_MS);
+        }
+    }
+
+    public boolean isResumed() {
+        return mResumed;
+    }
+
+    /**
+     * Pauses the controller immediately regardless of subscribers.
+     */
+    public void shutdown() {
+        mHandler.removeCallbacks(mStopRunnable);
+        mSubscribers.clear();
+        if (mResumed) {
+            mController.pause();
+            mResumed = false;
+        }
+    }
+}
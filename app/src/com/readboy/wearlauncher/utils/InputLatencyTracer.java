@@ -0,0 +1,218 @@
+package com.readboy.wearlauncher.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.os.SystemProperties;
+import android.os.Trace;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+/**
+ * 触摸到出帧的延迟统计（默认关闭）：
+ * adb shell setprop {@value #PROPERTY} true 后重启 launcher。
+ * <p>
+ * 各手势控件在处理完 MotionEvent 后调用 {@link #record}，记下每个控件最早一个还没出帧的事件时间。
+ * 控件嵌套时内层先处理完先记录，同一个事件外层不再重复记录。
+ * 之后这个窗口第一次真正绘制（OnDrawListener，post 的消息在 draw 之后执行）时按控件计入直方图，
+ * 没有引起重绘的事件一直等到下一次绘制。
+ * 同时以 async trace section 的形式写入 systrace，名字为 "input:控件名"。
+ * 只在主线程调用。
+ */
+public final class InputLatencyTracer {
+    public static final String PROPERTY = "debug.wearlauncher.inputtrace";
+
+    public static final int SURFACE_GESTURE = 0;
+    public static final int SURFACE_PAGER = 1;
+    public static final int SURFACE_OVERSCROLL = 2;
+    public static final int SURFACE_SWIPE_DISMISS = 3;
+    public static final int SURFACE_NOTIFICATION_LIST = 4;
+    private static final int SURFACE_COUNT = 5;
+
+    private static final String[] SURFACE_NAMES = {
+            "gesture", "pager", "overscroll", "swipeDismiss", "notificationList"
+    };
+    private static final String[] SECTION_NAMES = {
+            "input:gesture", "input:pager", "input:overscroll", "input:swipeDismiss",
+            "input:notificationList"
+    };
+
+    /** 直方图上界（毫秒），最后一格是超出的部分 */
+    private static final int[] BUCKET_LIMITS_MS = {8, 16, 24, 33, 50, 100, 200};
+
+    private static InputLatencyTracer sInstance;
+
+    public static InputLatencyTracer getInstance() {
+        if (sInstance == null) {
+            sInstance = new InputLatencyTracer();
+        }
+        return sInstance;
+    }
+
+    private boolean mEnabled;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // 等待绘制的窗口，绘制后统一摘掉监听
+    private final ArrayList<ViewTreeObserver> mDrawObservers = new ArrayList<ViewTreeObserver>();
+    private boolean mDrawPosted;
+    // 最近记录过的事件，外层控件据此跳过内层已经记录的同一事件
+    private long mLastEventTime = -1;
+    private int mLastAction = -1;
+
+    // 还没出帧的最早事件时间（uptime ms），-1 表示没有
+    private final long[] mPendingSince = new long[SURFACE_COUNT];
+    private final int[] mCookies = new int[SURFACE_COUNT];
+    private int mNextCookie;
+
+    private final int[][] mHistogram = new int[SURFACE_COUNT][BUCKET_LIMITS_MS.length + 1];
+    private final int[] mFrames = new int[SURFACE_COUNT];
+    private final long[] mTotalMs = new long[SURFACE_COUNT];
+    private final long[] mMaxMs = new long[SURFACE_COUNT];
+    private final int[] mEvents = new int[SURFACE_COUNT];
+    // 事件产生到控件处理完的时间
+    private final long[] mHandledTotalMs = new long[SURFACE_COUNT];
+    private final long[] mHandledMaxMs = new long[SURFACE_COUNT];
+
+    private final ViewTreeObserver.OnDrawListener mOnDrawListener =
+            new ViewTreeObserver.OnDrawListener() {
+        @Override
+        public void onDraw() {
+            // 绘制还没开始，消息要等这次 draw 执行完才会被处理
+            if (!mDrawPosted) {
+                mDrawPosted = true;
+                mHandler.post(mFrameDrawn);
+            }
+        }
+    };
+
+    private final Runnable mFrameDrawn = new Runnable() {
+        @Override
+        public void run() {
+            mDrawPosted = false;
+            // onDraw 里不能摘监听，在这里摘
+            for (int i = 0, n = mDrawObservers.size(); i < n; i++) {
+                final ViewTreeObserver observer = mDrawObservers.get(i);
+                if (observer.isAlive()) {
+                    observer.removeOnDrawListener(mOnDrawListener);
+                }
+            }
+            mDrawObservers.clear();
+            onFrameDrawn(SystemClock.uptimeMillis());
+        }
+    };
+
+    private InputLatencyTracer() {
+        mEnabled = SystemProperties.getBoolean(PROPERTY, false);
+        for (int i = 0; i < SURFACE_COUNT; i++) {
+            mPendingSince[i] = -1;
+        }
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    /**
+     * Record {@code ev} for {@code surface} after {@code view} has handled it.
+     * An event already recorded by a nested surface is ignored.
+     */
+    public void record(int surface, View view, MotionEvent ev) {
+        if (!mEnabled) {
+            return;
+        }
+        final long eventTime = ev.getEventTime();
+        final int action = ev.getAction();
+        if (eventTime == mLastEventTime && action == mLastAction) {
+            return;
+        }
+        mLastEventTime = eventTime;
+        mLastAction = action;
+
+        final long handled = SystemClock.uptimeMillis() - eventTime;
+        mEvents[surface]++;
+        mHandledTotalMs[surface] += handled;
+        mHandledMaxMs[surface] = Math.max(mHandledMaxMs[surface], handled);
+
+        if (mPendingSince[surface] < 0) {
+            mPendingSince[surface] = eventTime;
+            mCookies[surface] = ++mNextCookie;
+            Trace.asyncTraceBegin(Trace.TRACE_TAG_VIEW, SECTION_NAMES[surface], mCookies[surface]);
+        }
+        final ViewTreeObserver observer = view.getViewTreeObserver();
+        if (observer.isAlive() && !mDrawObservers.contains(observer)) {
+            observer.addOnDrawListener(mOnDrawListener);
+            mDrawObservers.add(observer);
+        }
+    }
+
+    private void onFrameDrawn(long now) {
+        for (int surface = 0; surface < SURFACE_COUNT; surface++) {
+            final long since = mPendingSince[surface];
+            if (since < 0) {
+                continue;
+            }
+            mPendingSince[surface] = -1;
+            Trace.asyncTraceEnd(Trace.TRACE_TAG_VIEW, SECTION_NAMES[surface], mCookies[surface]);
+
+            final long latency = now - since;
+            mFrames[surface]++;
+            mTotalMs[surface] += latency;
+            mMaxMs[surface] = Math.max(mMaxMs[surface], latency);
+            mHistogram[surface][bucketOf(latency)]++;
+        }
+    }
+
+    private static int bucketOf(long latencyMs) {
+        for (int i = 0; i < BUCKET_LIMITS_MS.length; i++) {
+            if (latencyMs <= BUCKET_LIMITS_MS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_LIMITS_MS.length;
+    }
+
+    public void reset() {
+        for (int i = 0; i < SURFACE_COUNT; i++) {
+            for (int b = 0; b < mHistogram[i].length; b++) {
+                mHistogram[i][b] = 0;
+            }
+            mFrames[i] = 0;
+            mTotalMs[i] = 0;
+            mMaxMs[i] = 0;
+            mEvents[i] = 0;
+            mHandledTotalMs[i] = 0;
+            mHandledMaxMs[i] = 0;
+        }
+    }
+
+    public void dump(PrintWriter pw) {
+        pw.println("InputLatencyTracer state:");
+        pw.print("  mEnabled="); pw.println(mEnabled);
+        for (int i = 0; i < SURFACE_COUNT; i++) {
+            if (mEvents[i] == 0) {
+                continue;
+            }
+            pw.print("  "); pw.print(SURFACE_NAMES[i]);
+            pw.print(": events="); pw.print(mEvents[i]);
+            pw.print(" handledAvgMs="); pw.print(mHandledTotalMs[i] / mEvents[i]);
+            pw.print(" handledMaxMs="); pw.println(mHandledMaxMs[i]);
+            pw.print("    frames="); pw.print(mFrames[i]);
+            pw.print(" avgMs="); pw.print(mFrames[i] == 0 ? 0 : mTotalMs[i] / mFrames[i]);
+            pw.print(" maxMs="); pw.println(mMaxMs[i]);
+            pw.print("    histogram:");
+            for (int b = 0; b < mHistogram[i].length; b++) {
+                pw.print(b < BUCKET_LIMITS_MS.length ? " <=" + BUCKET_LIMITS_MS[b] : " >"
+                        + BUCKET_LIMITS_MS[BUCKET_LIMITS_MS.length - 1]);
+                pw.print("ms:"); pw.print(mHistogram[i][b]);
+            }
+            pw.println();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.readboy.wearlauncher.utils;
+
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import com.readboy.wearlauncher.view.WatchDials;
+
+import java.io.PrintWriter;
+
+/**
+ * 按 Launcher 当前页面和过渡动画统计帧耗时和丢帧。
+ * <p>
+ * 只在有绘制时跑 Choreographer 帧回调：OnDrawListener 发现绘制后启动，
+ * 连续 {@link #IDLE_FRAMES_BEFORE_STOP} 帧没有绘制就停，静止时不会每个 vsync 都唤醒。
+ * 第 N 帧回调时用两次 vsync 的间隔作为第 N-1 帧的耗时，并记到第 N-1 帧时所处的场景上；
+ * 场景优先级：表盘选择器开/关 > 回弹 > 翻页 > 当前页。
+ * 只在主线程调用。
+ */
+public final class PageFrameMonitor {
+    public static final int PAGE_NEGATIVE = 0;
+    public static final int PAGE_DIAL = 1;
+    public static final int PAGE_APPS = 2;
+    private static final int SCENE_PAGER_SCROLL = 3;
+    private static final int SCENE_OVERSCROLL = 4;
+    private static final int SCENE_DIAL_PICKER_OPEN = 5;
+    private static final int SCENE_DIAL_PICKER_CLOSE = 6;
+    private static final int SCENE_COUNT = 7;
+
+    private static final String[] SCENE_NAMES = {
+            "negativeScreen", "dial", "apps",
+            "pagerScroll", "overscroll", "dialPickerOpen", "dialPickerClose"
+    };
+
+    private static final int IDLE_FRAMES_BEFORE_STOP = 30;
+
+    private View mRoot;
+    private long mFrameIntervalNanos = 1000000000L / 60;
+    private boolean mRunning;
+    private boolean mDrawn;
+    private int mIdleFrames;
+    private long mLastFrameTimeNanos;
+    private int mLastScene = -1;
+
+    private int mPage = PAGE_DIAL;
+    private boolean mPagerScrolling;
+    private boolean mOverScrolling;
+
+    private final int[] mFrames = new int[SCENE_COUNT];
+    private final int[] mDroppedFrames = new int[SCENE_COUNT];
+    private final int[] mJankyFrames = new int[SCENE_COUNT];
+    private final long[] mTotalNanos = new long[SCENE_COUNT];
+    private final long[] mMaxNanos = new long[SCENE_COUNT];
+
+    private final ViewTreeObserver.OnDrawListener mDrawListener = new ViewTreeObserver.OnDrawListener() {
+        @Override
+        public void onDraw() {
+            mDrawn = true;
+            if (!mRunning && mRoot != null) {
+                mRunning = true;
+                mLastFrameTimeNanos = 0;
+                Choreographer.getInstance().postFrameCallback(mFrameCallback);
+            }
+        }
+    };
+
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            onFrame(frameTimeNanos);
+        }
+    };
+
+    /**
+     * Start watching {@code root}'s window. {@code refreshRate} is the display's
+     * refresh rate in Hz.
+     */
+    public void start(View root, float refreshRate) {
+        stop();
+        mRoot = root;
+        if (refreshRate > 0) {
+            mFrameIntervalNanos = (long) (1000000000L / refreshRate);
+        }
+        root.getViewTreeObserver().addOnDrawListener(mDrawListener);
+    }
+
+    public void stop() {
+        if (mRoot != null) {
+            mRoot.getViewTreeObserver().removeOnDrawListener(mDrawListener);
+            mRoot = null;
+        }
+        if (mRunning) {
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+            mRunning = false;
+        }
+    }
+
+    public void setPage(int page) {
+        mPage = page;
+    }
+
+    public void setPagerScrolling(boolean scrolling) {
+        mPagerScrolling = scrolling;
+    }
+
+    public void setOverScrolling(boolean overScrolling) {
+        mOverScrolling = overScrolling;
+    }
+
+    private int currentScene() {
+        final int dials = WatchDials.getWatchDialsStatus();
+        if (dials == WatchDials.ANIMATE_STATE_OPENING) {
+            return SCENE_DIAL_PICKER_OPEN;
+        }
+        if (dials == WatchDials.ANIMATE_STATE_CLOSING) {
+            return SCENE_DIAL_PICKER_CLOSE;
+        }
+        if (mOverScrolling) {
+            return SCENE_OVERSCROLL;
+        }
+        if (mPagerScrolling) {
+            return SCENE_PAGER_SCROLL;
+        }
+        return mPage >= 0 && mPage <= PAGE_APPS ? mPage : PAGE_DIAL;
+    }
+
+    private void onFrame(long frameTimeNanos) {
+        // mDrawn 表示上一帧（mLastFrameTimeNanos 开始的那一帧）有绘制
+        if (mDrawn && mLastFrameTimeNanos != 0 && mLastScene >= 0) {
+            final long duration = frameTimeNanos - mLastFrameTimeNanos;
+            final int scene = mLastScene;
+            final long skipped = (duration + mFrameIntervalNanos / 2) / mFrameIntervalNanos - 1;
+            mFrames[scene]++;
+            mTotalNanos[scene] += duration;
+            mMaxNanos[scene] = Math.max(mMaxNanos[scene], duration);
+            if (skipped > 0) {
+                mJankyFrames[scene]++;
+                mDroppedFrames[scene] += skipped;
+            }
+        }
+
+        if (mDrawn) {
+            mIdleFrames = 0;
+        } else if (++mIdleFrames >= IDLE_FRAMES_BEFORE_STOP) {
+            mRunning = false;
+            mIdleFrames = 0;
+            mLastScene = -1;
+            return;
+        }
+        mDrawn = false;
+        mLastFrameTimeNanos = frameTimeNanos;
+        mLastScene = currentScene();
+        Choreographer.getInstance().postFrameCallback(mFrameCallback);
+    }
+
+    public void reset() {
+        for (int i = 0; i < SCENE_COUNT; i++) {
+            mFrames[i] = 0;
+            mDroppedFrames[i] = 0;
+            mJankyFrames[i] = 0;
+            mTotalNanos[i] = 0;
+            mMaxNanos[i] = 0;
+        }
+    }
+
+    public void dump(PrintWriter pw) {
+        pw.println("PageFrameMonitor state:");
+        pw.print("  mRunning="); pw.println(mRunning);
+        pw.print("  scene="); pw.println(SCENE_NAMES[currentScene()]);
+        pw.print("  frameIntervalMs="); pw.println(mFrameIntervalNanos / 1000000f);
+        for (int i = 0; i < SCENE_COUNT; i++) {
+            if (mFrames[i] == 0) {
+                continue;
+            }
+            pw.print("  "); pw.print(SCENE_NAMES[i]);
+            pw.print(": frames="); pw.print(mFrames[i]);
+            pw.print(" janky="); pw.print(mJankyFrames[i]);
+            pw.print(" dropped="); pw.print(mDroppedFrames[i]);
+            pw.print(" avgMs="); pw.print(mTotalNanos[i] / mFrames[i] / 1000000f);
+            pw.print(" maxMs="); pw.println(mMaxNanos[i] / 1000000f);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.readboy.wearlauncher.utils;
+
+/**
+ * Stack blur (Mario Klingemann) on ARGB pixels, in place. Pure Java with no
+ * Android dependencies; all working memory comes from a caller-owned
+ * {@link Buffers}, so a blur allocates nothing.
+ */
+final class StackBlur {
+
+    /**
+     * Working memory for blurs up to {@code maxWidth * maxHeight} pixels and
+     * {@code maxRadius}. Not thread safe; use one per thread or lock around it.
+     */
+    static final class Buffers {
+        final int mMaxPixels;
+        final int mMaxSide;
+        final int mMaxRadius;
+        final int[] mR;
+        final int[] mG;
+        final int[] mB;
+        final int[] mA;
+        final int[] mVmin;
+        final int[] mStack;
+
+        Buffers(int maxWidth, int maxHeight, int maxRadius) {
+            if (maxWidth < 1 || maxHeight < 1 || maxRadius < 1) {
+                throw new IllegalArgumentException("bad size " + maxWidth + "x" + maxHeight
+                        + " radius " + maxRadius);
+            }
+            mMaxPixels = maxWidth * maxHeight;
+            mMaxSide = Math.max(maxWidth, maxHeight);
+            mMaxRadius = maxRadius;
+            mR = new int[mMaxPixels];
+            mG = new int[mMaxPixels];
+            mB = new int[mMaxPixels];
+            mA = new int[mMaxPixels];
+            mVmin = new int[mMaxSide];
+            mStack = new int[(maxRadius * 2 + 1) * 4];
+        }
+    }
+
+    private StackBlur() {
+    }
+
+    /**
+     * Blur the {@code w}x{@code h} image in {@code pix} with {@code radius}
+     * (1..{@code buffers.mMaxRadius}); the image must fit the buffers.
+     */
+    static void blur(int[] pix, int w, int h, int radius, Buffers buffers) {
+        if (w < 1 || h < 1 || w * h > buffers.mMaxPixels || Math.max(w, h) > buffers.mMaxSide
+                || pix.length < w * h) {
+            throw new IllegalArgumentException("bad image " + w + "x" + h);
+        }
+        if (radius < 1 || radius > buffers.mMaxRadius) {
+            throw new IllegalArgumentException("bad radius " + radius);
+        }
+        final int wm = w - 1;
+        final int hm = h - 1;
+        final int div = radius + radius + 1;
+        final int r1 = radius + 1;
+        final int divsum = ((div + 1) >> 1) * ((div + 1) >> 1);
+        final int[] r = buffers.mR;
+        final int[] g = buffers.mG;
+        final int[] b = buffers.mB;
+        final int[] a = buffers.mA;
+        final int[] vmin = buffers.mVmin;
+        final int[] stack = buffers.mStack;
+
+        int rsum, gsum, bsum, asum;
+        int rinsum, ginsum, binsum, ainsum;
+        int routsum, goutsum, boutsum, aoutsum;
+        int p, sir, rbs, stackpointer, stackstart;
+        int yi = 0;
+        int yw = 0;
+
+        // 横向
+        for (int y = 0; y < h; y++) {
+            rsum = gsum = bsum = asum = 0;
+            rinsum = ginsum = binsum = ainsum = 0;
+            routsum = goutsum = boutsum = aoutsum = 0;
+            for (int i = -radius; i <= radius; i++) {
+                p = pix[yi + Math.min(wm, Math.max(i, 0))];
+                sir = (i + radius) * 4;
+                stack[sir] = (p >> 16) & 0xff;
+                stack[sir + 1] = (p >> 8) & 0xff;
+                stack[sir + 2] = p & 0xff;
+                stack[sir + 3] = p >>> 24;
+                rbs = r1 - Math.abs(i);
+                rsum += stack[sir] * rbs;
+                gsum += stack[sir + 1] * rbs;
+                bsum += stack[sir + 2] * rbs;
+                asum += stack[sir + 3] * rbs;
+                if (i > 0) {
+                    rinsum += stack[sir];
+                    ginsum += stack[sir + 1];
+                    binsum += stack[sir + 2];
+                    ainsum += stack[sir + 3];
+                } else {
+                    routsum += stack[sir];
+                    goutsum += stack[sir + 1];
+                    boutsum += stack[sir + 2];
+                    aoutsum += stack[sir + 3];
+                }
+            }
+            stackpointer = radius;
+
+            for (int x = 0; x < w; x++) {
+                r[yi] = rsum / divsum;
+                g[yi] = gsum / divsum;
+                b[yi] = bsum / divsum;
+                a[yi] = asum / divsum;
+
+                rsum -= routsum;
+                gsum -= goutsum;
+                bsum -= boutsum;
+                asum -= aoutsum;
+
+                stackstart = stackpointer - radius + div;
+                sir = (stackstart % div) * 4;
+
+                routsum -= stack[sir];
+                goutsum -= stack[sir + 1];
+                boutsum -= stack[sir + 2];
+                aoutsum -= stack[sir + 3];
+
+                if (y == 0) {
+                    vmin[x] = Math.min(x + r1, wm);
+                }
+                p = pix[yw + vmin[x]];
+
+                stack[sir] = (p >> 16) & 0xff;
+                stack[sir + 1] = (p >> 8) & 0xff;
+                stack[sir + 2] = p & 0xff;
+                stack[sir + 3] = p >>> 24;
+
+                rinsum += stack[sir];
+                ginsum += stack[sir + 1];
+                binsum += stack[sir + 2];
+                ainsum += stack[sir + 3];
+
+                rsum += rinsum;
+                gsum += ginsum;
+                bsum += binsum;
+                asum += ainsum;
+
+                stackpointer = (stackpointer + 1) % div;
+                sir = stackpointer * 4;
+
+                routsum += stack[sir];
+                goutsum += stack[sir + 1];
+                boutsum += stack[sir + 2];
+                aoutsum += stack[sir + 3];
+
+                rinsum -= stack[sir];
+                ginsum -= stack[sir + 1];
+                binsum -= stack[sir + 2];
+                ainsum -= stack[sir + 3];
+
+                yi++;
+            }
+            yw += w;
+        }
+
+        // 纵向
+        for (int x = 0; x < w; x++) {
+            rsum = gsum = bsum = asum = 0;
+            rinsum = ginsum = binsum = ainsum = 0;
+            routsum = goutsum = boutsum = aoutsum = 0;
+            int yp = -radius * w;
+            for (int i = -radius; i <= radius; i++) {
+                yi = Math.max(0, yp) + x;
+                sir = (i + radius) * 4;
+                stack[sir] = r[yi];
+                stack[sir + 1] = g[yi];
+                stack[sir + 2] = b[yi];
+                stack[sir + 3] = a[yi];
+                rbs = r1 - Math.abs(i);
+                rsum += r[yi] * rbs;
+                gsum += g[yi] * rbs;
+                bsum += b[yi] * rbs;
+                asum += a[yi] * rbs;
+                if (i > 0) {
+                    rinsum += stack[sir];
+                    ginsum += stack[sir + 1];
+                    binsum += stack[sir + 2];
+                    ainsum += stack[sir + 3];
+                } else {
+                    routsum += stack[sir];
+                    goutsum += stack[sir + 1];
+                    boutsum += stack[sir + 2];
+                    aoutsum += stack[sir + 3];
+                }
+                if (i < hm) {
+                    yp += w;
+                }
+            }
+            yi = x;
+            stackpointer = radius;
+
+            for (int y = 0; y < h; y++) {
+                pix[yi] = ((asum / divsum) << 24) | ((rsum / divsum) << 16)
+                        | ((gsum / divsum) << 8) | (bsum / divsum);
+
+                rsum -= routsum;
+                gsum -= goutsum;
+                bsum -= boutsum;
+                asum -= aoutsum;
+
+                stackstart = stackpointer - radius + div;
+                sir = (stackstart % div) * 4;
+
+                routsum -= stack[sir];
+                goutsum -= stack[sir + 1];
+                boutsum -= stack[sir + 2];
+                aoutsum -= stack[sir + 3];
+
+                if (x == 0) {
+                    vmin[y] = Math.min(y + r1, hm) * w;
+                }
+                p = x + vmin[y];
+
+                stack[sir] = r[p];
+                stack[sir + 1] = g[p];
+                stack[sir + 2] = b[p];
+                stack[sir + 3] = a[p];
+
+                rinsum += stack[sir];
+                ginsum += stack[sir + 1];
+                binsum += stack[sir + 2];
+                ainsum += stack[sir + 3];
+
+                rsum += rinsum;
+                gsum += ginsum;
+                bsum += binsum;
+                asum += ainsum;
+
+                stackpointer = (stackpointer + 1) % div;
+                sir = stackpointer * 4;
+
+                routsum += stack[sir];
+                goutsum += stack[sir + 1];
+                boutsum += stack[sir + 2];
+                aoutsum += stack[sir + 3];
+
+                rinsum -= stack[sir];
+                ginsum -= stack[sir + 1];
+                binsum -= stack[sir + 2];
+                ainsum -= stack[sir + 3];
+
+                yi += w;
+            }
+        }
+    }
+}
@@ -20,10 +20,6 @@ import android.graphics.drawable.Drawable;
 import android.graphics.drawable.TransitionDrawable;
 import android.os.Build;
 import android.provider.Settings;
-import android.renderscript.Allocation;
-import android.renderscript.Element;
-import android.renderscript.RenderScript;
-import android.renderscript.ScriptIntrinsicBlur;
 import android.text.TextUtils;
 import android.util.Log;
 import android.view.WindowManager;
@@ -31,6 +27,7 @@ import android.widget.ImageView;
 import android.widget.Toast;
 
 import com.readboy.wearlauncher.LauncherApplication;
+import com.readboy.wearlauncher.LauncherSettingsStore;
 import com.readboy.wearlauncher.R;
 import com.readboy.wearlauncher.dialog.ClassDisableDialog;
 import com.readboy.wearlauncher.view.DialBaseLayout;
@@ -152,17 +149,18 @@ public class Utils {
         }
     }
 
+    // 每次触摸都会查，走内存缓存；写入在后台线程
     public static boolean isFirstBoot(Context context){
-        if(Settings.System.getInt(context.getContentResolver(),"readboy_first_open",0) != 1){
+        if(LauncherSettingsStore.getInstance(context).getSystemInt("readboy_first_open",0) != 1){
             return true;
         }
         return false;
     }
     public static void setFirstBoot(Context context, boolean firstBoot){
         if(firstBoot){
-            Settings.System.putInt(context.getContentResolver(),"readboy_first_open",0);
+            LauncherSettingsStore.getInstance(context).putSystemInt("readboy_first_open",0);
         }else {
-            Settings.System.putInt(context.getContentResolver(),"readboy_first_open",1);
+            LauncherSettingsStore.getInstance(context).putSystemInt("readboy_first_open",1);
         }
     }
 
@@ -173,7 +171,7 @@ public class Utils {
     private static final int SCALED_WIDTH = 100;
     private static final int SCALED_HEIGHT = 100;
     /**
-     * 得到模糊后的bitmap
+     * 得到模糊后的bitmap（{@link #SCALED_WIDTH}x{@link #SCALED_HEIGHT}）
      * thanks http://wl9739.github.io/2016/07/14/教你一分钟实现模糊效果/
      *
      * @param context
@@ -182,32 +180,8 @@ public class Utils {
      * @return
      */
     public static Bitmap getBlurBitmap(Context context, Bitmap bitmap, int radius) {
-        // 将缩小后的图片做为预渲染的图片。
-        Bitmap inputBitmap = Bitmap.createScaledBitmap(bitmap, SCALED_WIDTH, SCALED_HEIGHT, false);
-        // 创建一张渲染后的输出图片。
-        Bitmap outputBitmap = Bitmap.createBitmap(inputBitmap);
-
-        // 创建RenderScript内核对象
-        RenderScript rs = RenderScript.create(context);
-        // 创建一个模糊效果的RenderScript的工具对象
-        ScriptIntrinsicBlur blurScript = ScriptIntrinsicBlur.create(rs, Element.U8_4(rs));
-
-        // 由于RenderScript并没有使用VM来分配内存,所以需要使用Allocation类来创建和分配内存空间。
-        // 创建Allocation对象的时候其实内存是空的,需要使用copyTo()将数据填充进去。
-        Allocation tmpIn = Allocation.createFromBitmap(rs, inputBitmap);
-        Allocation tmpOut = Allocation.createFromBitmap(rs, outputBitmap);
-
-        // 设置渲染的模糊程度, 25f是最大模糊度
-        blurScript.setRadius(radius);
-        // 设置blurScript对象的输入内存
-        blurScript.setInput(tmpIn);
-        // 将输出数据保存到输出内存中
-        blurScript.forEach(tmpOut);
-
-        // 将数据填充到Allocation中
-        tmpOut.copyTo(outputBitmap);
-
-        return outputBitmap;
+        // 共用一个 RenderScript 上下文和缓冲区，结果有缓存，返回的 bitmap 不要修改
+        return BlurEngine.getInstance(context).blur(bitmap, radius);
     }
 
     public static void startSwitchBackgroundAnim(ImageView view, Bitmap bitmap) {
@@ -19,6 +19,7 @@ import android.view.View;
 import android.widget.ImageView;
 
 import com.readboy.wearlauncher.R;
+import com.readboy.wearlauncher.weather.WeatherStore;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -36,7 +37,7 @@ import java.util.GregorianCalendar;
  * Created by Administrator on 2017/6/13.
  */
 
-public class WatchController extends BroadcastReceiver {
+public class WatchController extends BroadcastReceiver implements ControllerLifecycle.Controller {
     public static final String TAG = "WatchController";
     //class disable
     public static final String TAG_CLASS_DISABLED = "class_disabled";
@@ -195,6 +196,14 @@ public class WatchController extends BroadcastReceiver {
 
     public WatchController(Context context){
         mContext = context;
+    }
+
+    /**
+     * Register the receivers and observers and re-read the cached counters.
+     * Callbacks added while paused have already received the cached values.
+     */
+    @Override
+    public void resume(){
         // broadcasts
         IntentFilter filter = new IntentFilter();
         //class disable
@@ -211,17 +220,41 @@ public class WatchController extends BroadcastReceiver {
         filter.addAction(ACTION_STEP_ADD);
 
         filter.addAction(Intent.ACTION_SCREEN_OFF);
-        context.registerReceiver(this, filter);
+        mContext.registerReceiver(this, filter);
 
         mContext.getContentResolver().registerContentObserver(MISSCALL_CONTENT_URI,
                 true, sMissCallObserver);
         mContext.getContentResolver().registerContentObserver(WETALK_CONTENT_URI,
                 true, sMissWeTalkObserver);
 
+        int lastMissCallCount = mMissCallCount;
+        int lastMissWetalkCount = mMissWetalkCount;
+        int lastStepCount = mStepCount;
+        String lastClassDisableData = mClassDisableData;
         getMissCallCount();
         getAllContactsUnreadCount(mContext);
         mStepCount = getSteps();
         mClassDisableData = getClassdisabledData(mContext);
+
+        if (lastMissCallCount != mMissCallCount) {
+            mHandler.obtainMessage(CALL_MSG_WHAT, mMissCallCount, 0, null).sendToTarget();
+        }
+        if (lastMissWetalkCount != mMissWetalkCount) {
+            mHandler.obtainMessage(WETALK_MSG_WHAT, mMissWetalkCount, 0, null).sendToTarget();
+        }
+        if (lastStepCount != mStepCount) {
+            fireStepChanged();
+        }
+        if (!TextUtils.equals(lastClassDisableData, mClassDisableData)) {
+            classDisableChanged();
+        }
+    }
+
+    @Override
+    public void pause(){
+        mContext.unregisterReceiver(this);
+        mContext.getContentResolver().unregisterContentObserver(sMissCallObserver);
+        mContext.getContentResolver().unregisterContentObserver(sMissWeTalkObserver);
     }
 
     public int getSteps(){
@@ -459,6 +492,8 @@ public class WatchController extends BroadcastReceiver {
             if(mScreenOffListener != null){
                 mScreenOffListener.onScreenOff();
             }
+        }else if(TextUtils.equals(action,ACTION_WEATHER_RESULT)){
+            WeatherStore.getInstance(context).onWeatherResult(intent.getBundleExtra("WeatherResult"));
         }
     }
 
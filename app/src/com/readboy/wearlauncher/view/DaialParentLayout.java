@@ -13,6 +13,8 @@ import me.dreamheart.autoscalinglayout.ASRelativeLayout;
 
 public class DaialParentLayout extends ASRelativeLayout {
     private Context mContext;
+    // 布局次数，与 PageContainer 一样用于核对换表盘时的重新布局范围
+    private final LayoutPassCounter mLayoutPasses = new LayoutPassCounter();
 
     public DaialParentLayout(Context context) {
         this(context,null);
@@ -23,4 +25,20 @@ public class DaialParentLayout extends ASRelativeLayout {
         mContext = context;
 
     }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        mLayoutPasses.onMeasure();
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        mLayoutPasses.onLayout();
+        super.onLayout(changed, l, t, r, b);
+    }
+
+    public LayoutPassCounter getLayoutPasses() {
+        return mLayoutPasses;
+    }
 }
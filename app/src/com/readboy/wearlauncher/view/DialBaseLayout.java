@@ -109,6 +109,7 @@ public abstract class DialBaseLayout extends RelativeLayout implements View.OnCl
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
+        mApplication.acquireWatchController(this);
 //        addChangedCallback();
     }
 
@@ -116,6 +117,7 @@ public abstract class DialBaseLayout extends RelativeLayout implements View.OnCl
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
 //        removeChangedCallback();
+        mApplication.releaseWatchController(this);
     }
 
     @Override
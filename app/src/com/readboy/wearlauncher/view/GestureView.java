@@ -15,6 +15,7 @@ import android.widget.FrameLayout;
 
 import com.readboy.wearlauncher.Launcher;
 import com.readboy.wearlauncher.LauncherApplication;
+import com.readboy.wearlauncher.utils.InputLatencyTracer;
 import com.readboy.wearlauncher.utils.Utils;
 
 /**
@@ -41,10 +42,16 @@ public class GestureView extends FrameLayout{
         if(ev.getAction() == MotionEvent.ACTION_DOWN){
             mIsGestureDrag = false;
         }
+        // 手势由这里处理时不再分发给 ViewPager，延迟记在 gesture 上
         if(mIsGestureDrag){
+            InputLatencyTracer.getInstance().record(InputLatencyTracer.SURFACE_GESTURE, this, ev);
             return true;
         }
-        return !mGestureDetector.onTouchEvent(ev) && super.dispatchTouchEvent(ev);
+        if(mGestureDetector.onTouchEvent(ev)){
+            InputLatencyTracer.getInstance().record(InputLatencyTracer.SURFACE_GESTURE, this, ev);
+            return false;
+        }
+        return super.dispatchTouchEvent(ev);
     }
 
     @Override
@@ -0,0 +1,34 @@
+package com.readboy.wearlauncher.view;
+
+import java.io.PrintWriter;
+
+/**
+ * 一个容器自身 measure/layout 的次数，用来核对一次操作到底让哪些页面重新布局了。
+ * 由 {@link PageContainer} 和 {@link DaialParentLayout} 在 onMeasure/onLayout 里累加，只在主线程访问。
+ */
+public final class LayoutPassCounter {
+    private int mMeasureCount;
+    private int mLayoutCount;
+
+    void onMeasure() {
+        mMeasureCount++;
+    }
+
+    void onLayout() {
+        mLayoutCount++;
+    }
+
+    public int getMeasureCount() {
+        return mMeasureCount;
+    }
+
+    public int getLayoutCount() {
+        return mLayoutCount;
+    }
+
+    public void dump(PrintWriter pw, String name) {
+        pw.print("  "); pw.print(name);
+        pw.print(": measure="); pw.print(mMeasureCount);
+        pw.print(" layout="); pw.println(mLayoutCount);
+    }
+}
@@ -7,12 +7,16 @@ import android.util.Log;
 import android.view.MotionEvent;
 import android.support.v4.view.ViewPager;
 
+import com.readboy.wearlauncher.utils.InputLatencyTracer;
+
 public class MyViewPager extends ViewPager {
     private float mLastX;
     private float mLastY;
     private float dirX;
     private float dirY;
     private boolean isSpi;
+    // 回弹装饰器接管触摸期间，延迟统计记到 overscroll 上
+    private boolean mOverScrolling;
 
     public MyViewPager(Context context, AttributeSet attrs) {
         super(context, attrs);
@@ -23,6 +27,22 @@ public class MyViewPager extends ViewPager {
         this(context, null);
     }
 
+    public void setOverScrolling(boolean overScrolling) {
+        mOverScrolling = overScrolling;
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        final boolean handled = super.dispatchTouchEvent(ev);
+        // 分发过程中回弹装饰器可能刚接管或刚放手，按处理完之后的状态记
+        if (handled) {
+            InputLatencyTracer.getInstance().record(mOverScrolling
+                    ? InputLatencyTracer.SURFACE_OVERSCROLL : InputLatencyTracer.SURFACE_PAGER,
+                    this, ev);
+        }
+        return handled;
+    }
+
     @Override
     public boolean onInterceptTouchEvent(MotionEvent ev) {
         switch (ev.getAction()) {
@@ -4,11 +4,7 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.database.ContentObserver;
-import android.database.Cursor;
 import android.media.AudioManager;
-import android.net.Uri;
-import android.os.Handler;
 import android.provider.Settings;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -34,6 +30,8 @@ import com.readboy.wearlauncher.net.NetworkController;
 import com.readboy.wearlauncher.net.SignalClusterView;
 import com.readboy.wearlauncher.utils.Utils;
 import com.readboy.wearlauncher.utils.WatchController;
+import com.readboy.wearlauncher.weather.WeatherController;
+import com.readboy.wearlauncher.weather.WeatherStore;
 
 import me.everything.android.ui.overscroll.OverScrollDecoratorHelper;
 
@@ -48,7 +46,7 @@ public class NegativeScreen extends FrameLayout implements View.OnClickListener
     private TextView mWeatherModeView;
     ScrollView mScrollView;
 
-    private Uri weatherUri = Uri.parse("content://com.readboy.wearweather.provider/data");
+    private WeatherStore mWeatherStore;
 
     private ChangeIntentReceiver mReceiver = new ChangeIntentReceiver();
 
@@ -61,6 +59,7 @@ public class NegativeScreen extends FrameLayout implements View.OnClickListener
 
         mContext = context;
         mApplication = (LauncherApplication) context.getApplicationContext();
+        mWeatherStore = WeatherStore.getInstance(context);
     }
 
     @Override
@@ -80,7 +79,8 @@ public class NegativeScreen extends FrameLayout implements View.OnClickListener
         //net wifi
         initNetController();
 
-//        initGPSController();
+        //gps
+        initGPSController();
 
 //        initClassDisable();
     }
@@ -88,21 +88,29 @@ public class NegativeScreen extends FrameLayout implements View.OnClickListener
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
+        // 只有负一屏在窗口上时才需要监听这些状态
+        mApplication.acquireBluetoothController(this);
+        mApplication.acquireAlarmController(this);
+        mApplication.acquireNetworkController(this);
+        mApplication.acquireLocationControllerImpl(this);
         IntentFilter filter = new IntentFilter();
         filter.addAction(AudioManager.RINGER_MODE_CHANGED_ACTION);
         mContext.registerReceiver(mReceiver, filter);
-//        mContext.getContentResolver().registerContentObserver(weatherUri,
-//                true, sContentObserver);
 
         updateRingerMode();
-//        updateWeatherMode();
+        // 先显示缓存的天气，过期了 WeatherStore 会自己去刷新
+        mWeatherStore.addCallback(mWeatherCallback);
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
         mContext.unregisterReceiver(mReceiver);
-//        mContext.getContentResolver().unregisterContentObserver(sContentObserver);
+        mWeatherStore.removeCallback(mWeatherCallback);
+        mApplication.releaseBluetoothController(this);
+        mApplication.releaseAlarmController(this);
+        mApplication.releaseNetworkController(this);
+        mApplication.releaseLocationControllerImpl(this);
     }
 
     @Override
@@ -171,8 +179,8 @@ public class NegativeScreen extends FrameLayout implements View.OnClickListener
             Spannable weatherModeStr = new SpannableString(mContext.getString(R.string.negative_item_weather)+"\n"+wea);
             weatherModeStr.setSpan(new AbsoluteSizeSpan(15),mContext.getString(R.string.negative_item_weather).length(),weatherModeStr.length(),Spannable.SPAN_INCLUSIVE_INCLUSIVE);
             weatherModeStr.setSpan(new ForegroundColorSpan(mContext.getResources().getColor(R.color.negative_subtitle_color_selector)),
-                    mContext.getString(R.string.negative_item_bell).length(),weatherModeStr.length(),Spannable.SPAN_INCLUSIVE_INCLUSIVE);
-            mWeatherModeView.setText(wea);
+                    mContext.getString(R.string.negative_item_weather).length(),weatherModeStr.length(),Spannable.SPAN_INCLUSIVE_INCLUSIVE);
+            mWeatherModeView.setText(weatherModeStr);
         }
     }
 
@@ -249,30 +257,21 @@ public class NegativeScreen extends FrameLayout implements View.OnClickListener
     }
 
     private String getWeather() {
-        String weather = "";
-        try {
-            Cursor c = mContext.getContentResolver().query(weatherUri, null, null, null, null);
-            if (c != null && c.moveToLast()) {
-                //Log.d("getWeather", Arrays.toString(c.getColumnNames()));
-                //c.getString(c.getColumnIndex("temperature"));
-                //c.getString(c.getColumnIndex("weather"));
-                //c.getString(c.getColumnIndex("weathercode"));
-                weather = mContext.getResources().getString(R.string.weather_template,
-                        c.getString(c.getColumnIndex("temperature")),
-                        c.getString(c.getColumnIndex("weather")));
-            }
-            if (c != null) {
-                c.close();
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+        String temperature = mWeatherStore.getTemperature();
+        if (temperature == null) {
+            return "";
         }
-
-        return weather;
+        String weather = mWeatherStore.getWeather();
+        if (weather == null) {
+            weather = WeatherController.getWeatherTypeByWeatherCode(mContext, mWeatherStore.getWeatherCode());
+        }
+        return mContext.getResources().getString(R.string.weather_template, temperature, weather);
     }
 
-    private final ContentObserver sContentObserver = new ContentObserver(new Handler()) {
-        public void onChange(boolean selfChange) {
+    private final WeatherController.WeatherChangedCallback mWeatherCallback =
+            new WeatherController.WeatherChangedCallback() {
+        @Override
+        public void onWeatherChanged(String weatherCode, String temperature) {
             updateWeatherMode();
         }
     };
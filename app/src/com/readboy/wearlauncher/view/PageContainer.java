@@ -0,0 +1,32 @@
+package com.readboy.wearlauncher.view;
+
+import android.content.Context;
+import android.widget.FrameLayout;
+
+/**
+ * Launcher 里 ViewPager 的一页：内容可以之后再加进来，换内容时只有这一页重新布局。
+ * 自身的 measure/layout 次数记在 {@link #getLayoutPasses()} 里。
+ */
+public class PageContainer extends FrameLayout {
+    private final LayoutPassCounter mLayoutPasses = new LayoutPassCounter();
+
+    public PageContainer(Context context) {
+        super(context);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        mLayoutPasses.onMeasure();
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        mLayoutPasses.onLayout();
+        super.onLayout(changed, left, top, right, bottom);
+    }
+
+    public LayoutPassCounter getLayoutPasses() {
+        return mLayoutPasses;
+    }
+}
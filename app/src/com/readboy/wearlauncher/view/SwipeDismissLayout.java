@@ -37,6 +37,8 @@ import android.view.ViewTreeObserver;
 import android.widget.AbsListView;
 import android.widget.FrameLayout;
 
+import com.readboy.wearlauncher.utils.InputLatencyTracer;
+
 /**
  * Special layout that finishes its activity when swiped away.
  */
@@ -178,6 +180,18 @@ public class SwipeDismissLayout extends FrameLayout {
         super.onDetachedFromWindow();
     }
 
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        // 只记自己在拖动的事件，其余的归里面的列表；抬起时拖动状态已被重置，先记下来
+        final boolean wasSwiping = mSwiping && !mDiscardIntercept;
+        final boolean handled = super.dispatchTouchEvent(ev);
+        if (handled && (wasSwiping || (mSwiping && !mDiscardIntercept))) {
+            InputLatencyTracer.getInstance().record(InputLatencyTracer.SURFACE_SWIPE_DISMISS,
+                    this, ev);
+        }
+        return handled;
+    }
+
     @Override
     public boolean onInterceptTouchEvent(MotionEvent ev) {
         // offset because the view is translated during swipe
@@ -99,13 +99,16 @@ public class ViewDragHelper {
 
     // Last known position/pointer tracking
     private int mActivePointerId = INVALID_POINTER;
-    private float[] mInitialMotionX;
-    private float[] mInitialMotionY;
-    private float[] mLastMotionX;
-    private float[] mLastMotionY;
-    private int[] mInitialEdgesTouched;
-    private int[] mEdgeDragsInProgress;
-    private int[] mEdgeDragsLocked;
+    // MotionEvent pointer ids are 0..31 (mPointersDown is a 32-bit mask), so the
+    // per-pointer arrays are allocated once at full size instead of grown mid-gesture.
+    private static final int MAX_POINTERS = 32;
+    private final float[] mInitialMotionX = new float[MAX_POINTERS];
+    private final float[] mInitialMotionY = new float[MAX_POINTERS];
+    private final float[] mLastMotionX = new float[MAX_POINTERS];
+    private final float[] mLastMotionY = new float[MAX_POINTERS];
+    private final int[] mInitialEdgesTouched = new int[MAX_POINTERS];
+    private final int[] mEdgeDragsInProgress = new int[MAX_POINTERS];
+    private final int[] mEdgeDragsLocked = new int[MAX_POINTERS];
     private int mPointersDown;
 
     private VelocityTracker mVelocityTracker;
@@ -766,9 +769,6 @@ public class ViewDragHelper {
     }
 
     private void clearMotionHistory() {
-        if (mInitialMotionX == null) {
-            return;
-        }
         Arrays.fill(mInitialMotionX, 0);
         Arrays.fill(mInitialMotionY, 0);
         Arrays.fill(mLastMotionX, 0);
@@ -780,7 +780,7 @@ public class ViewDragHelper {
     }
 
     private void clearMotionHistory(int pointerId) {
-        if (mInitialMotionX == null || !isPointerDown(pointerId)) {
+        if (!isPointerDown(pointerId)) {
             return;
         }
         mInitialMotionX[pointerId] = 0;
@@ -793,38 +793,7 @@ public class ViewDragHelper {
         mPointersDown &= ~(1 << pointerId);
     }
 
-    private void ensureMotionHistorySizeForId(int pointerId) {
-        if (mInitialMotionX == null || mInitialMotionX.length <= pointerId) {
-            float[] imx = new float[pointerId + 1];
-            float[] imy = new float[pointerId + 1];
-            float[] lmx = new float[pointerId + 1];
-            float[] lmy = new float[pointerId + 1];
-            int[] iit = new int[pointerId + 1];
-            int[] edip = new int[pointerId + 1];
-            int[] edl = new int[pointerId + 1];
-
-            if (mInitialMotionX != null) {
-                System.arraycopy(mInitialMotionX, 0, imx, 0, mInitialMotionX.length);
-                System.arraycopy(mInitialMotionY, 0, imy, 0, mInitialMotionY.length);
-                System.arraycopy(mLastMotionX, 0, lmx, 0, mLastMotionX.length);
-                System.arraycopy(mLastMotionY, 0, lmy, 0, mLastMotionY.length);
-                System.arraycopy(mInitialEdgesTouched, 0, iit, 0, mInitialEdgesTouched.length);
-                System.arraycopy(mEdgeDragsInProgress, 0, edip, 0, mEdgeDragsInProgress.length);
-                System.arraycopy(mEdgeDragsLocked, 0, edl, 0, mEdgeDragsLocked.length);
-            }
-
-            mInitialMotionX = imx;
-            mInitialMotionY = imy;
-            mLastMotionX = lmx;
-            mLastMotionY = lmy;
-            mInitialEdgesTouched = iit;
-            mEdgeDragsInProgress = edip;
-            mEdgeDragsLocked = edl;
-        }
-    }
-
     private void saveInitialMotion(float x, float y, int pointerId) {
-        ensureMotionHistorySizeForId(pointerId);
         mInitialMotionX[pointerId] = mLastMotionX[pointerId] = x;
         mInitialMotionY[pointerId] = mLastMotionY[pointerId] = y;
         mInitialEdgesTouched[pointerId] = getEdgesTouched((int) x, (int) y);
@@ -998,8 +967,6 @@ public class ViewDragHelper {
             }
 
             case MotionEvent.ACTION_MOVE: {
-                if (mInitialMotionX == null || mInitialMotionY == null) break;
-
                 // First to cross a touch slop over a draggable view wins. Also report edge drags.
                 final int pointerCount = ev.getPointerCount();
                 for (int i = 0; i < pointerCount; i++) {
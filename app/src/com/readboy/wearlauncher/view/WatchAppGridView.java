@@ -100,6 +100,7 @@ public class WatchAppGridView extends RelativeLayout implements WatchController.
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
+        mApplication.acquireWatchController(this);
         mWatchController.addClassDisableChangedCallback(this);
 
         mGridView.requestFocus();
@@ -109,6 +110,7 @@ public class WatchAppGridView extends RelativeLayout implements WatchController.
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
         mWatchController.removeClassDisableChangedCallback(this);
+        mApplication.releaseWatchController(this);
     }
 
     private OnClickItemListener mOnClickItemListener;
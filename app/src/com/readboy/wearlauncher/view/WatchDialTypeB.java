@@ -9,11 +9,13 @@ import android.widget.TextView;
 import com.readboy.wearlauncher.R;
 import com.readboy.wearlauncher.utils.WatchController;
 import com.readboy.wearlauncher.weather.WeatherController;
+import com.readboy.wearlauncher.weather.WeatherStore;
 
 import java.util.Calendar;
 
 
 public class WatchDialTypeB extends DialBaseLayout {
+    private TextView mWeatherView;
 
     public WatchDialTypeB(Context context) {
         super(context);
@@ -104,11 +106,14 @@ public class WatchDialTypeB extends DialBaseLayout {
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
+        // 缓存的天气立即显示，不等 ACTION_WEATHER_RESULT
+        WeatherStore.getInstance(getContext()).addCallback(mWeatherCallback);
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
+        WeatherStore.getInstance(getContext()).removeCallback(mWeatherCallback);
     }
 
     @Override
@@ -117,6 +122,22 @@ public class WatchDialTypeB extends DialBaseLayout {
         mDigitClock = (DigitClock) findViewById(R.id.digit_clock);
         mDigitClock.setCurTime();
         setDate();
+        mWeatherView = (TextView) findViewById(R.id.weather_tvid);
     }
 
+    private final WeatherController.WeatherChangedCallback mWeatherCallback =
+            new WeatherController.WeatherChangedCallback() {
+        @Override
+        public void onWeatherChanged(String weatherCode, String temperature) {
+            if (mWeatherView == null) {
+                return;
+            }
+            if (weatherCode == null || temperature == null) {
+                mWeatherView.setText("");
+            } else {
+                mWeatherView.setText(WeatherController.getWeatherDesc(getContext(), weatherCode, temperature));
+            }
+        }
+    };
+
 }
@@ -77,16 +77,8 @@ public class WeatherController extends BroadcastReceiver{
 	}
 	
 	public void startWeatherService(){
-    	Intent intent = new Intent();
-    	intent.setAction(ACTION_WEATHER_GET);
-    	intent.putExtra("sendBroadWhenDataChange",true);
-    	ArrayList<String> result = new ArrayList<String>();
-    	result.add("weather_code");
-    	result.add("temperature");
-    	intent.putStringArrayListExtra("result", result);
-    	Intent tmp = Utils.createExplicitFromImplicitIntent(mContext,intent);
-    	if(tmp != null){
-    		Intent eintent = new Intent(tmp);
+    	Intent eintent = WeatherStore.buildRequestIntent(mContext);
+    	if(eintent != null){
     		mContext.startService(eintent);
     	}else{
     		for (WeatherChangedCallback cb : mWeatherChangedCallbacks) {
@@ -0,0 +1,271 @@
+package com.readboy.wearlauncher.weather;
+
+import android.content.Context;
+import android.content.Intent;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.readboy.wearlauncher.LauncherSettingsStore;
+import com.readboy.wearlauncher.utils.Utils;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+/**
+ * 最近一次天气结果的唯一来源，表盘和负一屏都从这里读：
+ * <ul>
+ * <li>结果连同获取时间持久化在 LauncherSettingsStore 里，重启后表盘和负一屏一出现就能显示上次的天气；
+ *     获取时间只取自天气服务的 ACTION_WEATHER_RESULT（由 WatchController 转发），
+ *     provider 里的行没有时间，只更新内容；</li>
+ * <li>{@link #requestRefresh()} 只在结果超过 {@link #MAX_AGE_MS} 且距上次请求超过
+ *     {@link #MIN_REQUEST_INTERVAL_MS} 时才去请求天气服务；</li>
+ * <li>天气应用的 provider 在后台线程查询，只取需要的列；变化通知合并后再查。</li>
+ * </ul>
+ * 回调在主线程。
+ */
+public final class WeatherStore {
+    private static final String TAG = "WeatherStore";
+
+    static final long MAX_AGE_MS = 30 * 60 * 1000;
+    static final long MIN_REQUEST_INTERVAL_MS = 5 * 60 * 1000;
+    private static final long QUERY_DELAY_MS = 500;
+
+    private static final Uri WEATHER_URI = Uri.parse("content://com.readboy.wearweather.provider/data");
+    private static final String[] PROJECTION = {"weathercode", "temperature", "weather"};
+
+    private static final String KEY_CODE = "weather_code";
+    private static final String KEY_TEMPERATURE = "weather_temperature";
+    private static final String KEY_DESC = "weather_desc";
+    private static final String KEY_TIME = "weather_time";
+
+    private static WeatherStore sInstance;
+
+    public static synchronized WeatherStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WeatherStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private final Context mContext;
+    private final LauncherSettingsStore mSettings;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Handler mQueryHandler;
+    private final ArrayList<WeatherController.WeatherChangedCallback> mCallbacks =
+            new ArrayList<WeatherController.WeatherChangedCallback>();
+
+    // main thread only
+    private String mWeatherCode;
+    private String mTemperature;
+    private String mWeather;
+    private long mUpdatedAt;
+    private long mLastRequestAt = -MIN_REQUEST_INTERVAL_MS;
+    private int mRequestCount;
+    private int mThrottledCount;
+    private boolean mObserving;
+
+    private final Runnable mQueryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            queryProvider();
+        }
+    };
+
+    private final ContentObserver mObserver;
+
+    private WeatherStore(Context context) {
+        mContext = context;
+        mSettings = LauncherSettingsStore.getInstance(context);
+        mWeatherCode = mSettings.getString(KEY_CODE, null);
+        mTemperature = mSettings.getString(KEY_TEMPERATURE, null);
+        mWeather = mSettings.getString(KEY_DESC, null);
+        mUpdatedAt = mSettings.getLong(KEY_TIME, 0);
+
+        HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mQueryHandler = new Handler(thread.getLooper());
+        mObserver = new ContentObserver(mQueryHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                // 天气应用一次更新会连着写好几行，合并后只查一次
+                mQueryHandler.removeCallbacks(mQueryRunnable);
+                mQueryHandler.postDelayed(mQueryRunnable, QUERY_DELAY_MS);
+            }
+        };
+    }
+
+    /**
+     * Register for changes and get the cached result immediately. Main thread only.
+     */
+    public void addCallback(WeatherController.WeatherChangedCallback cb) {
+        if (!mCallbacks.contains(cb)) {
+            mCallbacks.add(cb);
+        }
+        if (!mObserving) {
+            mObserving = true;
+            try {
+                mContext.getContentResolver().registerContentObserver(WEATHER_URI, true, mObserver);
+            } catch (SecurityException e) {
+                Log.w(TAG, "weather provider unavailable", e);
+            }
+        }
+        cb.onWeatherChanged(mWeatherCode, mTemperature);
+        requestRefresh();
+    }
+
+    public void removeCallback(WeatherController.WeatherChangedCallback cb) {
+        mCallbacks.remove(cb);
+        if (mCallbacks.isEmpty() && mObserving) {
+            mObserving = false;
+            mContext.getContentResolver().unregisterContentObserver(mObserver);
+        }
+    }
+
+    public String getWeatherCode() {
+        return mWeatherCode;
+    }
+
+    public String getTemperature() {
+        return mTemperature;
+    }
+
+    /** Description from the weather app, e.g. "多云"; may be null. */
+    public String getWeather() {
+        return mWeather;
+    }
+
+    /** Wall clock time of the cached result, 0 if there is none. */
+    public long getUpdatedAt() {
+        return mUpdatedAt;
+    }
+
+    /**
+     * Ask the weather service and provider for a new result if the cached one is
+     * stale and we have not asked recently. Main thread only.
+     *
+     * @return true if a request was sent
+     */
+    public boolean requestRefresh() {
+        final long age = System.currentTimeMillis() - mUpdatedAt;
+        final long now = SystemClock.elapsedRealtime();
+        if ((mUpdatedAt > 0 && age >= 0 && age < MAX_AGE_MS)
+                || now - mLastRequestAt < MIN_REQUEST_INTERVAL_MS) {
+            mThrottledCount++;
+            return false;
+        }
+        mLastRequestAt = now;
+        mRequestCount++;
+        final Intent intent = buildRequestIntent(mContext);
+        if (intent != null) {
+            try {
+                mContext.startService(intent);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "start weather service failed", e);
+            }
+        }
+        mQueryHandler.post(mQueryRunnable);
+        return true;
+    }
+
+    /**
+     * The explicit intent for the weather service, or null if it is not installed.
+     */
+    static Intent buildRequestIntent(Context context) {
+        Intent intent = new Intent();
+        intent.setAction(WeatherController.ACTION_WEATHER_GET);
+        intent.putExtra("sendBroadWhenDataChange", true);
+        ArrayList<String> result = new ArrayList<String>();
+        result.add("weather_code");
+        result.add("temperature");
+        intent.putStringArrayListExtra("result", result);
+        Intent tmp = Utils.createExplicitFromImplicitIntent(context, intent);
+        return tmp != null ? new Intent(tmp) : null;
+    }
+
+    /**
+     * The "WeatherResult" bundle of {@link WeatherController#ACTION_WEATHER_RESULT}.
+     */
+    public void onWeatherResult(Bundle bundle) {
+        if (bundle == null) {
+            return;
+        }
+        update(bundle.getString("weather_code"), bundle.getString("temperature"),
+                bundle.getString("weather"), true);
+    }
+
+    // query thread
+    private void queryProvider() {
+        Cursor c = null;
+        try {
+            c = mContext.getContentResolver().query(WEATHER_URI, PROJECTION, null, null, null);
+            if (c != null && c.moveToLast()) {
+                final String code = c.getString(0);
+                final String temperature = c.getString(1);
+                final String weather = c.getString(2);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // provider 里的行没有时间，可能是很久以前的，不算刷新
+                        update(code, temperature, weather, false);
+                    }
+                });
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "query weather failed", e);
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+    }
+
+    /**
+     * @param fresh true for a result the weather service just produced; only
+     *              those reset the age used by {@link #requestRefresh()}
+     */
+    private void update(String code, String temperature, String weather, boolean fresh) {
+        if (code == null && temperature == null) {
+            return;
+        }
+        if (weather == null && TextUtils.equals(code, mWeatherCode)) {
+            weather = mWeather;
+        }
+        if (fresh) {
+            mUpdatedAt = System.currentTimeMillis();
+            mSettings.putLong(KEY_TIME, mUpdatedAt);
+        }
+        if (TextUtils.equals(code, mWeatherCode) && TextUtils.equals(temperature, mTemperature)
+                && TextUtils.equals(weather, mWeather)) {
+            return;
+        }
+        mWeatherCode = code;
+        mTemperature = temperature;
+        mWeather = weather;
+        mSettings.putString(KEY_CODE, code);
+        mSettings.putString(KEY_TEMPERATURE, temperature);
+        mSettings.putString(KEY_DESC, weather);
+        for (int i = mCallbacks.size() - 1; i >= 0; i--) {
+            mCallbacks.get(i).onWeatherChanged(code, temperature);
+        }
+    }
+
+    public void dump(PrintWriter pw) {
+        pw.println("WeatherStore state:");
+        pw.print("  code="); pw.print(mWeatherCode);
+        pw.print(" temperature="); pw.print(mTemperature);
+        pw.print(" weather="); pw.println(mWeather);
+        pw.print("  ageMs="); pw.println(mUpdatedAt == 0 ? -1 : System.currentTimeMillis() - mUpdatedAt);
+        pw.print("  requests="); pw.print(mRequestCount);
+        pw.print(" throttled="); pw.println(mThrottledCount);
+        pw.print("  callbacks="); pw.println(mCallbacks.size());
+    }
+}
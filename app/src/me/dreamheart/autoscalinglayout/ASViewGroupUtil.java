@@ -3,6 +3,7 @@ package me.dreamheart.autoscalinglayout;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Color;
+import android.support.annotation.VisibleForTesting;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.View;
@@ -10,6 +11,8 @@ import android.view.ViewGroup;
 
 import com.readboy.wearlauncher.R;
 
+import java.io.PrintWriter;
+
 /**
  * ViewGroup自动缩放组件
  */
@@ -34,6 +37,16 @@ public class ASViewGroupUtil {
     private int mScaleType;
     // 在onLayout时预处理缩放，可能会引发问题，默认关闭
     private boolean mPreScaling;
+    // 上次检查过的实际宽高和缩放类型，相同则不用再算缩放比例
+    private int mCheckedWidth = -1;
+    private int mCheckedHeight = -1;
+    private int mCheckedType = -1;
+    // onMeasure 复用，避免每次测量分配数组
+    private final int[] mMeasureSpecs = new int[2];
+
+    // 调试统计，只在主线程访问
+    private static int sMeasureCount;
+    private static int sScaleCount;
 
     // 直接用宽高初始化
     public void init(int designWidth, int designHeight){
@@ -157,10 +170,11 @@ public class ASViewGroupUtil {
      * @param vg ViewGroup
      * @param widthMeasureSpec  宽度
      * @param heightMeasureSpec 高度
-     * @return 测量好的宽高
+     * @return 测量好的宽高，数组是复用的，调用方需立即使用
      */
     public int[] onMeasure(ViewGroup vg, int widthMeasureSpec, int heightMeasureSpec) {
-        int measureSpecs[] = new int[2];
+        sMeasureCount++;
+        int measureSpecs[] = mMeasureSpecs;
         measureSpecs[0] = widthMeasureSpec;
         measureSpecs[1] = heightMeasureSpec;
 
@@ -250,6 +264,12 @@ public class ASViewGroupUtil {
      */
     public boolean scaleSize(ViewGroup vg, int width, int height, int type) {
         //Log.i("ASViewGroupUtil", "scaleSize");
+        // 同样的宽高已经处理过（缩放过或无需缩放），稳定状态下的测量和绘制直接返回
+        if (width == mCheckedWidth && height == mCheckedHeight && type == mCheckedType)
+            return false;
+        mCheckedWidth = width;
+        mCheckedHeight = height;
+        mCheckedType = type;
         // 如果大小改变则进行缩放
         if(width != this.mCurrentWidth || height != this.mCurrentHeight) {
             // 计算缩放比例
@@ -278,6 +298,7 @@ public class ASViewGroupUtil {
 
             //Log.i("ASViewGroupUtil", "scaleSize " + scale);
             // 缩放ViewGroup
+            sScaleCount++;
             ScalingUtil.scaleViewAndChildren(vg, scale, 0);
 
             return true;
@@ -286,6 +307,26 @@ public class ASViewGroupUtil {
         return false;
     }
 
+    /**
+     * 输出测量次数和整棵子树缩放次数，稳定状态下缩放次数不应增长
+     * @param pw 输出
+     */
+    public static void dump(PrintWriter pw) {
+        pw.println("AutoScalingLayout state:");
+        pw.print("  measures="); pw.print(sMeasureCount);
+        pw.print(" scales="); pw.println(sScaleCount);
+    }
+
+    @VisibleForTesting
+    static int getMeasureCount() {
+        return sMeasureCount;
+    }
+
+    @VisibleForTesting
+    static int getScaleCount() {
+        return sScaleCount;
+    }
+
     /**
      * 获取dimension的像素值
      * @param context View的Context
@@ -0,0 +1,99 @@
+package com.readboy.wearlauncher;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.view.LayoutInflater;
+import android.view.View;
+
+import com.readboy.wearlauncher.view.DaialParentLayout;
+import com.readboy.wearlauncher.view.LayoutPassCounter;
+import com.readboy.wearlauncher.view.MyViewPager;
+import com.readboy.wearlauncher.view.PageContainer;
+import com.readboy.wearlauncher.view.WatchDials;
+
+import java.util.ArrayList;
+
+/**
+ * 按 Launcher 的方式搭出三页 ViewPager，换表盘时只有表盘容器重新 measure/layout，
+ * 负一屏和应用列表的容器不动，ViewPager 也不销毁重建页面。
+ */
+public class LauncherPagesLayoutTest extends InstrumentationTestCase {
+    private static final int SIZE = 240;
+
+    private LayoutInflater mInflater;
+    private PageContainer mNegative;
+    private DaialParentLayout mDial;
+    private PageContainer mApps;
+    private MyViewPager mPager;
+    private Launcher.ViewPagerAdpater mAdapter;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final Context context = getInstrumentation().getTargetContext();
+                mInflater = LayoutInflater.from(context);
+                mNegative = new PageContainer(context);
+                mDial = (DaialParentLayout) mInflater.inflate(R.layout.watch_dial_layout, null);
+                mDial.removeAllViews();
+                setDial(0);
+                mApps = new PageContainer(context);
+                final ArrayList<View> pages = new ArrayList<View>();
+                pages.add(mNegative);
+                pages.add(mDial);
+                pages.add(mApps);
+                mPager = new MyViewPager(context);
+                mAdapter = new Launcher.ViewPagerAdpater(pages);
+                mPager.setAdapter(mAdapter);
+                mPager.setOffscreenPageLimit(3);
+                mPager.setCurrentItem(1);
+            }
+        });
+    }
+
+    @UiThreadTest
+    public void testDialChangeLaysOutOnlyTheDialPage() {
+        layout();
+        assertEquals(3, mAdapter.getInstantiateCount());
+        assertTrue(mNegative.getLayoutPasses().getMeasureCount() > 0);
+        assertTrue(mDial.getLayoutPasses().getMeasureCount() > 0);
+        assertTrue(mApps.getLayoutPasses().getMeasureCount() > 0);
+
+        final int[] negative = snapshot(mNegative.getLayoutPasses());
+        final int[] dial = snapshot(mDial.getLayoutPasses());
+        final int[] apps = snapshot(mApps.getLayoutPasses());
+
+        // 和 Launcher.setDialFromType 一样只替换表盘容器里的内容
+        mDial.removeAllViews();
+        setDial(1);
+        layout();
+
+        assertTrue("dial measured again",
+                mDial.getLayoutPasses().getMeasureCount() > dial[0]);
+        assertTrue("dial laid out again",
+                mDial.getLayoutPasses().getLayoutCount() > dial[1]);
+        assertEquals("negative measure", negative[0], mNegative.getLayoutPasses().getMeasureCount());
+        assertEquals("negative layout", negative[1], mNegative.getLayoutPasses().getLayoutCount());
+        assertEquals("apps measure", apps[0], mApps.getLayoutPasses().getMeasureCount());
+        assertEquals("apps layout", apps[1], mApps.getLayoutPasses().getLayoutCount());
+        assertEquals(3, mAdapter.getInstantiateCount());
+        assertEquals(0, mAdapter.getDestroyCount());
+    }
+
+    private void setDial(int index) {
+        mDial.addView(mInflater.inflate(WatchDials.mDialList.get(index), mDial, false));
+    }
+
+    private void layout() {
+        final int spec = View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY);
+        mPager.measure(spec, spec);
+        mPager.layout(0, 0, SIZE, SIZE);
+    }
+
+    private static int[] snapshot(LayoutPassCounter counter) {
+        return new int[]{counter.getMeasureCount(), counter.getLayoutCount()};
+    }
+}
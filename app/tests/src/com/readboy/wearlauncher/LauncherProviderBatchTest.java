@@ -0,0 +1,254 @@
+package com.readboy.wearlauncher;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.content.pm.ProviderInfo;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.test.IsolatedContext;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+import android.test.mock.MockContext;
+import android.util.Log;
+
+import java.util.ArrayList;
+
+/**
+ * LauncherProvider 逐条写入与 applyBatch 的对比：在 "test." 前缀的一次性数据库上
+ * 插入 {@link #ROWS} 行再倒序调整 rank，统计写事务数和变更通知数。
+ * 批量写入只能提交一个事务、发一次通知。耗时只输出到日志，不做断言。
+ * 另外检查从版本 12 升级时 _id 由新表重新分配。
+ */
+public class LauncherProviderBatchTest extends AndroidTestCase {
+    private static final String TAG = "LauncherProviderBatchTest";
+
+    private static final int ROWS = 500;
+    private static final String PREFIX = "test.";
+    /** LauncherProvider.DATABASE_NAME */
+    private static final String DATABASE_NAME = "launcher.db";
+
+    /** 通知在 provider 调用 notifyChange 的线程上同步计数，不用等观察者 */
+    private static final class CountingResolver extends MockContentResolver {
+        int notifications;
+
+        @Override
+        public void notifyChange(Uri uri, ContentObserver observer, boolean syncToNetwork) {
+            notifications++;
+        }
+    }
+
+    private CountingResolver mResolver;
+    private LauncherProvider mProvider;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getContext().deleteDatabase(PREFIX + DATABASE_NAME);
+        attachProvider();
+    }
+
+    private void attachProvider() {
+        mResolver = new CountingResolver();
+        final IsolatedContext context = new IsolatedContext(mResolver,
+                new RenamingDelegatingContext(new MockContext(), getContext(), PREFIX));
+        mProvider = new LauncherProvider();
+        final ProviderInfo info = new ProviderInfo();
+        info.authority = LauncherProvider.AUTHORITY;
+        mProvider.attachInfo(context, info);
+        mResolver.addProvider(LauncherProvider.AUTHORITY, mProvider);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mProvider.shutdown();
+        getContext().deleteDatabase(PREFIX + DATABASE_NAME);
+        super.tearDown();
+    }
+
+    public void testInsertBatch() throws Exception {
+        mResolver.notifications = 0;
+        int transactions = mProvider.getTransactionCount();
+        long start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < ROWS; i++) {
+            mResolver.insert(LauncherSettings.MainApp.CONTENT_URI, row(i));
+        }
+        final long singleMs = SystemClock.elapsedRealtime() - start;
+        assertEquals(ROWS, mResolver.notifications);
+        assertEquals(ROWS, mProvider.getTransactionCount() - transactions);
+        assertEquals(ROWS, count());
+
+        final ArrayList<ContentProviderOperation> ops =
+                new ArrayList<ContentProviderOperation>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            ops.add(ContentProviderOperation.newInsert(LauncherSettings.MainApp.CONTENT_URI)
+                    .withValues(row(i)).build());
+        }
+        mResolver.notifications = 0;
+        transactions = mProvider.getTransactionCount();
+        start = SystemClock.elapsedRealtime();
+        mResolver.applyBatch(LauncherProvider.AUTHORITY, ops);
+        final long batchMs = SystemClock.elapsedRealtime() - start;
+        assertEquals(1, mResolver.notifications);
+        assertEquals(1, mProvider.getTransactionCount() - transactions);
+        assertEquals(ROWS * 2, count());
+
+        Log.i(TAG, "insert rows=" + ROWS + " singleMs=" + singleMs + " batchMs=" + batchMs);
+    }
+
+    public void testReorderBatch() throws Exception {
+        final long[] ids = insertRows();
+
+        mResolver.notifications = 0;
+        int transactions = mProvider.getTransactionCount();
+        long start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < ids.length; i++) {
+            mResolver.update(LauncherSettings.MainApp.getContentUri(ids[i], true),
+                    rank(ids.length - 1 - i), null, null);
+        }
+        final long singleMs = SystemClock.elapsedRealtime() - start;
+        assertEquals(ROWS, mResolver.notifications);
+        assertEquals(ROWS, mProvider.getTransactionCount() - transactions);
+        assertEquals(ROWS - 1, rankOf(ids[0]));
+
+        final ArrayList<ContentProviderOperation> ops =
+                new ArrayList<ContentProviderOperation>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            ops.add(ContentProviderOperation.newUpdate(
+                    LauncherSettings.MainApp.getContentUri(ids[i], true))
+                    .withValues(rank(i)).build());
+        }
+        mResolver.notifications = 0;
+        transactions = mProvider.getTransactionCount();
+        start = SystemClock.elapsedRealtime();
+        mResolver.applyBatch(LauncherProvider.AUTHORITY, ops);
+        final long batchMs = SystemClock.elapsedRealtime() - start;
+        assertEquals(1, mResolver.notifications);
+        assertEquals(1, mProvider.getTransactionCount() - transactions);
+        assertEquals(0, rankOf(ids[0]));
+
+        Log.i(TAG, "reorder rows=" + ROWS + " singleMs=" + singleMs + " batchMs=" + batchMs);
+    }
+
+    public void testFailedBatchWritesAndNotifiesNothing() throws Exception {
+        final ArrayList<ContentProviderOperation> ops = new ArrayList<ContentProviderOperation>();
+        ops.add(ContentProviderOperation.newInsert(LauncherSettings.MainApp.CONTENT_URI)
+                .withValues(row(0)).build());
+        // 期望更新 1 行，实际 0 行，整批回滚
+        ops.add(ContentProviderOperation.newUpdate(
+                LauncherSettings.MainApp.getContentUri(Long.MAX_VALUE, true))
+                .withValues(rank(1)).withExpectedCount(1).build());
+        mResolver.notifications = 0;
+        final int transactions = mProvider.getTransactionCount();
+        try {
+            mResolver.applyBatch(LauncherProvider.AUTHORITY, ops);
+            fail("expected count mismatch should fail the batch");
+        } catch (OperationApplicationException expected) {
+        }
+        assertEquals(0, mResolver.notifications);
+        assertEquals(transactions, mProvider.getTransactionCount());
+        assertEquals(0, count());
+    }
+
+    public void testUpgradeFromVersion12AssignsNewIds() throws Exception {
+        mProvider.shutdown();
+        getContext().deleteDatabase(PREFIX + DATABASE_NAME);
+        final SQLiteDatabase old = SQLiteDatabase.openOrCreateDatabase(
+                getContext().getDatabasePath(PREFIX + DATABASE_NAME), null);
+        try {
+            // 版本 12 的表：_id 不是 rowid 别名，大多是 NULL
+            old.execSQL("CREATE TABLE mainapp (" +
+                    "_id INTEGER AUTO_INCREMENT PRIMARY KEY," +
+                    "title TEXT," +
+                    "intent TEXT," +
+                    "itemType INTEGER," +
+                    "packageName TEXT," +
+                    "iconType INTEGER," +
+                    "iconResource INTEGER," +
+                    "icon BLOB," +
+                    "uri TEXT" +
+                    ");");
+            // 第一行的 _id 正好等于第二行的 rowid，沿用旧 _id 会主键冲突
+            old.execSQL("INSERT INTO mainapp (_id, title) VALUES (2, 'first');");
+            old.execSQL("INSERT INTO mainapp (title) VALUES ('second');");
+            old.setVersion(12);
+        } finally {
+            old.close();
+        }
+
+        attachProvider();
+        final Cursor c = mResolver.query(LauncherSettings.MainApp.CONTENT_URI_NO_NOTIFICATION,
+                new String[]{LauncherSettings.MainApp._ID, LauncherSettings.MainApp.TITLE},
+                null, null, LauncherSettings.MainApp.RANK);
+        try {
+            assertEquals(2, c.getCount());
+            assertTrue(c.moveToNext());
+            assertEquals("first", c.getString(1));
+            final long first = c.getLong(0);
+            assertTrue(c.moveToNext());
+            assertEquals("second", c.getString(1));
+            final long second = c.getLong(0);
+            assertTrue(first > 0 && second > 0 && first != second);
+        } finally {
+            c.close();
+        }
+    }
+
+    private long[] insertRows() throws Exception {
+        final ArrayList<ContentProviderOperation> ops =
+                new ArrayList<ContentProviderOperation>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            ops.add(ContentProviderOperation.newInsert(LauncherSettings.MainApp.CONTENT_URI)
+                    .withValues(row(i)).build());
+        }
+        final ContentProviderResult[] results =
+                mResolver.applyBatch(LauncherProvider.AUTHORITY, ops);
+        final long[] ids = new long[results.length];
+        for (int i = 0; i < results.length; i++) {
+            ids[i] = ContentUris.parseId(results[i].uri);
+        }
+        return ids;
+    }
+
+    private int count() {
+        final Cursor c = mResolver.query(LauncherSettings.MainApp.CONTENT_URI_NO_NOTIFICATION,
+                null, null, null, null);
+        try {
+            return c.getCount();
+        } finally {
+            c.close();
+        }
+    }
+
+    private int rankOf(long id) {
+        final Cursor c = mResolver.query(LauncherSettings.MainApp.getContentUri(id, false),
+                new String[]{LauncherSettings.MainApp.RANK}, null, null, null);
+        try {
+            assertTrue(c.moveToFirst());
+            return c.getInt(0);
+        } finally {
+            c.close();
+        }
+    }
+
+    private static ContentValues row(int i) {
+        ContentValues values = new ContentValues();
+        values.put(LauncherSettings.MainApp.TITLE, "test " + i);
+        values.put(LauncherSettings.MainApp.PACKAGE_NAME, "com.readboy.wearlauncher.test");
+        values.put(LauncherSettings.MainApp.ITEM_TYPE, 0);
+        values.put(LauncherSettings.MainApp.RANK, i);
+        return values;
+    }
+
+    private static ContentValues rank(int rank) {
+        ContentValues values = new ContentValues();
+        values.put(LauncherSettings.MainApp.RANK, rank);
+        return values;
+    }
+}
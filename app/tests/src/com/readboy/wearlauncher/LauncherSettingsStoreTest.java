@@ -0,0 +1,133 @@
+package com.readboy.wearlauncher;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+/**
+ * LauncherSettingsStore 的写入只改内存：主线程上 put 不碰磁盘，
+ * {@link LauncherSettingsStore#WRITE_DELAY_MS} 内的多次写入合并成一次 commit；
+ * 缓存的 Settings.System 值在别的进程修改后跟着更新。
+ */
+public class LauncherSettingsStoreTest extends InstrumentationTestCase {
+    private static final String TAG = "LauncherSettingsStoreTest";
+
+    private static final int PUTS = 20;
+    /** 内存里改一个值是微秒级，commit 到 flash 要几十毫秒 */
+    private static final long MAX_PUT_NANOS = 2 * 1000 * 1000;
+    /** Settings.System 删不掉 key，固定用一个 */
+    private static final String SYSTEM_KEY = "launcher_settings_store_test";
+    private static final long OBSERVER_TIMEOUT_MS = 2000;
+
+    private LauncherSettingsStore mStore;
+    private SharedPreferences mPrefs;
+    private String mKey;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final Context context = getInstrumentation().getTargetContext();
+        mStore = LauncherSettingsStore.getInstance(context);
+        mPrefs = context.getSharedPreferences(LauncherSettingsStore.SHARED_NAME,
+                Context.MODE_PRIVATE);
+        mKey = TAG + "_" + SystemClock.uptimeMillis();
+        // 之前的测试或 launcher 自己留下的写入先落盘
+        mStore.flush();
+        mStore.awaitWriteThread();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mStore.putString(mKey, null);
+        mStore.flush();
+        mStore.awaitWriteThread();
+        super.tearDown();
+    }
+
+    public void testPutOnMainThreadDoesNotWrite() throws Exception {
+        final int writes = mStore.getWriteCount();
+        final long[] maxNanos = new long[1];
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < PUTS; i++) {
+                    final long start = SystemClock.elapsedRealtimeNanos();
+                    mStore.putInt(mKey, i);
+                    maxNanos[0] = Math.max(maxNanos[0],
+                            SystemClock.elapsedRealtimeNanos() - start);
+                }
+            }
+        });
+        Log.i(TAG, "max put " + maxNanos[0] / 1000 + "us");
+        assertTrue("put took " + maxNanos[0] / 1000 + "us", maxNanos[0] < MAX_PUT_NANOS);
+
+        // 读的是内存里的新值，磁盘上还没有
+        assertEquals(PUTS - 1, mStore.getInt(mKey, -1));
+        assertEquals(writes, mStore.getWriteCount());
+        assertFalse(mPrefs.contains(mKey));
+
+        mStore.flush();
+        mStore.awaitWriteThread();
+        assertEquals(writes + 1, mStore.getWriteCount());
+        assertEquals(PUTS - 1, mPrefs.getInt(mKey, -1));
+    }
+
+    public void testPutsWithinDelayCommitOnce() throws Exception {
+        final int writes = mStore.getWriteCount();
+        final long start = SystemClock.uptimeMillis();
+        for (int i = 0; i < PUTS; i++) {
+            mStore.putInt(mKey, i);
+        }
+        final long deadline = start + LauncherSettingsStore.WRITE_DELAY_MS * 3;
+        while (mStore.getWriteCount() == writes && SystemClock.uptimeMillis() < deadline) {
+            // 不 flush，延时到之前磁盘上不能有
+            final boolean onDisk = mPrefs.contains(mKey);
+            if (SystemClock.uptimeMillis() - start < LauncherSettingsStore.WRITE_DELAY_MS) {
+                assertFalse(onDisk);
+            }
+            SystemClock.sleep(50);
+        }
+        final long elapsed = SystemClock.uptimeMillis() - start;
+        assertEquals(writes + 1, mStore.getWriteCount());
+        assertTrue("wrote after " + elapsed + "ms",
+                elapsed >= LauncherSettingsStore.WRITE_DELAY_MS);
+        assertEquals(PUTS - 1, mPrefs.getInt(mKey, -1));
+    }
+
+    public void testSystemIntFollowsOtherWriters() throws Exception {
+        final ContentResolver resolver = getInstrumentation().getTargetContext()
+                .getContentResolver();
+        Settings.System.putInt(resolver, SYSTEM_KEY, 1);
+        waitForSystemInt(1);
+        assertEquals(1, mStore.getSystemInt(SYSTEM_KEY, -1));
+
+        // 模拟别的进程直接改 Settings.System，缓存要跟着变
+        Settings.System.putInt(resolver, SYSTEM_KEY, 2);
+        waitForSystemInt(2);
+        assertEquals(2, mStore.getSystemInt(SYSTEM_KEY, -1));
+    }
+
+    private void waitForSystemInt(int expected) {
+        final long deadline = SystemClock.uptimeMillis() + OBSERVER_TIMEOUT_MS;
+        while (mStore.getSystemInt(SYSTEM_KEY, -1) != expected
+                && SystemClock.uptimeMillis() < deadline) {
+            SystemClock.sleep(20);
+        }
+    }
+
+    public void testUnchangedPutDoesNotWrite() throws Exception {
+        mStore.putInt(mKey, 1);
+        mStore.flush();
+        mStore.awaitWriteThread();
+        final int writes = mStore.getWriteCount();
+
+        mStore.putInt(mKey, 1);
+        mStore.flush();
+        mStore.awaitWriteThread();
+        assertEquals(writes, mStore.getWriteCount());
+    }
+}
@@ -0,0 +1,145 @@
+package com.readboy.wearlauncher;
+
+import android.content.ContentValues;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.test.AndroidTestCase;
+import android.test.IsolatedContext;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+import android.test.mock.MockContext;
+
+/**
+ * MainAppModel 的变更日志：在 "test." 前缀的一次性数据库上经模型插入、修改、删除和调整顺序，
+ * 每次写入按顺序记一条；读得太晚、记录已被覆盖时 readChanges 返回 -1。
+ */
+public class MainAppModelTest extends AndroidTestCase {
+    private static final String PREFIX = "test.";
+    /** LauncherProvider.DATABASE_NAME */
+    private static final String DATABASE_NAME = "launcher.db";
+
+    private LauncherProvider mProvider;
+    private MockContentResolver mResolver;
+    private MainAppModel mModel;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getContext().deleteDatabase(PREFIX + DATABASE_NAME);
+        mResolver = new MockContentResolver();
+        final IsolatedContext context = new IsolatedContext(mResolver,
+                new RenamingDelegatingContext(new MockContext(), getContext(), PREFIX));
+        mProvider = new LauncherProvider();
+        final ProviderInfo info = new ProviderInfo();
+        info.authority = LauncherProvider.AUTHORITY;
+        mProvider.attachInfo(context, info);
+        mResolver.addProvider(LauncherProvider.AUTHORITY, mProvider);
+        mModel = new MainAppModel(context);
+        mModel.ensureLoaded();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mModel.release();
+        mProvider.shutdown();
+        getContext().deleteDatabase(PREFIX + DATABASE_NAME);
+        super.tearDown();
+    }
+
+    public void testWritesAreLoggedInOrder() {
+        final long seq = mModel.getChangeSeq();
+        final long a = mModel.insert(row("a", 0));
+        final long b = mModel.insert(row("b", 1));
+        assertTrue(a > 0 && b > 0);
+        assertEquals(2, mModel.size());
+
+        final ContentValues title = new ContentValues();
+        title.put(LauncherSettings.MainApp.TITLE, "a2");
+        assertTrue(mModel.update(a, title));
+        assertEquals("a2", mModel.getTitle(mModel.indexOfId(a)));
+
+        assertTrue(mModel.delete(b));
+        assertEquals(-1, mModel.indexOfId(b));
+        // 删掉的行不再有日志
+        assertFalse(mModel.update(b, title));
+
+        final int[] types = new int[8];
+        final long[] ids = new long[8];
+        assertEquals(4, mModel.readChanges(seq, types, ids));
+        assertChange(MainAppModel.CHANGE_INSERTED, a, types[0], ids[0]);
+        assertChange(MainAppModel.CHANGE_INSERTED, b, types[1], ids[1]);
+        assertChange(MainAppModel.CHANGE_UPDATED, a, types[2], ids[2]);
+        assertChange(MainAppModel.CHANGE_DELETED, b, types[3], ids[3]);
+        assertEquals(seq + 4, mModel.getChangeSeq());
+        assertEquals(0, mModel.readChanges(seq + 4, types, ids));
+    }
+
+    public void testSetOrderLogsOnlyMovedRows() {
+        final long a = mModel.insert(row("a", 0));
+        final long b = mModel.insert(row("b", 1));
+        final long c = mModel.insert(row("c", 2));
+
+        final long seq = mModel.getChangeSeq();
+        assertTrue(mModel.setOrder(new long[]{b, a, c}));
+
+        final int[] types = new int[8];
+        final long[] ids = new long[8];
+        // c 的 rank 没变，不写也不记
+        assertEquals(2, mModel.readChanges(seq, types, ids));
+        assertChange(MainAppModel.CHANGE_UPDATED, b, types[0], ids[0]);
+        assertChange(MainAppModel.CHANGE_UPDATED, a, types[1], ids[1]);
+        assertEquals(b, mModel.getId(0));
+        assertEquals(a, mModel.getId(1));
+        assertEquals(c, mModel.getId(2));
+        assertEquals(0, rankOf(b));
+        assertEquals(1, rankOf(a));
+
+        // 顺序没变时什么都不记
+        assertTrue(mModel.setOrder(new long[]{b, a, c}));
+        assertEquals(seq + 2, mModel.getChangeSeq());
+    }
+
+    public void testReadChangesAfterOverflow() {
+        final long id = mModel.insert(row("a", 0));
+        final long seq = mModel.getChangeSeq();
+        final ContentValues title = new ContentValues();
+        for (int i = 0; i <= MainAppModel.LOG_CAPACITY; i++) {
+            title.put(LauncherSettings.MainApp.TITLE, "a" + i);
+            assertTrue(mModel.update(id, title));
+        }
+
+        final int[] types = new int[MainAppModel.LOG_CAPACITY];
+        final long[] ids = new long[MainAppModel.LOG_CAPACITY];
+        // 最早的一条已被覆盖，只能整体刷新
+        assertEquals(-1, mModel.readChanges(seq, types, ids));
+        // 还在缓冲区里的最早一条仍能读到
+        assertEquals(MainAppModel.LOG_CAPACITY, mModel.readChanges(seq + 1, types, ids));
+        // 比当前序号还新的也不合法
+        assertEquals(-1, mModel.readChanges(mModel.getChangeSeq() + 1, types, ids));
+    }
+
+    private int rankOf(long id) {
+        final Cursor c = mResolver.query(LauncherSettings.MainApp.getContentUri(id, false),
+                new String[]{LauncherSettings.MainApp.RANK}, null, null, null);
+        try {
+            assertTrue(c.moveToFirst());
+            return c.getInt(0);
+        } finally {
+            c.close();
+        }
+    }
+
+    private static void assertChange(int type, long id, int actualType, long actualId) {
+        assertEquals(type, actualType);
+        assertEquals(id, actualId);
+    }
+
+    private static ContentValues row(String title, int rank) {
+        ContentValues values = new ContentValues();
+        values.put(LauncherSettings.MainApp.TITLE, title);
+        values.put(LauncherSettings.MainApp.PACKAGE_NAME, "com.readboy.wearlauncher.test");
+        values.put(LauncherSettings.MainApp.ITEM_TYPE, 0);
+        values.put(LauncherSettings.MainApp.RANK, rank);
+        return values;
+    }
+}
@@ -0,0 +1,50 @@
+package com.readboy.wearlauncher.Swipe;
+
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.view.LayoutInflater;
+import android.view.View;
+
+import com.readboy.wearlauncher.R;
+
+/**
+ * 热身之后，SwipeLayout 的拖动、松手和回弹路径上不能再有任何分配。
+ */
+public class SwipeLayoutAllocationTest extends InstrumentationTestCase {
+    private static final int SIZE_PX = 240;
+    private static final int MOVES = 30;
+
+    private SwipeLayout mLayout;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final View root = LayoutInflater.from(getInstrumentation().getTargetContext())
+                        .inflate(R.layout.notification_item, null);
+                final int spec = View.MeasureSpec.makeMeasureSpec(SIZE_PX, View.MeasureSpec.EXACTLY);
+                root.measure(spec, spec);
+                root.layout(0, 0, root.getMeasuredWidth(), root.getMeasuredHeight());
+                mLayout = (SwipeLayout) root.findViewById(R.id.swipelayout);
+            }
+        });
+    }
+
+    @UiThreadTest
+    public void testSwipeLeftAllocatesNothing() {
+        assertSteadyState(SwipeTouchReplayer.replaySwipe(mLayout, true, MOVES));
+    }
+
+    @UiThreadTest
+    public void testSwipeRightAllocatesNothing() {
+        assertSteadyState(SwipeTouchReplayer.replaySwipe(mLayout, false, MOVES));
+    }
+
+    private static void assertSteadyState(SwipeTouchReplayer.Result r) {
+        assertEquals(MOVES + 2, r.events);
+        assertEquals(r.toString(), 0, r.allocCount);
+        assertEquals(r.toString(), 0, r.allocBytes);
+    }
+}
@@ -0,0 +1,114 @@
+package com.readboy.wearlauncher.Swipe;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.MotionEvent;
+
+/**
+ * Replays a recorded touch stream into a measured, laid-out {@link SwipeLayout}
+ * and reports per-event cost and allocations, to check that the drag path stays
+ * allocation free once warmed up.
+ * <p>
+ * A stream is parallel arrays of (action, x, y, time offset in ms). The stream is
+ * dispatched twice: the first pass warms up lazily created state (VelocityTracker,
+ * bound cache, GestureDetector), the second pass is measured. All MotionEvents are
+ * obtained before counting starts so their own allocation is not charged to the
+ * layout. Must run on the main thread.
+ */
+final class SwipeTouchReplayer {
+    private static final String TAG = "SwipeTouchReplayer";
+
+    static final class Result {
+        int events;
+        int allocCount;
+        int allocBytes;
+        long totalNanos;
+
+        @Override
+        public String toString() {
+            return "events=" + events
+                    + " allocs=" + allocCount + " (" + allocBytes + " bytes)"
+                    + " avg=" + (events == 0 ? 0 : totalNanos / events / 1000) + "us/event";
+        }
+    }
+
+    private SwipeTouchReplayer() {
+    }
+
+    @SuppressWarnings("deprecation")
+    static Result replay(SwipeLayout layout, int[] actions, float[] xs, float[] ys,
+            long[] times) {
+        dispatch(layout, obtain(actions, xs, ys, times));
+
+        final MotionEvent[] events = obtain(actions, xs, ys, times);
+        final Result result = new Result();
+        result.events = events.length;
+
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        final long start = SystemClock.elapsedRealtimeNanos();
+        for (MotionEvent ev : events) {
+            layout.dispatchTouchEvent(ev);
+            // settle the release animation the way a frame would
+            layout.computeScroll();
+        }
+        result.totalNanos = SystemClock.elapsedRealtimeNanos() - start;
+        Debug.stopAllocCounting();
+        result.allocCount = Debug.getThreadAllocCount();
+        result.allocBytes = Debug.getThreadAllocSize();
+
+        recycle(events);
+        layout.close(false, false);
+        Log.i(TAG, result.toString());
+        return result;
+    }
+
+    /**
+     * A horizontal swipe across the middle of {@code layout}: down, {@code moves}
+     * moves 16ms apart, up.
+     */
+    static Result replaySwipe(SwipeLayout layout, boolean toLeft, int moves) {
+        final int count = moves + 2;
+        final int[] actions = new int[count];
+        final float[] xs = new float[count];
+        final float[] ys = new float[count];
+        final long[] times = new long[count];
+        final float y = layout.getHeight() / 2f;
+        final float from = toLeft ? layout.getWidth() * 0.9f : layout.getWidth() * 0.1f;
+        final float to = toLeft ? layout.getWidth() * 0.1f : layout.getWidth() * 0.9f;
+        for (int i = 0; i < count; i++) {
+            actions[i] = i == 0 ? MotionEvent.ACTION_DOWN
+                    : i == count - 1 ? MotionEvent.ACTION_UP : MotionEvent.ACTION_MOVE;
+            xs[i] = from + (to - from) * i / (count - 1);
+            ys[i] = y;
+            times[i] = i * 16L;
+        }
+        return replay(layout, actions, xs, ys, times);
+    }
+
+    private static MotionEvent[] obtain(int[] actions, float[] xs, float[] ys, long[] times) {
+        final long down = SystemClock.uptimeMillis();
+        final MotionEvent[] events = new MotionEvent[actions.length];
+        for (int i = 0; i < actions.length; i++) {
+            events[i] = MotionEvent.obtain(down, down + times[i], actions[i], xs[i], ys[i], 0);
+        }
+        return events;
+    }
+
+    private static void dispatch(SwipeLayout layout, MotionEvent[] events) {
+        for (MotionEvent ev : events) {
+            layout.dispatchTouchEvent(ev);
+            layout.computeScroll();
+        }
+        recycle(events);
+        layout.close(false, false);
+    }
+
+    private static void recycle(MotionEvent[] events) {
+        for (MotionEvent ev : events) {
+            ev.recycle();
+        }
+    }
+}
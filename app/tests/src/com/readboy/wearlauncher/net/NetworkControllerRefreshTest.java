@@ -0,0 +1,125 @@
+package com.readboy.wearlauncher.net;
+
+import android.os.SystemClock;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.util.Log;
+
+import java.util.List;
+
+/**
+ * NetworkController 只分发有变化的字段、同一帧内多次广播只刷新一次：
+ * 用 {@link NetworkTraceReplayer} 逐条喂广播，统计每条广播引起的界面更新次数。
+ */
+public class NetworkControllerRefreshTest extends InstrumentationTestCase {
+    private static final String TAG = "NetworkControllerRefreshTest";
+
+    private static final String[] WIFI_UP = {
+            "0 I android.net.wifi.WIFI_STATE_CHANGED wifi_state=i:3",
+            "0 I android.net.wifi.STATE_CHANGE networkInfo=n:1 wifiInfo=w:home",
+            "0 I android.net.conn.CONNECTIVITY_CHANGE inetCondition=i:100",
+            "0 I android.net.wifi.RSSI_CHANGED newRssi=i:-60",
+    };
+    private static final String RSSI = "0 I android.net.wifi.RSSI_CHANGED newRssi=i:-60";
+
+    private NetworkController mController;
+    private NetworkTraceReplayer.CountingSubscriber mSubscriber;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mController = new NetworkController(getInstrumentation().getTargetContext());
+                mSubscriber = new NetworkTraceReplayer.CountingSubscriber();
+                mController.addSignalCluster(mSubscriber);
+                mController.addNetworkSignalChangedCallback(mSubscriber);
+                mController.beginReplay(SystemClock.uptimeMillis());
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mController.endReplay();
+            }
+        });
+        super.tearDown();
+    }
+
+    @UiThreadTest
+    public void testRepeatedBroadcastMutatesNothing() {
+        for (String line : WIFI_UP) {
+            dispatch(line);
+            mController.flushRefresh();
+        }
+        final NetworkTraceReplayer.Event rssi = NetworkTraceReplayer.parse(RSSI, 0);
+        for (int i = 0; i < 5; i++) {
+            final int refreshes = mController.getRefreshCount();
+            final int mutations = mController.getViewMutationCount();
+            final int calls = mSubscriber.calls;
+            NetworkTraceReplayer.dispatch(mController, rssi);
+            mController.flushRefresh();
+            // 电平没变，不会排刷新
+            assertEquals("repeat " + i, refreshes, mController.getRefreshCount());
+            assertEquals("repeat " + i, 0, mController.getViewMutationCount() - mutations);
+            assertEquals("repeat " + i, calls, mSubscriber.calls);
+        }
+    }
+
+    @UiThreadTest
+    public void testBroadcastsInOneFrameRefreshOnce() {
+        final int refreshes = mController.getRefreshCount();
+        for (String line : WIFI_UP) {
+            dispatch(line);
+        }
+        dispatch(RSSI);
+        dispatch(RSSI);
+        // 还在同一帧里，帧回调没机会跑
+        assertEquals(refreshes, mController.getRefreshCount());
+        mController.flushRefresh();
+        assertEquals(refreshes + 1, mController.getRefreshCount());
+        // 没有新的变化时 flush 不会再刷新
+        mController.flushRefresh();
+        assertEquals(refreshes + 1, mController.getRefreshCount());
+    }
+
+    @UiThreadTest
+    public void testNewSubscriberConsumesPendingRefresh() {
+        final int refreshes = mController.getRefreshCount();
+        for (String line : WIFI_UP) {
+            dispatch(line);
+        }
+        // 新订阅者拿状态时把排着的刷新提前做掉，帧回调随之撤销
+        mController.addSignalCluster(new NetworkTraceReplayer.CountingSubscriber());
+        assertEquals(refreshes + 1, mController.getRefreshCount());
+        mController.flushRefresh();
+        assertEquals(refreshes + 1, mController.getRefreshCount());
+    }
+
+    @UiThreadTest
+    public void testMutationsPerBroadcastOnCannedTraces() throws Exception {
+        final String[] names = getInstrumentation().getContext().getAssets()
+                .list(NetworkTraceReplayer.ASSET_DIR);
+        assertTrue(names.length > 0);
+        for (String name : names) {
+            final List<NetworkTraceReplayer.Event> events = NetworkTraceReplayer.readAsset(
+                    getInstrumentation().getContext(), name);
+            final NetworkTraceReplayer.Result r = NetworkTraceReplayer.replay(name,
+                    new NetworkController(getInstrumentation().getTargetContext()), events);
+            final float perBroadcast = (float) r.viewMutations / r.events;
+            Log.i(TAG, name + ": viewMutations/broadcast=" + perBroadcast);
+            // 改动之前每条广播都会整套推一遍
+            assertTrue(r + ": " + perBroadcast + " mutations per broadcast",
+                    perBroadcast < NetworkTraceReplayTest.FULL_DISPATCH_MUTATIONS);
+        }
+    }
+
+    private void dispatch(String line) {
+        NetworkTraceReplayer.dispatch(mController, NetworkTraceReplayer.parse(line, 0));
+    }
+}
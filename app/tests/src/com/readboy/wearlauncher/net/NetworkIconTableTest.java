@@ -0,0 +1,278 @@
+package com.readboy.wearlauncher.net;
+
+import android.content.Context;
+import android.telephony.TelephonyManager;
+import android.test.AndroidTestCase;
+
+import com.readboy.wearlauncher.R;
+
+/**
+ * 把 {@link NetworkIconTable} 的每一个 key 和原来 NetworkController 里的
+ * switch 逻辑逐项对比，三个配置开关的 8 种组合都要覆盖。
+ */
+public class NetworkIconTableTest extends AndroidTestCase {
+
+    public void testEveryTelephonyKeyMatchesLegacySwitch() {
+        for (int config = 0; config < 8; config++) {
+            final boolean showAtLeast3G = (config & 1) != 0;
+            final boolean hspaDistinguishable = (config & 2) != 0;
+            final boolean show4GForLte = (config & 4) != 0;
+            final NetworkIconTable table = new NetworkIconTable(getContext(), showAtLeast3G,
+                    hspaDistinguishable, show4GForLte);
+            final Legacy legacy = new Legacy(getContext(), showAtLeast3G, hspaDistinguishable,
+                    show4GForLte);
+            for (int key = 0; key < NetworkIconTable.STATE_COUNT; key++) {
+                legacy.resolve(key);
+                final String where = "config=" + config + " key=0x" + Integer.toHexString(key);
+                assertEquals(where, legacy.phoneSignalIcon, table.phoneSignalIcon(key));
+                assertEquals(where, legacy.qsPhoneSignalIcon, table.qsPhoneSignalIcon(key));
+                assertEquals(where, legacy.dataSignalIcon, table.dataSignalIcon(key));
+                assertEquals(where, legacy.phoneSignalDescription,
+                        table.phoneSignalDescription(key));
+                assertEquals(where, legacy.dataTypeIcon, table.dataTypeIcon(key));
+                assertEquals(where, legacy.qsDataTypeIcon, table.qsDataTypeIcon(key));
+                assertEquals(where, legacy.dataTypeDescription, table.dataTypeDescription(key));
+                if (!legacy.airplane) {
+                    // 飞行模式下 updateDataIcon 不会用 airplane 的 key 去查
+                    assertEquals(where, legacy.dataActivityIcon, table.dataActivityIcon(key));
+                }
+            }
+        }
+    }
+
+    public void testEveryWifiKeyMatchesLegacySwitch() {
+        final Context context = getContext();
+        final NetworkIconTable table = new NetworkIconTable(context, false, false, false);
+        final String noWifi = context.getString(R.string.accessibility_no_wifi);
+        for (int key = 0; key < NetworkIconTable.WIFI_COUNT; key++) {
+            final int inet = key & 1;
+            final boolean enabled = ((key >> 1) & 1) != 0;
+            final boolean connected = ((key >> 2) & 1) != 0;
+            final boolean stacked = ((key >> 3) & 1) != 0;
+            final int level = Math.min(key >> 4, WifiIcons.WIFI_LEVEL_COUNT - 1);
+
+            final int icon;
+            final int qsIcon;
+            final String description;
+            if (connected) {
+                icon = WifiIcons.WIFI_SIGNAL_STRENGTH[inet][level];
+                qsIcon = WifiIcons.QS_WIFI_SIGNAL_STRENGTH[inet][level];
+                description = context.getString(
+                        AccessibilityContentDescriptions.WIFI_CONNECTION_STRENGTH[level]);
+            } else {
+                if (stacked) {
+                    icon = 0;
+                    qsIcon = 0;
+                } else {
+                    icon = enabled ? R.drawable.stat_sys_wifi_signal_null : 0;
+                    qsIcon = enabled ? R.drawable.ic_qs_wifi_no_network : 0;
+                }
+                description = noWifi;
+            }
+            final String where = "wifi key=0x" + Integer.toHexString(key);
+            assertEquals(where, icon, table.wifiIcon(key));
+            assertEquals(where, qsIcon, table.qsWifiIcon(key));
+            assertEquals(where, description, table.wifiDescription(key));
+        }
+    }
+
+    public void testPackClampsOutOfRangeValues() {
+        assertEquals(NetworkIconTable.pack(NetworkIconTable.NETWORK_TYPE_MASK, 0, 0, 0, false, false),
+                NetworkIconTable.pack(99, 0, 0, 0, false, false));
+        assertEquals(NetworkIconTable.pack(TelephonyManager.NETWORK_TYPE_LTE, 0, 0, 0, false, false),
+                NetworkIconTable.pack(TelephonyManager.NETWORK_TYPE_LTE, -1, 0, 0, false, false));
+        assertEquals(NetworkIconTable.pack(TelephonyManager.NETWORK_TYPE_LTE,
+                        NetworkIconTable.MAX_LEVEL, 1, 0, false, false),
+                NetworkIconTable.pack(TelephonyManager.NETWORK_TYPE_LTE, 42, 7, 0, false, false));
+    }
+
+    /**
+     * updateTelephonySignalStrength/updateDataNetType/updateDataIcon 改成查表之前的写法，
+     * 只保留和表相关的分支；airplane 一行对应 refreshViews 里飞行模式的覆盖。
+     */
+    private static final class Legacy {
+        private final Context mContext;
+        private final boolean mShowAtLeastThreeGees;
+        private final boolean mHspaDataDistinguishable;
+        private final boolean mShow4GForLte;
+
+        int phoneSignalIcon;
+        int qsPhoneSignalIcon;
+        int dataSignalIcon;
+        String phoneSignalDescription;
+        int dataTypeIcon;
+        int qsDataTypeIcon;
+        String dataTypeDescription;
+        int dataActivityIcon;
+        boolean airplane;
+        private int[] mDataIconList;
+
+        Legacy(Context context, boolean showAtLeast3G, boolean hspaDistinguishable,
+                boolean show4GForLte) {
+            mContext = context;
+            mShowAtLeastThreeGees = showAtLeast3G;
+            mHspaDataDistinguishable = hspaDistinguishable;
+            mShow4GForLte = show4GForLte;
+        }
+
+        void resolve(int key) {
+            airplane = ((key >> NetworkIconTable.AIRPLANE_SHIFT) & 1) != 0;
+            final int inet = (key >> NetworkIconTable.INET_SHIFT) & 1;
+            final boolean roaming = ((key >> NetworkIconTable.ROAMING_SHIFT) & 1) != 0;
+            final int activity = (key >> NetworkIconTable.ACTIVITY_SHIFT)
+                    & NetworkIconTable.ACTIVITY_MASK;
+            final int type = (key >> NetworkIconTable.NETWORK_TYPE_SHIFT)
+                    & NetworkIconTable.NETWORK_TYPE_MASK;
+            int level = (key >> NetworkIconTable.LEVEL_SHIFT) & NetworkIconTable.LEVEL_MASK;
+
+            // updateTelephonySignalStrength
+            final int[] iconList = TelephonyIcons.SIGNAL_STRENGTH[inet];
+            level = level < iconList.length ? level : iconList.length - 1;
+            phoneSignalIcon = iconList[level];
+            qsPhoneSignalIcon = TelephonyIcons.QS_TELEPHONY_SIGNAL_STRENGTH[inet][level];
+            phoneSignalDescription = mContext.getString(
+                    AccessibilityContentDescriptions.PHONE_SIGNAL_STRENGTH[level]);
+            dataSignalIcon = TelephonyIcons.DATA_SIGNAL_STRENGTH[inet][level];
+
+            // updateDataNetType
+            dataNetType(type, inet);
+            if (roaming) {
+                dataTypeIcon = R.drawable.stat_sys_data_fully_connected_roam;
+                qsDataTypeIcon = TelephonyIcons.QS_DATA_R[inet];
+            }
+
+            // updateDataIcon
+            switch (activity) {
+                case TelephonyManager.DATA_ACTIVITY_IN:
+                    dataActivityIcon = mDataIconList[1];
+                    break;
+                case TelephonyManager.DATA_ACTIVITY_OUT:
+                    dataActivityIcon = mDataIconList[2];
+                    break;
+                case TelephonyManager.DATA_ACTIVITY_INOUT:
+                    dataActivityIcon = mDataIconList[3];
+                    break;
+                case TelephonyManager.DATA_ACTIVITY_DORMANT:
+                default:
+                    dataActivityIcon = mDataIconList[0];
+                    break;
+            }
+
+            // refreshViews: look again; your radios are now airplanes
+            if (airplane) {
+                phoneSignalDescription = mContext.getString(R.string.accessibility_airplane_mode);
+                phoneSignalIcon = 0;
+                qsPhoneSignalIcon = 0;
+                dataSignalIcon = 0;
+                dataTypeIcon = 0;
+                qsDataTypeIcon = 0;
+            }
+        }
+
+        private void dataNetType(int type, int inet) {
+            switch (type) {
+                case TelephonyManager.NETWORK_TYPE_UNKNOWN:
+                    if (!mShowAtLeastThreeGees) {
+                        mDataIconList = TelephonyIcons.DATA_G[inet];
+                        dataTypeIcon = 0;
+                        qsDataTypeIcon = 0;
+                        dataTypeDescription = mContext.getString(
+                                R.string.accessibility_data_connection_gprs);
+                        break;
+                    } else {
+                        // fall through
+                    }
+                case TelephonyManager.NETWORK_TYPE_EDGE:
+                    if (!mShowAtLeastThreeGees) {
+                        mDataIconList = TelephonyIcons.DATA_E[inet];
+                        dataTypeIcon = R.drawable.stat_sys_data_fully_connected_e;
+                        qsDataTypeIcon = TelephonyIcons.QS_DATA_E[inet];
+                        dataTypeDescription = mContext.getString(
+                                R.string.accessibility_data_connection_edge);
+                        break;
+                    } else {
+                        // fall through
+                    }
+                case TelephonyManager.NETWORK_TYPE_UMTS:
+                    set3G(inet);
+                    break;
+                case TelephonyManager.NETWORK_TYPE_HSDPA:
+                case TelephonyManager.NETWORK_TYPE_HSUPA:
+                case TelephonyManager.NETWORK_TYPE_HSPA:
+                    if (mHspaDataDistinguishable) {
+                        mDataIconList = TelephonyIcons.DATA_H[inet];
+                        dataTypeIcon = R.drawable.stat_sys_data_fully_connected_h;
+                        qsDataTypeIcon = TelephonyIcons.QS_DATA_H[inet];
+                        dataTypeDescription = mContext.getString(
+                                R.string.accessibility_data_connection_3_5g);
+                    } else {
+                        set3G(inet);
+                    }
+                    break;
+                case TelephonyManager.NETWORK_TYPE_HSPAP:
+                    if (mHspaDataDistinguishable) {
+                        mDataIconList = TelephonyIcons.DATA_HP[inet];
+                        dataTypeIcon = R.drawable.stat_sys_data_fully_connected_hp;
+                        qsDataTypeIcon = TelephonyIcons.QS_DATA_HP[inet];
+                        dataTypeDescription = mContext.getString(
+                                R.string.accessibility_data_connection_3_5g);
+                    } else {
+                        set3G(inet);
+                    }
+                    break;
+                case TelephonyManager.NETWORK_TYPE_CDMA:
+                case TelephonyManager.NETWORK_TYPE_1xRTT:
+                    if (!mShowAtLeastThreeGees) {
+                        // display 1xRTT for IS95A/B
+                        mDataIconList = TelephonyIcons.DATA_1X[inet];
+                        dataTypeIcon = R.drawable.stat_sys_data_fully_connected_1x;
+                        qsDataTypeIcon = TelephonyIcons.QS_DATA_1X[inet];
+                        dataTypeDescription = mContext.getString(
+                                R.string.accessibility_data_connection_cdma);
+                        break;
+                    } else {
+                        // fall through
+                    }
+                case TelephonyManager.NETWORK_TYPE_EVDO_0:
+                case TelephonyManager.NETWORK_TYPE_EVDO_A:
+                case TelephonyManager.NETWORK_TYPE_EVDO_B:
+                case TelephonyManager.NETWORK_TYPE_EHRPD:
+                    set3G(inet);
+                    break;
+                case TelephonyManager.NETWORK_TYPE_LTE:
+                    if (mShow4GForLte) {
+                        mDataIconList = TelephonyIcons.DATA_4G[inet];
+                        dataTypeIcon = R.drawable.stat_sys_data_fully_connected_4g;
+                        qsDataTypeIcon = TelephonyIcons.QS_DATA_4G[inet];
+                        dataTypeDescription = mContext.getString(
+                                R.string.accessibility_data_connection_4g);
+                    } else {
+                        mDataIconList = TelephonyIcons.DATA_LTE[inet];
+                        dataTypeIcon = R.drawable.stat_sys_data_fully_connected_lte;
+                        qsDataTypeIcon = TelephonyIcons.QS_DATA_LTE[inet];
+                        dataTypeDescription = mContext.getString(
+                                R.string.accessibility_data_connection_lte);
+                    }
+                    break;
+                default:
+                    if (!mShowAtLeastThreeGees) {
+                        mDataIconList = TelephonyIcons.DATA_G[inet];
+                        dataTypeIcon = R.drawable.stat_sys_data_fully_connected_g;
+                        qsDataTypeIcon = TelephonyIcons.QS_DATA_G[inet];
+                        dataTypeDescription = mContext.getString(
+                                R.string.accessibility_data_connection_gprs);
+                    } else {
+                        set3G(inet);
+                    }
+                    break;
+            }
+        }
+
+        private void set3G(int inet) {
+            mDataIconList = TelephonyIcons.DATA_3G[inet];
+            dataTypeIcon = R.drawable.stat_sys_data_fully_connected_3g;
+            qsDataTypeIcon = TelephonyIcons.QS_DATA_3G[inet];
+            dataTypeDescription = mContext.getString(R.string.accessibility_data_connection_3g);
+        }
+    }
+}
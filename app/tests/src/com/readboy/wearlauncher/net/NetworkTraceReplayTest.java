@@ -0,0 +1,57 @@
+package com.readboy.wearlauncher.net;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import java.util.List;
+
+/**
+ * 把 tests/assets/nettrace 下录好的轨迹（通勤、弱信号、Wi-Fi 漫游）重放到新的
+ * NetworkController 上，作为刷新次数和界面更新次数的回归基准。
+ */
+public class NetworkTraceReplayTest extends InstrumentationTestCase {
+    private static final String TAG = "NetworkTraceReplayTest";
+
+    /** 一次完整分发：SignalCluster 4 组 + NetworkSignalChangedCallback 3 组 */
+    static final int FULL_DISPATCH_MUTATIONS = 7;
+
+    public void testCommute() throws Exception {
+        replayCanned("commute.txt");
+    }
+
+    public void testWeakCoverage() throws Exception {
+        replayCanned("weak_coverage.txt");
+    }
+
+    public void testWifiRoaming() throws Exception {
+        replayCanned("wifi_roaming.txt");
+    }
+
+    private void replayCanned(final String name) throws Exception {
+        final Context context = getInstrumentation().getTargetContext();
+        final List<NetworkTraceReplayer.Event> events =
+                NetworkTraceReplayer.readAsset(getInstrumentation().getContext(), name);
+        assertTrue(name + " is empty", events.size() > 0);
+
+        final NetworkTraceReplayer.Result[] result = new NetworkTraceReplayer.Result[1];
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                result[0] = NetworkTraceReplayer.replay(name, new NetworkController(context), events);
+            }
+        });
+        final NetworkTraceReplayer.Result r = result[0];
+        Log.i(TAG, r.toString());
+
+        assertEquals(events.size(), r.events);
+        // 每个事件后都 flush 一次，同一帧内的多次 refreshViews 必须合并成一次
+        assertTrue(r + ": no refresh", r.refreshes > 0);
+        assertTrue(r + ": more refreshes than events", r.refreshes <= r.events);
+        // 没挂 TextView，控制器统计的界面更新数就是订阅者收到的调用数
+        assertEquals(r.toString(), r.subscriberCalls, r.viewMutations);
+        // 只分发变化的字段，不能每次刷新都整套推一遍
+        assertTrue(r + ": every refresh was a full dispatch",
+                r.viewMutations < r.refreshes * FULL_DISPATCH_MUTATIONS);
+    }
+}
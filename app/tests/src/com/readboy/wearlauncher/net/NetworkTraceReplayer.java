@@ -0,0 +1,306 @@
+package com.readboy.wearlauncher.net;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.net.wifi.WifiSsid;
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.Message;
+import android.os.SystemClock;
+import android.telephony.ServiceState;
+import android.telephony.SignalStrength;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 解析 {@link NetworkTrace} 轨迹，并以最快速度重放到一个未启动的 NetworkController 上，
+ * 统计 refreshViews 次数、界面更新次数、分配和耗时。轨迹中的时间间隔只作用于
+ * 控制器的虚拟时钟（信号迟滞等），不会真的等待。每个事件后都立即刷新一次，
+ * 相当于每个事件各占一帧，是最坏情况。
+ */
+final class NetworkTraceReplayer {
+    static final String ASSET_DIR = "nettrace";
+
+    /**
+     * One decoded trace line, with its payload built up front so replaying it
+     * allocates nothing on behalf of the trace itself.
+     */
+    static final class Event {
+        final long time;
+        final char kind;
+        Intent intent;
+        SignalStrength signalStrength;
+        ServiceState serviceState;
+        Message message;
+        int arg1;
+        int arg2;
+
+        Event(long time, char kind) {
+            this.time = time;
+            this.kind = kind;
+        }
+    }
+
+    static final class Result {
+        final String name;
+        int events;
+        int refreshes;
+        int viewMutations;
+        int subscriberCalls;
+        int allocCount;
+        int allocBytes;
+        long wallTimeMs;
+
+        Result(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": events=" + events
+                    + " refreshViews=" + refreshes
+                    + " viewMutations=" + viewMutations
+                    + " allocs=" + allocCount + " (" + allocBytes + " bytes)"
+                    + " wall=" + wallTimeMs + "ms";
+        }
+    }
+
+    /** 只计数的订阅者，让控制器像挂着真实界面一样分发 */
+    static final class CountingSubscriber implements NetworkController.SignalCluster,
+            NetworkController.NetworkSignalChangedCallback {
+        int calls;
+
+        @Override
+        public void setWifiIndicators(boolean visible, int strengthIcon,
+                String contentDescription) {
+            calls++;
+        }
+
+        @Override
+        public void setMobileDataIndicators(boolean visible, int strengthIcon, int typeIcon,
+                String contentDescription, String typeContentDescription, int noSimIcon) {
+            calls++;
+        }
+
+        @Override
+        public void setIsAirplaneMode(boolean is, int airplaneIcon) {
+            calls++;
+        }
+
+        @Override
+        public void setVolteStatusIcon(int iconId) {
+            calls++;
+        }
+
+        @Override
+        public void onWifiSignalChanged(boolean enabled, int wifiSignalIconId,
+                boolean activityIn, boolean activityOut,
+                String wifiSignalContentDescriptionId, String description) {
+            calls++;
+        }
+
+        @Override
+        public void onMobileDataSignalChanged(boolean enabled, int mobileSignalIconId,
+                String mobileSignalContentDescriptionId, int networkType, int dataTypeIconId,
+                boolean activityIn, boolean activityOut,
+                String dataTypeContentDescriptionId, String description) {
+            calls++;
+        }
+
+        @Override
+        public void onAirplaneModeChanged(boolean enabled) {
+            calls++;
+        }
+    }
+
+    private NetworkTraceReplayer() {
+    }
+
+    static List<Event> read(BufferedReader in) throws IOException {
+        List<Event> events = new ArrayList<Event>();
+        long time = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            Event e = parse(line, time);
+            if (e != null) {
+                events.add(e);
+                time = e.time;
+            }
+        }
+        return events;
+    }
+
+    static List<Event> readAsset(Context context, String name) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                context.getAssets().open(ASSET_DIR + "/" + name)));
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Parse one line. Returns null for blank lines and comments.
+     */
+    static Event parse(String line, long lastTime) {
+        line = line.trim();
+        if (line.length() == 0 || line.charAt(0) == '#') {
+            return null;
+        }
+        final String[] tokens = line.split(" +");
+        if (tokens.length < 2 || tokens[1].length() != 1) {
+            throw new IllegalArgumentException("bad event: " + line);
+        }
+        final Event e = new Event(lastTime + Long.parseLong(tokens[0]), tokens[1].charAt(0));
+        switch (e.kind) {
+            case NetworkTrace.INTENT:
+                e.intent = new Intent(tokens[2]);
+                e.intent.putExtras(parseBundle(tokens, 3));
+                break;
+            case NetworkTrace.SIGNAL_STRENGTH:
+                e.signalStrength = SignalStrength.newFromBundle(parseBundle(tokens, 2));
+                break;
+            case NetworkTrace.SERVICE_STATE:
+                e.serviceState = ServiceState.newFromBundle(parseBundle(tokens, 2));
+                break;
+            case NetworkTrace.DATA_CONNECTION:
+                e.arg1 = Integer.parseInt(tokens[2]);
+                e.arg2 = Integer.parseInt(tokens[3]);
+                break;
+            case NetworkTrace.DATA_ACTIVITY:
+            case NetworkTrace.CALL_STATE:
+                e.arg1 = Integer.parseInt(tokens[2]);
+                break;
+            case NetworkTrace.WIFI_ACTIVITY:
+                e.arg1 = Integer.parseInt(tokens[2]);
+                e.message = Message.obtain(null, WifiManager.DATA_ACTIVITY_NOTIFICATION, e.arg1, 0);
+                break;
+            default:
+                throw new IllegalArgumentException("bad event: " + line);
+        }
+        return e;
+    }
+
+    static Bundle parseBundle(String[] tokens, int from) {
+        Bundle b = new Bundle();
+        for (int i = from; i < tokens.length; i++) {
+            final String token = tokens[i];
+            final int eq = token.indexOf('=');
+            if (eq <= 0 || token.length() < eq + 3 || token.charAt(eq + 2) != ':') {
+                throw new IllegalArgumentException("bad value: " + token);
+            }
+            final String key = NetworkTrace.decode(token.substring(0, eq));
+            final String text = token.substring(eq + 3);
+            switch (token.charAt(eq + 1)) {
+                case 'i':
+                    b.putInt(key, Integer.parseInt(text));
+                    break;
+                case 'l':
+                    b.putLong(key, Long.parseLong(text));
+                    break;
+                case 'z':
+                    b.putBoolean(key, Boolean.parseBoolean(text));
+                    break;
+                case 's':
+                    b.putString(key, NetworkTrace.decode(text));
+                    break;
+                case 'n':
+                    b.putParcelable(key, newWifiNetworkInfo("1".equals(text)));
+                    break;
+                case 'w':
+                    b.putParcelable(key, newWifiInfo(NetworkTrace.decode(text)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("bad type: " + token);
+            }
+        }
+        return b;
+    }
+
+    private static NetworkInfo newWifiNetworkInfo(boolean connected) {
+        NetworkInfo info = new NetworkInfo(ConnectivityManager.TYPE_WIFI, 0, "WIFI", "");
+        info.setDetailedState(connected ? NetworkInfo.DetailedState.CONNECTED
+                : NetworkInfo.DetailedState.DISCONNECTED, null, null);
+        return info;
+    }
+
+    private static WifiInfo newWifiInfo(String ssid) {
+        WifiInfo info = new WifiInfo();
+        info.setSSID(WifiSsid.createFromAsciiEncoded(ssid));
+        return info;
+    }
+
+    /**
+     * Replay {@code events} into {@code controller}. Must run on the main thread,
+     * and the controller must not be resumed.
+     */
+    @SuppressWarnings("deprecation")
+    static Result replay(String name, NetworkController controller, List<Event> events) {
+        final Result result = new Result(name);
+        final CountingSubscriber subscriber = new CountingSubscriber();
+        controller.addSignalCluster(subscriber);
+        controller.addNetworkSignalChangedCallback(subscriber);
+
+        final int refreshes = controller.getRefreshCount();
+        final int mutations = controller.getViewMutationCount();
+        final long base = SystemClock.uptimeMillis();
+        controller.beginReplay(base);
+
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        final long start = SystemClock.elapsedRealtime();
+        for (int i = 0, n = events.size(); i < n; i++) {
+            final Event e = events.get(i);
+            controller.advanceReplayClock(base + e.time);
+            dispatch(controller, e);
+            controller.flushRefresh();
+        }
+        result.wallTimeMs = SystemClock.elapsedRealtime() - start;
+        Debug.stopAllocCounting();
+        result.allocCount = Debug.getThreadAllocCount();
+        result.allocBytes = Debug.getThreadAllocSize();
+
+        controller.endReplay();
+        result.events = events.size();
+        result.refreshes = controller.getRefreshCount() - refreshes;
+        result.viewMutations = controller.getViewMutationCount() - mutations;
+        result.subscriberCalls = subscriber.calls;
+        return result;
+    }
+
+    static void dispatch(NetworkController controller, Event e) {
+        switch (e.kind) {
+            case NetworkTrace.INTENT:
+                controller.onReceive(controller.mContext, e.intent);
+                break;
+            case NetworkTrace.SIGNAL_STRENGTH:
+                controller.mPhoneStateListener.onSignalStrengthsChanged(e.signalStrength);
+                break;
+            case NetworkTrace.SERVICE_STATE:
+                controller.mPhoneStateListener.onServiceStateChanged(e.serviceState);
+                break;
+            case NetworkTrace.DATA_CONNECTION:
+                controller.mPhoneStateListener.onDataConnectionStateChanged(e.arg1, e.arg2);
+                break;
+            case NetworkTrace.DATA_ACTIVITY:
+                controller.mPhoneStateListener.onDataActivity(e.arg1);
+                break;
+            case NetworkTrace.CALL_STATE:
+                controller.mPhoneStateListener.onCallStateChanged(e.arg1, null);
+                break;
+            case NetworkTrace.WIFI_ACTIVITY:
+                controller.mWifiHandler.handleMessage(e.message);
+                break;
+        }
+    }
+}
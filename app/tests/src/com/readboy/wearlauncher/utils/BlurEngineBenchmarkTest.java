@@ -0,0 +1,100 @@
+package com.readboy.wearlauncher.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * BlurEngine 两条路径的吞吐量：不走缓存的 {@link BlurEngine#blur} （通常是 RenderScript），
+ * 以及工作尺寸上的 Java {@link StackBlur}。耗时只输出到日志，不做断言；
+ * 断言的是同一张图反复模糊时全部命中缓存，以及 Java 路径不分配内存。
+ */
+public class BlurEngineBenchmarkTest extends AndroidTestCase {
+    private static final String TAG = "BlurEngineBenchmark";
+
+    private static final int SOURCE_SIZE = 240;
+    private static final int RADIUS = 20;
+    private static final int ITERATIONS = 100;
+
+    public void testEngineBlur() {
+        final BlurEngine engine = BlurEngine.getInstance(getContext());
+        final Bitmap source = gradient(SOURCE_SIZE);
+        try {
+            engine.blur(source, RADIUS);
+            int blurs = engine.getBlurCount();
+            int hits = engine.getCacheHits();
+            long start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < ITERATIONS; i++) {
+                // 改一个像素换掉 generationId，每次都真的重算
+                source.setPixel(0, 0, i);
+                engine.blur(source, RADIUS);
+            }
+            long nanos = SystemClock.elapsedRealtimeNanos() - start;
+            report("engine", SOURCE_SIZE, nanos);
+            assertEquals("blurs", ITERATIONS, engine.getBlurCount() - blurs);
+            assertEquals("cache hits", 0, engine.getCacheHits() - hits);
+
+            // 源图不变时只有第一次算，之后都从缓存取
+            blurs = engine.getBlurCount();
+            hits = engine.getCacheHits();
+            start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < ITERATIONS; i++) {
+                engine.blur(source, RADIUS);
+            }
+            nanos = SystemClock.elapsedRealtimeNanos() - start;
+            report("cached", SOURCE_SIZE, nanos);
+            assertEquals("blurs", 0, engine.getBlurCount() - blurs);
+            assertEquals("cache hits", ITERATIONS, engine.getCacheHits() - hits);
+        } finally {
+            source.recycle();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    public void testStackBlur() {
+        final int w = BlurEngine.WIDTH;
+        final int h = BlurEngine.HEIGHT;
+        final StackBlur.Buffers buffers = new StackBlur.Buffers(w, h, BlurEngine.MAX_RADIUS);
+        final int[] source = new int[w * h];
+        final Bitmap bitmap = gradient(w);
+        bitmap.getPixels(source, 0, w, 0, 0, w, h);
+        bitmap.recycle();
+        final int[] pix = new int[w * h];
+
+        System.arraycopy(source, 0, pix, 0, pix.length);
+        StackBlur.blur(pix, w, h, RADIUS, buffers);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        final long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            System.arraycopy(source, 0, pix, 0, pix.length);
+            StackBlur.blur(pix, w, h, RADIUS, buffers);
+        }
+        final long nanos = SystemClock.elapsedRealtimeNanos() - start;
+        Debug.stopAllocCounting();
+        final int allocs = Debug.getThreadAllocCount();
+
+        report("java", w, nanos);
+        assertEquals("allocations in " + ITERATIONS + " blurs", 0, allocs);
+    }
+
+    private static void report(String name, int size, long nanos) {
+        Log.i(TAG, name + ": " + ITERATIONS + " blurs of " + size + "x" + size
+                + " in " + nanos / 1000000 + "ms, "
+                + (nanos == 0 ? 0 : ITERATIONS * 1000000000L / nanos) + "/s");
+    }
+
+    private static Bitmap gradient(int size) {
+        final Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                bitmap.setPixel(x, y, Color.rgb(x * 255 / size, y * 255 / size, (x ^ y) & 0xff));
+            }
+        }
+        return bitmap;
+    }
+}
@@ -0,0 +1,124 @@
+package com.readboy.wearlauncher.utils;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+/**
+ * {@link StackBlur} 直接在像素数组上验证，不经过 Bitmap 和 BlurEngine 的缓存。
+ */
+public class StackBlurTest extends TestCase {
+    private static final int W = 100;
+    private static final int H = 100;
+    private static final int MAX_RADIUS = 25;
+
+    private StackBlur.Buffers mBuffers;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mBuffers = new StackBlur.Buffers(W, H, MAX_RADIUS);
+    }
+
+    public void testUniformImageIsUnchanged() {
+        final int color = 0x80336699;
+        final int[][] sizes = {{W, H}, {1, 1}, {1, H}, {W, 1}, {7, 3}};
+        for (int[] size : sizes) {
+            for (int radius = 1; radius <= MAX_RADIUS; radius++) {
+                final int[] pix = new int[size[0] * size[1]];
+                Arrays.fill(pix, color);
+                StackBlur.blur(pix, size[0], size[1], radius, mBuffers);
+                for (int i = 0; i < pix.length; i++) {
+                    assertEquals(size[0] + "x" + size[1] + " radius " + radius + " at " + i,
+                            color, pix[i]);
+                }
+            }
+        }
+    }
+
+    public void testRadiusBounds() {
+        final int[] pix = gradient(W, H);
+        StackBlur.blur(pix, W, H, 1, mBuffers);
+        StackBlur.blur(pix, W, H, MAX_RADIUS, mBuffers);
+        try {
+            StackBlur.blur(pix, W, H, 0, mBuffers);
+            fail("radius 0");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            StackBlur.blur(pix, W, H, MAX_RADIUS + 1, mBuffers);
+            fail("radius " + (MAX_RADIUS + 1));
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testImageMustFitBuffers() {
+        try {
+            StackBlur.blur(new int[(W + 1) * H], W + 1, H, 1, mBuffers);
+            fail("wider than the buffers");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            // 像素数够，但一边比缓冲区长
+            StackBlur.blur(new int[W * 2], W * 2, 1, 1, mBuffers);
+            fail("longer side than the buffers");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            StackBlur.blur(new int[W * H - 1], W, H, 1, mBuffers);
+            fail("pixel array too short");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testBlurStaysWithinRadius() {
+        final int radius = 5;
+        final int[] pix = new int[W * H];
+        Arrays.fill(pix, 0xff000000);
+        final int cx = W / 2;
+        final int cy = H / 2;
+        pix[cy * W + cx] = 0xffffffff;
+        StackBlur.blur(pix, W, H, radius, mBuffers);
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                final boolean inside = Math.abs(x - cx) <= radius && Math.abs(y - cy) <= radius;
+                final int p = pix[y * W + x];
+                assertEquals("alpha at " + x + "," + y, 0xff, p >>> 24);
+                if (!inside) {
+                    assertEquals("outside at " + x + "," + y, 0xff000000, p);
+                }
+            }
+        }
+        assertTrue((pix[cy * W + cx] & 0xff) > 0);
+        assertTrue((pix[cy * W + cx] & 0xff) < 0xff);
+    }
+
+    public void testBuffersAreReused() {
+        final int[] expected = gradient(W, H);
+        StackBlur.blur(expected, W, H, 20, new StackBlur.Buffers(W, H, MAX_RADIUS));
+
+        // 同一组缓冲区先后处理不同尺寸和半径，不能留下影响下一次的状态
+        final int[] stackBefore = mBuffers.mStack;
+        final int[] rBefore = mBuffers.mR;
+        StackBlur.blur(gradient(7, 3), 7, 3, MAX_RADIUS, mBuffers);
+        StackBlur.blur(gradient(1, H), 1, H, 3, mBuffers);
+        for (int i = 0; i < 3; i++) {
+            final int[] pix = gradient(W, H);
+            StackBlur.blur(pix, W, H, 20, mBuffers);
+            assertTrue("pass " + i, Arrays.equals(expected, pix));
+        }
+        assertSame(stackBefore, mBuffers.mStack);
+        assertSame(rBefore, mBuffers.mR);
+    }
+
+    private static int[] gradient(int w, int h) {
+        final int[] pix = new int[w * h];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                pix[y * w + x] = 0xff000000 | ((x * 255 / w) << 16) | ((y * 255 / h) << 8)
+                        | ((x ^ y) & 0xff);
+            }
+        }
+        return pix;
+    }
+}
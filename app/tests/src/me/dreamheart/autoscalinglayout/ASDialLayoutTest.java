@@ -0,0 +1,87 @@
+package me.dreamheart.autoscalinglayout;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.readboy.wearlauncher.R;
+import com.readboy.wearlauncher.view.DigitClock;
+
+/**
+ * 表盘放在 ASFrameLayout 里按 DialPagerAdapter 的方式加载，按不同于设计尺寸的大小布局：
+ * 首次布局时整棵子树缩放一次，之后时钟每走一次只能重新测量，不能再缩放。
+ */
+public class ASDialLayoutTest extends InstrumentationTestCase {
+    private static final String TAG = "ASDialLayoutTest";
+
+    /** 不能等于 dial_design_width/height（240px），否则比例是 1，根本不会缩放 */
+    private static final int SIZE = 320;
+    private static final int TICKS = 10;
+    /** 外层 RelativeLayout 每次测量会量两遍子 View */
+    private static final int MAX_MEASURES_PER_PASS = 2;
+
+    private View mRoot;
+    private DigitClock mClock;
+    private final Bitmap mBitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+    private final Canvas mCanvas = new Canvas(mBitmap);
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final LayoutInflater inflater =
+                        LayoutInflater.from(getInstrumentation().getTargetContext());
+                mRoot = inflater.inflate(R.layout.view_watch_item, null, false);
+                final ViewGroup as = (ViewGroup) mRoot.findViewById(R.id.as_lyid);
+                inflater.inflate(R.layout.dialtype_b_layout_cell, as, true);
+                mClock = (DigitClock) mRoot.findViewById(R.id.digit_clock);
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mBitmap.recycle();
+        super.tearDown();
+    }
+
+    @UiThreadTest
+    public void testClockTickDoesNotRescale() {
+        assertNotNull(mClock);
+        // 首次布局和绘制时按实际大小缩放
+        final int firstScales = ASViewGroupUtil.getScaleCount();
+        layout();
+        assertEquals("scales in first layout", 1, ASViewGroupUtil.getScaleCount() - firstScales);
+
+        final int measures = ASViewGroupUtil.getMeasureCount();
+        final int scales = ASViewGroupUtil.getScaleCount();
+        for (int i = 0; i < TICKS; i++) {
+            mClock.setCurTime();
+            // 最坏情况：每次走时都触发一次完整的重新布局
+            mRoot.requestLayout();
+            layout();
+        }
+        final int tickMeasures = ASViewGroupUtil.getMeasureCount() - measures;
+        final int tickScales = ASViewGroupUtil.getScaleCount() - scales;
+
+        Log.i(TAG, TICKS + " ticks: measures=" + tickMeasures + " scales=" + tickScales);
+        assertEquals("scales in " + TICKS + " ticks", 0, tickScales);
+        assertTrue("measures in " + TICKS + " ticks: " + tickMeasures,
+                tickMeasures <= TICKS * MAX_MEASURES_PER_PASS);
+    }
+
+    /** 和一帧的顺序一致：测量、布局、绘制，ASFrameLayout 在 draw 里也会检查缩放 */
+    private void layout() {
+        final int spec = View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY);
+        mRoot.measure(spec, spec);
+        mRoot.layout(0, 0, SIZE, SIZE);
+        mRoot.draw(mCanvas);
+    }
+}